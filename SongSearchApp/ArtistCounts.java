@@ -0,0 +1,278 @@
+import java.util.Arrays;
+
+/**
+ * This class stores the distinct artists of the songs containing a title word, as artist IDs in
+ * the order in which the artists first appeared, together with the number of songs of every
+ * artist. A small open addressing table from artist ID to position makes adding a song constant
+ * time, so listing the artists of a word costs the number of distinct artists instead of a scan
+ * of every song
+ */
+class ArtistCounts {
+  private int[] artistIds = new int[2];   // distinct artist IDs in order of first appearance
+  private int[] counts = new int[2];      // number of songs of the artist at the same position
+  private int size = 0;                   // number of distinct artists
+  private int emptied = 0;                // number of artists whose songs were all removed, they
+                                          // keep their position with a count of 0 until the
+                                          // counts are built again
+  private int[] slots = new int[4];       // open addressing table holding position + 1 of every
+                                          // artist, 0 marks an empty slot
+
+  /**
+   * This method adds songs of an artist, or removes them when the number is negative. An artist
+   * whose count drops to 0 keeps its position, so removing a song costs as little as adding one;
+   * such artists are skipped by the readers of this class and dropped when the posting list is
+   * compacted, which clears the counts and adds its remaining songs again
+   *
+   * @param artistId - the ID of the artist
+   * @param songs    - the number of songs to be added, negative to remove songs of a present artist
+   */
+  void add(int artistId, int songs) {
+    int mask = slots.length - 1;
+    int slot = slotFor(artistId) & mask;
+    while (slots[slot] != 0) {
+      int position = slots[slot] - 1;
+      if (artistIds[position] == artistId) {
+        emptied -= counts[position] == 0 ? 1 : 0;
+        counts[position] += songs;
+        emptied += counts[position] == 0 ? 1 : 0;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    // the artist is new, it is appended and recorded in the table
+    if (size == artistIds.length) {
+      artistIds = Arrays.copyOf(artistIds, size * 2);
+      counts = Arrays.copyOf(counts, size * 2);
+    }
+    artistIds[size] = artistId;
+    counts[size] = songs;
+    size += 1;
+    slots[slot] = size;
+    if (size * 2 > slots.length) {
+      rehash(slots.length * 2);
+    }
+  }
+
+  /**
+   * This method scrambles an artist ID so that consecutive IDs spread over the table
+   *
+   * @param artistId - the ID of the artist
+   * @return the scrambled ID, to be masked to the table size
+   */
+  private static int slotFor(int artistId) {
+    int h = artistId * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * This method rebuilds the table from artist ID to position with the passed number of slots
+   *
+   * @param capacity - the new number of slots, a power of two
+   */
+  private void rehash(int capacity) {
+    slots = new int[capacity];
+    int mask = capacity - 1;
+    for (int position = 0; position < size; ++position) {
+      int slot = slotFor(artistIds[position]) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = position + 1;
+    }
+  }
+
+  /**
+   * This method adds the artists of another word, whose artist IDs are translated through the
+   * passed table
+   *
+   * @param other    - the artist counts to be added
+   * @param remapped - the ID in this back end of every artist ID of the other one
+   */
+  void addAll(ArtistCounts other, int[] remapped) {
+    for (int i = 0; i < other.size; ++i) {
+      if (other.counts[i] != 0) {
+        add(remapped[other.artistIds[i]], other.counts[i]);
+      }
+    }
+  }
+
+  /**
+   * This method drops every artist. Adding the remaining songs again afterwards, in the order of
+   * their IDs, puts every artist at the position of its first remaining song, which is the order
+   * a back end built from the remaining songs alone would have
+   */
+  void clear() {
+    artistIds = new int[2];
+    counts = new int[2];
+    size = 0;
+    emptied = 0;
+    slots = new int[4];
+  }
+
+  /**
+   * This method returns the number of positions, including the positions of artists whose songs
+   * were all removed (see countAt())
+   *
+   * @return the number of positions
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * This method returns the number of distinct artists with at least one song
+   *
+   * @return the number of distinct artists
+   */
+  int liveSize() {
+    return size - emptied;
+  }
+
+  /**
+   * This method returns the position of the artist which is the passed number of artists with
+   * songs after the first one, skipping the artists whose songs were all removed
+   *
+   * @param index - the number of artists with songs before the wanted one
+   * @return the position of the artist, or size() if there are not that many artists
+   */
+  int positionOf(int index) {
+    if (emptied == 0) {
+      return Math.min(index, size);
+    }
+    int position = 0;
+    for (; position < size; ++position) {
+      if (counts[position] != 0 && index-- == 0) {
+        break;
+      }
+    }
+    return position;
+  }
+
+  /**
+   * This method returns the artist at the passed position
+   *
+   * @param position - the position, artists are in the order of their first song
+   * @return the ID of the artist
+   */
+  int artistAt(int position) {
+    return artistIds[position];
+  }
+
+  /**
+   * This method returns the number of songs of the artist at the passed position
+   *
+   * @param position - the position, artists are in the order of their first song
+   * @return the number of songs of the artist
+   */
+  int countAt(int position) {
+    return counts[position];
+  }
+
+  /**
+   * This method returns the positions of the artists with the most songs. A min-heap of k
+   * positions is kept while the artists are scanned once, so only k positions are ever sorted
+   *
+   * @param k - the maximum number of artists to be returned
+   * @return the positions of the top artists, by descending number of songs and ties in order of
+   *         first appearance
+   */
+  int[] top(int k) {
+    k = Math.min(k, liveSize());
+    if (k <= 0) {
+      return new int[0];
+    }
+    int[] heap = new int[k];
+    int heapSize = 0;
+    for (int position = 0; position < size; ++position) {
+      if (counts[position] == 0) {
+        continue;
+      }
+      if (heapSize < k) {
+        heap[heapSize++] = position;
+        siftUp(heap, heapSize - 1);
+      } else if (ranksBefore(position, heap[0])) {
+        heap[0] = position;
+        siftDown(heap, heapSize);
+      }
+    }
+
+    // emptying the heap gives the positions from the lowest ranked to the highest ranked one
+    int[] result = new int[k];
+    for (int i = k - 1; i >= 0; --i) {
+      result[i] = heap[0];
+      heap[0] = heap[--heapSize];
+      siftDown(heap, heapSize);
+    }
+    return result;
+  }
+
+  /**
+   * This method checks whether the artist at one position ranks before the one at another: the
+   * artist with more songs ranks first, and of two artists with as many songs the one which
+   * appeared first
+   *
+   * @param first  - the position of one artist
+   * @param second - the position of the other artist
+   * @return true if the artist at first ranks before the artist at second
+   */
+  private boolean ranksBefore(int first, int second) {
+    return counts[first] > counts[second] || (counts[first] == counts[second] && first < second);
+  }
+
+  /**
+   * This method moves a newly added position of the min-heap of top() up towards the root as
+   * long as its parent ranks before it, so the root always holds the lowest ranked artist
+   *
+   * @param heap  - the positions of the heap
+   * @param index - the index in the heap of the added position
+   */
+  private void siftUp(int[] heap, int index) {
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      if (!ranksBefore(heap[parent], heap[index])) {
+        break;
+      }
+      swap(heap, parent, index);
+      index = parent;
+    }
+  }
+
+  /**
+   * This method moves the position at the root of the min-heap of top() down, after the root was
+   * replaced, as long as one of its children ranks lower than it does
+   *
+   * @param heap     - the positions of the heap
+   * @param heapSize - the number of positions in the heap
+   */
+  private void siftDown(int[] heap, int heapSize) {
+    int index = 0;
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= heapSize) {
+        return;
+      }
+      if (child + 1 < heapSize && ranksBefore(heap[child], heap[child + 1])) {
+        child += 1;
+      }
+      if (!ranksBefore(heap[index], heap[child])) {
+        return;
+      }
+      swap(heap, index, child);
+      index = child;
+    }
+  }
+
+  /**
+   * This method exchanges two entries of a heap
+   *
+   * @param heap   - the positions of the heap
+   * @param first  - the index of one entry
+   * @param second - the index of the other entry
+   */
+  private static void swap(int[] heap, int first, int second) {
+    int temporary = heap[first];
+    heap[first] = heap[second];
+    heap[second] = temporary;
+  }
+}
@@ -0,0 +1,465 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * This class answers the queries of a thread-safe back end (a LocalSearchShard, a
+ * ShardedSearchBackEnd or a ConcurrentSearchBackEnd) asynchronously: every query returns a
+ * CompletableFuture at once and is answered by the threads of an executor. A query which equals a
+ * query still in flight is not run again but gets the future of the running one, so a popular word
+ * asked by many callers at once is looked up once. The distinct queries arriving within a short
+ * window are collected into a batch which one task of the executor answers in a row, ordered by
+ * word so that the queries of a word follow each other; the queries of a batch for a
+ * LocalSearchShard are answered under a single acquisition of its read lock, and every distinct
+ * word of the batch is looked up in its hash table once, however many methods are asked of it.
+ * Other back ends are asked query by query, each query looking its word up again. Lists are shared
+ * between the callers of a coalesced query and are therefore unmodifiable
+ */
+public class AsyncSearchBackEnd implements AutoCloseable {
+
+  // the query methods which can be asked asynchronously
+  private static final int TITLES = 0;
+  private static final int ARTISTS = 1;
+  private static final int SONGS_IN_YEAR = 2;
+  private static final int SONGS_IN_YEAR_RANGE = 3;
+  private static final int TITLES_MATCHING = 4;
+
+  /**
+   * This class is a query together with the future of its result. Two queries are equal if they
+   * ask the same method with the same arguments
+   */
+  private static class Query {
+    final int method;
+    final String word;      // the title word, or the whole query of findTitlesMatching()
+    final int fromYear;
+    final int toYear;
+    final CompletableFuture<Object> result = new CompletableFuture<Object>();
+
+    Query(int method, String word, int fromYear, int toYear) {
+      // checked on the thread of the caller, a null word would otherwise fail in the map of the
+      // queries in flight or in the sorting of a batch
+      if (word == null) {
+        throw new IllegalArgumentException("the word or query must not be null");
+      }
+      this.method = method;
+      this.word = word;
+      this.fromYear = fromYear;
+      this.toYear = toYear;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Query)) {
+        return false;
+      }
+      Query query = (Query) other;
+      return method == query.method && fromYear == query.fromYear && toYear == query.toYear
+          && Objects.equals(word, query.word);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(method, word, fromYear, toYear);
+    }
+  }
+
+  /**
+   * This class wraps the exception thrown by a query of a batch
+   */
+  private static class Failure {
+    final Throwable cause;
+
+    Failure(Throwable cause) {
+      this.cause = cause;
+    }
+  }
+
+  private final SearchBackEndInterface backEnd;   // the back end answering the queries
+  private final ExecutorService executor;         // answers the batches
+  private final boolean ownExecutor;              // true if close() shuts the executor down
+  private final ScheduledExecutorService timer;   // ends the window of a batch, null if the
+                                                  // window is 0
+  private final long windowNanos;                 // how long a batch collects queries
+  private final int maxBatch;                     // a full batch is answered before its window
+                                                  // has passed
+
+  // the queries which are collected or answered right now, by themselves
+  private final ConcurrentHashMap<Query, Query> inFlight = new ConcurrentHashMap<Query, Query>();
+
+  // the batch collecting queries, guarded by this
+  private List<Query> pending = new ArrayList<Query>();
+  private long batchNumber = 0;   // incremented whenever a batch stops collecting queries
+  private boolean closed = false; // true once close() has been called
+
+  private final AtomicLong queries = new AtomicLong();     // queries asked by the callers
+  private final AtomicLong coalesced = new AtomicLong();   // queries answered by a running one
+  private final AtomicLong batches = new AtomicLong();     // batches answered
+
+  /**
+   * Constructor which answers the queries on one daemon thread per core, collecting batches for
+   * 100 microseconds or up to 256 distinct queries
+   *
+   * @param backEnd - the thread-safe back end answering the queries
+   */
+  public AsyncSearchBackEnd(SearchBackEndInterface backEnd) {
+    this(backEnd, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+        daemonThreads("search-async-")), true, TimeUnit.MICROSECONDS.toNanos(100), 256);
+  }
+
+  /**
+   * Constructor which answers the queries on the passed executor, which is left running by
+   * close(). On a JDK with virtual threads, Executors.newVirtualThreadPerTaskExecutor() answers
+   * every batch on a virtual thread of its own
+   *
+   * @param backEnd     - the thread-safe back end answering the queries
+   * @param executor    - the executor answering the batches
+   * @param windowNanos - how long a batch collects queries, 0 to answer every query at once
+   * @param maxBatch    - the number of distinct queries which ends a batch before its window
+   */
+  public AsyncSearchBackEnd(SearchBackEndInterface backEnd, ExecutorService executor,
+      long windowNanos, int maxBatch) {
+    this(backEnd, executor, false, windowNanos, maxBatch);
+  }
+
+  private AsyncSearchBackEnd(SearchBackEndInterface backEnd, ExecutorService executor,
+      boolean ownExecutor, long windowNanos, int maxBatch) {
+    if (windowNanos < 0 || maxBatch < 1) {
+      throw new IllegalArgumentException("invalid batch window or size");
+    }
+    this.backEnd = backEnd;
+    this.executor = executor;
+    this.ownExecutor = ownExecutor;
+    this.windowNanos = windowNanos;
+    this.maxBatch = maxBatch;
+    timer = windowNanos == 0 ? null
+        : Executors.newSingleThreadScheduledExecutor(daemonThreads("search-batch-timer-"));
+  }
+
+  /**
+   * This method returns a factory of daemon threads named by a prefix and a running number
+   *
+   * @param prefix - the prefix of the thread names
+   * @return the thread factory
+   */
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger threads = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * This method asks findTitles() asynchronously
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return the future of the unmodifiable list of titles, which is null if no song contains the
+   *         word
+   * @throws IllegalArgumentException if the word is null
+   */
+  public CompletableFuture<List<String>> findTitles(String titleWord) {
+    return submit(new Query(TITLES, titleWord, 0, 0));
+  }
+
+  /**
+   * This method asks findArtists() asynchronously
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return the future of the unmodifiable list of artists, which is null if no song contains the
+   *         word
+   * @throws IllegalArgumentException if the word is null
+   */
+  public CompletableFuture<List<String>> findArtists(String titleWord) {
+    return submit(new Query(ARTISTS, titleWord, 0, 0));
+  }
+
+  /**
+   * This method asks findNumberOfSongsInYear() asynchronously
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @param year      - the year the songs were published in
+   * @return the future of the number of songs
+   * @throws IllegalArgumentException if the word is null
+   */
+  public CompletableFuture<Integer> findNumberOfSongsInYear(String titleWord, int year) {
+    return submit(new Query(SONGS_IN_YEAR, titleWord, year, year));
+  }
+
+  /**
+   * This method asks findNumberOfSongsInYearRange() asynchronously
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @param fromYear  - the first year of the range
+   * @param toYear    - the last year of the range
+   * @return the future of the number of songs
+   * @throws IllegalArgumentException if the word is null
+   */
+  public CompletableFuture<Integer> findNumberOfSongsInYearRange(String titleWord, int fromYear,
+      int toYear) {
+    return submit(new Query(SONGS_IN_YEAR_RANGE, titleWord, fromYear, toYear));
+  }
+
+  /**
+   * This method asks findTitlesMatching() asynchronously
+   *
+   * @param query - the query, see BooleanQuery for its syntax
+   * @return the future of the unmodifiable list of titles
+   * @throws IllegalArgumentException if the query is null
+   */
+  public CompletableFuture<List<String>> findTitlesMatching(String query) {
+    return submit(new Query(TITLES_MATCHING, query, 0, 0));
+  }
+
+  /**
+   * This method returns the future of a query: the future of an equal query in flight, or the
+   * future of the query itself, which is then added to the collecting batch
+   *
+   * @param query - the query
+   * @return the future of its result
+   */
+  @SuppressWarnings("unchecked")
+  private <ResultType> CompletableFuture<ResultType> submit(Query query) {
+    queries.incrementAndGet();
+    Query running = inFlight.putIfAbsent(query, query);
+    if (running != null) {
+      coalesced.incrementAndGet();
+      return (CompletableFuture<ResultType>) running.result;
+    }
+    List<Query> batch = null;
+    long scheduled = -1;
+    synchronized (this) {
+      pending.add(query);
+      if (timer == null || closed || pending.size() >= maxBatch) {
+        batch = takeBatch();
+      } else if (pending.size() == 1) {
+        scheduled = batchNumber;
+      }
+    }
+    if (batch != null) {
+      answerLater(batch);
+    } else if (scheduled >= 0) {
+      long number = scheduled;
+      try {
+        timer.schedule(() -> endWindow(number), windowNanos, TimeUnit.NANOSECONDS);
+      } catch (RuntimeException e) {
+        // the timer was shut down meanwhile, close() has taken the batch
+      }
+    }
+    return (CompletableFuture<ResultType>) query.result;
+  }
+
+  /**
+   * This method ends the window of a batch, unless the batch has already been taken because it
+   * was full
+   *
+   * @param number - the number of the batch
+   */
+  private void endWindow(long number) {
+    List<Query> batch;
+    synchronized (this) {
+      if (number != batchNumber || pending.isEmpty()) {
+        return;
+      }
+      batch = takeBatch();
+    }
+    answerLater(batch);
+  }
+
+  /**
+   * This method takes the collecting batch and starts a new one. The caller must hold the monitor
+   * of this
+   *
+   * @return the queries of the batch
+   */
+  private List<Query> takeBatch() {
+    List<Query> batch = pending;
+    pending = new ArrayList<Query>();
+    ++batchNumber;
+    return batch;
+  }
+
+  /**
+   * This method hands a batch to the executor, or answers it on the calling thread if the
+   * executor does not accept tasks any more
+   *
+   * @param batch - the queries of the batch
+   */
+  private void answerLater(List<Query> batch) {
+    try {
+      executor.execute(() -> answer(batch));
+    } catch (RuntimeException e) {
+      answer(batch);
+    }
+  }
+
+  /**
+   * This method answers the queries of a batch one after the other, the queries of a word next to
+   * each other
+   *
+   * @param batch - the queries of the batch
+   */
+  private void answer(List<Query> batch) {
+    batch.sort((first, second) -> first.word.compareTo(second.word));
+    Object[] results = new Object[batch.size()];
+    SearchBackEnd shardBackEnd = backEnd instanceof LocalSearchShard
+        ? ((LocalSearchShard) backEnd).getBackEnd() : null;
+    Lock lock = shardBackEnd == null ? null : ((LocalSearchShard) backEnd).getLock().readLock();
+    if (lock != null) {
+      lock.lock();
+    }
+    try {
+      // the queries of a word follow each other, so a word is only resolved to its posting list
+      // when it differs from the word of the query before
+      String resolvedWord = null;
+      PostingList postingList = null;
+      for (int i = 0; i < results.length; ++i) {
+        Query query = batch.get(i);
+        try {
+          if (shardBackEnd == null || query.method == TITLES_MATCHING) {
+            results[i] = ask(query);
+          } else {
+            if (!query.word.equals(resolvedWord)) {
+              // cleared first, so a word whose lookup throws is looked up again by its next query
+              resolvedWord = null;
+              postingList = shardBackEnd.postingsForWord(query.word);
+              resolvedWord = query.word;
+            }
+            results[i] = ask(query, shardBackEnd, postingList);
+          }
+        } catch (RuntimeException | Error e) {
+          results[i] = new Failure(e);
+        }
+      }
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+
+    // the futures are completed outside the lock, as they run the callbacks of the callers
+    batches.incrementAndGet();
+    for (int i = 0; i < results.length; ++i) {
+      Query query = batch.get(i);
+      // a query asked from now on is answered again, so it sees the songs added meanwhile
+      inFlight.remove(query);
+      if (results[i] instanceof Failure) {
+        query.result.completeExceptionally(((Failure) results[i]).cause);
+      } else {
+        query.result.complete(results[i]);
+      }
+    }
+  }
+
+  /**
+   * This method asks a query of the back end
+   *
+   * @param query - the query
+   * @return the result of the query, lists are unmodifiable
+   */
+  private Object ask(Query query) {
+    switch (query.method) {
+      case TITLES:
+        return unmodifiable(backEnd.findTitles(query.word));
+      case ARTISTS:
+        return unmodifiable(backEnd.findArtists(query.word));
+      case SONGS_IN_YEAR:
+        return backEnd.findNumberOfSongsInYear(query.word, query.fromYear);
+      case SONGS_IN_YEAR_RANGE:
+        return backEnd.findNumberOfSongsInYearRange(query.word, query.fromYear, query.toYear);
+      default:
+        return unmodifiable(backEnd.findTitlesMatching(query.word));
+    }
+  }
+
+  /**
+   * This method asks a query of a word of a SearchBackEnd whose posting list has already been
+   * looked up
+   *
+   * @param query       - the query, which is not a query of findTitlesMatching()
+   * @param backEnd     - the back end of the shard
+   * @param postingList - the posting list of the word of the query, null if it is not found
+   * @return the result of the query, lists are unmodifiable
+   */
+  private static Object ask(Query query, SearchBackEnd backEnd, PostingList postingList) {
+    switch (query.method) {
+      case TITLES:
+        return unmodifiable(backEnd.titlesOf(postingList));
+      case ARTISTS:
+        return unmodifiable(backEnd.artistsOf(postingList));
+      default:
+        // a query of a single year has the year as both ends of its range
+        return backEnd.songsInYears(postingList, query.fromYear, query.toYear);
+    }
+  }
+
+  private static List<String> unmodifiable(List<String> list) {
+    return list == null ? null : Collections.unmodifiableList(list);
+  }
+
+  /**
+   * This method returns the number of queries asked so far
+   *
+   * @return the number of queries
+   */
+  public long getQueryCount() {
+    return queries.get();
+  }
+
+  /**
+   * This method returns the number of queries which were answered by an equal query in flight
+   * instead of being asked of the back end
+   *
+   * @return the number of coalesced queries
+   */
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  /**
+   * This method returns the number of batches answered so far
+   *
+   * @return the number of batches
+   */
+  public long getBatchCount() {
+    return batches.get();
+  }
+
+  /**
+   * This method answers the collecting batch at once and stops the timer, and the executor if it
+   * was created by this object. Queries asked afterwards are answered on the calling thread
+   */
+  @Override
+  public void close() {
+    if (timer != null) {
+      timer.shutdownNow();
+    }
+    List<Query> batch;
+    synchronized (this) {
+      closed = true;
+      batch = takeBatch();
+    }
+    if (!batch.isEmpty()) {
+      answerLater(batch);
+    }
+    if (ownExecutor) {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
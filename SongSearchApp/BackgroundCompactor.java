@@ -0,0 +1,134 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * This class compacts a back end on a thread of its own, so that removed songs are dropped from
+ * the posting lists off the query path. The back end is guarded by a read-write lock which its
+ * users share: queries hold the read lock, addSong(), removeSong() and updateSong() the write lock.
+ * The compactor takes the write lock for one bounded step of SearchBackEnd.compact() at a time
+ * and lets go of it between steps, so a query waits for at most one step. While nothing is to be
+ * compacted the thread only checks for work now and then; wakeUp() starts compacting at once
+ */
+public class BackgroundCompactor implements AutoCloseable {
+  private final SearchBackEnd backEnd;   // the back end which is compacted
+  private final ReadWriteLock lock;      // the lock guarding the back end
+  private final int termsPerStep;        // maximum number of posting lists rewritten per step
+  private final long stepMillis;         // pause between two steps while there is work
+  private final ScheduledExecutorService executor;
+  private final AtomicBoolean woken = new AtomicBoolean();   // a wakeUp() is waiting to be run
+  private final AtomicLong steps = new AtomicLong();    // number of compaction steps run so far
+  private final AtomicLong failures = new AtomicLong(); // number of steps which threw
+
+  /**
+   * Constructor which starts compacting the back end, with steps of 1,024 posting lists one
+   * millisecond apart, checking for work every 100 milliseconds while idle
+   *
+   * @param backEnd - the back end to be compacted
+   * @param lock    - the lock guarding the back end
+   */
+  public BackgroundCompactor(SearchBackEnd backEnd, ReadWriteLock lock) {
+    this(backEnd, lock, 1024, 1, 100);
+  }
+
+  /**
+   * Constructor which starts compacting the back end
+   *
+   * @param backEnd       - the back end to be compacted
+   * @param lock          - the lock guarding the back end
+   * @param termsPerStep  - the maximum number of posting lists rewritten while holding the lock
+   * @param stepMillis    - the pause between two steps while there is work
+   * @param idleMillis    - the pause between two checks for work while nothing is to be compacted
+   */
+  public BackgroundCompactor(SearchBackEnd backEnd, ReadWriteLock lock, int termsPerStep,
+      long stepMillis, long idleMillis) {
+    this.backEnd = backEnd;
+    this.lock = lock;
+    this.termsPerStep = termsPerStep;
+    this.stepMillis = stepMillis;
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "search-compactor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::compactPending, idleMillis, Math.max(idleMillis, 1),
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * This method asks the compactor to check for work now instead of at its next idle check, for
+   * example after songs were removed. It does not wait and may be called while holding the lock
+   */
+  public void wakeUp() {
+    if (woken.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::compactPending);
+      } catch (RejectedExecutionException e) {
+        // the compactor was closed
+      }
+    }
+  }
+
+  /**
+   * This method runs compaction steps as long as removed songs are waiting, the check for work
+   * does not take the lock. A step which throws is counted and ends the run, so the compactor
+   * keeps running and tries again at its next check instead of spinning on the failure
+   */
+  private void compactPending() {
+    woken.set(false);
+    while (backEnd.needsCompaction() && !executor.isShutdown()) {
+      lock.writeLock().lock();
+      try {
+        backEnd.compact(termsPerStep);
+      } catch (RuntimeException e) {
+        failures.incrementAndGet();
+        return;
+      } finally {
+        lock.writeLock().unlock();
+      }
+      steps.incrementAndGet();
+      try {
+        Thread.sleep(stepMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * This method returns the number of compaction steps run so far
+   *
+   * @return the number of steps
+   */
+  public long getSteps() {
+    return steps.get();
+  }
+
+  /**
+   * This method returns the number of compaction steps which failed with an exception. The
+   * compactor carries on after a failure
+   *
+   * @return the number of failed steps
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  /**
+   * This method stops compacting, waiting for a step which is running to finish
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
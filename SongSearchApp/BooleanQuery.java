@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class parses queries made of several title words. Words next to each other must all be in
+ * the title (AND, which may also be written out), the keyword OR separates alternatives, and a
+ * word preceded by NOT or by a minus sign must not be in the title. For example the query
+ * "love song OR ballad -remix" matches titles containing both love and song, or containing ballad,
+ * as long as they do not contain remix
+ */
+class BooleanQuery {
+
+  /**
+   * This class is one alternative of a query: the words which must all be in the title and the
+   * words which must not be in it
+   */
+  static class Clause {
+    final List<String> required = new ArrayList<>();
+    final List<String> excluded = new ArrayList<>();
+  }
+
+  private final List<Clause> clauses = new ArrayList<>();   // the alternatives of the query
+
+  /**
+   * Constructor which parses a query
+   *
+   * @param query - the query text
+   */
+  BooleanQuery(String query) {
+    Clause clause = new Clause();
+    boolean negate = false;
+    for (String token : query.trim().split("\\s+")) {
+      if (token.isEmpty() || token.equals("AND")) {
+        continue;
+      } else if (token.equals("OR")) {
+        addClause(clause);
+        clause = new Clause();
+      } else if (token.equals("NOT")) {
+        negate = true;
+        continue;
+      } else if (token.length() > 1 && token.charAt(0) == '-') {
+        clause.excluded.add(token.substring(1));
+      } else if (negate) {
+        clause.excluded.add(token);
+      } else {
+        clause.required.add(token);
+      }
+      negate = false;
+    }
+    addClause(clause);
+  }
+
+  /**
+   * This method adds a parsed alternative to the query. An alternative without any required word
+   * can not be answered from the index of title words and is dropped
+   *
+   * @param clause - the parsed alternative
+   */
+  private void addClause(Clause clause) {
+    if (!clause.required.isEmpty()) {
+      clauses.add(clause);
+    }
+  }
+
+  /**
+   * This method returns the alternatives of the query
+   *
+   * @return the alternatives of the query
+   */
+  List<Clause> clauses() {
+    return clauses;
+  }
+
+  /**
+   * This method answers a query by looking up every word on its own with findTitles() and
+   * combining the resulting lists of titles. It works for any back end, but every word costs a
+   * full scan of its song list, so back ends with posting lists answer queries on their own
+   *
+   * @param backEnd - the back end to be searched
+   * @param query   - the query text
+   * @return the titles matching the query
+   */
+  static List<String> evaluateByTitles(SearchBackEndInterface backEnd, String query) {
+    Set<String> result = new LinkedHashSet<>();
+    for (Clause clause : new BooleanQuery(query).clauses()) {
+      Set<String> matches = null;
+      for (String word : clause.required) {
+        List<String> titles = backEnd.findTitles(word);
+        if (titles == null) {
+          matches = new LinkedHashSet<>();
+          break;
+        }
+        if (matches == null) {
+          matches = new LinkedHashSet<>(titles);
+        } else {
+          matches.retainAll(new LinkedHashSet<>(titles));
+        }
+      }
+      for (String word : clause.excluded) {
+        List<String> titles = backEnd.findTitles(word);
+        if (titles != null) {
+          matches.removeAll(new LinkedHashSet<>(titles));
+        }
+      }
+      result.addAll(matches);
+    }
+    return new LinkedList<>(result);
+  }
+}
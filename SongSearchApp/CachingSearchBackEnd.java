@@ -0,0 +1,505 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class caches the results of findTitles(), findArtists() and findNumberOfSongsInYear() of
+ * another back end. The results of a word are kept together in one entry, which is invalidated as
+ * soon as a song whose title contains the word is added. The entries are evicted with a segmented
+ * LRU policy bounded by their estimated size in bytes: new entries start in a probation segment
+ * and only move into the protected segment when they are hit again, so a burst of words which are
+ * looked up once can not push the popular words out of the cache. Cached lists are unmodifiable
+ * and shared between all callers, so a hit allocates nothing
+ */
+public class CachingSearchBackEnd implements SearchBackEndInterface {
+
+  /**
+   * This class holds the cached results of one word. It is a node of the doubly linked list of
+   * its segment, whose head is the most recently used entry
+   */
+  private static class Entry {
+    final String word;
+    List<String> titles;              // result of findTitles(), valid if titlesCached
+    boolean titlesCached = false;
+    List<String> artists;             // result of findArtists(), valid if artistsCached
+    boolean artistsCached = false;
+    int[] years = new int[0];         // the years whose song counts are cached
+    int[] counts = new int[0];        // result of findNumberOfSongsInYear() for every year
+    long weight = ENTRY_BYTES;        // estimated size of the entry in bytes
+    boolean protectedSegment = false; // true if the entry is in the protected segment
+    Entry previous;
+    Entry next;
+
+    Entry(String word) {
+      this.word = word;
+    }
+  }
+
+  // estimated bytes of an entry without any results and of a list element without its string
+  private static final long ENTRY_BYTES = 96;
+  private static final long ELEMENT_BYTES = 48;
+
+  private final SearchBackEndInterface backEnd;   // the back end whose results are cached
+  private final TitleTokenizer tokenizer;         // normalizes words like the cached back end
+  private final OpenAddressingMap<String, Entry> entries = new OpenAddressingMap<>();  // entry of
+                                                                                      // every word
+
+  // sentinels of the two segments: sentinel.next is the most and sentinel.previous the least
+  // recently used entry of a segment
+  private final Entry probation = new Entry(null);
+  private final Entry protectedEntries = new Entry(null);
+
+  private final long maxBytes;            // bound of the total weight of the entries
+  private final long maxProtectedBytes;   // bound of the weight of the protected segment
+  private long bytes = 0;                 // total weight of the entries
+  private long protectedBytes = 0;        // weight of the protected segment
+
+  // incremented by every addSong(), a result computed while songs were added is not cached
+  private long generation = 0;
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long invalidations = 0;
+
+  /**
+   * Constructor which creates a cache for a back end which uses the standard tokenizer
+   *
+   * @param backEnd  - the back end whose results are cached
+   * @param maxBytes - the bound of the estimated size of the cached results in bytes
+   */
+  public CachingSearchBackEnd(SearchBackEndInterface backEnd, long maxBytes) {
+    this(backEnd, maxBytes, TitleTokenizer.STANDARD);
+  }
+
+  /**
+   * Constructor which creates a cache for a back end. The protected segment may use 80% of the
+   * bytes of the cache
+   *
+   * @param backEnd   - the back end whose results are cached
+   * @param maxBytes  - the bound of the estimated size of the cached results in bytes
+   * @param tokenizer - the tokenizer of the back end, which tells which words a song touches
+   */
+  public CachingSearchBackEnd(SearchBackEndInterface backEnd, long maxBytes,
+      TitleTokenizer tokenizer) {
+    this.backEnd = backEnd;
+    this.tokenizer = tokenizer;
+    this.maxBytes = maxBytes;
+    this.maxProtectedBytes = maxBytes / 5 * 4;
+    probation.previous = probation.next = probation;
+    protectedEntries.previous = protectedEntries.next = protectedEntries;
+  }
+
+  /**
+   * This method adds a song to the back end and invalidates the cached results of every word of
+   * its title
+   *
+   * @param song - The song to be added to the back end
+   */
+  @Override
+  public void addSong(SongDataInterface song) {
+    backEnd.addSong(song);
+    invalidate(song.getTitle());
+  }
+
+  /**
+   * This method adds several songs to the back end with its bulk path and invalidates the cached
+   * results of every word of their titles
+   *
+   * @param songs - the songs to be added to the back end
+   */
+  @Override
+  public void addSongs(Collection<? extends SongDataInterface> songs) {
+    backEnd.addSongs(songs);
+    invalidate(songs);
+  }
+
+  /**
+   * This method removes a song from the back end and invalidates the cached results of every word
+   * of its title
+   *
+   * @param song - the song to be removed
+   * @return true if a song was removed and false if the back end holds no song equal to it
+   */
+  @Override
+  public boolean removeSong(SongDataInterface song) {
+    boolean removed = backEnd.removeSong(song);
+    if (removed) {
+      invalidate(song.getTitle());
+    }
+    return removed;
+  }
+
+  /**
+   * This method drops the cached results of every word of a title whose songs have changed
+   *
+   * @param title - the title of the added or removed song
+   */
+  private synchronized void invalidate(String title) {
+    generation += 1;
+    tokenizer.tokenize(title, this::invalidateWord);
+  }
+
+  /**
+   * This method drops the cached results of every word of the titles of several added songs
+   *
+   * @param songs - the added songs
+   */
+  private synchronized void invalidate(Collection<? extends SongDataInterface> songs) {
+    generation += 1;
+    for (SongDataInterface song : songs) {
+      tokenizer.tokenize(song.getTitle(), this::invalidateWord);
+    }
+  }
+
+  /**
+   * This method drops the cached results of a word, it is called while holding the lock of the
+   * cache
+   *
+   * @param titleWord - the word whose songs have changed
+   */
+  private void invalidateWord(String titleWord) {
+    Entry entry = entries.getOrNull(titleWord);
+    if (entry != null) {
+      remove(entry);
+      invalidations += 1;
+    }
+  }
+
+  @Override
+  public boolean containsSong(SongDataInterface song) {
+    return backEnd.containsSong(song);
+  }
+
+  /**
+   * This method returns the titles of the songs containing the passed word, from the cache if
+   * possible
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return unmodifiable list of the titles, or null if the word is not found
+   */
+  @Override
+  public List<String> findTitles(String titleWord) {
+    String term = tokenizer.normalize(titleWord);
+    if (term == null) {
+      return backEnd.findTitles(titleWord);
+    }
+    long start;
+    synchronized (this) {
+      Entry entry = lookup(term);
+      if (entry != null && entry.titlesCached) {
+        hits += 1;
+        return entry.titles;
+      }
+      misses += 1;
+      start = generation;
+    }
+
+    List<String> titles = share(backEnd.findTitles(titleWord));
+    synchronized (this) {
+      if (generation == start) {
+        // another thread may have cached the same result meanwhile
+        Entry entry = entryFor(term);
+        if (!entry.titlesCached) {
+          entry.titles = titles;
+          entry.titlesCached = true;
+          grow(entry, weightOf(titles));
+        }
+      }
+    }
+    return titles;
+  }
+
+  /**
+   * This method returns the artists of the songs containing the passed word, from the cache if
+   * possible
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return unmodifiable list of the artists, or null if the word is not found
+   */
+  @Override
+  public List<String> findArtists(String titleWord) {
+    String term = tokenizer.normalize(titleWord);
+    if (term == null) {
+      return backEnd.findArtists(titleWord);
+    }
+    long start;
+    synchronized (this) {
+      Entry entry = lookup(term);
+      if (entry != null && entry.artistsCached) {
+        hits += 1;
+        return entry.artists;
+      }
+      misses += 1;
+      start = generation;
+    }
+
+    List<String> artists = share(backEnd.findArtists(titleWord));
+    synchronized (this) {
+      if (generation == start) {
+        // another thread may have cached the same result meanwhile
+        Entry entry = entryFor(term);
+        if (!entry.artistsCached) {
+          entry.artists = artists;
+          entry.artistsCached = true;
+          grow(entry, weightOf(artists));
+        }
+      }
+    }
+    return artists;
+  }
+
+  /**
+   * This method returns the number of songs containing the passed word which were published in
+   * the passed year, from the cache if possible
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @param year      - the year we are looking for the songs to be published in
+   * @return the number of songs
+   */
+  @Override
+  public int findNumberOfSongsInYear(String titleWord, int year) {
+    String term = tokenizer.normalize(titleWord);
+    if (term == null) {
+      return backEnd.findNumberOfSongsInYear(titleWord, year);
+    }
+    long start;
+    synchronized (this) {
+      Entry entry = lookup(term);
+      if (entry != null) {
+        for (int i = 0; i < entry.years.length; ++i) {
+          if (entry.years[i] == year) {
+            hits += 1;
+            return entry.counts[i];
+          }
+        }
+      }
+      misses += 1;
+      start = generation;
+    }
+
+    int count = backEnd.findNumberOfSongsInYear(titleWord, year);
+    synchronized (this) {
+      if (generation == start) {
+        Entry entry = entryFor(term);
+        if (!contains(entry.years, year)) {
+          entry.years = Arrays.copyOf(entry.years, entry.years.length + 1);
+          entry.counts = Arrays.copyOf(entry.counts, entry.counts.length + 1);
+          entry.years[entry.years.length - 1] = year;
+          entry.counts[entry.counts.length - 1] = count;
+          grow(entry, 8);
+        }
+      }
+    }
+    return count;
+  }
+
+  // the queries which are not cached are answered by the back end itself, which may have a
+  // faster implementation than the default methods of the interface
+
+  @Override
+  public List<String> findTitlesMatching(String query) {
+    return backEnd.findTitlesMatching(query);
+  }
+
+  @Override
+  public int findNumberOfSongsInYearRange(String titleWord, int fromYear, int toYear) {
+    return backEnd.findNumberOfSongsInYearRange(titleWord, fromYear, toYear);
+  }
+
+  @Override
+  public List<String> findArtists(String titleWord, int offset, int limit) {
+    return backEnd.findArtists(titleWord, offset, limit);
+  }
+
+  /**
+   * This method returns the number of lookups answered from the cache
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * This method returns the number of lookups which were passed to the back end
+   *
+   * @return the number of misses
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /**
+   * This method returns the number of entries evicted to stay within the size bound
+   *
+   * @return the number of evictions
+   */
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * This method returns the number of entries removed because a song containing their word was
+   * added
+   *
+   * @return the number of invalidations
+   */
+  public synchronized long getInvalidationCount() {
+    return invalidations;
+  }
+
+  /**
+   * This method returns the estimated size of the cached results
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getWeightInBytes() {
+    return bytes;
+  }
+
+  /**
+   * This method returns the entry of a word and records the use of the entry: an entry in the
+   * probation segment is promoted to the protected segment, an entry in the protected segment
+   * becomes its most recently used entry
+   *
+   * @param term - the normalized word
+   * @return the entry of the word or null if none is cached
+   */
+  private Entry lookup(String term) {
+    Entry entry = entries.getOrNull(term);
+    if (entry == null) {
+      return null;
+    }
+    unlink(entry);
+    if (!entry.protectedSegment) {
+      entry.protectedSegment = true;
+      protectedBytes += entry.weight;
+    }
+    linkFirst(protectedEntries, entry);
+
+    // the least recently used protected entries are demoted to the probation segment, where they
+    // get one more chance before being evicted
+    while (protectedBytes > maxProtectedBytes && protectedEntries.previous != entry) {
+      Entry demoted = protectedEntries.previous;
+      unlink(demoted);
+      demoted.protectedSegment = false;
+      protectedBytes -= demoted.weight;
+      linkFirst(probation, demoted);
+    }
+    return entry;
+  }
+
+  /**
+   * This method returns the entry of a word, creating it in the probation segment if it is new
+   *
+   * @param term - the normalized word
+   * @return the entry of the word
+   */
+  private Entry entryFor(String term) {
+    Entry entry = entries.getOrNull(term);
+    if (entry == null) {
+      entry = new Entry(term);
+      entries.put(term, entry);
+      linkFirst(probation, entry);
+      bytes += entry.weight;
+    }
+    return entry;
+  }
+
+  /**
+   * This method adds to the weight of an entry and evicts the least recently used entries until
+   * the cache is within its bound again. Entries of the probation segment are evicted first, the
+   * entry itself may be evicted as well
+   *
+   * @param entry - the entry which grew
+   * @param added - the number of bytes added to the entry
+   */
+  private void grow(Entry entry, long added) {
+    entry.weight += added;
+    bytes += added;
+    if (entry.protectedSegment) {
+      protectedBytes += added;
+    }
+    while (bytes > maxBytes) {
+      Entry victim = probation.previous != probation ? probation.previous
+          : protectedEntries.previous;
+      if (victim == protectedEntries) {
+        return;
+      }
+      remove(victim);
+      evictions += 1;
+    }
+  }
+
+  /**
+   * This method removes an entry from the cache
+   *
+   * @param entry - the entry to be removed
+   */
+  private void remove(Entry entry) {
+    entries.remove(entry.word);
+    unlink(entry);
+    bytes -= entry.weight;
+    if (entry.protectedSegment) {
+      protectedBytes -= entry.weight;
+    }
+  }
+
+  private static void unlink(Entry entry) {
+    entry.previous.next = entry.next;
+    entry.next.previous = entry.previous;
+  }
+
+  private static void linkFirst(Entry sentinel, Entry entry) {
+    entry.next = sentinel.next;
+    entry.previous = sentinel;
+    sentinel.next.previous = entry;
+    sentinel.next = entry;
+  }
+
+  /**
+   * This method checks whether an array contains a value
+   *
+   * @param values - the array
+   * @param value  - the value
+   * @return true if the value is in the array
+   */
+  private static boolean contains(int[] values, int value) {
+    for (int element : values) {
+      if (element == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * This method copies a result of the back end into an unmodifiable list which can be shared
+   *
+   * @param result - the result, which may be null
+   * @return the unmodifiable copy, or null if the result is null
+   */
+  private static List<String> share(List<String> result) {
+    return result == null ? null : Collections.unmodifiableList(new ArrayList<String>(result));
+  }
+
+  /**
+   * This method estimates the size of a cached list: an element of the backing array, the String
+   * object and its byte array for every element
+   *
+   * @param list - the list, which may be null
+   * @return the estimated size in bytes
+   */
+  private static long weightOf(List<String> list) {
+    long weight = 0;
+    if (list != null) {
+      for (String element : list) {
+        weight += ELEMENT_BYTES + element.length();
+      }
+    }
+    return weight;
+  }
+}
@@ -0,0 +1,390 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class stores songs column by column instead of as one object per song: the titles are
+ * encoded as UTF-8 one after the other in a byte arena and found through their offsets, every
+ * artist is stored once in a dictionary and referred to by an int ID, and the years are kept in a
+ * short array. A song costs about 14 bytes besides its title, and the store is made of a few
+ * large arrays whatever the number of songs, which the garbage collector scans in no time. The
+ * arena is cut into segments which are either heap buffers or, when the store is off-heap, direct
+ * buffers outside of the heap altogether. Songs are handed out as flyweight views which decode
+ * their title when it is asked for
+ */
+public class ColumnarSongStore {
+  private static final int SEGMENT_BITS = 24;   // segments of 16 MB
+  private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+  private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+  private static final int MIN_SEGMENT_CAPACITY = 256;   // capacity of a new last segment
+
+  private final boolean offHeap;   // whether the arena is made of direct buffers
+  // the title arena: segment i holds the bytes from i * SEGMENT_SIZE on. Every segment but the
+  // last is full, the last one is grown by doubling until it reaches SEGMENT_SIZE, so a small
+  // store only takes up as much memory as its titles need
+  private ByteBuffer[] segments = new ByteBuffer[1];
+  private long arenaSize = 0;   // number of bytes used in the arena
+
+  // the title of the song with ID i is stored between titleOffsets[i] and titleOffsets[i + 1]
+  private long[] titleOffsets = new long[17];
+  private int[] artists = new int[16];     // artist ID of every song
+  private short[] years = new short[16];   // year of every song
+  private int size = 0;                    // number of songs in the store
+
+  private final MapADT<String, Integer> artistIds;   // ID of every artist by its name
+  private String[] artistNames = new String[16];     // name of every artist, indexed by its ID
+  private int artistCount = 0;                       // number of distinct artists
+
+  /**
+   * Constructor which creates an empty store whose arena is on the heap
+   *
+   * @param capacity - the number of artists expected to be stored
+   * @param engine   - the MapADT implementation used for the artist dictionary
+   */
+  public ColumnarSongStore(int capacity, MapEngine engine) {
+    this(capacity, engine, false);
+  }
+
+  /**
+   * Constructor which creates an empty store
+   *
+   * @param capacity - the number of artists expected to be stored
+   * @param engine   - the MapADT implementation used for the artist dictionary
+   * @param offHeap  - true to keep the titles in direct buffers outside of the heap, which count
+   *                   against -XX:MaxDirectMemorySize and are freed once the store is collected
+   */
+  public ColumnarSongStore(int capacity, MapEngine engine, boolean offHeap) {
+    this.offHeap = offHeap;
+    artistIds = engine.create(capacity);
+  }
+
+  /**
+   * This method appends a song to the store
+   *
+   * @param song - the song to be stored
+   * @return the ID of the song, which is the number of songs stored before it
+   * @throws IllegalArgumentException if the year of the song does not fit into a short
+   */
+  public int add(SongDataInterface song) {
+    return add(song.getTitle(), internArtist(song.getArtist()), song.getYearPublished());
+  }
+
+  /**
+   * This method appends a song whose artist was given its ID already
+   *
+   * @param title    - the title of the song
+   * @param artistId - the ID of the artist of the song, as returned by internArtist()
+   * @param year     - the year the song was published in
+   * @return the ID of the song
+   * @throws IllegalArgumentException if the year does not fit into a short
+   */
+  public int add(String title, int artistId, int year) {
+    byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+    int songId = append(artistId, year, bytes.length);
+    long position = titleOffsets[songId];
+    for (int written = 0; written < bytes.length; ) {
+      int offset = (int) (position & SEGMENT_MASK);
+      int length = Math.min(bytes.length - written, SEGMENT_SIZE - offset);
+      segments[(int) (position >>> SEGMENT_BITS)].put(offset, bytes, written, length);
+      written += length;
+      position += length;
+    }
+    return songId;
+  }
+
+  /**
+   * This method appends a song of another store, copying its title bytes without decoding them
+   *
+   * @param other    - the store holding the song
+   * @param songId   - the ID of the song in the other store
+   * @param artistId - the ID of the artist of the song in this store
+   * @return the ID of the song in this store
+   */
+  public int add(ColumnarSongStore other, int songId, int artistId) {
+    long from = other.titleOffsets[songId];
+    int length = (int) (other.titleOffsets[songId + 1] - from);
+    int copyId = append(artistId, other.years[songId], length);
+    long to = titleOffsets[copyId];
+    while (length > 0) {
+      // every step copies up to the end of the current segment of either arena
+      int fromOffset = (int) (from & SEGMENT_MASK);
+      int toOffset = (int) (to & SEGMENT_MASK);
+      int step = Math.min(length, SEGMENT_SIZE - Math.max(fromOffset, toOffset));
+      segments[(int) (to >>> SEGMENT_BITS)].put(toOffset,
+          other.segments[(int) (from >>> SEGMENT_BITS)], fromOffset, step);
+      from += step;
+      to += step;
+      length -= step;
+    }
+    return copyId;
+  }
+
+  /**
+   * This method makes room for a song with a title of the passed number of bytes and stores its
+   * columns, the title bytes are left to the caller
+   *
+   * @param artistId    - the ID of the artist of the song
+   * @param year        - the year the song was published in
+   * @param titleLength - the number of bytes of the title
+   * @return the ID of the song
+   */
+  private int append(int artistId, int year, int titleLength) {
+    checkYear(year);
+    if (size == years.length) {
+      titleOffsets = Arrays.copyOf(titleOffsets, size * 2 + 1);
+      artists = Arrays.copyOf(artists, size * 2);
+      years = Arrays.copyOf(years, size * 2);
+    }
+    ensureArena(arenaSize + titleLength);
+    arenaSize += titleLength;
+    artists[size] = artistId;
+    years[size] = (short) year;
+    titleOffsets[size + 1] = arenaSize;
+    return size++;
+  }
+
+  /**
+   * This method checks whether a year can be stored, so callers can find out before they change
+   * anything else
+   *
+   * @param year - the year of a song
+   * @throws IllegalArgumentException if the year does not fit into a short
+   */
+  public static void checkYear(int year) {
+    if (year != (short) year) {
+      throw new IllegalArgumentException("year out of range: " + year);
+    }
+  }
+
+  /**
+   * This method grows the arena so that it holds the passed number of bytes. Full segments are
+   * allocated at their final size, the last segment is doubled until it is large enough
+   *
+   * @param bytes - the number of bytes the arena has to hold, at least the bytes it holds
+   */
+  private void ensureArena(long bytes) {
+    if (bytes == 0) {
+      return;
+    }
+    int last = (int) ((bytes - 1) >>> SEGMENT_BITS);
+    if (last >= segments.length) {
+      segments = Arrays.copyOf(segments, Math.max(segments.length * 2, last + 1));
+    }
+    // the segments before the one holding the next free byte are full already
+    for (int i = (int) (arenaSize >>> SEGMENT_BITS); i <= last; ++i) {
+      int needed = i < last ? SEGMENT_SIZE : (int) (bytes - ((long) last << SEGMENT_BITS));
+      ByteBuffer segment = segments[i];
+      if (segment == null || segment.capacity() < needed) {
+        int capacity = segment == null ? MIN_SEGMENT_CAPACITY : segment.capacity() * 2;
+        capacity = i < last ? SEGMENT_SIZE : Math.min(SEGMENT_SIZE, Math.max(capacity, needed));
+        ByteBuffer grown = offHeap ? ByteBuffer.allocateDirect(capacity)
+            : ByteBuffer.allocate(capacity);
+        if (segment != null) {
+          grown.put(0, segment, 0, segment.capacity());
+        }
+        segments[i] = grown;
+      }
+    }
+  }
+
+  /**
+   * This method returns the ID of an artist, giving the artist the next free ID when it is new
+   *
+   * @param artist - the name of the artist
+   * @return the ID of the artist
+   */
+  public int internArtist(String artist) {
+    Integer artistId = artistIds.getOrNull(artist);
+    if (artistId != null) {
+      return artistId;
+    }
+    if (artistCount == artistNames.length) {
+      artistNames = Arrays.copyOf(artistNames, artistCount * 2);
+    }
+    artistNames[artistCount] = artist;
+    artistIds.put(artist, artistCount);
+    return artistCount++;
+  }
+
+  /**
+   * This method returns the ID of an artist without adding it
+   *
+   * @param artist - the name of the artist
+   * @return the ID of the artist, or -1 if no song of the artist was stored
+   */
+  public int artistIdOf(String artist) {
+    Integer artistId = artistIds.getOrNull(artist);
+    return artistId == null ? -1 : artistId;
+  }
+
+  /**
+   * This method returns the name of an artist
+   *
+   * @param artistId - the ID of the artist
+   * @return the name of the artist
+   */
+  public String artistName(int artistId) {
+    return artistNames[artistId];
+  }
+
+  /**
+   * This method returns the number of distinct artists, the artist IDs are 0 to this number - 1
+   *
+   * @return the number of artists
+   */
+  public int artistCount() {
+    return artistCount;
+  }
+
+  /**
+   * This method decodes the title of a song
+   *
+   * @param songId - the ID of the song
+   * @return the title of the song
+   */
+  public String title(int songId) {
+    long position = titleOffsets[songId];
+    int length = (int) (titleOffsets[songId + 1] - position);
+    if (length == 0) {
+      return "";
+    }
+    int offset = (int) (position & SEGMENT_MASK);
+    ByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)];
+    if (segment.hasArray() && offset + length <= SEGMENT_SIZE) {
+      // a heap segment is decoded in place
+      return new String(segment.array(), segment.arrayOffset() + offset, length,
+          StandardCharsets.UTF_8);
+    }
+    byte[] bytes = new byte[length];
+    for (int read = 0; read < length; ) {
+      int step = Math.min(length - read, SEGMENT_SIZE - offset);
+      segments[(int) (position >>> SEGMENT_BITS)].get(offset, bytes, read, step);
+      read += step;
+      position += step;
+      offset = (int) (position & SEGMENT_MASK);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * This method returns the ID of the artist of a song
+   *
+   * @param songId - the ID of the song
+   * @return the ID of the artist
+   */
+  public int artistId(int songId) {
+    return artists[songId];
+  }
+
+  /**
+   * This method returns the name of the artist of a song
+   *
+   * @param songId - the ID of the song
+   * @return the artist of the song
+   */
+  public String artist(int songId) {
+    return artistNames[artists[songId]];
+  }
+
+  /**
+   * This method returns the year a song was published in
+   *
+   * @param songId - the ID of the song
+   * @return the year of the song
+   */
+  public int year(int songId) {
+    return years[songId];
+  }
+
+  /**
+   * This method checks whether a stored song has the title, artist and year of the passed song.
+   * The title is only decoded when the artist and the year match
+   *
+   * @param songId - the ID of the stored song
+   * @param song   - the song to be compared with
+   * @return true if the songs are equal
+   */
+  public boolean matches(int songId, SongDataInterface song) {
+    return years[songId] == song.getYearPublished()
+        && artistNames[artists[songId]].equals(song.getArtist())
+        && title(songId).equals(song.getTitle());
+  }
+
+  /**
+   * This method returns a view of a stored song. The view holds nothing but the store and the ID,
+   * its title is decoded again on every call of getTitle()
+   *
+   * @param songId - the ID of the song
+   * @return the song
+   */
+  public SongDataInterface song(int songId) {
+    return new SongView(songId);
+  }
+
+  /**
+   * This method returns the number of songs in the store
+   *
+   * @return the number of songs
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /**
+   * This method returns the number of bytes of the titles stored in the arena
+   *
+   * @return the number of title bytes
+   */
+  public long titleBytes() {
+    return arenaSize;
+  }
+
+  /**
+   * This class is the flyweight view of a stored song. Views of the same song are equal, and a
+   * view is equal to any song with the same title, artist and year
+   */
+  private final class SongView implements SongDataInterface {
+    private final int songId;
+
+    SongView(int songId) {
+      this.songId = songId;
+    }
+
+    @Override
+    public String getTitle() {
+      return title(songId);
+    }
+
+    @Override
+    public String getArtist() {
+      return artist(songId);
+    }
+
+    @Override
+    public int getYearPublished() {
+      return year(songId);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      return other instanceof SongDataInterface && matches(songId, (SongDataInterface) other);
+    }
+
+    @Override
+    public int hashCode() {
+      return (getTitle().hashCode() * 31 + getArtist().hashCode()) * 31 + getYearPublished();
+    }
+
+    @Override
+    public String toString() {
+      return getTitle() + " by " + getArtist() + " (" + getYearPublished() + ")";
+    }
+  }
+}
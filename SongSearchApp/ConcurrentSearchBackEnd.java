@@ -0,0 +1,240 @@
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class is a thread-safe Back End which allows songs to be added by loader threads while
+ * request threads search for them. The title words are spread over a number of stripes, each of
+ * which owns its own hash table and read-write lock, so threads working on different words do not
+ * contend on a single lock. The song lists stored for a word are append-only, so a reader always
+ * sees a prefix of the songs which were added for that word
+ */
+public class ConcurrentSearchBackEnd implements SearchBackEndInterface {
+
+  /**
+   * This class holds one stripe of the index: a hash table from title words to their song lists
+   * and the lock which guards it
+   */
+  private static class Stripe {
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    final MapADT<String, Postings> hashTableArray;
+
+    Stripe(MapADT<String, Postings> hashTableArray) {
+      this.hashTableArray = hashTableArray;
+    }
+  }
+
+  /**
+   * This class stores the songs containing a title word in an array which is only ever appended
+   * to. It is only accessed while holding the lock of its stripe
+   */
+  private static class Postings {
+    SongDataInterface[] songs = new SongDataInterface[4];
+    int size = 0;
+
+    void add(SongDataInterface song) {
+      if (size == songs.length) {
+        SongDataInterface[] grown = new SongDataInterface[size * 2];
+        System.arraycopy(songs, 0, grown, 0, size);
+        songs = grown;
+      }
+      songs[size++] = song;
+    }
+  }
+
+  private final Stripe[] stripes;   // the stripes the title words are spread over
+  private final int stripeMask;     // number of stripes - 1, the number of stripes is a power of two
+  private final TitleTokenizer tokenizer;   // splits titles and normalizes query words
+
+  /**
+   * Constructor which creates an empty back end with four stripes per available processor (rounded
+   * up to a power of two), so that threads rarely meet on a stripe, and the open addressing hash
+   * table engine
+   *
+   * @param capacity - total initial capacity of the hash tables of all stripes
+   */
+  public ConcurrentSearchBackEnd(int capacity) {
+    this(capacity, 4 * Runtime.getRuntime().availableProcessors(), MapEngine.OPEN_ADDRESSING,
+        TitleTokenizer.STANDARD);
+  }
+
+  /**
+   * Constructor which creates an empty back end with the passed number of stripes, hash table
+   * engine and title tokenizer
+   *
+   * @param capacity  - total initial capacity of the hash tables of all stripes
+   * @param stripes   - number of stripes, rounded up to a power of two
+   * @param engine    - the MapADT implementation used for the hash table of every stripe
+   * @param tokenizer - splits titles into words and normalizes the words of queries
+   */
+  public ConcurrentSearchBackEnd(int capacity, int stripes, MapEngine engine,
+      TitleTokenizer tokenizer) {
+    this.tokenizer = tokenizer;
+    int count = 1;
+    while (count < stripes) {
+      count <<= 1;
+    }
+    this.stripes = new Stripe[count];
+    this.stripeMask = count - 1;
+    for (int i = 0; i < count; ++i) {
+      this.stripes[i] = new Stripe(engine.create(Math.max(16, capacity / count)));
+    }
+  }
+
+  /**
+   * This method returns the stripe which stores the passed title word
+   *
+   * @param titleWord - the title word
+   * @return the stripe of the word
+   */
+  private Stripe stripeFor(String titleWord) {
+    return stripes[OpenAddressingMap.spread(titleWord) & stripeMask];
+  }
+
+  /**
+   * This method returns a copy of the songs stored for the passed word, taken while holding the
+   * read lock of the word's stripe
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return the songs containing the word or null if the word is not in the back end
+   */
+  private SongDataInterface[] snapshot(String titleWord) {
+    titleWord = tokenizer.normalize(titleWord);
+    if (titleWord == null) {
+      return null;
+    }
+    Stripe stripe = stripeFor(titleWord);
+    stripe.lock.readLock().lock();
+    try {
+      Postings postings = stripe.hashTableArray.getOrNull(titleWord);
+      if (postings == null) {
+        return null;
+      }
+      SongDataInterface[] songs = new SongDataInterface[postings.size];
+      System.arraycopy(postings.songs, 0, songs, 0, postings.size);
+      return songs;
+    } finally {
+      stripe.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * This method is responsible for adding songs to the back end. Each distinct title word is
+   * appended under the write lock of its own stripe, so other words stay readable and writable
+   * meanwhile; a word repeated in the title is stored once, as SearchBackEnd does
+   *
+   * @param song - The song to be added to the back end
+   */
+  @Override
+  public void addSong(SongDataInterface song) {
+    List<String> titleWords = new ArrayList<String>();
+    tokenizer.tokenize(song.getTitle(), titleWords::add);
+    for (int i = 0; i < titleWords.size(); ++i) {
+      String titleWord = titleWords.get(i);
+      if (titleWords.subList(0, i).contains(titleWord)) {
+        continue;
+      }
+      Stripe stripe = stripeFor(titleWord);
+      stripe.lock.writeLock().lock();
+      try {
+        // if the given key already exists, we append the song to its song list, otherwise a new
+        // song list is created for the key
+        Postings postings = stripe.hashTableArray.getOrNull(titleWord);
+        if (postings == null) {
+          postings = new Postings();
+          stripe.hashTableArray.put(titleWord, postings);
+        }
+        postings.add(song);
+      } finally {
+        stripe.lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * This method is responsible for checking whether a song is in the back end or not
+   *
+   * @param song - the song whose existence is being checked
+   * @return true if the song is present and false otherwise
+   */
+  @Override
+  public boolean containsSong(SongDataInterface song) {
+    String titleWord = tokenizer.firstTerm(song.getTitle());
+    SongDataInterface[] songs = titleWord == null ? null : snapshot(titleWord);
+    if (songs != null) {
+      for (SongDataInterface storedSong : songs) {
+        if (storedSong.equals(song)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * This method is responsible for returning all the songs which contain the passed word
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return list of songs which contain the passed word or null if the word is not found
+   */
+  @Override
+  public List<String> findTitles(String titleWord) {
+    SongDataInterface[] songs = snapshot(titleWord);
+    if (songs == null) {
+      return null;
+    }
+    List<String> songTitles = new LinkedList<String>();
+    for (SongDataInterface song : songs) {
+      songTitles.add(song.getTitle());
+    }
+    return songTitles;
+  }
+
+  /**
+   * This method is responsible for returning all the artists who have songs whose names contain the
+   * passed word
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return list of artists whose songs contain the passed word or null if the word is not found
+   */
+  @Override
+  public List<String> findArtists(String titleWord) {
+    SongDataInterface[] songs = snapshot(titleWord);
+    if (songs == null) {
+      return null;
+    }
+    // a hash table of the artists seen so far keeps the deduplication linear in the list size
+    List<String> songArtists = new LinkedList<String>();
+    OpenAddressingMap<String, Boolean> seenArtists = new OpenAddressingMap<>();
+    for (SongDataInterface song : songs) {
+      if (seenArtists.put(song.getArtist(), Boolean.TRUE)) {
+        songArtists.add(song.getArtist());
+      }
+    }
+    return songArtists;
+  }
+
+  /**
+   * This method is responsible for returning the number of songs which contain the passed word in
+   * their title and were released in the passed year
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @param year      - the year we are looking for the songs to be published in
+   * @return the number of songs which contain the passed word in their title and were released in
+   *         the passed year
+   */
+  @Override
+  public int findNumberOfSongsInYear(String titleWord, int year) {
+    SongDataInterface[] songs = snapshot(titleWord);
+    int totalSongs = 0;
+    if (songs != null) {
+      for (SongDataInterface song : songs) {
+        if (song.getYearPublished() == year) {
+          totalSongs += 1;
+        }
+      }
+    }
+    return totalSongs;
+  }
+}
@@ -0,0 +1,241 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class reads the records of a CSV file (RFC 4180) from a channel one at a time. Quoted
+ * fields may contain commas, line breaks and doubled quotes. The bytes of the current record are
+ * kept in a reused buffer and a field is only turned into a String when it is asked for, so
+ * reading a record allocates nothing apart from the fields which are actually used
+ */
+class CsvReader implements Closeable {
+    private final ReadableByteChannel channel;  // channel the CSV data is read from
+    private final ByteBuffer buffer;            // buffer the channel is read into
+    private final byte[] bytes;                 // array backing the buffer
+    private int position = 0;                   // position of the next unparsed byte in bytes
+    private int limit = 0;                      // number of valid bytes in bytes
+    private boolean endOfInput = false;         // whether the channel has been read completely
+
+    private byte[] recordBytes = new byte[256]; // unquoted bytes of the fields of the record
+    private int recordLength = 0;               // number of bytes used in recordBytes
+    private int[] fieldEnds = new int[16];      // end of every field of the record in recordBytes
+    private int fieldCount = 0;                 // number of fields of the current record
+    private long offset = 0;                    // number of bytes consumed up to the end of the
+                                                // current record
+    private boolean terminated = false;         // whether the current record ends with a line
+                                                // break
+
+    /**
+     * Constructor which creates a reader over the passed channel
+     *
+     * @param channel    - the channel the CSV data is read from
+     * @param bufferSize - the size in bytes of the read buffer
+     */
+    CsvReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * This method returns the next byte of the input, refilling the buffer when needed
+     *
+     * @return the next byte (0 to 255) or -1 at the end of the input
+     * @throws IOException if the channel can not be read
+     */
+    private int nextByte() throws IOException {
+        if (position == limit) {
+            if (endOfInput) {
+                return -1;
+            }
+            // the bytes are parsed straight out of the backing array of the buffer
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            if (read < 0) {
+                endOfInput = true;
+                return -1;
+            }
+            position = 0;
+            limit = read;
+        }
+        offset += 1;
+        return bytes[position++] & 0xFF;
+    }
+
+    /**
+     * This method appends a byte to the current field
+     *
+     * @param b - the byte to be appended
+     */
+    private void append(int b) {
+        if (recordLength == recordBytes.length) {
+            recordBytes = Arrays.copyOf(recordBytes, recordLength * 2);
+        }
+        recordBytes[recordLength++] = (byte) b;
+    }
+
+    /**
+     * This method ends the current field of the record
+     */
+    private void endField() {
+        if (fieldCount == fieldEnds.length) {
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldEnds[fieldCount++] = recordLength;
+    }
+
+    /**
+     * This method parses the next record of the input. Blank lines are skipped
+     *
+     * @return true if a record was read and false at the end of the input
+     * @throws IOException if the channel can not be read
+     */
+    boolean nextRecord() throws IOException {
+        while (true) {
+            recordLength = 0;
+            fieldCount = 0;
+            boolean quoted = false;     // whether we are inside a quoted field
+            boolean empty = true;       // whether nothing but a line break has been read
+
+            int b = nextByte();
+            if (b < 0) {
+                return false;
+            }
+            while (b >= 0) {
+                if (quoted) {
+                    if (b == '"') {
+                        // a doubled quote stands for one quote, any other quote ends the quoting
+                        b = nextByte();
+                        if (b == '"') {
+                            append('"');
+                        } else {
+                            quoted = false;
+                            continue;
+                        }
+                    } else {
+                        append(b);
+                    }
+                } else if (b == '"') {
+                    quoted = true;
+                    empty = false;
+                } else if (b == ',') {
+                    endField();
+                    empty = false;
+                } else if (b == '\n') {
+                    break;
+                } else if (b != '\r') {
+                    append(b);
+                    empty = false;
+                }
+                b = nextByte();
+            }
+
+            if (!empty) {
+                endField();
+                terminated = b >= 0;
+                return true;
+            }
+            if (b < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * This method returns the number of fields of the current record
+     *
+     * @return the number of fields
+     */
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * This method returns a field of the current record as a String
+     *
+     * @param index - the index of the field
+     * @return the field decoded as UTF-8, or an empty String if the record has no such field
+     */
+    String field(int index) {
+        if (index >= fieldCount) {
+            return "";
+        }
+        int start = index == 0 ? 0 : fieldEnds[index - 1];
+        return new String(recordBytes, start, fieldEnds[index] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This method parses a field of the current record as an integer without creating a String,
+     * surrounding spaces are ignored
+     *
+     * @param index - the index of the field
+     * @return the value of the field
+     * @throws NumberFormatException if the field is missing or is not an integer
+     */
+    int intField(int index) {
+        if (index >= fieldCount) {
+            throw new NumberFormatException("missing field " + index);
+        }
+        int start = index == 0 ? 0 : fieldEnds[index - 1];
+        int end = fieldEnds[index];
+        while (start < end && recordBytes[start] == ' ') {
+            start += 1;
+        }
+        while (end > start && recordBytes[end - 1] == ' ') {
+            end -= 1;
+        }
+        boolean negative = start < end && recordBytes[start] == '-';
+        if (negative) {
+            start += 1;
+        }
+        if (start == end || end - start > 9) {
+            throw new NumberFormatException(field(index));
+        }
+        int value = 0;
+        for (; start < end; ++start) {
+            int digit = recordBytes[start] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(field(index));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * This method tells whether the current record ends with a line break. The last record of a
+     * file which is still being written may lack it, because the rest of the record has not been
+     * written yet
+     *
+     * @return false if the current record ends at the end of the input
+     */
+    boolean recordTerminated() {
+        return terminated;
+    }
+
+    /**
+     * This method returns the number of bytes of the input consumed so far, which is the offset
+     * just after the line break ending the current record
+     *
+     * @return the number of bytes consumed
+     */
+    long offset() {
+        return offset;
+    }
+
+    /**
+     * This method closes the underlying channel
+     *
+     * @throws IOException if the channel can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
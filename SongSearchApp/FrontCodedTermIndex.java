@@ -0,0 +1,421 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * This class stores a sorted set of terms as front-coded blocks in a single byte array. Terms are
+ * sorted by their UTF-8 bytes and grouped into blocks of BLOCK_SIZE terms. The first term of a
+ * block is stored in full, every following term only as the length of the prefix it shares with
+ * the previous term and its remaining bytes. All terms starting with a prefix form one run of the
+ * sorted order, which is found by a binary search over the first terms of the blocks
+ */
+class FrontCodedTermIndex {
+  private static final int BLOCK_SIZE = 16;   // number of terms per block
+
+  private final byte[] data;            // the encoded blocks
+  private final int[] blockOffsets;     // offset of every block in data
+  private final int termCount;          // number of terms in the index
+
+  /**
+   * Constructor which encodes the passed terms
+   *
+   * @param terms - the terms to be stored, which must be distinct
+   * @param count - the number of terms in the array
+   */
+  FrontCodedTermIndex(String[] terms, int count) {
+    byte[][] sorted = new byte[count][];
+    for (int i = 0; i < count; ++i) {
+      sorted[i] = terms[i].getBytes(StandardCharsets.UTF_8);
+    }
+    Arrays.sort(sorted, Arrays::compareUnsigned);
+
+    termCount = count;
+    blockOffsets = new int[(count + BLOCK_SIZE - 1) / BLOCK_SIZE];
+    byte[] buffer = new byte[64];
+    int length = 0;
+    for (int i = 0; i < count; ++i) {
+      // every term needs at most two variable length integers and its own bytes
+      if (length + sorted[i].length + 10 > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + sorted[i].length + 10));
+      }
+      int shared = 0;
+      if (i % BLOCK_SIZE == 0) {
+        blockOffsets[i / BLOCK_SIZE] = length;
+      } else {
+        shared = Arrays.mismatch(sorted[i - 1], sorted[i]);
+        shared = shared < 0 ? sorted[i].length : shared;
+        length = writeVarint(buffer, length, shared);
+      }
+      length = writeVarint(buffer, length, sorted[i].length - shared);
+      System.arraycopy(sorted[i], shared, buffer, length, sorted[i].length - shared);
+      length += sorted[i].length - shared;
+    }
+    data = Arrays.copyOf(buffer, length);
+  }
+
+  /**
+   * This method writes a variable length integer (7 bits per byte)
+   *
+   * @param buffer   - the buffer written to
+   * @param position - the position the integer is written at
+   * @param value    - the non-negative value
+   * @return the position after the integer
+   */
+  private static int writeVarint(byte[] buffer, int position, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[position++] = (byte) value;
+    return position;
+  }
+
+  /**
+   * This method returns the number of terms in the index
+   *
+   * @return the number of terms
+   */
+  int size() {
+    return termCount;
+  }
+
+  /**
+   * This method returns the number of bytes used by the encoded terms and the block offsets
+   *
+   * @return the memory footprint of the index in bytes
+   */
+  long memoryBytes() {
+    return data.length + 4L * blockOffsets.length;
+  }
+
+  /**
+   * This method passes every term which starts with the prefix to the consumer, in sorted order
+   *
+   * @param prefix   - the prefix of the terms
+   * @param consumer - receives the matching terms
+   */
+  void forEachWithPrefix(String prefix, Consumer<String> consumer) {
+    byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+
+    // the blocks are decoded from the block which may hold the first matching term until a term
+    // after the prefix range is reached
+    byte[] term = new byte[64];
+    for (int block = lastBlockBefore(key, key.length); block < blockOffsets.length; ++block) {
+      int position = blockOffsets[block];
+      int termLength = 0;
+      int end = Math.min(BLOCK_SIZE, termCount - block * BLOCK_SIZE);
+      for (int i = 0; i < end; ++i) {
+        int shared = 0;
+        if (i > 0) {
+          long varint = readVarint(position);
+          shared = (int) varint;
+          position = (int) (varint >>> 32);
+        }
+        long varint = readVarint(position);
+        int suffix = (int) varint;
+        position = (int) (varint >>> 32);
+        if (shared + suffix > term.length) {
+          term = Arrays.copyOf(term, Math.max(term.length * 2, shared + suffix));
+        }
+        System.arraycopy(data, position, term, shared, suffix);
+        position += suffix;
+        termLength = shared + suffix;
+
+        int comparison = comparePrefix(term, termLength, key);
+        if (comparison == 0) {
+          consumer.accept(new String(term, 0, termLength, StandardCharsets.UTF_8));
+        } else if (comparison > 0) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * This method returns the last block whose first term is smaller than a key. That block may
+   * already hold terms which are not smaller than the key, every earlier block holds only smaller
+   * terms
+   *
+   * @param key    - buffer holding the key
+   * @param length - length of the key
+   * @return the index of the block, 0 if no first term is smaller than the key
+   */
+  private int lastBlockBefore(byte[] key, int length) {
+    return lastBlockBefore(key, length, 0, blockOffsets.length - 1);
+  }
+
+  /**
+   * This method returns the last block after a given block whose first term is smaller than a
+   * key. The key is expected close to the given block, so the distance is first doubled until it
+   * is overshot (galloping) and only the last doubling is binary searched
+   *
+   * @param key    - buffer holding the key
+   * @param length - length of the key
+   * @param from   - the block the search starts at
+   * @return the index of the block, from if no later first term is smaller than the key
+   */
+  private int gallopBlockBefore(byte[] key, int length, int from) {
+    int step = 1;
+    while (from + step < blockOffsets.length && compareBlockHead(from + step, key, length) < 0) {
+      step *= 2;
+    }
+    int block = lastBlockBefore(key, length, from + step / 2,
+        Math.min(from + step, blockOffsets.length) - 1);
+    return Math.max(block, from);
+  }
+
+  /**
+   * This method returns the last block of a range whose first term is smaller than a key
+   *
+   * @param key    - buffer holding the key
+   * @param length - length of the key
+   * @param low    - the first block of the range
+   * @param high   - the last block of the range
+   * @return the index of the block, low if no first term of the range is smaller than the key
+   */
+  private int lastBlockBefore(byte[] key, int length, int low, int high) {
+    int block = low;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (compareBlockHead(middle, key, length) < 0) {
+        block = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return block;
+  }
+
+  /**
+   * This method passes every term within an edit distance of a word to the consumer, in sorted
+   * order. The terms are scanned like the paths of a trie: consecutive terms share the rows of the
+   * Levenshtein table computed for their common prefix, so only the rows of the bytes after it are
+   * computed. Once every entry of a row exceeds the allowed distance, no term starting with that
+   * prefix can match, and the scan jumps over all of them with a binary search over the first
+   * terms of the blocks. The distance counts insertions, deletions and substitutions of
+   * characters (code points), not of bytes
+   *
+   * @param word     - the word the terms are compared with
+   * @param maxEdits - the largest edit distance of a matching term
+   * @param consumer - receives the matching terms
+   */
+  void forEachWithinDistance(String word, int maxEdits, Consumer<String> consumer) {
+    int[] query = word.codePoints().toArray();
+    byte[] term = new byte[64];
+    // rows[depth] is the row of the Levenshtein table after the first depth bytes of the term, it
+    // is only computed at the ends of characters
+    int[][] rows = new int[term.length + 1][];
+    rows[0] = new int[query.length + 1];
+    for (int j = 0; j <= query.length; ++j) {
+      rows[0][j] = j;
+    }
+    int validDepth = 0;   // the rows of the previous term are computed up to this depth
+    int deadDepth = -1;   // if not -1, the first deadDepth bytes of the previous term are a prefix
+                          // which no matching term starts with
+    int previousLength = 0;   // length of the previous term
+
+    int block = 0;
+    while (block < blockOffsets.length) {
+      int nextBlock = block + 1;
+      int position = blockOffsets[block];
+      int end = Math.min(BLOCK_SIZE, termCount - block * BLOCK_SIZE);
+      for (int i = 0; i < end; ++i) {
+        int shared = 0;
+        if (i > 0) {
+          long varint = readVarint(position);
+          shared = (int) varint;
+          position = (int) (varint >>> 32);
+        }
+        long varint = readVarint(position);
+        int suffix = (int) varint;
+        position = (int) (varint >>> 32);
+        if (i == 0) {
+          // the first term of a block is stored in full, its common prefix with the previous term
+          // (which may lie several blocks back after a jump) is found by comparing them
+          shared = Arrays.mismatch(term, 0, previousLength, data, position, position + suffix);
+          shared = shared < 0 ? previousLength : shared;
+          suffix -= shared;
+          position += shared;
+        }
+        int termLength = shared + suffix;
+        if (termLength > term.length) {
+          term = Arrays.copyOf(term, Math.max(term.length * 2, termLength));
+          rows = Arrays.copyOf(rows, term.length + 1);
+        }
+        System.arraycopy(data, position, term, shared, suffix);
+        position += suffix;
+        previousLength = termLength;
+
+        // a term which still starts with the dead prefix of the previous term is skipped
+        if (deadDepth >= 0 && shared >= deadDepth) {
+          continue;
+        }
+        deadDepth = -1;
+
+        // the rows of the common prefix are reused, from the start of the character it ends in
+        int depth = Math.min(shared, validDepth);
+        while (depth > 0 && (term[depth] & 0xC0) == 0x80) {
+          depth -= 1;
+        }
+        boolean dead = false;
+        while (depth < termLength && !dead) {
+          int lead = term[depth] & 0xFF;
+          int length = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+          int codePoint = decode(term, depth, length);
+          if (rows[depth + length] == null) {
+            rows[depth + length] = new int[query.length + 1];
+          }
+          int[] previous = rows[depth];
+          int[] row = rows[depth + length];
+          row[0] = previous[0] + 1;
+          int smallest = row[0];
+          for (int j = 1; j <= query.length; ++j) {
+            int cost = query[j - 1] == codePoint ? 0 : 1;
+            row[j] = Math.min(Math.min(previous[j] + 1, row[j - 1] + 1), previous[j - 1] + cost);
+            smallest = Math.min(smallest, row[j]);
+          }
+          depth += length;
+          dead = smallest > maxEdits;
+        }
+        validDepth = depth;
+
+        if (!dead) {
+          if (rows[depth][query.length] <= maxEdits) {
+            consumer.accept(new String(term, 0, termLength, StandardCharsets.UTF_8));
+          }
+          continue;
+        }
+
+        // the terms after this one which start with the dead prefix are jumped over when they
+        // reach into a later block, and skipped one by one otherwise
+        deadDepth = depth;
+        int successorLength = depth;
+        while (successorLength > 0 && term[successorLength - 1] == (byte) 0xFF) {
+          successorLength -= 1;
+        }
+        if (successorLength == 0) {
+          return;
+        }
+        byte[] successor = Arrays.copyOf(term, successorLength);
+        successor[successorLength - 1] += 1;
+        int target = gallopBlockBefore(successor, successorLength, block);
+        if (target > block) {
+          nextBlock = target;
+          break;
+        }
+      }
+      block = nextBlock;
+    }
+  }
+
+  /**
+   * This method decodes a character of UTF-8 bytes
+   *
+   * @param bytes    - buffer holding the bytes
+   * @param position - the position of the first byte of the character
+   * @param length   - the number of bytes of the character
+   * @return the code point of the character
+   */
+  private static int decode(byte[] bytes, int position, int length) {
+    if (length == 1) {
+      return bytes[position];
+    }
+    int codePoint = bytes[position] & (0xFF >>> (length + 1));
+    for (int i = 1; i < length; ++i) {
+      codePoint = (codePoint << 6) | (bytes[position + i] & 0x3F);
+    }
+    return codePoint;
+  }
+
+  /**
+   * This method computes the edit distance of two words, giving up as soon as it exceeds a bound.
+   * It is used for words which are not in an index yet
+   *
+   * @param first    - the first word
+   * @param second   - the second word
+   * @param maxEdits - the bound of the distance
+   * @return the edit distance of the words, or maxEdits + 1 if it exceeds maxEdits
+   */
+  static int editDistance(String first, String second, int maxEdits) {
+    int[] a = first.codePoints().toArray();
+    int[] b = second.codePoints().toArray();
+    if (Math.abs(a.length - b.length) > maxEdits) {
+      return maxEdits + 1;
+    }
+    int[] previous = new int[b.length + 1];
+    int[] row = new int[b.length + 1];
+    for (int j = 0; j <= b.length; ++j) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length; ++i) {
+      row[0] = i;
+      int smallest = row[0];
+      for (int j = 1; j <= b.length; ++j) {
+        int cost = a[i - 1] == b[j - 1] ? 0 : 1;
+        row[j] = Math.min(Math.min(previous[j] + 1, row[j - 1] + 1), previous[j - 1] + cost);
+        smallest = Math.min(smallest, row[j]);
+      }
+      if (smallest > maxEdits) {
+        return maxEdits + 1;
+      }
+      int[] swap = previous;
+      previous = row;
+      row = swap;
+    }
+    return Math.min(previous[b.length], maxEdits + 1);
+  }
+
+  /**
+   * This method reads a variable length integer. The value and the position after it are returned
+   * together, so that the index keeps no state and can be read by several threads at once
+   *
+   * @param position - the position of the integer
+   * @return the value in the low 32 bits and the position after the integer in the high 32 bits
+   */
+  private long readVarint(int position) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = data[position++];
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return ((long) position << 32) | value;
+  }
+
+  /**
+   * This method compares the first term of a block with a key
+   *
+   * @param block     - the index of the block
+   * @param key       - buffer holding the key
+   * @param keyLength - length of the key
+   * @return a negative number, zero or a positive number as the term is smaller than, equal to or
+   *         larger than the key
+   */
+  private int compareBlockHead(int block, byte[] key, int keyLength) {
+    long varint = readVarint(blockOffsets[block]);
+    int length = (int) varint;
+    int position = (int) (varint >>> 32);
+    return Arrays.compareUnsigned(data, position, position + length, key, 0, keyLength);
+  }
+
+  /**
+   * This method checks how a term relates to the range of terms starting with a prefix
+   *
+   * @param term   - buffer holding the term
+   * @param length - length of the term
+   * @param prefix - the prefix
+   * @return a negative number if the term sorts before the range, zero if it starts with the
+   *         prefix and a positive number if it sorts after the range
+   */
+  private static int comparePrefix(byte[] term, int length, byte[] prefix) {
+    int common = Math.min(length, prefix.length);
+    int comparison = Arrays.compareUnsigned(term, 0, common, prefix, 0, common);
+    if (comparison != 0) {
+      return comparison;
+    }
+    return length >= prefix.length ? 0 : -1;
+  }
+}
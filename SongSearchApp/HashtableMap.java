@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
 
@@ -5,18 +6,31 @@ import java.util.NoSuchElementException;
  * This class implements the necessary functionality for the Hash Table data structure
  */
 public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
-  private LinkedList<Node>[] hashTableArray;    // LinkedList representing the hash table 
+  // number of buckets of the old hash table which are moved into the new one on every put() and
+  // remove() while an incremental resize is in progress
+  private static final int MIGRATION_STEP = 8;
+
+  // LinkedList representing the hash table
+  private LinkedList<Node<KeyType, ValueType>>[] hashTableArray;
   private int tableCapacity;    // the maximum size or number of elements capable of being
                                 // stored in the hash table
   private int tableSize = 0;    // number of elements currently in the hash table
 
+  private final boolean incrementalResize;  // whether resizing is spread over later operations
+  // hash table being migrated during an incremental resize, null when no resize is in progress
+  private LinkedList<Node<KeyType, ValueType>>[] oldHashTableArray;
+  private int oldTableCapacity;   // capacity of the hash table being migrated
+  private int migrationIndex;     // index of the next bucket of the old hash table to be migrated
+
+  private long resizeCount = 0;   // number of times the hash table was doubled
+  private long resizeNanos = 0;   // time spent allocating new hash tables and migrating buckets
+
   /**
    * The default constructor which creates a LinkedList of capacity 20 which represents the hash
    * table 
    */
   public HashtableMap() { 
-    this.tableCapacity = 20;
-    hashTableArray = new LinkedList[tableCapacity];
+    this(20);
   }
 
   /**
@@ -26,14 +40,130 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
    *                   table
    */
   public HashtableMap(int capacity) {
+    this(capacity, false);
+  }
+
+  /**
+   * Constructor which creates a LinkedList of a specified capacity which represents the hash table
+   * and selects how the table is resized. With incremental resizing the old and the new hash table
+   * are kept alive together and only a bounded number of buckets is migrated by each later put()
+   * and remove() call, so no single call pays for rehashing the whole table. Lookups only read
+   * both tables and never migrate, so get(), getOrNull() and containsKey() stay read-only in
+   * either mode
+   * 
+   * @param capacity          - the maximum size or number of elements capable of being stored in
+   *                            the hash table
+   * @param incrementalResize - true to spread resizing over later operations, false to rehash
+   *                            the whole table inside the put() call which crosses the load factor
+   */
+  public HashtableMap(int capacity, boolean incrementalResize) {
     this.tableCapacity = capacity;
-    hashTableArray = new LinkedList[tableCapacity];
+    this.incrementalResize = incrementalResize;
+    hashTableArray = newTable(tableCapacity);
+  }
+
+  /**
+   * This method creates an empty hash table of the passed capacity. Java does not allow creating
+   * an array of a generic type, so a raw array is created and cast once here
+   * 
+   * @param capacity - the capacity of the hash table
+   * @return the new hash table with no chained lists
+   */
+  @SuppressWarnings("unchecked")
+  private static <K, V> LinkedList<Node<K, V>>[] newTable(int capacity) {
+    return (LinkedList<Node<K, V>>[]) new LinkedList<?>[capacity];
+  }
+
+  /**
+   * This method calculates the index of the hash table at which the passed key is stored. The sign
+   * bit is masked off instead of using Math.abs() since Math.abs(Integer.MIN_VALUE) is negative
+   * 
+   * @param key      - the key whose index is calculated
+   * @param capacity - the capacity of the hash table
+   * @return the index of the hash table for the key
+   */
+  private static int indexFor(Object key, int capacity) {
+    return (key.hashCode() & 0x7fffffff) % capacity;
+  }
+
+  /**
+   * This method traverses a chained list and returns the node holding the passed key
+   * 
+   * @param chainedList - the chained list to be traversed, may be null
+   * @param key         - the key to be found
+   * @return the node corresponding to the key or null if the key is not in the chained list
+   */
+  private static <K, V> Node<K, V> findNode(LinkedList<Node<K, V>> chainedList, Object key) {
+    if (chainedList != null) {
+      // an iterator is used since LinkedList.get(i) walks the list from its head on every call
+      for (Node<K, V> node : chainedList) {
+        if (node.key.equals(key)) {
+          return node;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * This method returns the chained list in which the passed key is stored, looking in the old
+   * hash table when an incremental resize has not yet migrated the bucket of the key
+   * 
+   * @param key - the key whose chained list is returned
+   * @return the chained list for the key, may be null
+   */
+  private LinkedList<Node<KeyType, ValueType>> chainFor(Object key) {
+    if (oldHashTableArray != null) {
+      int oldIndex = indexFor(key, oldTableCapacity);
+      if (oldIndex >= migrationIndex) {
+        return oldHashTableArray[oldIndex];
+      }
+    }
+    return hashTableArray[indexFor(key, tableCapacity)];
+  }
+
+  /**
+   * This method moves the passed number of buckets from the old hash table into the new one. The
+   * existing nodes are relinked into the new hash table instead of allocating a fresh node for each
+   * element. Once every bucket is migrated the old hash table is released
+   * 
+   * @param buckets - the maximum number of buckets to be migrated
+   */
+  private void migrateBuckets(int buckets) {
+    long start = System.nanoTime();
+    int end = Math.min(oldTableCapacity, migrationIndex + buckets);
+    for (; migrationIndex < end; ++migrationIndex) {
+      LinkedList<Node<KeyType, ValueType>> chainedList = oldHashTableArray[migrationIndex];
+
+      // if there is no chained list at this index of the old hash table, there is nothing to move
+      if (chainedList == null) {
+        continue;
+      }
+
+      // every node of the chained list is added to the chained list at its newly calculated
+      // index of the larger hash table
+      for (Node<KeyType, ValueType> node : chainedList) {
+        int tableIndex = indexFor(node.key, tableCapacity);
+        LinkedList<Node<KeyType, ValueType>> newChainedList = hashTableArray[tableIndex];
+        if (newChainedList == null) {
+          newChainedList = new LinkedList<Node<KeyType, ValueType>>();
+          hashTableArray[tableIndex] = newChainedList;
+        }
+        newChainedList.add(node);
+      }
+      oldHashTableArray[migrationIndex] = null;
+    }
+
+    if (migrationIndex >= oldTableCapacity) {
+      oldHashTableArray = null;
+    }
+    resizeNanos += System.nanoTime() - start;
   }
 
   /**
    * This method is responsible for adding the key-value pair to the hash table. If the load factor
    * of the hash table is crossed, this method also resizes the table and rehashes the present 
-   * elements
+   * elements, either all at once or spread over the later operations on the table
    * 
    * @param key - the key to be added to the hash table
    * @param value - the value to be added to the hash table
@@ -43,88 +173,117 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
     // if the passed key is null, we can not add it to the hash table and false is returned
     if (key == null) {
       return false;
-    } else {
-      // calculating the index of the hash table for insertion using the passed key
-      int tableIndex = Math.abs(key.hashCode()) % tableCapacity;   
-      // the key and value are stored together as a node so that they can be inserted into the hash
-      // table together
-      Node node = new Node(key, value);
-      // the LinkedList used for chaining at a specific index of the hash table is captured
-      LinkedList<Node> chainedList = hashTableArray[tableIndex];
-
-      // the variable created in the previous step is checked, if that variable is null, then at 
-      // that specific index of the hash table a LinkedList does not exist and is created
-      if (chainedList == null) {
-        chainedList = new LinkedList<Node>();
-        hashTableArray[tableIndex] = chainedList;
-      } else {    // else, the chained list at that index is traversed to verify that the same key
-                  // does not already exist
-        for (int i = 0; i < chainedList.size(); ++i) {
-          if (chainedList.get(i).key.equals(key)) {
-            return false;
-          }
-        }
-      }
+    }
 
-      // the node containing the key-value pair is added to the chained list at the calculated
-      // index of the hash table and the number of elements in the table is incremented
-      chainedList.add(node);
-      tableSize += 1;
-
-      // if load factor of the hash table crosses the threshold, a new hash table with double the
-      // capacity is created and the elements from the old hash table are rehashed into the new one
-      if (((((double) tableSize) / ((double) tableCapacity)) * 100) >= 80) {
-        tableSize = 0;
-        tableCapacity *= 2;
-        LinkedList<Node>[] tempHashTableArray = new LinkedList[tableCapacity];
-
-        // the hash table is iterated over to capture the chained lists at different indexes
-        for (int i = 0; i < hashTableArray.length; ++i) {
-          chainedList = hashTableArray[i];
-
-          // if the variable in the previous step is null, this means that a chained list does not
-          // exist at index and hence we skip over that iteration
-          if (chainedList == null) {
-            continue;
-          }
-
-          // we iterate over the LinkedList captured at a specific index of the hash table so as to
-          // rehash the elements present in that chained list
-          for (int k = 0; k < chainedList.size(); ++k) {
-            // calculating an index for the larger hash table using the key of an element stored
-            // in the chained list
-            tableIndex = Math.abs(chainedList.get(k).key.hashCode()) % tableCapacity;
-            // the key and value stored in that particular element of the chained list is used to 
-            // create a new node 
-            node = new Node(chainedList.get(k).key, chainedList.get(k).value);
-            // the chained list is then attempted to be captured from the newly calculated index  
-            // for the larger hash table
-            chainedList = tempHashTableArray[tableIndex];
-            
-            // if the variable in the previous step is null, we can conclude that a chained list
-            // does not exist in that index and hence we create one at that index
-            if (chainedList == null) {
-              chainedList = new LinkedList<Node>();
-              tempHashTableArray[tableIndex] = chainedList;
-            }
-            
-            // the node with the key and value pair is added to the chained list at the newly
-            // calculated index of the larger hash table and the size of the new hash table is
-            // incremented by 1
-            chainedList.add(node);
-            tableSize += 1; 
-          }
-        }
+    // while a resize is in progress, every put() and remove() moves a few buckets to the new hash
+    // table
+    if (oldHashTableArray != null) {
+      migrateBuckets(MIGRATION_STEP);
+    }
+
+    // the chained list holding the key is traversed to verify that the same key does not
+    // already exist
+    if (findNode(chainFor(key), key) != null) {
+      return false;
+    }
+
+    // the key and value are stored together as a node so that they can be inserted into the hash
+    // table together. A key whose bucket has not yet been migrated by an incremental resize goes
+    // into the old hash table, so that every key is always found through chainFor()
+    LinkedList<Node<KeyType, ValueType>>[] table = hashTableArray;
+    int tableIndex = indexFor(key, tableCapacity);
+    if (oldHashTableArray != null && indexFor(key, oldTableCapacity) >= migrationIndex) {
+      table = oldHashTableArray;
+      tableIndex = indexFor(key, oldTableCapacity);
+    }
+    LinkedList<Node<KeyType, ValueType>> chainedList = table[tableIndex];
+    if (chainedList == null) {
+      chainedList = new LinkedList<Node<KeyType, ValueType>>();
+      table[tableIndex] = chainedList;
+    }
+    chainedList.add(new Node<KeyType, ValueType>(key, value));
+    tableSize += 1;
+
+    // if load factor of the hash table crosses the threshold, a new hash table with double the
+    // capacity is created and the elements from the old hash table are moved into the new one
+    if (((((double) tableSize) / ((double) tableCapacity)) * 100) >= 80) {
+      // a resize which is still in progress is finished first, so that at most two hash tables
+      // exist at any time
+      if (oldHashTableArray != null) {
+        migrateBuckets(oldTableCapacity);
+      }
+      long start = System.nanoTime();
+      oldHashTableArray = hashTableArray;
+      oldTableCapacity = tableCapacity;
+      migrationIndex = 0;
+      tableCapacity *= 2;
+      hashTableArray = newTable(tableCapacity);
+      resizeCount += 1;
+      resizeNanos += System.nanoTime() - start;
 
-        // after the complete iteration over the old hash table, the reference of the new hash 
-        // table is stored in the old hash table 
-        hashTableArray = tempHashTableArray;
+      if (!incrementalResize) {
+        migrateBuckets(oldTableCapacity);
       }
     }
 
     return true;
   }
 
+  /**
+   * This method grows the hash table so that the passed number of elements can be stored without
+   * crossing the load factor. The table is rehashed at once, even with incremental resizing, since
+   * it is called ahead of a bulk insertion which would cross the threshold anyway
+   * 
+   * @param expectedSize - the number of elements the hash table should hold
+   */
+  @Override
+  public void ensureCapacity(int expectedSize) {
+    long capacity = tableCapacity;
+    while (((double) expectedSize / capacity) * 100 >= 80) {
+      capacity *= 2;
+    }
+    if (capacity == tableCapacity || capacity > Integer.MAX_VALUE) {
+      return;
+    }
+    rehash((int) capacity);
+  }
+
+  /**
+   * This method halves the hash table while it would stay below half of the load factor, so a
+   * table which lost most of its elements gives back its buckets, and rehashes it at once
+   */
+  @Override
+  public void trimToSize() {
+    int capacity = tableCapacity;
+    while (capacity / 2 >= 16 && (((double) tableSize) / (capacity / 2)) * 100 < 40) {
+      capacity /= 2;
+    }
+    if (capacity != tableCapacity) {
+      rehash(capacity);
+    }
+  }
+
+  /**
+   * This method moves every element into a new hash table of the passed capacity at once, after
+   * finishing an incremental resize which is still in progress
+   * 
+   * @param capacity - the capacity of the new hash table
+   */
+  private void rehash(int capacity) {
+    if (oldHashTableArray != null) {
+      migrateBuckets(oldTableCapacity);
+    }
+    long start = System.nanoTime();
+    oldHashTableArray = hashTableArray;
+    oldTableCapacity = tableCapacity;
+    migrationIndex = 0;
+    tableCapacity = capacity;
+    hashTableArray = newTable(tableCapacity);
+    resizeCount += 1;
+    resizeNanos += System.nanoTime() - start;
+    migrateBuckets(oldTableCapacity);
+  }
+
   /**
    * This method returns a value using the corresponding key as input. If the key is null or a 
    * value does not exist for the key, NoSuchElementException is thrown
@@ -137,26 +296,31 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
       throw new NoSuchElementException();
     }
 
-    // calculating the hash table index using the passed key and attempting to retrieve a chained 
-    // list at this index
-    int tableIndex = Math.abs(key.hashCode()) % tableCapacity;
-    LinkedList<Node> chainedList = hashTableArray[tableIndex];
+    // traversing the chained list at the index of the passed key till we find the element
+    // corresponding to our passed key
+    Node<KeyType, ValueType> node = findNode(chainFor(key), key);
 
-    // if the variable from the previous step is null, this indicates that no chained LinkedList
-    // exists at the calculated index and thus a value does not exist for the passed key
-    if (chainedList == null) {
+    // if the element corresponding to our passed key is not found, we thrown an exception
+    if (node == null) {
       throw new NoSuchElementException();
-    } else {    // else, we traverse the obtained chained LinkedList till we find the element 
-                // corresponding to our passed key
-      for (int i = 0; i < chainedList.size(); ++i) {
-        if (chainedList.get(i).key.equals(key)) {
-          return (ValueType) chainedList.get(i).value;
-        }
-      }
+    }
+    return node.value;
+  }
 
-      // if the element corresponding to our passed key is not found, we thrown an exception
-      throw new NoSuchElementException();
+  /**
+   * This method returns the value of the passed key, or null when the key is not in the hash
+   * table, with a single traversal of the chained list of the key
+   * 
+   * @param key - the key used to retrieve the value
+   * @return the value corresponding to the passed key or null if it does not exist
+   */
+  @Override
+  public ValueType getOrNull(KeyType key) {
+    if (key == null) {
+      return null;
     }
+    Node<KeyType, ValueType> node = findNode(chainFor(key), key);
+    return node == null ? null : node.value;
   }
 
   /**
@@ -177,29 +341,11 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
   public boolean containsKey(KeyType key) {
     if (key == null) {
       return false;
-    } else {
-      // calculating the hash table index using the passed key and attempting to retrieve a chained 
-      // list at this index
-      int tableIndex = Math.abs(key.hashCode()) % tableCapacity;
-      LinkedList<Node> chainedList = hashTableArray[tableIndex];
-
-      // if the variable from the previous step is null, this indicates that no chained LinkedList
-      // exists at the calculated index and thus the passed key does not exist in the hash table
-      if (chainedList == null) {
-        return false;
-      } else {    // else, we traverse the obtained chained LinkedList till we find the node which
-                  // which corresponds to the passed key
-        for (int i = 0; i < chainedList.size(); ++i) {
-          if (chainedList.get(i).key.equals(key)) {
-            return true;
-          }
-        }
-      }
     }
-    
-    // if the passed key is not found even after traversing the chained list, this means the key
-    // does not exist in the hash table
-    return false;
+
+    // if the passed key is not found after traversing the chained list at its index, this means
+    // the key does not exist in the hash table
+    return findNode(chainFor(key), key) != null;
   }
 
   /**
@@ -212,28 +358,57 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
   public ValueType remove(KeyType key) {
     if (key == null) {
       return null;
-    } else {
-      int tableIndex = Math.abs(key.hashCode()) % tableCapacity;
-      LinkedList<Node> chainedList = hashTableArray[tableIndex];
+    }
+    if (oldHashTableArray != null) {
+      migrateBuckets(MIGRATION_STEP);
+    }
 
-      if (chainedList == null) {
-        return null;
-      } else {    
-        ValueType value = null;
-
-        // traversing the obtained chained list at a specific index of the hash table to find the
-        // passed key
-        for (int i = 0; i < chainedList.size(); ++i) {
-          if (chainedList.get(i).key.equals(key)) {
-            value = (ValueType) chainedList.get(i).value;
-            chainedList.remove(chainedList.get(i));
-            break;
-          }
-        }
-        
-        return value;
+    LinkedList<Node<KeyType, ValueType>> chainedList = chainFor(key);
+    Node<KeyType, ValueType> node = findNode(chainedList, key);
+    if (node == null) {
+      return null;
+    }
+
+    chainedList.remove(node);
+    tableSize -= 1;
+    return node.value;
+  }
+
+  /**
+   * This method returns statistics of the hash table: the number of buckets holding each chain
+   * length and the resizes so far. The buckets are counted when this method is called, so keeping
+   * the statistics costs put() and get() nothing
+   * 
+   * @return the statistics of the hash table
+   */
+  @Override
+  public MapStats stats() {
+    long[] chainLengths = countChains(hashTableArray, 0, new long[2]);
+    if (oldHashTableArray != null) {
+      // the migrated buckets of the old hash table are empty and are not counted
+      chainLengths = countChains(oldHashTableArray, migrationIndex, chainLengths);
+    }
+    return new MapStats(tableSize, tableCapacity, "chain length", chainLengths, resizeCount,
+        resizeNanos);
+  }
+
+  /**
+   * This method counts the buckets of a hash table by the length of their chained lists
+   * 
+   * @param table        - the hash table
+   * @param start        - the index of the first bucket to be counted
+   * @param chainLengths - the counts so far, indexed by chain length
+   * @return the counts including the buckets of the table, which may be a larger array
+   */
+  private static long[] countChains(LinkedList<?>[] table, int start, long[] chainLengths) {
+    for (int i = start; i < table.length; ++i) {
+      int length = table[i] == null ? 0 : table[i].size();
+      if (length >= chainLengths.length) {
+        chainLengths = Arrays.copyOf(chainLengths, length * 2);
       }
+      chainLengths[length] += 1;
     }
+    return chainLengths;
   }
 
   /**
@@ -242,6 +417,7 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
    */
   public void clear() {
     tableSize = 0;
-    hashTableArray = new LinkedList[tableCapacity];
+    oldHashTableArray = null;
+    hashTableArray = newTable(tableCapacity);
   }
-}
\ No newline at end of file
+}
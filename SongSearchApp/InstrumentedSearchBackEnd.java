@@ -0,0 +1,243 @@
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class measures the calls made to another back end: the latency of every method of
+ * SearchBackEndInterface and the number of results the list returning methods produce are
+ * recorded in histograms. Measuring can be switched off at any time, a call then costs one read of
+ * a volatile flag more than calling the back end directly
+ */
+public class InstrumentedSearchBackEnd implements SearchBackEndInterface {
+
+  // the measured methods, in the order of their histograms
+  public static final String[] METHODS = {"addSong", "containsSong", "findTitles", "findArtists",
+      "findNumberOfSongsInYear", "findTitlesMatching", "findNumberOfSongsInYearRange",
+      "findArtistsPage", "removeSong", "updateSong", "addSongs"};
+  private static final int ADD_SONG = 0;
+  private static final int CONTAINS_SONG = 1;
+  private static final int FIND_TITLES = 2;
+  private static final int FIND_ARTISTS = 3;
+  private static final int FIND_IN_YEAR = 4;
+  private static final int FIND_MATCHING = 5;
+  private static final int FIND_IN_YEAR_RANGE = 6;
+  private static final int FIND_ARTISTS_PAGE = 7;
+  private static final int REMOVE_SONG = 8;
+  private static final int UPDATE_SONG = 9;
+  private static final int ADD_SONGS = 10;
+
+  private final SearchBackEndInterface backEnd;   // the back end whose calls are measured
+  private final LatencyHistogram[] latencies = new LatencyHistogram[METHODS.length];
+  private final LatencyHistogram[] resultSizes = new LatencyHistogram[METHODS.length];
+  private volatile boolean enabled;               // whether calls are measured
+
+  /**
+   * Constructor which wraps a back end, with measuring switched on
+   *
+   * @param backEnd - the back end whose calls are measured
+   */
+  public InstrumentedSearchBackEnd(SearchBackEndInterface backEnd) {
+    this(backEnd, true);
+  }
+
+  /**
+   * Constructor which wraps a back end
+   *
+   * @param backEnd - the back end whose calls are measured
+   * @param enabled - whether calls are measured from the start
+   */
+  public InstrumentedSearchBackEnd(SearchBackEndInterface backEnd, boolean enabled) {
+    this.backEnd = backEnd;
+    this.enabled = enabled;
+    for (int i = 0; i < METHODS.length; ++i) {
+      latencies[i] = new LatencyHistogram();
+      resultSizes[i] = new LatencyHistogram();
+    }
+  }
+
+  /**
+   * This method switches measuring on or off
+   *
+   * @param enabled - true to measure the calls
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * This method returns the back end whose calls are measured
+   *
+   * @return the wrapped back end
+   */
+  public SearchBackEndInterface getBackEnd() {
+    return backEnd;
+  }
+
+  /**
+   * This method returns the latencies of a method in nanoseconds
+   *
+   * @param method - the name of the method, one of METHODS
+   * @return the histogram of the latencies
+   * @throws IllegalArgumentException if the method is not measured
+   */
+  public LatencyHistogram getLatencies(String method) {
+    return latencies[indexOf(method)];
+  }
+
+  /**
+   * This method returns the number of results of a method, that is the length of the returned
+   * list or the returned count
+   *
+   * @param method - the name of the method, one of METHODS
+   * @return the histogram of the result sizes, empty for methods without results
+   * @throws IllegalArgumentException if the method is not measured
+   */
+  public LatencyHistogram getResultSizes(String method) {
+    return resultSizes[indexOf(method)];
+  }
+
+  private static int indexOf(String method) {
+    for (int i = 0; i < METHODS.length; ++i) {
+      if (METHODS[i].equals(method)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("unknown method: " + method);
+  }
+
+  /**
+   * This method records a call of a method returning a list
+   *
+   * @param method - the index of the method
+   * @param start  - the time the call started
+   * @param result - the returned list, may be null
+   * @return the returned list
+   */
+  private List<String> record(int method, long start, List<String> result) {
+    latencies[method].record(System.nanoTime() - start);
+    resultSizes[method].record(result == null ? 0 : result.size());
+    return result;
+  }
+
+  @Override
+  public void addSong(SongDataInterface song) {
+    if (!enabled) {
+      backEnd.addSong(song);
+      return;
+    }
+    long start = System.nanoTime();
+    backEnd.addSong(song);
+    latencies[ADD_SONG].record(System.nanoTime() - start);
+  }
+
+  /**
+   * This method forwards a bulk add to the back end, so it keeps its bulk path. The latency of the
+   * whole call is recorded, and the number of songs as its result size
+   *
+   * @param songs - the songs to be added to the back end
+   */
+  @Override
+  public void addSongs(Collection<? extends SongDataInterface> songs) {
+    if (!enabled) {
+      backEnd.addSongs(songs);
+      return;
+    }
+    long start = System.nanoTime();
+    backEnd.addSongs(songs);
+    latencies[ADD_SONGS].record(System.nanoTime() - start);
+    resultSizes[ADD_SONGS].record(songs.size());
+  }
+
+  @Override
+  public boolean containsSong(SongDataInterface song) {
+    if (!enabled) {
+      return backEnd.containsSong(song);
+    }
+    long start = System.nanoTime();
+    boolean contained = backEnd.containsSong(song);
+    latencies[CONTAINS_SONG].record(System.nanoTime() - start);
+    return contained;
+  }
+
+  @Override
+  public List<String> findTitles(String titleWord) {
+    if (!enabled) {
+      return backEnd.findTitles(titleWord);
+    }
+    return record(FIND_TITLES, System.nanoTime(), backEnd.findTitles(titleWord));
+  }
+
+  @Override
+  public List<String> findArtists(String titleWord) {
+    if (!enabled) {
+      return backEnd.findArtists(titleWord);
+    }
+    return record(FIND_ARTISTS, System.nanoTime(), backEnd.findArtists(titleWord));
+  }
+
+  @Override
+  public int findNumberOfSongsInYear(String titleWord, int year) {
+    if (!enabled) {
+      return backEnd.findNumberOfSongsInYear(titleWord, year);
+    }
+    long start = System.nanoTime();
+    int songs = backEnd.findNumberOfSongsInYear(titleWord, year);
+    latencies[FIND_IN_YEAR].record(System.nanoTime() - start);
+    resultSizes[FIND_IN_YEAR].record(songs);
+    return songs;
+  }
+
+  @Override
+  public List<String> findTitlesMatching(String query) {
+    if (!enabled) {
+      return backEnd.findTitlesMatching(query);
+    }
+    return record(FIND_MATCHING, System.nanoTime(), backEnd.findTitlesMatching(query));
+  }
+
+  @Override
+  public int findNumberOfSongsInYearRange(String titleWord, int fromYear, int toYear) {
+    if (!enabled) {
+      return backEnd.findNumberOfSongsInYearRange(titleWord, fromYear, toYear);
+    }
+    long start = System.nanoTime();
+    int songs = backEnd.findNumberOfSongsInYearRange(titleWord, fromYear, toYear);
+    latencies[FIND_IN_YEAR_RANGE].record(System.nanoTime() - start);
+    resultSizes[FIND_IN_YEAR_RANGE].record(songs);
+    return songs;
+  }
+
+  @Override
+  public List<String> findArtists(String titleWord, int offset, int limit) {
+    if (!enabled) {
+      return backEnd.findArtists(titleWord, offset, limit);
+    }
+    return record(FIND_ARTISTS_PAGE, System.nanoTime(),
+        backEnd.findArtists(titleWord, offset, limit));
+  }
+
+  @Override
+  public boolean removeSong(SongDataInterface song) {
+    if (!enabled) {
+      return backEnd.removeSong(song);
+    }
+    long start = System.nanoTime();
+    boolean removed = backEnd.removeSong(song);
+    latencies[REMOVE_SONG].record(System.nanoTime() - start);
+    return removed;
+  }
+
+  @Override
+  public boolean updateSong(SongDataInterface oldSong, SongDataInterface newSong) {
+    if (!enabled) {
+      return backEnd.updateSong(oldSong, newSong);
+    }
+    long start = System.nanoTime();
+    boolean updated = backEnd.updateSong(oldSong, newSong);
+    latencies[UPDATE_SONG].record(System.nanoTime() - start);
+    return updated;
+  }
+}
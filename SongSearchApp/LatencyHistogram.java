@@ -0,0 +1,142 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts recorded values (usually latencies in nanoseconds) in log-linear buckets, the
+ * way HdrHistogram does: every power of two is split into SUB_BUCKETS equal buckets, so a value is
+ * known to within 1/SUB_BUCKETS (about 3%) of itself no matter how large it is, while the whole
+ * range up to 2^MAX_EXPONENT fits into a few thousand counters. Recording a value is a bit scan
+ * and one atomic increment, so any number of threads may record at the same time
+ */
+public class LatencyHistogram {
+  private static final int SUB_BITS = 5;                  // log2 of the buckets per power of two
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;   // buckets per power of two
+  private static final int MAX_EXPONENT = 44;             // largest power of two (about 4.9 hours
+                                                          // in nanoseconds), larger values are
+                                                          // counted in the last bucket
+
+  private final AtomicLongArray counts =
+      new AtomicLongArray((MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS);
+  private final LongAdder total = new LongAdder();   // sum of all recorded values
+  private final AtomicLong max = new AtomicLong();    // largest recorded value
+
+  /**
+   * This method records a value
+   *
+   * @param value - the value, negative values are recorded as 0
+   */
+  public void record(long value) {
+    value = Math.max(value, 0);
+    counts.incrementAndGet(bucketFor(value));
+    total.add(value);
+    long largest = max.get();
+    while (value > largest && !max.compareAndSet(largest, value)) {
+      largest = max.get();
+    }
+  }
+
+  /**
+   * This method returns the bucket of a value. Values below SUB_BUCKETS have a bucket each, every
+   * larger power of two 2^e is split by the SUB_BITS bits after its leading bit
+   *
+   * @param value - the non-negative value
+   * @return the index of the bucket
+   */
+  private static int bucketFor(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) {
+      // the sub-bucket bits of a clamped exponent would scatter the value over the last power of
+      // two, so every value beyond the range goes to the very last bucket
+      return (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS - 1;
+    }
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * This method returns the smallest value counted in a bucket
+   *
+   * @param bucket - the index of the bucket
+   * @return the lower bound of the bucket
+   */
+  private static long lowestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+    long sub = bucket % SUB_BUCKETS;
+    return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+  }
+
+  /**
+   * This method returns the number of recorded values
+   *
+   * @return the number of values
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < counts.length(); ++i) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * This method returns the mean of the recorded values
+   *
+   * @return the mean, 0 if no value was recorded
+   */
+  public double getMean() {
+    long count = getCount();
+    return count > 0 ? total.sum() / (double) count : 0;
+  }
+
+  /**
+   * This method returns the largest recorded value
+   *
+   * @return the exact largest value, 0 if no value was recorded
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * This method returns the value below which the passed percentage of the recorded values lie
+   *
+   * @param percentile - the percentage between 0 and 100
+   * @return the lower bound of the bucket holding the percentile (never more than the largest
+   *         value), 0 if no value was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long[] snapshot = new long[counts.length()];
+    long count = 0;
+    for (int i = 0; i < snapshot.length; ++i) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; ++i) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(lowestValueOf(i), getMax());
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * This method forgets all recorded values
+   */
+  public void reset() {
+    for (int i = 0; i < counts.length(); ++i) {
+      counts.set(i, 0);
+    }
+    total.reset();
+    max.set(0);
+  }
+}
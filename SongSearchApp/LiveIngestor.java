@@ -0,0 +1,589 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+/**
+ * This class keeps a shard up to date with a directory of CSV files while it serves queries: a
+ * thread of its own watches the directory with a WatchService and reads every CSV file which is
+ * new or has grown from the byte offset up to which it was read before. The songs are added in
+ * micro-batches, each under a single acquisition of the write lock of the shard which also
+ * increments the epoch of the shard, so a query sees either all or none of the songs of a batch
+ * and a reader holding the read lock sees a fixed epoch. The offsets are saved to a file after
+ * every batch, so an ingestor restarted over an index which holds the songs read so far (for
+ * example one restored from a snapshot) continues where the previous one stopped. A file which
+ * shrinks, is replaced by another file of the same name or whose first bytes change is taken to
+ * be rewritten and is read again from its start. How long songs take from their file into the
+ * index and how fast they arrive are measured as they are added
+ *
+ * Songs are delivered at least once: the offset of a batch is saved after the batch is added, so
+ * if the ingestor stops in between (or the offsets can not be written) the songs of the batch are
+ * added again by the next ingestor. A shard which rejects duplicates (see
+ * SearchBackEnd.setRejectDuplicates()) drops them. A record which can not be added is skipped and
+ * counted, the ingestor carries on with the next one. A file which can not be read is counted and
+ * tried again at the next scan, the other files are read meanwhile. The offset of a file which is
+ * deleted is forgotten
+ */
+public class LiveIngestor implements AutoCloseable {
+  private static final int BUFFER_SIZE = 1 << 16;     // size in bytes of the read buffer
+  private static final long QUIET_MILLIS = 1000;      // age of a file whose last record is taken
+                                                      // without a line break
+  private static final int RATE_SECONDS = 10;         // seconds over which the ingest rate is
+                                                      // averaged
+  private static final int PREFIX_BYTES = 1024;       // length of the start of a file whose
+                                                      // checksum tells whether it was rewritten
+
+  /**
+   * This class holds how far a file has been read
+   */
+  private static class FileState {
+    long offset;        // offset just after the last record added to the shard
+    int[] columns;      // title, artist and year columns, null until the header has been read
+    String fileKey;     // the file key of the file (its inode), null if unknown
+    int prefixLength;   // number of bytes at the start of the file covered by prefixChecksum
+    long prefixChecksum;
+
+    FileState(long offset) {
+      this.offset = offset;
+    }
+
+    /**
+     * This method forgets how far the file was read, so it is read again from its start
+     */
+    void reset() {
+      offset = 0;
+      columns = null;
+      prefixLength = 0;
+    }
+  }
+
+  private final LocalSearchShard shard;   // the shard the songs are added to
+  private final Path directory;           // the watched directory
+  private final Path offsetsFile;         // where the offsets are saved, null if they are not
+  private final int maxBatch;             // maximum number of songs added under the lock at once
+  private final long pollMillis;          // the directory is scanned at least this often
+  private final WatchService watcher;
+  private final Thread thread;
+
+  // how far every file of the directory has been read, by file name, guarded by this
+  private final Map<String, FileState> files = new HashMap<String, FileState>();
+
+  private final AtomicLong epoch = new AtomicLong();          // number of batches visible so far
+  private final AtomicLong ingestedSongs = new AtomicLong();
+  private final AtomicLong skippedRecords = new AtomicLong();
+  private final AtomicLong failedReads = new AtomicLong();
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final LatencyHistogram lagNanos = new LatencyHistogram();   // freshness lag of every
+                                                                      // batch
+  private volatile long lastLagNanos = 0;
+
+  // songs added in each of the last RATE_SECONDS seconds, guarded by themselves
+  private final long[] songsInSecond = new long[RATE_SECONDS];
+  private final long[] secondOfSlot = new long[RATE_SECONDS];
+
+  private volatile boolean closed = false;
+
+  /**
+   * Constructor which starts ingesting the CSV files of a directory into a shard, in batches of
+   * up to 10,000 songs and scanning the directory at least once a second
+   *
+   * @param shard       - the shard the songs are added to
+   * @param directory   - the directory to be watched
+   * @param offsetsFile - where the offsets are saved and read from at start, null to start from
+   *                      the beginning of every file and save nothing
+   * @throws FileNotFoundException if the directory does not exist
+   */
+  public LiveIngestor(LocalSearchShard shard, String directory, String offsetsFile)
+      throws FileNotFoundException {
+    this(shard, directory, offsetsFile, 10_000, 1000);
+  }
+
+  /**
+   * Constructor which starts ingesting the CSV files of a directory into a shard
+   *
+   * @param shard       - the shard the songs are added to
+   * @param directory   - the directory to be watched
+   * @param offsetsFile - where the offsets are saved and read from at start, null to start from
+   *                      the beginning of every file and save nothing
+   * @param maxBatch    - the maximum number of songs added while holding the write lock
+   * @param pollMillis  - the directory is scanned at least this often, even if the WatchService
+   *                      reports nothing
+   * @throws FileNotFoundException if the directory does not exist
+   */
+  public LiveIngestor(LocalSearchShard shard, String directory, String offsetsFile, int maxBatch,
+      long pollMillis) throws FileNotFoundException {
+    if (!new File(directory).isDirectory()) {
+      throw new FileNotFoundException(directory);
+    }
+    this.shard = shard;
+    this.directory = new File(directory).toPath();
+    this.offsetsFile = offsetsFile == null ? null : new File(offsetsFile).toPath();
+    this.maxBatch = maxBatch;
+    this.pollMillis = pollMillis;
+    try {
+      loadOffsets();
+      watcher = this.directory.getFileSystem().newWatchService();
+      this.directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    thread = new Thread(this::run, "song-ingestor");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * This method is run by the thread of the ingestor: it reads whatever has been written to the
+   * directory, then waits for the WatchService to report a change or for the poll interval to
+   * pass. A scan which fails is counted and the files are read again from their saved offsets at
+   * the next scan, so the thread keeps running
+   */
+  private void run() {
+    while (!closed) {
+      try {
+        ingestNow();
+      } catch (RuntimeException e) {
+        // the directory could not be listed or the offsets could not be saved
+        failedReads.incrementAndGet();
+      }
+      try {
+        WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+        if (key != null) {
+          // every change leads to a scan of the whole directory, so the events themselves
+          // (including an overflow) do not matter
+          key.pollEvents();
+          key.reset();
+        }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * This method reads every CSV file of the directory from its offset to its end and adds its
+   * songs to the shard. A file which can not be read is counted (see getFailedReads()) and left
+   * at its offset, the following files are still read. The offsets of files which no longer exist
+   * are dropped. It is called by the thread of the ingestor, and may be called by others to catch
+   * up at once
+   *
+   * @return the number of songs added
+   * @throws UncheckedIOException if the directory can not be listed or the offsets can not be
+   *                              saved
+   */
+  public synchronized long ingestNow() {
+    File[] csvFiles;
+    try {
+      csvFiles = SongLoader.csvFiles(directory.toString());
+    } catch (FileNotFoundException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    Set<String> names = new HashSet<String>();
+    for (File file : csvFiles) {
+      names.add(file.getName());
+    }
+    if (files.keySet().retainAll(names)) {
+      try {
+        saveOffsets();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    long songs = 0;
+    for (File file : csvFiles) {
+      FileState state = files.get(file.getName());
+      if (state == null) {
+        state = new FileState(0);
+        files.put(file.getName(), state);
+      }
+      try {
+        songs += ingestFile(file.toPath(), state);
+      } catch (RuntimeException e) {
+        // the file may be in the middle of being replaced, or not be readable at all; it is read
+        // again from its offset at the next scan
+        failedReads.incrementAndGet();
+      }
+    }
+    return songs;
+  }
+
+  /**
+   * This method adds the songs written to a file since it was last read. A last record without a
+   * line break is left for later, as the rest of it may not have been written yet, unless the file
+   * has not been written to for a second. A file which was rewritten since it was last read is
+   * read from its start
+   *
+   * @param file  - the file
+   * @param state - how far the file has been read
+   * @return the number of songs added
+   */
+  private long ingestFile(Path file, FileState state) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      long size = attributes.size();
+      String fileKey = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+      // a file which shrank, or another file moved to the same name, is not the file of the offset
+      if (size < state.offset
+          || fileKey != null && state.fileKey != null && !fileKey.equals(state.fileKey)) {
+        state.reset();
+      }
+      state.fileKey = fileKey;
+      if (size == state.offset) {
+        return 0;
+      }
+      long modified = attributes.lastModifiedTime().toMillis();
+      boolean quiet = System.currentTimeMillis() - modified >= QUIET_MILLIS;
+
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        // a file rewritten in place to more than the size it had is told apart by its first bytes
+        if (state.prefixLength > 0
+            && checksum(channel, state.prefixLength) != state.prefixChecksum) {
+          state.reset();
+        }
+        if (state.columns == null && !readHeader(channel, state, quiet)) {
+          return 0;
+        }
+        channel.position(state.offset);
+        CsvReader reader = new CsvReader(channel, BUFFER_SIZE);
+        int[] columns = state.columns;
+        List<SongDataInterface> batch = new ArrayList<SongDataInterface>();
+        long start = state.offset;
+        long consumed = start;        // offset just after the last record put into the batch
+        long songs = 0;
+        long skipped = 0;
+        while (reader.nextRecord()
+            && (reader.recordTerminated() || quiet && start + reader.offset() == size)) {
+          try {
+            int year = reader.intField(columns[2]);
+            ColumnarSongStore.checkYear(year);
+            batch.add(new SongData(reader.field(columns[0]), reader.field(columns[1]), year));
+          } catch (IllegalArgumentException e) {
+            // the year is no number or does not fit into a short
+            skipped += 1;
+          }
+          consumed = start + reader.offset();
+          if (batch.size() == maxBatch) {
+            int added = apply(batch, modified);
+            songs += added;
+            skipped += batch.size() - added;
+            batch.clear();
+            saveOffset(channel, state, consumed);
+          }
+        }
+        int added = apply(batch, modified);
+        songs += added;
+        skipped += batch.size() - added;
+        saveOffset(channel, state, consumed);
+        skippedRecords.addAndGet(skipped);
+        bytesRead.addAndGet(consumed - start);
+        return songs;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * This method reads the first record of a file to find its columns, see SongLoader. If the
+   * record is a header, the offset of the file is moved past it
+   *
+   * @param channel - the channel of the file, positioned anywhere
+   * @param state   - how far the file has been read
+   * @param quiet   - whether a record without a line break may be taken
+   * @return false if the first record is not complete yet
+   * @throws IOException if the file can not be read
+   */
+  private static boolean readHeader(FileChannel channel, FileState state, boolean quiet)
+      throws IOException {
+    channel.position(0);
+    CsvReader reader = new CsvReader(channel, 4096);
+    if (!reader.nextRecord() || !(reader.recordTerminated() || quiet)) {
+      return false;
+    }
+    int[] columns = SongLoader.findColumns(reader);
+    if (columns == null) {
+      state.columns = new int[] {0, 1, 2};
+    } else {
+      state.columns = columns;
+      state.offset = Math.max(state.offset, reader.offset());
+    }
+    return true;
+  }
+
+  /**
+   * This method adds a batch of songs to the shard under one acquisition of its write lock, which
+   * also moves the shard to the next epoch, and measures how long the songs took to arrive. If
+   * the back end refuses the batch, which it does before adding any of its songs, the songs are
+   * added one by one and those which fail are left out
+   *
+   * @param batch          - the songs
+   * @param modifiedMillis - when the file of the songs was last written to before it was read
+   * @return the number of songs added
+   */
+  private int apply(List<SongDataInterface> batch, long modifiedMillis) {
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    int added = 0;
+    Lock lock = shard.getLock().writeLock();
+    lock.lock();
+    try {
+      try {
+        shard.getBackEnd().addSongs(batch);
+        added = batch.size();
+      } catch (RuntimeException e) {
+        for (SongDataInterface song : batch) {
+          try {
+            shard.getBackEnd().addSong(song);
+            added += 1;
+          } catch (RuntimeException songFailure) {
+            // the song is counted as skipped by the caller
+          }
+        }
+      }
+      epoch.incrementAndGet();
+    } finally {
+      lock.unlock();
+    }
+    if (added == 0) {
+      return 0;
+    }
+    long now = System.currentTimeMillis();
+    lastLagNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, now - modifiedMillis));
+    lagNanos.record(lastLagNanos);
+    ingestedSongs.addAndGet(added);
+    synchronized (songsInSecond) {
+      long second = now / 1000;
+      int slot = (int) (second % RATE_SECONDS);
+      if (secondOfSlot[slot] != second) {
+        secondOfSlot[slot] = second;
+        songsInSecond[slot] = 0;
+      }
+      songsInSecond[slot] += added;
+    }
+    return added;
+  }
+
+  /**
+   * This method moves the offset of a file and saves the offsets of all files. They are written
+   * to a new file which then replaces the old one, so a crash leaves either of them complete.
+   * Together with the offset, the checksum of the start of the file is kept while the offset is
+   * still within the first PREFIX_BYTES bytes
+   *
+   * @param channel - the channel of the file
+   * @param state   - how far the file has been read
+   * @param offset  - the new offset of the file
+   * @throws IOException if the offsets can not be written
+   */
+  private void saveOffset(FileChannel channel, FileState state, long offset) throws IOException {
+    if (offset == state.offset) {
+      return;
+    }
+    state.offset = offset;
+    if (state.prefixLength < PREFIX_BYTES) {
+      state.prefixLength = (int) Math.min(offset, PREFIX_BYTES);
+      state.prefixChecksum = checksum(channel, state.prefixLength);
+    }
+    saveOffsets();
+  }
+
+  /**
+   * This method saves the offsets of all files, see saveOffset()
+   *
+   * @throws IOException if the offsets can not be written
+   */
+  private void saveOffsets() throws IOException {
+    if (offsetsFile == null) {
+      return;
+    }
+    StringBuilder text = new StringBuilder();
+    for (Map.Entry<String, FileState> file : files.entrySet()) {
+      FileState fileState = file.getValue();
+      text.append(fileState.offset).append('\t').append(fileState.prefixLength).append('\t')
+          .append(fileState.prefixChecksum).append('\t')
+          .append(fileState.fileKey == null ? "-" : fileState.fileKey).append('\t')
+          .append(file.getKey()).append('\n');
+    }
+    Path temporary = offsetsFile.resolveSibling(offsetsFile.getFileName() + ".tmp");
+    Files.write(temporary, text.toString().getBytes(StandardCharsets.UTF_8));
+    Files.move(temporary, offsetsFile, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * This method returns the CRC-32 checksum of the start of a file, without moving the position
+   * of its channel
+   *
+   * @param channel - the channel of the file
+   * @param length  - the number of bytes from the start of the file
+   * @return the checksum, of fewer bytes if the file is shorter
+   * @throws IOException if the file can not be read
+   */
+  private static long checksum(FileChannel channel, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, buffer.position()) < 0) {
+        break;
+      }
+    }
+    buffer.flip();
+    CRC32 crc = new CRC32();
+    crc.update(buffer);
+    return crc.getValue();
+  }
+
+  /**
+   * This method reads the offsets saved by a previous ingestor, one line per file holding the
+   * offset, the length and checksum of the start of the file, the file key and the file name
+   * separated by tabs. Lines of an older ingestor hold only the offset and the file name
+   *
+   * @throws IOException if the offsets can not be read
+   */
+  private void loadOffsets() throws IOException {
+    if (offsetsFile == null || !Files.exists(offsetsFile)) {
+      return;
+    }
+    for (String line : Files.readAllLines(offsetsFile, StandardCharsets.UTF_8)) {
+      String[] fields = line.split("\t", 5);
+      if (fields.length == 5) {
+        FileState state = new FileState(Long.parseLong(fields[0]));
+        state.prefixLength = Integer.parseInt(fields[1]);
+        state.prefixChecksum = Long.parseLong(fields[2]);
+        state.fileKey = fields[3].equals("-") ? null : fields[3];
+        files.put(fields[4], state);
+      } else if (fields.length >= 2) {
+        int tab = line.indexOf('\t');
+        files.put(line.substring(tab + 1), new FileState(Long.parseLong(line.substring(0, tab))));
+      }
+    }
+  }
+
+  /**
+   * This method returns the epoch of the shard, the number of batches added by the ingestor. It
+   * does not change while the read lock of the shard is held
+   *
+   * @return the epoch
+   */
+  public long getEpoch() {
+    return epoch.get();
+  }
+
+  /**
+   * This method returns the number of songs added so far
+   *
+   * @return the number of songs
+   */
+  public long getIngestedSongs() {
+    return ingestedSongs.get();
+  }
+
+  /**
+   * This method returns the number of records which were skipped because their year is not a
+   * number or out of range, or because the back end failed to add them
+   *
+   * @return the number of skipped records
+   */
+  public long getSkippedRecords() {
+    return skippedRecords.get();
+  }
+
+  /**
+   * This method returns the number of times a file, or the directory, could not be read. A file
+   * which keeps failing is counted at every scan
+   *
+   * @return the number of failed reads
+   */
+  public long getFailedReads() {
+    return failedReads.get();
+  }
+
+  /**
+   * This method returns the number of bytes of CSV files read so far
+   *
+   * @return the number of bytes
+   */
+  public long getBytesRead() {
+    return bytesRead.get();
+  }
+
+  /**
+   * This method returns the number of songs added per second, averaged over the last 10 seconds
+   *
+   * @return the ingest rate in songs per second
+   */
+  public double getIngestRate() {
+    long second = System.currentTimeMillis() / 1000;
+    long songs = 0;
+    synchronized (songsInSecond) {
+      for (int slot = 0; slot < RATE_SECONDS; ++slot) {
+        if (second - secondOfSlot[slot] < RATE_SECONDS) {
+          songs += songsInSecond[slot];
+        }
+      }
+    }
+    return songs / (double) RATE_SECONDS;
+  }
+
+  /**
+   * This method returns the freshness lag of the last batch: the time from the last write to its
+   * file before it was read until its songs could be found
+   *
+   * @return the lag in nanoseconds
+   */
+  public long getLastLagNanos() {
+    return lastLagNanos;
+  }
+
+  /**
+   * This method returns the freshness lags of all batches
+   *
+   * @return the histogram of the lags in nanoseconds
+   */
+  public LatencyHistogram getLagNanos() {
+    return lagNanos;
+  }
+
+  /**
+   * This method stops watching the directory, waiting for the files which are being read to be
+   * added and their offsets to be saved
+   */
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      watcher.close();
+    } catch (IOException e) {
+      // the thread stops anyway, as closed is set
+    }
+    try {
+      thread.join(TimeUnit.MINUTES.toMillis(1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class is a shard which holds its songs in-process, in a SearchBackEnd of its own guarded by
+ * a read-write lock of its own: queries hold the read lock, so they run side by side, and changes
+ * hold the write lock. Removed songs are dropped from the posting lists by a BackgroundCompactor
+ * which shares the lock, and which is woken up whenever a song is removed or updated, unless the
+ * shard is created without one
+ */
+public class LocalSearchShard implements SearchShard {
+  private final SearchBackEnd backEnd;            // the songs of the shard
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final BackgroundCompactor compactor;    // null if removed songs are not compacted
+
+  /**
+   * Constructor which creates an empty shard with background compaction
+   *
+   * @param capacity - the initial capacity of the hash tables of the back end
+   * @param engine   - the MapADT implementation used by the back end
+   */
+  public LocalSearchShard(int capacity, MapEngine engine) {
+    this(new SearchBackEnd(capacity, engine), true);
+  }
+
+  /**
+   * Constructor which creates a shard holding the songs of a back end. The back end must not be
+   * used other than through the shard, or while holding the lock of the shard, afterwards
+   *
+   * @param backEnd   - the back end holding the songs of the shard
+   * @param compacted - true to drop removed songs from the posting lists in the background
+   */
+  public LocalSearchShard(SearchBackEnd backEnd, boolean compacted) {
+    this.backEnd = backEnd;
+    compactor = compacted ? new BackgroundCompactor(backEnd, lock) : null;
+  }
+
+  /**
+   * This method returns the back end of the shard, which may only be used while holding the lock
+   * returned by getLock()
+   *
+   * @return the back end of the shard
+   */
+  public SearchBackEnd getBackEnd() {
+    return backEnd;
+  }
+
+  /**
+   * This method returns the lock guarding the back end of the shard
+   *
+   * @return the read-write lock of the shard
+   */
+  public ReadWriteLock getLock() {
+    return lock;
+  }
+
+  @Override
+  public void addSong(SongDataInterface song) {
+    lock.writeLock().lock();
+    try {
+      backEnd.addSong(song);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void addSongs(Collection<? extends SongDataInterface> songs) {
+    lock.writeLock().lock();
+    try {
+      backEnd.addSongs(songs);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean removeSong(SongDataInterface song) {
+    boolean changed;
+    lock.writeLock().lock();
+    try {
+      changed = backEnd.removeSong(song);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    if (changed && compactor != null) {
+      compactor.wakeUp();
+    }
+    return changed;
+  }
+
+  @Override
+  public boolean updateSong(SongDataInterface oldSong, SongDataInterface newSong) {
+    boolean changed;
+    lock.writeLock().lock();
+    try {
+      changed = backEnd.updateSong(oldSong, newSong);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    if (changed && compactor != null) {
+      compactor.wakeUp();
+    }
+    return changed;
+  }
+
+  @Override
+  public boolean containsSong(SongDataInterface song) {
+    lock.readLock().lock();
+    try {
+      return backEnd.containsSong(song);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<String> findTitles(String titleWord) {
+    lock.readLock().lock();
+    try {
+      return backEnd.findTitles(titleWord);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<String> findArtists(String titleWord) {
+    lock.readLock().lock();
+    try {
+      return backEnd.findArtists(titleWord);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<String> findArtists(String titleWord, int offset, int limit) {
+    lock.readLock().lock();
+    try {
+      return backEnd.findArtists(titleWord, offset, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int findNumberOfSongsInYear(String titleWord, int year) {
+    lock.readLock().lock();
+    try {
+      return backEnd.findNumberOfSongsInYear(titleWord, year);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int findNumberOfSongsInYearRange(String titleWord, int fromYear, int toYear) {
+    lock.readLock().lock();
+    try {
+      return backEnd.findNumberOfSongsInYearRange(titleWord, fromYear, toYear);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<String> findTitlesMatching(String query) {
+    lock.readLock().lock();
+    try {
+      return backEnd.findTitlesMatching(query);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return backEnd.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * This method stops the background compaction of the shard
+   */
+  @Override
+  public void close() {
+    if (compactor != null) {
+      compactor.close();
+    }
+  }
+}
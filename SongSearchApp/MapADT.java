@@ -8,5 +8,26 @@ public interface MapADT<KeyType, ValueType> {
 	public boolean containsKey(KeyType key);
 	public ValueType remove(KeyType key);
 	public void clear();
+
+	// returns the value of the key or null if the key is not in the map, implementations override
+	// it to find the key with a single lookup
+	public default ValueType getOrNull(KeyType key) {
+		return containsKey(key) ? get(key) : null;
+	}
+
+	// prepares the map for the passed total number of keys, so that adding them does not resize
+	// it repeatedly. Implementations without a capacity ignore the hint
+	public default void ensureCapacity(int expectedSize) {
+	}
+
+	// shrinks the map after many keys were removed, leaving room for as many keys again.
+	// Implementations without a capacity ignore the call
+	public default void trimToSize() {
+	}
+
+	// returns statistics of the map, implementations which keep none only report the size
+	public default MapStats stats() {
+		return new MapStats(size(), -1, "none", new long[0], 0, 0);
+	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+/**
+ * This enum lists the MapADT implementations which the search back end can use for its word index
+ * so that the different hash table engines can be run side by side
+ */
+public enum MapEngine {
+  // hash table with separate chaining through a LinkedList per bucket (HashtableMap)
+  CHAINED,
+  // hash table with open addressing over flat key, value and hash arrays (OpenAddressingMap)
+  OPEN_ADDRESSING;
+
+  /**
+   * This method creates an empty map of this engine with the passed capacity
+   *
+   * @param capacity - the initial capacity of the map
+   * @return a new empty map
+   */
+  public <KeyType, ValueType> MapADT<KeyType, ValueType> create(int capacity) {
+    if (this == OPEN_ADDRESSING) {
+      return new OpenAddressingMap<>(capacity);
+    }
+    return new HashtableMap<>(capacity);
+  }
+}
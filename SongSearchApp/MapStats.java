@@ -0,0 +1,111 @@
+/**
+ * This class holds statistics of a hash table at one point in time: how full it is, how long the
+ * chains or probe sequences of its entries are and how often and for how long it was resized. The
+ * length distribution is counted in buckets for chained tables and in entries for open addressing
+ * tables, as named by getLengthName()
+ */
+public class MapStats {
+  private final int size;             // number of entries
+  private final int capacity;         // number of buckets or slots, -1 if unknown
+  private final String lengthName;    // what the lengths of the distribution measure
+  private final long[] lengthCounts;  // lengthCounts[i] is the number of buckets or entries of
+                                      // length i
+  private final long resizeCount;     // number of resizes so far
+  private final long resizeNanos;     // total time spent in resizes
+
+  /**
+   * Constructor which creates the statistics of a table
+   *
+   * @param size         - number of entries
+   * @param capacity     - number of buckets or slots, -1 if unknown
+   * @param lengthName   - what the lengths of the distribution measure
+   * @param lengthCounts - the number of buckets or entries of every length, taken over
+   * @param resizeCount  - number of resizes so far
+   * @param resizeNanos  - total time spent in resizes
+   */
+  MapStats(int size, int capacity, String lengthName, long[] lengthCounts, long resizeCount,
+      long resizeNanos) {
+    this.size = size;
+    this.capacity = capacity;
+    this.lengthName = lengthName;
+    this.lengthCounts = lengthCounts;
+    this.resizeCount = resizeCount;
+    this.resizeNanos = resizeNanos;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * This method returns the number of entries per bucket or slot
+   *
+   * @return the load factor, or NaN if the capacity is unknown
+   */
+  public double getLoadFactor() {
+    return capacity > 0 ? size / (double) capacity : Double.NaN;
+  }
+
+  public String getLengthName() {
+    return lengthName;
+  }
+
+  /**
+   * This method returns the number of buckets or entries with the passed length
+   *
+   * @param length - the chain or probe length
+   * @return the number of buckets (chained tables) or entries (open addressing tables)
+   */
+  public long getLengthCount(int length) {
+    return length < lengthCounts.length ? lengthCounts[length] : 0;
+  }
+
+  /**
+   * This method returns the longest chain or probe sequence
+   *
+   * @return the largest length with a non-zero count
+   */
+  public int getMaxLength() {
+    for (int length = lengthCounts.length - 1; length > 0; --length) {
+      if (lengthCounts[length] > 0) {
+        return length;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * This method returns the mean length, leaving out empty buckets
+   *
+   * @return the mean chain length of the non-empty buckets or the mean probe length of the entries
+   */
+  public double getMeanLength() {
+    long count = 0;
+    long total = 0;
+    for (int length = 1; length < lengthCounts.length; ++length) {
+      count += lengthCounts[length];
+      total += length * lengthCounts[length];
+    }
+    return count > 0 ? total / (double) count : 0;
+  }
+
+  public long getResizeCount() {
+    return resizeCount;
+  }
+
+  public long getResizeNanos() {
+    return resizeNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "size=" + size + " capacity=" + capacity + " load=" + String.format("%.3f",
+        getLoadFactor()) + " mean " + lengthName + "=" + String.format("%.2f", getMeanLength())
+        + " max " + lengthName + "=" + getMaxLength() + " resizes=" + resizeCount + " resizeMs="
+        + resizeNanos / 1_000_000;
+  }
+}
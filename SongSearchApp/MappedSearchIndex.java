@@ -0,0 +1,521 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class is a read-only Back End which answers queries straight from a snapshot file written
+ * by writeSnapshot(). The file is memory-mapped, so opening it does not rebuild any hash table or
+ * song list, and several processes serving the same snapshot share its pages in the page cache.
+ *
+ * Layout of the snapshot file (all numbers big-endian):
+ * <pre>
+ * header       magic, version, song count, term count, tokenizer (ints), then the offsets of the
+ *              song index, term index, song data, term data and posting data sections (longs)
+ * song index   one long per song: offset of the song record in the song data section
+ * term index   one entry per word, sorted by the UTF-8 bytes of the words: offset of the word in
+ *              the term data section (long), offset of the posting list in the posting data
+ *              section (long), length of the posting list in bytes (int), number of songs (int)
+ * song data    per song: year (int), title length (int), title, artist length (int), artist
+ * term data    per word: length (int), UTF-8 bytes of the word
+ * posting data the posting lists, compressed with PostingList.compress()
+ * </pre>
+ * The tokenizer field records which title tokenizer built the words, so that query words are
+ * normalized the same way: 1 for TitleTokenizer.STANDARD, 2 for TitleTokenizer.WHITESPACE and 0
+ * for any other tokenizer, which then has to be passed to open(File, TitleTokenizer).
+ *
+ * A snapshot is written to a temporary sibling file which is then moved over the old snapshot, so
+ * readers which still have the old file mapped keep reading the old, complete file.
+ */
+public class MappedSearchIndex implements SearchBackEndInterface {
+  static final int MAGIC = 0x53534958;      // "SSIX"
+  static final int VERSION = 2;             // version of the file layout written by this class
+  private static final int HEADER_SIZE = 60;
+  private static final int TERM_ENTRY_SIZE = 24;
+  private static final int CUSTOM_TOKENIZER = 0;      // tokenizer IDs stored in the header
+  private static final int STANDARD_TOKENIZER = 1;
+  private static final int WHITESPACE_TOKENIZER = 2;
+
+  private final MappedFile file;    // the mapped snapshot file
+  private final TitleTokenizer tokenizer;   // normalizes query words like the indexed back end
+  private final int songCount;      // number of songs in the snapshot
+  private final int termCount;      // number of words in the snapshot
+  private final long songIndexOffset;
+  private final long termIndexOffset;
+  private final long songDataOffset;
+  private final long termDataOffset;
+  private final long postingDataOffset;
+
+  /**
+   * Constructor which reads the header of a mapped snapshot file
+   *
+   * @param file      - the mapped file
+   * @param tokenizer - the tokenizer passed by the caller, or null to use the recorded one
+   * @throws IOException if the file is not a snapshot of a supported version or was written with
+   *                     a different tokenizer
+   */
+  private MappedSearchIndex(MappedFile file, TitleTokenizer tokenizer) throws IOException {
+    this.file = file;
+    if (file.length < HEADER_SIZE || file.getInt(0) != MAGIC) {
+      throw new IOException("not a search index snapshot");
+    }
+    if (file.getInt(4) != VERSION) {
+      throw new IOException("unsupported snapshot version " + file.getInt(4));
+    }
+    songCount = file.getInt(8);
+    termCount = file.getInt(12);
+    TitleTokenizer recorded = tokenizer(file.getInt(16));
+    if (tokenizer == null && recorded == null) {
+      throw new IOException("snapshot was written with a custom tokenizer, which must be passed");
+    }
+    if (tokenizer != null && recorded != null && tokenizer != recorded) {
+      throw new IOException("snapshot was written with a different tokenizer");
+    }
+    this.tokenizer = tokenizer == null ? recorded : tokenizer;
+    songIndexOffset = file.getLong(20);
+    termIndexOffset = file.getLong(28);
+    songDataOffset = file.getLong(36);
+    termDataOffset = file.getLong(44);
+    postingDataOffset = file.getLong(52);
+  }
+
+  /**
+   * This method memory-maps a snapshot file and returns a back end serving queries from it, using
+   * the tokenizer recorded in the snapshot
+   *
+   * @param snapshot - the snapshot file
+   * @return the read-only back end
+   * @throws IOException if the file can not be read, is not a supported snapshot or was written
+   *                     with a custom tokenizer
+   */
+  public static MappedSearchIndex open(File snapshot) throws IOException {
+    return new MappedSearchIndex(new MappedFile(snapshot), null);
+  }
+
+  /**
+   * This method memory-maps a snapshot file and returns a back end serving queries from it
+   *
+   * @param snapshot  - the snapshot file
+   * @param tokenizer - the tokenizer of the back end the snapshot was written from
+   * @return the read-only back end
+   * @throws IOException if the file can not be read, is not a supported snapshot or was written
+   *                     with a different tokenizer
+   */
+  public static MappedSearchIndex open(File snapshot, TitleTokenizer tokenizer) throws IOException {
+    if (tokenizer == null) {
+      throw new IllegalArgumentException("tokenizer must not be null");
+    }
+    return new MappedSearchIndex(new MappedFile(snapshot), tokenizer);
+  }
+
+  /**
+   * This method returns the ID stored in the header for a tokenizer
+   *
+   * @param tokenizer - the tokenizer
+   * @return the ID of a built-in tokenizer or CUSTOM_TOKENIZER
+   */
+  private static int tokenizerId(TitleTokenizer tokenizer) {
+    if (tokenizer == TitleTokenizer.STANDARD) {
+      return STANDARD_TOKENIZER;
+    } else if (tokenizer == TitleTokenizer.WHITESPACE) {
+      return WHITESPACE_TOKENIZER;
+    }
+    return CUSTOM_TOKENIZER;
+  }
+
+  /**
+   * This method returns the tokenizer of an ID stored in the header
+   *
+   * @param tokenizerId - the ID stored in the header
+   * @return the built-in tokenizer or null for a custom one
+   * @throws IOException if the ID is unknown
+   */
+  private static TitleTokenizer tokenizer(int tokenizerId) throws IOException {
+    switch (tokenizerId) {
+      case STANDARD_TOKENIZER:
+        return TitleTokenizer.STANDARD;
+      case WHITESPACE_TOKENIZER:
+        return TitleTokenizer.WHITESPACE;
+      case CUSTOM_TOKENIZER:
+        return null;
+      default:
+        throw new IOException("unknown snapshot tokenizer " + tokenizerId);
+    }
+  }
+
+  /**
+   * This method writes the songs, words and posting lists of a back end to a snapshot file. Song
+   * IDs are kept, so a removed song still takes up its record, written empty, but its ID is left
+   * out of every posting list and a word without songs is left out altogether. The file is written
+   * next to the snapshot, forced to disk and then atomically moved over it, so a reader which has
+   * the old snapshot mapped never sees a truncated or half written file
+   *
+   * @param backEnd  - the back end to be written
+   * @param snapshot - the file to be written
+   * @throws IOException if the file can not be written
+   */
+  public static void writeSnapshot(SearchBackEnd backEnd, File snapshot) throws IOException {
+    int songCount = backEnd.songSlots();
+
+    // the words are sorted by their UTF-8 bytes so that they can be binary searched in the file
+    byte[][] terms = new byte[backEnd.termCount()][];
+    int termCount = 0;
+    for (int i = 0; i < terms.length; ++i) {
+      if (backEnd.postingsFor(backEnd.term(i)) != null) {
+        terms[termCount++] = backEnd.term(i).getBytes(StandardCharsets.UTF_8);
+      }
+    }
+    terms = Arrays.copyOf(terms, termCount);
+    Arrays.sort(terms, Arrays::compareUnsigned);
+
+    // the song and word records are encoded first, so that every section offset is known before
+    // the header is written
+    byte[][] titles = new byte[songCount][];
+    byte[][] artists = new byte[songCount][];
+    long songDataSize = 0;
+    for (int i = 0; i < songCount; ++i) {
+      SongDataInterface song = backEnd.isRemoved(i) ? null : backEnd.song(i);
+      titles[i] = song == null ? new byte[0] : song.getTitle().getBytes(StandardCharsets.UTF_8);
+      artists[i] = song == null ? new byte[0] : song.getArtist().getBytes(StandardCharsets.UTF_8);
+      songDataSize += 12 + titles[i].length + artists[i].length;
+    }
+    long termDataSize = 0;
+    for (byte[] term : terms) {
+      termDataSize += 4 + term.length;
+    }
+
+    long songIndexOffset = HEADER_SIZE;
+    long termIndexOffset = songIndexOffset + 8L * songCount;
+    long songDataOffset = termIndexOffset + (long) TERM_ENTRY_SIZE * termCount;
+    long termDataOffset = songDataOffset + songDataSize;
+    long postingDataOffset = termDataOffset + termDataSize;
+
+    File temporary = new File(snapshot.getPath() + ".tmp");
+    try (FileOutputStream file = new FileOutputStream(temporary);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(songCount);
+      out.writeInt(termCount);
+      out.writeInt(tokenizerId(backEnd.tokenizer()));
+      out.writeLong(songIndexOffset);
+      out.writeLong(termIndexOffset);
+      out.writeLong(songDataOffset);
+      out.writeLong(termDataOffset);
+      out.writeLong(postingDataOffset);
+
+      long position = 0;
+      for (int i = 0; i < songCount; ++i) {
+        out.writeLong(position);
+        position += 12 + titles[i].length + artists[i].length;
+      }
+
+      // the posting lists are compressed once here, their sizes are needed for the term index
+      byte[][] postings = new byte[termCount][];
+      long termPosition = 0;
+      long postingPosition = 0;
+      for (int i = 0; i < termCount; ++i) {
+        PostingList postingList =
+            backEnd.livePostingsFor(new String(terms[i], StandardCharsets.UTF_8));
+        postings[i] = postingList.compress();
+        out.writeLong(termPosition);
+        out.writeLong(postingPosition);
+        out.writeInt(postings[i].length);
+        out.writeInt(postingList.size());
+        termPosition += 4 + terms[i].length;
+        postingPosition += postings[i].length;
+      }
+
+      for (int i = 0; i < songCount; ++i) {
+        out.writeInt(backEnd.isRemoved(i) ? 0 : backEnd.song(i).getYearPublished());
+        out.writeInt(titles[i].length);
+        out.write(titles[i]);
+        out.writeInt(artists[i].length);
+        out.write(artists[i]);
+      }
+      for (byte[] term : terms) {
+        out.writeInt(term.length);
+        out.write(term);
+      }
+      for (byte[] posting : postings) {
+        out.write(posting);
+      }
+      out.flush();
+      file.getChannel().force(true);
+    }
+    Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * This method binary searches the term index for the passed word
+   *
+   * @param titleWord - the word to be found
+   * @return the file offset of the term index entry of the word or -1 if it is not in the snapshot
+   */
+  private long findTerm(String titleWord) {
+    byte[] key = titleWord.getBytes(StandardCharsets.UTF_8);
+    int low = 0;
+    int high = termCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      long entry = termIndexOffset + (long) middle * TERM_ENTRY_SIZE;
+      long termOffset = termDataOffset + file.getLong(entry);
+      int comparison = file.compareUnsigned(termOffset + 4, file.getInt(termOffset), key);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * This method decodes the posting list of the passed word from the mapped file
+   *
+   * @param titleWord - the word whose posting list is decoded
+   * @return the IDs of the songs containing the word or null if the word is not in the snapshot
+   */
+  private int[] postingsFor(String titleWord) {
+    String term = tokenizer.normalize(titleWord);
+    long entry = term == null ? -1 : findTerm(term);
+    if (entry < 0) {
+      return null;
+    }
+    long position = postingDataOffset + file.getLong(entry + 8);
+    int[] songIds = new int[file.getInt(entry + 20)];
+    int previous = 0;
+    for (int i = 0; i < songIds.length; ++i) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = file.getByte(position++);
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      previous += delta;
+      songIds[i] = previous;
+    }
+    return songIds;
+  }
+
+  /**
+   * This method returns the file offset of the record of a song
+   *
+   * @param songId - the ID of the song
+   * @return the offset of the song record
+   */
+  private long songRecord(int songId) {
+    return songDataOffset + file.getLong(songIndexOffset + 8L * songId);
+  }
+
+  /**
+   * This method reads the title of a song record
+   *
+   * @param record - the offset of the song record
+   * @return the title of the song
+   */
+  private String title(long record) {
+    return file.getString(record + 8, file.getInt(record + 4));
+  }
+
+  /**
+   * This method reads the artist of a song record
+   *
+   * @param record - the offset of the song record
+   * @return the artist of the song
+   */
+  private String artist(long record) {
+    long artistOffset = record + 8 + file.getInt(record + 4);
+    return file.getString(artistOffset + 4, file.getInt(artistOffset));
+  }
+
+  /**
+   * A snapshot is read-only, songs can not be added to it
+   *
+   * @param song - the song which can not be added
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void addSong(SongDataInterface song) {
+    throw new UnsupportedOperationException("a mapped snapshot is read-only");
+  }
+
+  /**
+   * This method is responsible for checking whether a song is in the snapshot or not
+   *
+   * @param song - the song whose existence is being checked
+   * @return true if a song with the same title, artist and year is present and false otherwise
+   */
+  @Override
+  public boolean containsSong(SongDataInterface song) {
+    String titleWord = tokenizer.firstTerm(song.getTitle());
+    int[] songIds = titleWord == null ? null : postingsFor(titleWord);
+    if (songIds != null) {
+      for (int songId : songIds) {
+        long record = songRecord(songId);
+        if (file.getInt(record) == song.getYearPublished() && title(record).equals(song.getTitle())
+            && artist(record).equals(song.getArtist())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * This method is responsible for returning all the songs which contain the passed word
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return list of songs which contain the passed word or null if the word is not found
+   */
+  @Override
+  public List<String> findTitles(String titleWord) {
+    int[] songIds = postingsFor(titleWord);
+    if (songIds == null) {
+      return null;
+    }
+    List<String> songTitles = new LinkedList<String>();
+    for (int songId : songIds) {
+      songTitles.add(title(songRecord(songId)));
+    }
+    return songTitles;
+  }
+
+  /**
+   * This method is responsible for returning all the artists who have songs whose names contain the
+   * passed word
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return list of artists whose songs contain the passed word or null if the word is not found
+   */
+  @Override
+  public List<String> findArtists(String titleWord) {
+    int[] songIds = postingsFor(titleWord);
+    if (songIds == null) {
+      return null;
+    }
+    List<String> songArtists = new LinkedList<String>();
+    OpenAddressingMap<String, Boolean> seenArtists = new OpenAddressingMap<>();
+    for (int songId : songIds) {
+      String artist = artist(songRecord(songId));
+      if (seenArtists.put(artist, Boolean.TRUE)) {
+        songArtists.add(artist);
+      }
+    }
+    return songArtists;
+  }
+
+  /**
+   * This method is responsible for returning the number of songs which contain the passed word in
+   * their title and were released in the passed year
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @param year      - the year we are looking for the songs to be published in
+   * @return the number of songs which contain the passed word in their title and were released in
+   *         the passed year
+   */
+  @Override
+  public int findNumberOfSongsInYear(String titleWord, int year) {
+    int[] songIds = postingsFor(titleWord);
+    int totalSongs = 0;
+    if (songIds != null) {
+      for (int songId : songIds) {
+        if (file.getInt(songRecord(songId)) == year) {
+          totalSongs += 1;
+        }
+      }
+    }
+    return totalSongs;
+  }
+
+  /**
+   * This class maps a whole file as a list of read-only segments, since a single mapping can not
+   * be larger than 2 GB. Values which straddle two segments are assembled byte by byte
+   */
+  private static class MappedFile {
+    private static final int SEGMENT_BITS = 30;   // segments of 1 GB
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    final long length;                      // length of the file in bytes
+    private final MappedByteBuffer[] segments;
+
+    MappedFile(File file) throws IOException {
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+        FileChannel channel = randomAccessFile.getChannel();
+        length = channel.size();
+        segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; ++i) {
+          long start = (long) i << SEGMENT_BITS;
+          segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+              Math.min(SEGMENT_MASK + 1, length - start));
+        }
+      }
+    }
+
+    byte getByte(long position) {
+      return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK));
+    }
+
+    int getInt(long position) {
+      int offset = (int) (position & SEGMENT_MASK);
+      if (offset <= SEGMENT_MASK - 3) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getInt(offset);
+      }
+      int value = 0;
+      for (int i = 0; i < 4; ++i) {
+        value = (value << 8) | (getByte(position + i) & 0xFF);
+      }
+      return value;
+    }
+
+    long getLong(long position) {
+      return ((long) getInt(position) << 32) | (getInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    byte[] getBytes(long position, int length) {
+      byte[] bytes = new byte[length];
+      int offset = (int) (position & SEGMENT_MASK);
+      if (offset + (long) length <= SEGMENT_MASK + 1) {
+        segments[(int) (position >>> SEGMENT_BITS)].get(offset, bytes);
+      } else {
+        for (int i = 0; i < length; ++i) {
+          bytes[i] = getByte(position + i);
+        }
+      }
+      return bytes;
+    }
+
+    String getString(long position, int length) {
+      return new String(getBytes(position, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This method compares bytes of the file with a key, byte by byte as unsigned values
+     */
+    int compareUnsigned(long position, int length, byte[] key) {
+      int common = Math.min(length, key.length);
+      for (int i = 0; i < common; ++i) {
+        int comparison = (getByte(position + i) & 0xFF) - (key[i] & 0xFF);
+        if (comparison != 0) {
+          return comparison;
+        }
+      }
+      return length - key.length;
+    }
+  }
+}
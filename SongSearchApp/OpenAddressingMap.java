@@ -0,0 +1,342 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements the MapADT interface with an open addressing (linear probing) hash table.
+ * Keys, values and the spread hash codes of the keys are stored in flat parallel arrays, so an
+ * entry does not need a chain node or a Node object of its own
+ */
+public class OpenAddressingMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+  private static final int DEFAULT_CAPACITY = 16;   // default number of slots in the table
+  private static final int MAX_LOAD_PERCENT = 75;   // load factor at which the table is doubled
+
+  private Object[] keys;      // keys stored in the table, null marks an empty slot
+  private Object[] values;    // values stored at the same slot as their keys
+  private int[] hashes;       // spread hash codes of the keys, kept so that probing and resizing
+                              // do not have to call hashCode() again
+  private int mask;           // capacity - 1, the capacity is always a power of two
+  private int resizeThreshold;  // number of elements at which the table is doubled
+  private int tableSize = 0;  // number of elements currently in the table
+  private long resizeCount = 0;   // number of times the table was doubled
+  private long resizeNanos = 0;   // time spent doubling the table
+
+  /**
+   * The default constructor which creates a table with the default capacity
+   */
+  public OpenAddressingMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor which creates a table large enough to hold the passed number of elements without
+   * resizing
+   *
+   * @param capacity - the number of elements expected to be stored in the table
+   */
+  public OpenAddressingMap(int capacity) {
+    allocate(slotsFor(capacity));
+  }
+
+  /**
+   * This method computes the number of slots (a power of two) needed to store the passed number
+   * of elements below the maximum load factor
+   *
+   * @param expectedSize - the number of elements to be stored
+   * @return the number of slots for the table
+   */
+  private static int slotsFor(int expectedSize) {
+    long needed = Math.max(2L, ((long) expectedSize * 100) / MAX_LOAD_PERCENT + 1);
+    int slots = 2;
+    while (slots < needed && slots < (1 << 30)) {
+      slots <<= 1;
+    }
+    return slots;
+  }
+
+  /**
+   * This method creates empty arrays with the passed number of slots
+   *
+   * @param slots - the number of slots, a power of two
+   */
+  private void allocate(int slots) {
+    keys = new Object[slots];
+    values = new Object[slots];
+    hashes = new int[slots];
+    mask = slots - 1;
+    resizeThreshold = (int) (((long) slots * MAX_LOAD_PERCENT) / 100);
+  }
+
+  /**
+   * This method spreads the bits of a hash code (the murmur3 finalizer) so that keys whose hash
+   * codes only differ in the high bits do not all end up in the same run of slots. Unlike
+   * Math.abs(hashCode()) this never produces a negative value for Integer.MIN_VALUE because the
+   * result is only ever used through the table mask
+   *
+   * @param key - the key to be hashed
+   * @return the spread hash code of the key
+   */
+  static int spread(Object key) {
+    return spread(key.hashCode());
+  }
+
+  /**
+   * This method spreads the bits of a hash code, see spread(Object)
+   *
+   * @param h - the hash code
+   * @return the spread hash code
+   */
+  static int spread(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /**
+   * This method finds the slot which holds the passed key
+   *
+   * @param key - the key to be found
+   * @param hash - the spread hash code of the key
+   * @return the slot of the key or -1 if the key is not in the table
+   */
+  private int findSlot(Object key, int hash) {
+    int slot = hash & mask;
+    // probing continues until an empty slot is found, since an entry is never stored after an
+    // empty slot of its probe sequence (remove() shifts entries back to keep this true)
+    while (keys[slot] != null) {
+      if (hashes[slot] == hash && keys[slot].equals(key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * This method is responsible for adding the key-value pair to the table. If the load factor of
+   * the table is crossed, the table is doubled before the pair is inserted
+   *
+   * @param key - the key to be added to the table
+   * @param value - the value to be added to the table
+   * @return true if the key-value pair is inserted successfully and false if the key is null or
+   *         already present
+   */
+  @Override
+  public boolean put(KeyType key, ValueType value) {
+    if (key == null) {
+      return false;
+    }
+
+    int hash = spread(key);
+    int slot = hash & mask;
+    // walking the probe sequence until either the key or an empty slot is found
+    while (keys[slot] != null) {
+      if (hashes[slot] == hash && keys[slot].equals(key)) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keys[slot] = key;
+    values[slot] = value;
+    hashes[slot] = hash;
+    tableSize += 1;
+
+    if (tableSize > resizeThreshold) {
+      resize(keys.length << 1);
+    }
+    return true;
+  }
+
+  /**
+   * This method moves every entry into a new set of arrays with the passed number of slots. The
+   * stored hash codes are reused, so no key is hashed again
+   *
+   * @param slots - the new number of slots, a power of two
+   */
+  private void resize(int slots) {
+    long start = System.nanoTime();
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+    allocate(slots);
+
+    for (int i = 0; i < oldKeys.length; ++i) {
+      if (oldKeys[i] != null) {
+        int slot = oldHashes[i] & mask;
+        while (keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+        hashes[slot] = oldHashes[i];
+      }
+    }
+    resizeCount += 1;
+    resizeNanos += System.nanoTime() - start;
+  }
+
+  /**
+   * This method grows the table so that the passed number of elements fits below the maximum load
+   * factor, with a single resize instead of repeated doubling
+   *
+   * @param expectedSize - the number of elements the table should hold
+   */
+  @Override
+  public void ensureCapacity(int expectedSize) {
+    int slots = slotsFor(expectedSize);
+    if (slots > keys.length) {
+      resize(slots);
+    }
+  }
+
+  /**
+   * This method shrinks the table to the fewest slots which hold its elements at half the maximum
+   * load factor, so a table which lost most of its elements gives back its arrays
+   */
+  @Override
+  public void trimToSize() {
+    int slots = Math.max(DEFAULT_CAPACITY, slotsFor(tableSize * 2));
+    if (slots < keys.length) {
+      resize(slots);
+    }
+  }
+
+  /**
+   * This method returns a value using the corresponding key as input. If the key is null or a
+   * value does not exist for the key, NoSuchElementException is thrown
+   *
+   * @param key - the key used to retrieve the value
+   * @return the value corresponding to the passed key
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    if (key == null) {
+      throw new NoSuchElementException();
+    }
+    int slot = findSlot(key, spread(key));
+    if (slot < 0) {
+      throw new NoSuchElementException();
+    }
+    return (ValueType) values[slot];
+  }
+
+  /**
+   * This method returns the value of the passed key, or null when the key is not in the table.
+   * It lets callers avoid a separate containsKey() call before get()
+   *
+   * @param key - the key used to retrieve the value
+   * @return the value corresponding to the passed key or null if it does not exist
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType getOrNull(KeyType key) {
+    if (key == null) {
+      return null;
+    }
+    int slot = findSlot(key, spread(key));
+    return slot < 0 ? null : (ValueType) values[slot];
+  }
+
+  /**
+   * This method returns the number of key-value pairs currently stored in the table
+   *
+   * @return the number of key-value pairs currently in the table
+   */
+  @Override
+  public int size() {
+    return tableSize;
+  }
+
+  /**
+   * This method checks whether a key passed as input exists in the table or not
+   *
+   * @param key - the key to be checked
+   * @return true if the key is found and false otherwise
+   */
+  @Override
+  public boolean containsKey(KeyType key) {
+    return key != null && findSlot(key, spread(key)) >= 0;
+  }
+
+  /**
+   * This method takes a key and removes and returns the value corresponding to that key. The
+   * entries following the removed one in its probe run are shifted back, so no tombstones are
+   * left behind in the table
+   *
+   * @param key - the key whose corresponding value ought to be removed
+   * @return the value corresponding to the passed key or otherwise null if the key can not be
+   *         found or can not be searched
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType remove(KeyType key) {
+    if (key == null) {
+      return null;
+    }
+    int slot = findSlot(key, spread(key));
+    if (slot < 0) {
+      return null;
+    }
+    ValueType value = (ValueType) values[slot];
+    tableSize -= 1;
+
+    // backward shift deletion: every following entry of the run which would become unreachable
+    // because of the new empty slot is moved into that slot
+    int empty = slot;
+    int next = (slot + 1) & mask;
+    while (keys[next] != null) {
+      int home = hashes[next] & mask;
+      // the entry at next may move to the empty slot only if its home slot does not lie
+      // cyclically in (empty, next]
+      if (((next - home) & mask) >= ((next - empty) & mask)) {
+        keys[empty] = keys[next];
+        values[empty] = values[next];
+        hashes[empty] = hashes[next];
+        empty = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[empty] = null;
+    values[empty] = null;
+    return value;
+  }
+
+  /**
+   * This method returns statistics of the table: the number of entries at each probe length (the
+   * number of slots a successful lookup inspects, 1 for an entry in its home slot) and the resizes
+   * so far. The entries are counted when this method is called, so keeping the statistics costs
+   * put() and get() nothing
+   *
+   * @return the statistics of the table
+   */
+  @Override
+  public MapStats stats() {
+    long[] probeLengths = new long[2];
+    for (int slot = 0; slot < keys.length; ++slot) {
+      if (keys[slot] != null) {
+        int length = ((slot - hashes[slot]) & mask) + 1;
+        if (length >= probeLengths.length) {
+          probeLengths = Arrays.copyOf(probeLengths, length * 2);
+        }
+        probeLengths[length] += 1;
+      }
+    }
+    return new MapStats(tableSize, keys.length, "probe length", probeLengths, resizeCount,
+        resizeNanos);
+  }
+
+  /**
+   * This method clears the table by reseting the number of elements to zero and emptying every
+   * slot, the capacity of the table is kept
+   */
+  @Override
+  public void clear() {
+    tableSize = 0;
+    Arrays.fill(keys, null);
+    Arrays.fill(values, null);
+  }
+}
@@ -0,0 +1,429 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class stores the IDs of the songs which contain a title word as a sorted, growable int
+ * array. Song IDs are handed out in increasing order as songs are added, so appending keeps the
+ * list sorted without any extra work. The back end also keeps the number of songs of the word per
+ * publication year and per artist next to the IDs, and the impact of the word on every song: how
+ * well the word describes the song, quantized to a byte (1 to 255, 0 if unknown), which ranked
+ * searches visit in descending order
+ */
+class PostingList {
+  private int[] songIds;  // IDs of the songs in ascending order
+  private byte[] impacts; // impact of the word on every song, at the position of the song's ID
+  private int size = 0;   // number of IDs currently stored
+  private int removed = 0;  // number of stored IDs whose songs were removed from the back end
+  private int[] impactOrder;  // positions of the IDs by descending impact, built lazily by
+                              // impactOrder() (null when stale)
+  private final YearHistogram years = new YearHistogram();  // songs of the word per year
+  private final ArtistCounts artists = new ArtistCounts();  // songs of the word per artist
+
+  /**
+   * Constructor which creates an empty posting list
+   */
+  public PostingList() {
+    songIds = new int[2];
+    impacts = new byte[2];
+  }
+
+  /**
+   * Constructor which creates a posting list holding the passed sorted IDs
+   *
+   * @param songIds - the song IDs in ascending order, the array is taken over by the list
+   * @param size    - the number of valid IDs in the array
+   */
+  PostingList(int[] songIds, int size) {
+    this.songIds = songIds;
+    this.impacts = new byte[songIds.length];
+    this.size = size;
+  }
+
+  /**
+   * This method appends a song ID to the list. IDs must be added in ascending order, adding the
+   * last ID again (a word repeated in one title) is ignored
+   *
+   * @param songId - the ID of the song to be added
+   * @return true if the ID was added and false if it was already the last ID of the list
+   */
+  public boolean add(int songId) {
+    return add(songId, 0);
+  }
+
+  /**
+   * This method appends a song ID to the list together with the impact of the word on the song.
+   * IDs must be added in ascending order, adding the last ID again is ignored
+   *
+   * @param songId - the ID of the song to be added
+   * @param impact - the impact of the word on the song, between 0 and 255
+   * @return true if the ID was added and false if it was already the last ID of the list
+   */
+  boolean add(int songId, int impact) {
+    if (size > 0 && songIds[size - 1] == songId) {
+      return false;
+    }
+    if (size == songIds.length) {
+      songIds = Arrays.copyOf(songIds, size + (size >> 1) + 1);
+      impacts = Arrays.copyOf(impacts, songIds.length);
+    }
+    impacts[size] = (byte) impact;
+    songIds[size++] = songId;
+    impactOrder = null;
+    return true;
+  }
+
+  /**
+   * This method appends a batch of song IDs with the impacts of the word on them, growing the list
+   * at most once. The IDs must be ascending and larger than the IDs of this list. The year and
+   * artist counts are left to the caller
+   *
+   * @param songIds - the song IDs to be appended
+   * @param impacts - the impact of the word on every song, at the position of its ID
+   * @param count   - the number of valid entries of the arrays
+   */
+  void addAll(int[] songIds, byte[] impacts, int count) {
+    if (size + count > this.songIds.length) {
+      this.songIds = Arrays.copyOf(this.songIds, Math.max(size + count, size + (size >> 1)));
+      this.impacts = Arrays.copyOf(this.impacts, this.songIds.length);
+    }
+    System.arraycopy(songIds, 0, this.songIds, size, count);
+    System.arraycopy(impacts, 0, this.impacts, size, count);
+    size += count;
+    impactOrder = null;
+  }
+
+  /**
+   * This method appends all the IDs of another posting list, shifted by the passed offset, and adds
+   * its year and artist counts to this one. The shifted IDs must all be larger than the IDs of
+   * this list
+   *
+   * @param other           - the posting list whose IDs are appended
+   * @param offset          - the value added to every appended ID
+   * @param remappedArtists - the artist ID in this back end of every artist ID of the other list
+   */
+  public void addAll(PostingList other, int offset, int[] remappedArtists) {
+    if (size + other.size > songIds.length) {
+      songIds = Arrays.copyOf(songIds, Math.max(size + other.size, size + (size >> 1)));
+      impacts = Arrays.copyOf(impacts, songIds.length);
+    }
+    System.arraycopy(other.impacts, 0, impacts, size, other.size);
+    for (int i = 0; i < other.size; ++i) {
+      songIds[size++] = other.songIds[i] + offset;
+    }
+    removed += other.removed;
+    impactOrder = null;
+    years.addAll(other.years);
+    artists.addAll(other.artists, remappedArtists);
+  }
+
+  /**
+   * This method returns the song ID at the passed position of the list
+   *
+   * @param index - the position in the list
+   * @return the song ID at that position
+   */
+  public int get(int index) {
+    return songIds[index];
+  }
+
+  /**
+   * This method returns the impact of the word on the song at the passed position of the list
+   *
+   * @param index - the position in the list
+   * @return the impact, between 0 and 255
+   */
+  int impact(int index) {
+    return impacts[index] & 0xFF;
+  }
+
+  /**
+   * This method returns the positions of the list ordered by descending impact, positions of
+   * equal impact in ascending order (and so by ascending song ID). The order is built by a
+   * counting sort over the 256 impact values the first time it is needed after the list changed,
+   * and kept until the list changes again
+   *
+   * @return the positions by descending impact, which must not be modified by the caller
+   */
+  synchronized int[] impactOrder() {
+    if (impactOrder == null) {
+      int[] start = new int[257];
+      for (int i = 0; i < size; ++i) {
+        start[256 - (impacts[i] & 0xFF)] += 1;
+      }
+      for (int impact = 1; impact <= 256; ++impact) {
+        start[impact] += start[impact - 1];
+      }
+      int[] order = new int[size];
+      for (int i = 0; i < size; ++i) {
+        order[start[255 - (impacts[i] & 0xFF)]++] = i;
+      }
+      impactOrder = order;
+    }
+    return impactOrder;
+  }
+
+  /**
+   * This method returns the number of song IDs in the list
+   *
+   * @return the number of song IDs
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * This method records that the song of one of the IDs of the list was removed from the back
+   * end. The ID stays in the list until removeAll() is called, readers skip it meanwhile
+   */
+  void markRemoved() {
+    removed += 1;
+  }
+
+  /**
+   * This method returns the number of IDs of the list whose songs were removed
+   *
+   * @return the number of removed IDs
+   */
+  int removedCount() {
+    return removed;
+  }
+
+  /**
+   * This method returns the number of IDs of the list whose songs were not removed
+   *
+   * @return the number of live IDs
+   */
+  int liveSize() {
+    return size - removed;
+  }
+
+  /**
+   * This method drops the IDs of removed songs from the list, together with their impacts, and
+   * builds the artist counts again from the remaining songs, so the artists are in the order of
+   * their first remaining song. The arrays are shrunk when the list has lost most of its IDs
+   *
+   * @param removedSongs - the IDs of all removed songs
+   * @param artistOf     - returns the artist ID of a song ID
+   */
+  void removeAll(BitSet removedSongs, IntUnaryOperator artistOf) {
+    int kept = 0;
+    for (int i = 0; i < size; ++i) {
+      if (!removedSongs.get(songIds[i])) {
+        impacts[kept] = impacts[i];
+        songIds[kept++] = songIds[i];
+      }
+    }
+    size = kept;
+    removed = 0;
+    if (size < songIds.length / 4) {
+      songIds = Arrays.copyOf(songIds, Math.max(2, size));
+      impacts = Arrays.copyOf(impacts, songIds.length);
+    }
+    impactOrder = null;
+    artists.clear();
+    for (int i = 0; i < size; ++i) {
+      artists.add(artistOf.applyAsInt(songIds[i]), 1);
+    }
+  }
+
+  /**
+   * This method returns a copy of the IDs and impacts of the list without the IDs of removed
+   * songs. The year and artist counts are not copied
+   *
+   * @param removedSongs - the IDs of all removed songs
+   * @return the copy
+   */
+  PostingList without(BitSet removedSongs) {
+    PostingList copy = new PostingList(new int[Math.max(2, liveSize())], 0);
+    for (int i = 0; i < size; ++i) {
+      if (!removedSongs.get(songIds[i])) {
+        copy.impacts[copy.size] = impacts[i];
+        copy.songIds[copy.size++] = songIds[i];
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * This method returns the number of songs of the word per publication year, which the back end
+   * keeps up to date as it adds songs
+   *
+   * @return the year histogram of the word
+   */
+  YearHistogram years() {
+    return years;
+  }
+
+  /**
+   * This method returns the distinct artists of the word with their number of songs, which the
+   * back end keeps up to date as it adds songs
+   *
+   * @return the artist counts of the word
+   */
+  ArtistCounts artists() {
+    return artists;
+  }
+
+  /**
+   * This method returns the backing array of the list. Only the first size() entries are valid and
+   * the array must not be modified by the caller
+   *
+   * @return the backing array of song IDs
+   */
+  int[] array() {
+    return songIds;
+  }
+
+  /**
+   * This method finds the first position of a sorted array at or after start whose value is at
+   * least the passed target. It gallops (doubles its step) from start before binary searching, so
+   * skipping far ahead in a long list costs only a logarithmic number of comparisons
+   *
+   * @param ids    - the sorted array
+   * @param start  - the position the search starts at
+   * @param size   - the number of valid entries of the array
+   * @param target - the value searched for
+   * @return the first position whose value is at least target, or size if there is none
+   */
+  static int gallop(int[] ids, int start, int size, int target) {
+    int step = 1;
+    int low = start;
+    int high = start;
+    // doubling the step until the target is passed gives a range which contains the position
+    while (high < size && ids[high] < target) {
+      low = high + 1;
+      high = start + step;
+      step <<= 1;
+    }
+    high = Math.min(high, size);
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (ids[middle] < target) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * This method returns the IDs of a sorted array which are also in this list. The candidates
+   * should be the shorter of the two, every candidate then costs one gallop through this list
+   *
+   * @param candidates - the sorted IDs to be intersected with this list
+   * @param count      - the number of valid entries of the candidates array
+   * @return the IDs which are in both, in ascending order
+   */
+  int[] intersect(int[] candidates, int count) {
+    int[] result = new int[Math.min(count, size)];
+    int found = 0;
+    int position = 0;
+    for (int i = 0; i < count && position < size; ++i) {
+      position = gallop(songIds, position, size, candidates[i]);
+      if (position < size && songIds[position] == candidates[i]) {
+        result[found++] = candidates[i];
+      }
+    }
+    return Arrays.copyOf(result, found);
+  }
+
+  /**
+   * This method returns the IDs of a sorted array which are not in this list
+   *
+   * @param candidates - the sorted IDs from which the IDs of this list are removed
+   * @param count      - the number of valid entries of the candidates array
+   * @return the remaining IDs, in ascending order
+   */
+  int[] subtractFrom(int[] candidates, int count) {
+    int[] result = new int[count];
+    int found = 0;
+    int position = 0;
+    for (int i = 0; i < count; ++i) {
+      position = gallop(songIds, position, size, candidates[i]);
+      if (position == size || songIds[position] != candidates[i]) {
+        result[found++] = candidates[i];
+      }
+    }
+    return Arrays.copyOf(result, found);
+  }
+
+  /**
+   * This method merges two sorted arrays of IDs, keeping IDs which are in both only once
+   *
+   * @param first  - the first sorted array
+   * @param second - the second sorted array
+   * @return the IDs which are in either array, in ascending order
+   */
+  static int[] union(int[] first, int[] second) {
+    int[] result = new int[first.length + second.length];
+    int i = 0;
+    int j = 0;
+    int found = 0;
+    while (i < first.length && j < second.length) {
+      if (first[i] < second[j]) {
+        result[found++] = first[i++];
+      } else if (first[i] > second[j]) {
+        result[found++] = second[j++];
+      } else {
+        result[found++] = first[i++];
+        j += 1;
+      }
+    }
+    while (i < first.length) {
+      result[found++] = first[i++];
+    }
+    while (j < second.length) {
+      result[found++] = second[j++];
+    }
+    return Arrays.copyOf(result, found);
+  }
+
+  /**
+   * This method encodes the list as the differences between consecutive IDs, each written as a
+   * variable length integer (7 bits per byte), which usually takes one or two bytes per song. The
+   * impacts are not encoded
+   *
+   * @return the compressed posting list
+   */
+  public byte[] compress() {
+    byte[] buffer = new byte[size * 5];
+    int length = 0;
+    int previous = 0;
+    for (int i = 0; i < size; ++i) {
+      int delta = songIds[i] - previous;
+      previous = songIds[i];
+      while ((delta & ~0x7F) != 0) {
+        buffer[length++] = (byte) ((delta & 0x7F) | 0x80);
+        delta >>>= 7;
+      }
+      buffer[length++] = (byte) delta;
+    }
+    return Arrays.copyOf(buffer, length);
+  }
+
+  /**
+   * This method decodes a posting list written by compress()
+   *
+   * @param compressed - the compressed posting list
+   * @return the decoded posting list
+   */
+  public static PostingList decompress(byte[] compressed) {
+    PostingList list = new PostingList();
+    int previous = 0;
+    for (int position = 0; position < compressed.length;) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = compressed[position++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      previous += delta;
+      list.add(previous);
+    }
+    return list;
+  }
+}
@@ -0,0 +1,49 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds one page of ranked search results together with the cursor which continues the
+ * search after the last result of the page
+ */
+public class RankedPage {
+  private final List<String> titles;   // the titles of the page, best ranked first
+  private final String nextCursor;     // continues after the last title, null on the last page
+
+  /**
+   * Constructor which creates a page
+   *
+   * @param titles     - the titles of the page, best ranked first
+   * @param nextCursor - the cursor of the next page, or null if this is the last page
+   */
+  RankedPage(List<String> titles, String nextCursor) {
+    this.titles = Collections.unmodifiableList(titles);
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * This method returns the titles of the page
+   *
+   * @return the titles, best ranked first
+   */
+  public List<String> getTitles() {
+    return titles;
+  }
+
+  /**
+   * This method returns the cursor which is passed to the search to get the next page
+   *
+   * @return the cursor, or null if this is the last page
+   */
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  /**
+   * This method checks whether there is a page after this one
+   *
+   * @return true if there are more results
+   */
+  public boolean hasNext() {
+    return nextCursor != null;
+  }
+}
@@ -1,13 +1,43 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 // interface (implemented with proposal)
 
 interface SearchBackEndInterface {
   public void addSong(SongDataInterface song);
 
+  // adds several songs at once. Back ends without a bulk path add them one by one
+  public default void addSongs(Collection<? extends SongDataInterface> songs) {
+    for (SongDataInterface song : songs) {
+      addSong(song);
+    }
+  }
+
   public boolean containsSong(SongDataInterface song);
 
+  // removes one song equal to the passed one, returns false if there is none. Back ends which can
+  // only grow throw UnsupportedOperationException
+  public default boolean removeSong(SongDataInterface song) {
+    throw new UnsupportedOperationException("songs can not be removed from this back end");
+  }
+
+  // replaces one song equal to oldSong by newSong, for example to correct its metadata. Returns
+  // false and adds nothing if there is no song equal to oldSong
+  public default boolean updateSong(SongDataInterface oldSong, SongDataInterface newSong) {
+    if (!removeSong(oldSong)) {
+      return false;
+    }
+    addSong(newSong);
+    return true;
+  }
+
   // returns list of the titles of all songs that contain the word titleWord in their song title
   public List<String> findTitles(String titleWord);
 
@@ -17,6 +47,35 @@ interface SearchBackEndInterface {
   // returns the number of songs that contain the word titleWord in their song title, and were
   // published in year
   public int findNumberOfSongsInYear(String titleWord, int year);
+
+  // returns list of the titles of all songs matching a query of several title words combined with
+  // AND, OR and NOT (see BooleanQuery). Back ends without posting lists look every word up on its
+  // own and combine the titles, which returns every distinct title once
+  public default List<String> findTitlesMatching(String query) {
+    return BooleanQuery.evaluateByTitles(this, query);
+  }
+
+  // returns the number of songs that contain the word titleWord in their song title, and were
+  // published between fromYear and toYear (both inclusive)
+  public default int findNumberOfSongsInYearRange(String titleWord, int fromYear, int toYear) {
+    int totalSongs = 0;
+    for (int year = fromYear; year <= toYear && year >= fromYear; ++year) {
+      totalSongs += findNumberOfSongsInYear(titleWord, year);
+    }
+    return totalSongs;
+  }
+
+  // returns one page of the list returned by findArtists(titleWord): at most limit artists,
+  // starting with the artist at position offset, or null if the word is not found
+  public default List<String> findArtists(String titleWord, int offset, int limit) {
+    List<String> songArtists = findArtists(titleWord);
+    if (songArtists == null) {
+      return null;
+    }
+    int from = Math.min(Math.max(offset, 0), songArtists.size());
+    int to = (int) Math.min((long) from + Math.max(limit, 0), songArtists.size());
+    return new LinkedList<String>(songArtists.subList(from, to));
+  }
 }
 
 // public class (implemented primarilly in final app week)
@@ -29,8 +88,67 @@ interface SearchBackEndInterface {
 public class SearchBackEnd implements SearchBackEndInterface {
 
   // creating a hash table which implements the MapADT interface so as to store the words part of a
-  // song title and the corresponding list of songs
-  private MapADT<String, List<SongDataInterface>> hashTableArray;
+  // song title and the sorted list of IDs of the songs containing that word
+  private MapADT<String, PostingList> hashTableArray;
+
+  // every song is stored once in this columnar store, which also gives every distinct artist an
+  // int ID so that the artists of a word can be counted per ID. The position of a song in the
+  // store is its ID
+  private ColumnarSongStore songs;
+  private int songCount = 0;    // number of songs in the song store
+
+  // every word stored as a key in the hash table, in the order the words were first added, so
+  // that the words of the back end can be enumerated
+  private String[] terms = new String[16];
+  private int termCount = 0;    // number of words in the terms array
+
+  // identity index of the songs: every identity (normalized title, artist and year) is stored
+  // once, as key and value, and holds the ID of its first stored song; the other stored songs of
+  // the same identity are chained from it through sameIdentity, which ends with -1. Only songs
+  // which were not removed are in the index, and songKeys holds the identity of every such song
+  // by its ID. The stored keys hold no title, it is read from the song store when needed
+  private MapADT<SongKey, SongKey> identities;
+  private int[] sameIdentity = new int[16];
+  private SongKey[] songKeys = new SongKey[16];
+  private boolean rejectDuplicates = false;   // whether songs of a stored identity are dropped
+  private long rejectedDuplicates = 0;        // number of songs dropped as duplicates
+
+  // splits titles into the words used as keys, query words are normalized by it as well
+  private final TitleTokenizer tokenizer;
+
+  // sorted dictionary of the words, used for prefix searches since the hash table only finds
+  // exact words. It holds the first sortedTermCount words of the terms array; the words added
+  // after it was built are kept in the small sorted pendingTerms array until there are enough of
+  // them to make rebuilding the dictionary worthwhile
+  private volatile FrontCodedTermIndex sortedTerms = new FrontCodedTermIndex(new String[0], 0);
+  private int sortedTermCount = 0;
+  private String[] pendingTerms = new String[0];
+
+  // removed songs keep their IDs, which are marked in removedSongs so that every query skips them
+  // at once. The compactor drops them from the posting lists in steps (see compact()): a pass
+  // covers the songs of uncompactedSongs which were removed before it started (compactingSongs,
+  // null between passes) and is done with them once every list was rewritten. The song store
+  // keeps their records, which take up a few bytes each, so that song IDs never change
+  private final BitSet removedSongs = new BitSet();
+  private int removedCount = 0;   // number of removed songs
+  private final BitSet uncompactedSongs = new BitSet();
+  private BitSet compactingSongs;
+  private int compactionCursor = 0;   // position in the terms array of the next list to compact
+  private volatile int uncompactedCount = 0;  // number of songs in uncompactedSongs, readable by
+                                              // a compactor thread without the lock
+
+  // publication years of the oldest and the newest song, which bound the recency of ranked results
+  private int oldestYear = Integer.MAX_VALUE;
+  private int newestYear = Integer.MIN_VALUE;
+
+  // parameters of the BM25 term frequency formula used for the impact of a word on a song: K1
+  // controls how quickly repeated words saturate, B how strongly long titles are penalized
+  private static final double BM25_K1 = 1.2;
+  private static final double BM25_B = 0.75;
+  private static final double AVERAGE_TITLE_WORDS = 4.0;   // typical number of words of a title
+
+  // number of songs addSongs() groups by word at a time, which bounds the memory of the grouping
+  private static final int BULK_BATCH_SONGS = 1 << 18;
 
   /**
    * Overloaded constructor method which creates an empty hash table with the help of the 
@@ -39,7 +157,51 @@ public class SearchBackEnd implements SearchBackEndInterface {
    * @param capacity - size of which the hash table is to be created
    */
   public SearchBackEnd(int capacity) {
-    hashTableArray = new HashtableMap<>(capacity);
+    this(capacity, MapEngine.CHAINED);
+  }
+
+  /**
+   * Overloaded constructor method which creates an empty hash table of the passed capacity with
+   * the passed hash table engine
+   * 
+   * @param capacity - size of which the hash table is to be created
+   * @param engine   - the MapADT implementation used for the hash table
+   */
+  public SearchBackEnd(int capacity, MapEngine engine) {
+    this(capacity, engine, TitleTokenizer.STANDARD);
+  }
+
+  /**
+   * Overloaded constructor method which creates an empty hash table of the passed capacity with
+   * the passed hash table engine and title tokenizer
+   * 
+   * @param capacity  - size of which the hash table is to be created
+   * @param engine    - the MapADT implementation used for the hash table
+   * @param tokenizer - splits titles into the words stored in the hash table and normalizes the
+   *                    words of queries
+   */
+  public SearchBackEnd(int capacity, MapEngine engine, TitleTokenizer tokenizer) {
+    this(capacity, engine, tokenizer, false);
+  }
+
+  /**
+   * Overloaded constructor method which creates an empty hash table of the passed capacity with
+   * the passed hash table engine and title tokenizer, and which may keep the titles of its songs
+   * outside of the heap
+   * 
+   * @param capacity  - size of which the hash table is to be created
+   * @param engine    - the MapADT implementation used for the hash table
+   * @param tokenizer - splits titles into the words stored in the hash table and normalizes the
+   *                    words of queries
+   * @param offHeap   - true to store the titles of the songs in direct buffers (see
+   *                    ColumnarSongStore)
+   */
+  public SearchBackEnd(int capacity, MapEngine engine, TitleTokenizer tokenizer,
+      boolean offHeap) {
+    hashTableArray = engine.create(capacity);
+    songs = new ColumnarSongStore(capacity, engine, offHeap);
+    identities = engine.create(capacity);
+    this.tokenizer = tokenizer;
   }
 
   /**
@@ -50,67 +212,1053 @@ public class SearchBackEnd implements SearchBackEndInterface {
    * @param capacity - size of which the hash table is to be created
    */
   public SearchBackEnd(int capacity, List<SongDataInterface> songsList) {
-    hashTableArray = new HashtableMap<>(capacity);
-    // iterating through the song list via a for-loop and adding each of the individual songs in
-    // hash table with the help of the addSong() method
-    for (int i = 0; i < songsList.size(); ++i) {
-      addSong(songsList.get(i));
-    }
+    this(capacity, songsList, MapEngine.CHAINED);
   }
 
   /**
-   * This method is responsible for adding songs to the hash table structure of the back end
+   * Overloaded constructor method so as to create a hash table of the passed size and engine which
+   * is loaded with the songs list passed as argument
    * 
+   * @param capacity  - size of which the hash table is to be created
+   * @param songsList - The list of songs to be added to the hash table
+   * @param engine    - the MapADT implementation used for the hash table
+   */
+  public SearchBackEnd(int capacity, List<SongDataInterface> songsList, MapEngine engine) {
+    this(capacity, engine);
+    // the songs are added with the bulk path, which groups their words before touching the hash
+    // table
+    addSongs(songsList);
+  }
+
+  /**
+   * This method is responsible for adding songs to the hash table structure of the back end. The
+   * song is copied once into the song store and its ID is appended to the posting list of every
+   * word of its title, the passed object is not kept. When duplicates are rejected (see
+   * setRejectDuplicates()), a song whose identity is already stored is dropped instead
+   *
    * @param song - The song to be added to the back end
    */
   @Override
   public void addSong(SongDataInterface song) {
-    // obtaining the individual words from the song title so as to be used as keys while
-    // inserting in the hash table
-    String[] titleWords = song.getTitle().split(" ");
-
-    // iterating through the keys (words of the song title) and checking if the given key already
-    // exists in the hash table or not
-    for (int i = 0; i < titleWords.length; ++i) {
-      // if the given key already exists, we append the song to the already existing song list
-      // corresponding to that key
-      if (hashTableArray.containsKey(titleWords[i])) {
-        hashTableArray.get(titleWords[i]).add(song);
-      }
-      // if the given key does not exist, we create a new song list corresponding to that key,
-      // add the song to the list, and insert the list in the hash table with the key
+    // the next free slot of the song store is used as the ID of the song
+    ensureSongCapacity(songCount + 1);
+    int songId = songCount;
+    ColumnarSongStore.checkYear(song.getYearPublished());
+    int artistId = songs.internArtist(song.getArtist());
+    List<String> titleWords = new ArrayList<String>();
+    tokenizer.tokenize(song.getTitle(), titleWords::add);
+    if (!addIdentity(songId, keyOf(song, artistId, titleWords), rejectDuplicates)) {
+      return;
+    }
+    int year = song.getYearPublished();
+    songs.add(song.getTitle(), artistId, year);
+    songCount += 1;
+
+    oldestYear = Math.min(oldestYear, year);
+    newestYear = Math.max(newestYear, year);
+
+    forEachTermOf(titleWords, (titleWord, impact) -> {
+      // if the given key already exists, we append the song ID to the already existing posting
+      // list corresponding to that key, which is found with a single lookup
+      PostingList existing = hashTableArray.getOrNull(titleWord);
+      if (existing != null) {
+        addPosting(existing, songId, impact, year, artistId);
+      }
+      // if the given key does not exist, we create a new posting list corresponding to that key,
+      // add the song ID to the list, and insert the list in the hash table with the key
       else {
-        List<SongDataInterface> chainedSongList = new LinkedList<SongDataInterface>();
-        chainedSongList.add(song);
-        hashTableArray.put(titleWords[i], chainedSongList);
+        PostingList postingList = new PostingList();
+        addPosting(postingList, songId, impact, year, artistId);
+        addTerm(titleWord, postingList);
       }
+    });
+  }
+
+  /**
+   * This method makes room in the arrays indexed by song ID for the passed number of songs, the
+   * song store grows on its own
+   *
+   * @param songs - the number of songs the arrays have to hold
+   */
+  private void ensureSongCapacity(int songs) {
+    if (songs > sameIdentity.length) {
+      int length = Math.max(sameIdentity.length * 2, songs);
+      sameIdentity = Arrays.copyOf(sameIdentity, length);
+      songKeys = Arrays.copyOf(songKeys, length);
     }
   }
 
   /**
-   * This method is responsible for checking whether a song is in the back end or not
+   * This method builds the identity of a song which is added or looked up
+   *
+   * @param song       - the song
+   * @param artistId   - the ID of the artist of the song
+   * @param titleWords - the words of the title of the song
+   * @return the identity of the song
+   */
+  private SongKey keyOf(SongDataInterface song, int artistId, List<String> titleWords) {
+    return new SongKey(normalizeTitle(song.getTitle(), titleWords), song.getArtist(), artistId,
+        song.getYearPublished());
+  }
+
+  /**
+   * This method enters a song in the identity index. A song whose identity is already stored is
+   * chained behind the first song of that identity, unless duplicates are rejected
+   *
+   * @param songId           - the ID the song gets
+   * @param key              - the identity of the song
+   * @param rejectDuplicates - whether a song whose identity is stored is rejected
+   * @return true if the song is entered and false if it is rejected as a duplicate
+   */
+  private boolean addIdentity(int songId, SongKey key, boolean rejectDuplicates) {
+    SongKey storedKey = identities.getOrNull(key);
+    if (storedKey == null) {
+      key.firstId = songId;
+      identities.put(key, key);
+      // from now on the title is read from the song store, which holds it once the song is added
+      key.title = null;
+      sameIdentity[songId] = -1;
+      songKeys[songId] = key;
+      return true;
+    }
+    if (rejectDuplicates) {
+      rejectedDuplicates += 1;
+      return false;
+    }
+    // the song is linked right behind the first song, so the first song stays where it is
+    sameIdentity[songId] = sameIdentity[storedKey.firstId];
+    sameIdentity[storedKey.firstId] = songId;
+    songKeys[songId] = storedKey;
+    return true;
+  }
+
+  /**
+   * This method takes a song out of the identity index
+   *
+   * @param songId - the ID of the song, which must be in the index
+   */
+  private void removeIdentity(int songId) {
+    SongKey key = songKeys[songId];
+    if (key.firstId == songId) {
+      // the next song of the chain, if any, becomes the first song of the identity
+      if (sameIdentity[songId] >= 0) {
+        key.firstId = sameIdentity[songId];
+      } else {
+        identities.remove(key);
+      }
+    } else {
+      int previousId = key.firstId;
+      while (sameIdentity[previousId] != songId) {
+        previousId = sameIdentity[previousId];
+      }
+      sameIdentity[previousId] = sameIdentity[songId];
+    }
+    songKeys[songId] = null;
+  }
+
+  /**
+   * This method switches the rejection of duplicates on or off. While it is on, addSong() and
+   * addSongs() drop every song whose identity (its normalized title, its artist and its year) is
+   * already stored, which costs them a single lookup in the identity index. Songs stored before
+   * it was switched on stay, and merge() keeps the duplicates of the merged back end. An
+   * updateSong() whose new song is rejected removes the old song without a replacement
+   *
+   * @param rejectDuplicates - true to drop duplicates
+   */
+  public void setRejectDuplicates(boolean rejectDuplicates) {
+    this.rejectDuplicates = rejectDuplicates;
+  }
+
+  public boolean isRejectDuplicates() {
+    return rejectDuplicates;
+  }
+
+  /**
+   * This method returns the number of songs dropped as duplicates so far
+   *
+   * @return the number of rejected songs
+   */
+  public long getRejectedDuplicates() {
+    return rejectedDuplicates;
+  }
+
+  /**
+   * This method passes every distinct word of a title once, together with the impact of the word
+   * on the song. The words are the normalized words of the title in the order the tokenizer
+   * passed them, which are used as keys of the hash table; the impact of a word on the song
+   * depends on how often it occurs and on the number of words of the title
+   *
+   * @param titleWords - the words of the title
+   * @param consumer   - receives every distinct word and its impact
+   */
+  private static void forEachTermOf(List<String> titleWords, ObjIntConsumer<String> consumer) {
+    for (int i = 0; i < titleWords.size(); ++i) {
+      String titleWord = titleWords.get(i);
+      if (titleWords.subList(0, i).contains(titleWord)) {
+        continue;
+      }
+      int frequency = 1;
+      for (int j = i + 1; j < titleWords.size(); ++j) {
+        frequency += titleWord.equals(titleWords.get(j)) ? 1 : 0;
+      }
+      consumer.accept(titleWord, impact(frequency, titleWords.size()));
+    }
+  }
+
+  /**
+   * This method adds several songs to the back end with the same result as calling addSong() for
+   * each of them in order, but faster. The songs are taken in batches whose title words are
+   * grouped first, so every word of a batch is looked up in the hash table once and its songs are
+   * appended to its posting list in one copy, and the hash table is grown to hold the new words
+   * before they are inserted instead of doubling again and again
    * 
-   * @param song - the song whose existence is being checked
-   * @return true if the song is present and false otherwise
+   * @param songs - the songs to be added to the back end
+   * @throws IllegalArgumentException if the year of a song can not be stored, in which case no
+   *                                  song is added
    */
   @Override
-  public boolean containsSong(SongDataInterface song) {
-    // retrieving the the first word from the song's name so as to use as a key when searching
-    // for the song in the back end
-    String titleWord = song.getTitle().split(" ")[0];
-
-    // if the key is present in the hash table, we iterate through the list of songs stored
-    // corresponding to the key so as to find the passed song
-    if (hashTableArray.containsKey(titleWord)) {
-      for (int i = 0; i < hashTableArray.get(titleWord).size(); ++i) {
-        if (hashTableArray.get(titleWord).get(i).equals(song)) {
-          return true;
+  public void addSongs(Collection<? extends SongDataInterface> songs) {
+    // every year is checked before the first song is added, since a batch can not be taken back
+    // once its songs have IDs and identities
+    for (SongDataInterface song : songs) {
+      ColumnarSongStore.checkYear(song.getYearPublished());
+    }
+    SongDataInterface[] batch = new SongDataInterface[Math.min(songs.size(), BULK_BATCH_SONGS)];
+    int count = 0;
+    for (SongDataInterface song : songs) {
+      batch[count++] = song;
+      if (count == batch.length) {
+        addBatch(batch, count);
+        count = 0;
+      }
+    }
+    if (count > 0) {
+      addBatch(batch, count);
+    }
+  }
+
+  /**
+   * This class collects the songs of one word within a batch of addSongs(), in ascending order of
+   * their IDs
+   */
+  private static class BatchPostings {
+    final String titleWord;
+    int[] songIds = new int[4];
+    byte[] impacts = new byte[4];
+    int size = 0;
+
+    BatchPostings(String titleWord) {
+      this.titleWord = titleWord;
+    }
+
+    void add(int songId, int impact) {
+      if (size == songIds.length) {
+        songIds = Arrays.copyOf(songIds, size * 2);
+        impacts = Arrays.copyOf(impacts, size * 2);
+      }
+      impacts[size] = (byte) impact;
+      songIds[size++] = songId;
+    }
+  }
+
+  /**
+   * This class is the identity of a song in the identity index: its title normalized by the
+   * tokenizer (the words of the title joined by single spaces), its artist and its year. Songs
+   * which are equal have the same identity, songs whose titles only differ in case, accents or
+   * punctuation have the same identity as well. The key of a song which is looked up carries its
+   * normalized title; a key stored in the index lets go of it and normalizes the title of its
+   * first song from the song store again when it is compared with a key of the same hash code,
+   * so the index keeps no string alive
+   */
+  private final class SongKey {
+    String title;     // normalized title, null for a stored key
+    final int artistId;
+    final int year;
+    final int hash;   // computed once, since the key is hashed on every lookup and resize
+    int firstId;      // ID of the first stored song of the identity, not part of the identity
+
+    SongKey(String title, String artist, int artistId, int year) {
+      this.title = title;
+      this.artistId = artistId;
+      this.year = year;
+      // the hash code is computed from the name of the artist rather than its ID, so that it
+      // stays the same when a merge gives the artist another ID
+      this.hash = (title.hashCode() * 31 + artist.hashCode()) * 31 + year;
+    }
+
+    /**
+     * Constructor which copies a stored key of another back end for a merged song
+     *
+     * @param key      - the key in the other back end
+     * @param artistId - the ID of the artist in this back end
+     * @param songId   - the ID of the merged song in this back end
+     */
+    SongKey(SongKey key, int artistId, int songId) {
+      this.artistId = artistId;
+      this.year = key.year;
+      this.hash = key.hash;
+      this.firstId = songId;
+    }
+
+    /**
+     * This method returns the normalized title of the identity
+     *
+     * @return the normalized title
+     */
+    String title() {
+      if (title != null) {
+        return title;
+      }
+      String storedTitle = songs.title(firstId);
+      List<String> titleWords = new ArrayList<String>();
+      tokenizer.tokenize(storedTitle, titleWords::add);
+      return normalizeTitle(storedTitle, titleWords);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof SongKey)) {
+        return false;
+      }
+      SongKey key = (SongKey) other;
+      return hash == key.hash && year == key.year && artistId == key.artistId
+          && title().equals(key.title());
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * This method joins the words of a title by single spaces. The title itself is returned when it
+   * is normalized already, which saves the copy for most titles of a clean catalog
+   *
+   * @param title      - the title of the song
+   * @param titleWords - the words of the title
+   * @return the normalized title
+   */
+  private static String normalizeTitle(String title, List<String> titleWords) {
+    int position = 0;
+    for (int i = 0; i < titleWords.size(); ++i) {
+      if (i > 0 && (position == title.length() || title.charAt(position++) != ' ')) {
+        return String.join(" ", titleWords);
+      }
+      String titleWord = titleWords.get(i);
+      if (!title.startsWith(titleWord, position)) {
+        return String.join(" ", titleWords);
+      }
+      position += titleWord.length();
+    }
+    return position == title.length() ? title : String.join(" ", titleWords);
+  }
+
+  /**
+   * This method adds one batch of songs: the songs get their IDs and their words are grouped in
+   * a hash table of the batch, then the hash table of the back end is grown for the words of the
+   * batch and every word gets all of its songs in one append
+   * 
+   * @param batch - the songs to be added
+   * @param count - the number of songs at the start of the array
+   */
+  private void addBatch(SongDataInterface[] batch, int count) {
+    ensureSongCapacity(songCount + count);
+    identities.ensureCapacity(identities.size() + count);
+    int firstId = songCount;
+    int[] years = new int[count];
+    int[] artistIds = new int[count];
+    OpenAddressingMap<String, BatchPostings> batchTerms = new OpenAddressingMap<>(count);
+    List<BatchPostings> batchOrder = new ArrayList<BatchPostings>();
+    List<String> titleWords = new ArrayList<String>();
+    for (int i = 0; i < count; ++i) {
+      SongDataInterface song = batch[i];
+      int songId = songCount;
+      int position = songId - firstId;
+      artistIds[position] = songs.internArtist(song.getArtist());
+      tokenizer.tokenize(song.getTitle(), titleWords::add);
+      // the identity of every song is entered before the next song is looked at, so duplicates
+      // within the batch are found as well
+      if (!addIdentity(songId, keyOf(song, artistIds[position], titleWords), rejectDuplicates)) {
+        titleWords.clear();
+        continue;
+      }
+      years[position] = song.getYearPublished();
+      songs.add(song.getTitle(), artistIds[position], years[position]);
+      songCount += 1;
+      oldestYear = Math.min(oldestYear, years[position]);
+      newestYear = Math.max(newestYear, years[position]);
+      forEachTermOf(titleWords, (titleWord, impact) -> {
+        BatchPostings postings = batchTerms.getOrNull(titleWord);
+        if (postings == null) {
+          postings = new BatchPostings(titleWord);
+          batchTerms.put(titleWord, postings);
+          batchOrder.add(postings);
+        }
+        postings.add(songId, impact);
+      });
+      titleWords.clear();
+    }
+    // from here on only the songs which were not rejected are counted
+    count = songCount - firstId;
+    if (count == 0) {
+      return;
+    }
+
+    // every word of the batch is counted as new, which over-estimates the words the hash table
+    // has to hold by the words it already contains
+    hashTableArray.ensureCapacity(termCount + batchOrder.size());
+
+    // the songs of a word are counted per year and per artist in scratch arrays indexed by the
+    // year (from the oldest year of the batch) and by the artist ID, so the year histogram and the
+    // artist counts of the word are updated once per distinct year and artist instead of once per
+    // song. The touched entries are remembered in order of first appearance, which keeps the
+    // order of the artists, and reset after every word
+    int batchOldest = Integer.MAX_VALUE;
+    int batchNewest = Integer.MIN_VALUE;
+    for (int i = 0; i < count; ++i) {
+      batchOldest = Math.min(batchOldest, years[i]);
+      batchNewest = Math.max(batchNewest, years[i]);
+    }
+    int[] yearCounts = new int[(int) Math.min((long) batchNewest - batchOldest + 1, count)];
+    boolean countYears = (long) batchNewest - batchOldest < count;
+    int[] artistCounts = new int[songs.artistCount()];
+    int[] touchedYears = new int[yearCounts.length];
+    int[] touchedArtists = new int[count];
+    for (BatchPostings postings : batchOrder) {
+      PostingList postingList = hashTableArray.getOrNull(postings.titleWord);
+      if (postingList == null) {
+        postingList = new PostingList();
+        addTerm(postings.titleWord, postingList);
+      }
+      postingList.addAll(postings.songIds, postings.impacts, postings.size);
+
+      int distinctYears = 0;
+      int distinctArtists = 0;
+      for (int i = 0; i < postings.size; ++i) {
+        int position = postings.songIds[i] - firstId;
+        if (!countYears) {
+          postingList.years().add(years[position], 1);
+        } else if (yearCounts[years[position] - batchOldest]++ == 0) {
+          touchedYears[distinctYears++] = years[position];
+        }
+        if (artistCounts[artistIds[position]]++ == 0) {
+          touchedArtists[distinctArtists++] = artistIds[position];
         }
       }
+      for (int i = 0; i < distinctYears; ++i) {
+        postingList.years().add(touchedYears[i], yearCounts[touchedYears[i] - batchOldest]);
+        yearCounts[touchedYears[i] - batchOldest] = 0;
+      }
+      for (int i = 0; i < distinctArtists; ++i) {
+        postingList.artists().add(touchedArtists[i], artistCounts[touchedArtists[i]]);
+        artistCounts[touchedArtists[i]] = 0;
+      }
+    }
+  }
+
+  /**
+   * This method removes one song equal to the passed one. The song is marked as removed, which
+   * every query sees at once, and taken off the year and artist counts of its words; its ID stays
+   * in the posting lists until compact() rewrites them
+   * 
+   * @param song - the song to be removed
+   * @return true if a song was removed and false if the back end holds no song equal to it
+   */
+  @Override
+  public boolean removeSong(SongDataInterface song) {
+    int songId = findSongId(song);
+    if (songId < 0) {
+      return false;
+    }
+    removeIdentity(songId);
+    int artistId = songs.artistId(songId);
+    int year = songs.year(songId);
+    List<String> titleWords = new ArrayList<String>();
+    tokenizer.tokenize(songs.title(songId), titleWords::add);
+    forEachTermOf(titleWords, (titleWord, impact) -> {
+      PostingList postingList = hashTableArray.getOrNull(titleWord);
+      postingList.markRemoved();
+      postingList.years().add(year, -1);
+      postingList.artists().add(artistId, -1);
+    });
+    removedSongs.set(songId);
+    uncompactedSongs.set(songId);
+    removedCount += 1;
+    uncompactedCount += 1;
+    return true;
+  }
+
+  /**
+   * This method finds the ID of a song equal to the passed one which was not removed. The song
+   * is looked up in the identity index, and only the stored songs of the same identity are
+   * compared with it
+   * 
+   * @param song - the song searched for
+   * @return the ID of one such song, or -1 if there is none
+   */
+  private int findSongId(SongDataInterface song) {
+    int artistId = songs.artistIdOf(song.getArtist());
+    if (artistId < 0) {
+      return -1;
     }
+    List<String> titleWords = new ArrayList<String>();
+    tokenizer.tokenize(song.getTitle(), titleWords::add);
+    SongKey key = identities.getOrNull(keyOf(song, artistId, titleWords));
+    for (int songId = key == null ? -1 : key.firstId; songId >= 0;
+        songId = sameIdentity[songId]) {
+      if (songs.matches(songId, song)) {
+        return songId;
+      }
+    }
+    return -1;
+  }
 
-    // if the key or song does not exist in the table, then we return false
-    return false;
+  /**
+   * This method checks whether removed songs are waiting to be dropped from the posting lists. It
+   * may be called without holding the lock which guards the back end
+   * 
+   * @return true if compact() has work to do
+   */
+  public boolean needsCompaction() {
+    return uncompactedCount > 0 || compactingSongs != null;
+  }
+
+  /**
+   * This method does one bounded step of compaction: it rewrites at most the passed number of
+   * posting lists without the IDs of removed songs, skipping the lists which hold none. The last
+   * step of a pass drops the words left without songs from the hash table and shrinks the hash
+   * table if it has become mostly empty. Queries are correct before, during and after compaction,
+   * it only gives back memory and time; so it can be run in small steps between queries, for
+   * example by a BackgroundCompactor
+   * 
+   * @param maxTerms - the maximum number of posting lists visited by this step
+   * @return true if more compaction is needed
+   */
+  public boolean compact(int maxTerms) {
+    if (compactingSongs == null) {
+      if (uncompactedSongs.isEmpty()) {
+        return false;
+      }
+      compactingSongs = (BitSet) uncompactedSongs.clone();
+      compactionCursor = 0;
+    }
+
+    int end = (int) Math.min((long) compactionCursor + Math.max(maxTerms, 1), termCount);
+    for (; compactionCursor < end; ++compactionCursor) {
+      PostingList postingList = hashTableArray.getOrNull(terms[compactionCursor]);
+      if (postingList.removedCount() > 0) {
+        postingList.removeAll(removedSongs, songs::artistId);
+      }
+    }
+    if (compactionCursor < termCount) {
+      return true;
+    }
+
+    // every list was rewritten since the pass started, so the songs removed before it are no
+    // longer referenced anywhere. The words without songs are squeezed out of the terms array
+    int liveTerms = 0;
+    for (int i = 0; i < termCount; ++i) {
+      if (hashTableArray.getOrNull(terms[i]).size() == 0) {
+        hashTableArray.remove(terms[i]);
+      } else {
+        terms[liveTerms++] = terms[i];
+      }
+    }
+    if (liveTerms < termCount) {
+      Arrays.fill(terms, liveTerms, termCount, null);
+      termCount = liveTerms;
+      resetSortedTerms();
+    }
+    hashTableArray.trimToSize();
+    uncompactedSongs.andNot(compactingSongs);
+    uncompactedCount -= compactingSongs.cardinality();
+    compactingSongs = null;
+    return !uncompactedSongs.isEmpty();
+  }
+
+  /**
+   * This method runs compaction until no removed song is left in any posting list
+   */
+  public void compact() {
+    while (compact(Integer.MAX_VALUE)) {
+    }
+  }
+
+  /**
+   * This method computes the impact of a word on a song with the term frequency part of the BM25
+   * formula: repeating a word in a title adds less and less, and a word counts for less in a long
+   * title than in a short one. The result is quantized to the byte stored in the posting list
+   * 
+   * @param frequency  - the number of times the word occurs in the title
+   * @param titleWords - the number of words of the title
+   * @return the impact, between 1 and 255
+   */
+  static int impact(int frequency, int titleWords) {
+    double lengthNorm = 1 - BM25_B + BM25_B * titleWords / AVERAGE_TITLE_WORDS;
+    double score = frequency * (BM25_K1 + 1) / (frequency + BM25_K1 * lengthNorm);
+    return Math.max(1, (int) Math.round(255 * score / (BM25_K1 + 1)));
+  }
+
+  /**
+   * This method appends a song to a posting list and counts it in the year and artist counts of
+   * the word, unless the song is already in the list
+   * 
+   * @param postingList - the posting list of the word
+   * @param songId      - the ID of the song
+   * @param impact      - the impact of the word on the song
+   * @param year        - the year the song was published in
+   * @param artistId    - the ID of the artist of the song
+   */
+  private static void addPosting(PostingList postingList, int songId, int impact, int year,
+      int artistId) {
+    if (postingList.add(songId, impact)) {
+      postingList.years().add(year, 1);
+      postingList.artists().add(artistId, 1);
+    }
+  }
+
+  /**
+   * This method inserts a new word and its posting list into the hash table and records the word
+   * in the terms array
+   * 
+   * @param titleWord   - the word, which must not be in the hash table yet
+   * @param postingList - the posting list of the word
+   */
+  private void addTerm(String titleWord, PostingList postingList) {
+    hashTableArray.put(titleWord, postingList);
+    if (termCount == terms.length) {
+      terms = Arrays.copyOf(terms, termCount * 2);
+    }
+    terms[termCount++] = titleWord;
+  }
+
+  /**
+   * This method moves all the songs and posting lists of another back end into this one. The songs
+   * of the other back end get IDs after the IDs of the songs of this back end, so every posting
+   * list stays sorted and is extended with a single append. The other back end must not be used
+   * afterwards, since its posting lists may be shared with this one. Both back ends must use the
+   * same tokenizer
+   * 
+   * @param other - the back end whose songs are added to this one
+   */
+  public void merge(SearchBackEnd other) {
+    int offset = songCount;
+    ensureSongCapacity(songCount + other.songCount);
+    // the artists of the other back end are given their IDs in this one, in the order of their
+    // IDs there. When this back end is empty they therefore keep the same IDs
+    int[] remappedArtists = new int[other.songs.artistCount()];
+    if (offset == 0 && songs.isOffHeap() == other.songs.isOffHeap()) {
+      // neither song IDs nor artist IDs change, so the song store and the identity index of the
+      // other back end are taken over; its stored keys keep reading their titles from the same
+      // song store
+      songs = other.songs;
+      identities = other.identities;
+      System.arraycopy(other.sameIdentity, 0, sameIdentity, 0, other.songCount);
+      System.arraycopy(other.songKeys, 0, songKeys, 0, other.songCount);
+      for (int i = 0; i < remappedArtists.length; ++i) {
+        remappedArtists[i] = i;
+      }
+    } else {
+      for (int i = 0; i < remappedArtists.length; ++i) {
+        remappedArtists[i] = songs.internArtist(other.songs.artistName(i));
+      }
+      // the titles are copied as bytes, the songs which were not removed are entered in the
+      // identity index in the order of their IDs. Duplicates of the songs of this back end are
+      // kept even when duplicates are rejected
+      identities.ensureCapacity(identities.size() + other.identities.size());
+      for (int songId = 0; songId < other.songCount; ++songId) {
+        int artistId = remappedArtists[other.songs.artistId(songId)];
+        songs.add(other.songs, songId, artistId);
+        if (other.songKeys[songId] != null) {
+          addIdentity(songId + offset, new SongKey(other.songKeys[songId], artistId,
+              songId + offset), false);
+        }
+      }
+    }
+    songCount += other.songCount;
+    for (int songId = other.removedSongs.nextSetBit(0); songId >= 0;
+        songId = other.removedSongs.nextSetBit(songId + 1)) {
+      removedSongs.set(songId + offset);
+      if (other.uncompactedSongs.get(songId)) {
+        uncompactedSongs.set(songId + offset);
+      }
+    }
+    removedCount += other.removedCount;
+    uncompactedCount += other.uncompactedCount;
+    oldestYear = Math.min(oldestYear, other.oldestYear);
+    newestYear = Math.max(newestYear, other.newestYear);
+
+    for (int i = 0; i < other.termCount; ++i) {
+      PostingList otherPostings = other.hashTableArray.getOrNull(other.terms[i]);
+      PostingList postingList = hashTableArray.getOrNull(other.terms[i]);
+      if (postingList != null) {
+        postingList.addAll(otherPostings, offset, remappedArtists);
+      } else if (offset == 0) {
+        // neither song IDs nor artist IDs need to be shifted, so the posting list of the other
+        // back end is taken over
+        addTerm(other.terms[i], otherPostings);
+      } else {
+        postingList = new PostingList();
+        postingList.addAll(otherPostings, offset, remappedArtists);
+        addTerm(other.terms[i], postingList);
+      }
+    }
+  }
+
+  /**
+   * This method returns the number of songs stored in the back end
+   * 
+   * @return the number of songs
+   */
+  public int size() {
+    return songCount - removedCount;
+  }
+
+  /**
+   * This method returns the number of song IDs handed out so far, including the IDs of removed
+   * songs
+   * 
+   * @return the number of song IDs
+   */
+  int songSlots() {
+    return songCount;
+  }
+
+  /**
+   * This method returns the tokenizer which splits the titles of this back end into words
+   * 
+   * @return the title tokenizer
+   */
+  TitleTokenizer tokenizer() {
+    return tokenizer;
+  }
+
+  /**
+   * This method checks whether the song with the passed ID was removed
+   * 
+   * @param songId - the ID of the song
+   * @return true if the song was removed
+   */
+  boolean isRemoved(int songId) {
+    return removedSongs.get(songId);
+  }
+
+  /**
+   * This method returns statistics of the hash table of the back end
+   * 
+   * @return the statistics of the word index
+   */
+  public MapStats getWordIndexStats() {
+    return hashTableArray.stats();
+  }
+
+  /**
+   * This method counts the posting lists of the back end by their number of songs. The lists are
+   * scanned when this method is called
+   * 
+   * @return the histogram of the posting list sizes
+   */
+  public LatencyHistogram getPostingSizes() {
+    LatencyHistogram postingSizes = new LatencyHistogram();
+    for (int i = 0; i < termCount; ++i) {
+      PostingList postingList = postingsFor(terms[i]);
+      if (postingList != null) {
+        postingSizes.record(postingList.liveSize());
+      }
+    }
+    return postingSizes;
+  }
+
+  /**
+   * This method returns the song with the passed ID
+   * 
+   * @param songId - the ID of the song
+   * @return the song stored under the ID
+   */
+  SongDataInterface song(int songId) {
+    return songs.song(songId);
+  }
+
+  /**
+   * This method returns the number of distinct words stored in the hash table
+   * 
+   * @return the number of words
+   */
+  int termCount() {
+    return termCount;
+  }
+
+  /**
+   * This method returns a word of the hash table, in the order in which the words were added
+   * 
+   * @param index - the position of the word, between 0 and termCount() - 1
+   * @return the word at the position
+   */
+  String term(int index) {
+    return terms[index];
+  }
+
+  /**
+   * This method returns the posting list of a word typed by a user, which is first normalized by
+   * the tokenizer of the back end. Callers answering several queries of a word, such as the
+   * batches of AsyncSearchBackEnd, resolve the word once and pass the list to titlesOf(),
+   * artistsOf() and songsInYears()
+   * 
+   * @param titleWord - the word whose posting list is returned
+   * @return the posting list of the word or null if the word is not in the hash table
+   */
+  PostingList postingsForWord(String titleWord) {
+    String term = tokenizer.normalize(titleWord);
+    return term == null ? null : postingsFor(term);
+  }
+
+  /**
+   * This method returns the posting list of the passed word with a single lookup in the hash table.
+   * A word whose songs were all removed is treated as missing, although it stays in the hash
+   * table until the compactor drops it
+   * 
+   * @param titleWord - the word whose posting list is returned, as stored in the hash table
+   * @return the posting list of the word or null if the word is not in the hash table or has no
+   *         songs left
+   */
+  PostingList postingsFor(String titleWord) {
+    PostingList postingList = hashTableArray.getOrNull(titleWord);
+    return postingList == null || postingList.liveSize() == 0 ? null : postingList;
+  }
+
+  /**
+   * This method returns the posting list of the passed word without the IDs of removed songs, for
+   * writers of snapshots. The list itself is returned if none of its songs was removed, otherwise
+   * a copy holding only the IDs and impacts
+   * 
+   * @param titleWord - the word whose posting list is returned, as stored in the hash table
+   * @return the live posting list of the word or null if the word has no songs
+   */
+  PostingList livePostingsFor(String titleWord) {
+    PostingList postingList = postingsFor(titleWord);
+    if (postingList == null || postingList.removedCount() == 0) {
+      return postingList;
+    }
+    return postingList.without(removedSongs);
+  }
+
+  /**
+   * This method brings the sorted dictionary up to date with the hash table. The dictionary is
+   * rebuilt once the words added since the last build exceed a sixteenth of it, until then those
+   * words are only sorted among themselves. It runs under the lock of the back end, so that
+   * several threads may search the back end at the same time
+   * 
+   * @return the words which are not in the dictionary yet, sorted
+   */
+  private synchronized String[] refreshSortedTerms() {
+    int added = termCount - sortedTermCount;
+    if (added > Math.max(4096, sortedTermCount / 16)) {
+      sortedTerms = new FrontCodedTermIndex(terms, termCount);
+      sortedTermCount = termCount;
+      pendingTerms = new String[0];
+    } else if (added != pendingTerms.length) {
+      pendingTerms = Arrays.copyOfRange(terms, sortedTermCount, termCount);
+      Arrays.sort(pendingTerms);
+    }
+    return pendingTerms;
+  }
+
+  /**
+   * This method drops the sorted dictionary after words were removed from the terms array, the
+   * next prefix or fuzzy search builds it again
+   */
+  private synchronized void resetSortedTerms() {
+    sortedTerms = new FrontCodedTermIndex(new String[0], 0);
+    sortedTermCount = 0;
+    pendingTerms = new String[0];
+  }
+
+  /**
+   * This method passes every word of the hash table which starts with the passed prefix to the
+   * consumer
+   * 
+   * @param prefix   - the prefix, as stored in the hash table
+   * @param consumer - receives the matching words
+   */
+  void forEachTermWithPrefix(String prefix, Consumer<String> consumer) {
+    String[] pending = refreshSortedTerms();
+    sortedTerms.forEachWithPrefix(prefix, consumer);
+    // the words starting with the prefix form one run of the sorted pending words as well
+    int position = Arrays.binarySearch(pending, prefix);
+    for (position = position < 0 ? -position - 1 : position;
+        position < pending.length && pending[position].startsWith(prefix); ++position) {
+      consumer.accept(pending[position]);
+    }
+  }
+
+  /**
+   * This method is responsible for returning all the songs which contain a word starting with the
+   * passed prefix. The words are found in the sorted dictionary and their posting lists are
+   * combined in a bit set, so every song is returned once
+   * 
+   * @param prefix - the beginning of the word we are looking for in the songs
+   * @return list of the titles of the songs containing a word with the prefix, in the order they
+   *         were added, or null if no word starts with the prefix
+   */
+  public List<String> findTitlesByPrefix(String prefix) {
+    String term = tokenizer.normalize(prefix);
+    if (term == null) {
+      return null;
+    }
+    BitSet songIds = new BitSet(songCount);
+    boolean[] found = new boolean[1];
+    forEachTermWithPrefix(term, titleWord -> {
+      PostingList postingList = postingsFor(titleWord);
+      if (postingList != null) {
+        for (int i = 0; i < postingList.size(); ++i) {
+          songIds.set(postingList.get(i));
+        }
+        found[0] = true;
+      }
+    });
+    return found[0] ? titlesOf(songIds) : null;
+  }
+
+  /**
+   * This method resolves a set of song IDs against the song store
+   * 
+   * @param songIds - the IDs of the songs
+   * @return list of the titles of the songs, in the order of their IDs
+   */
+  private List<String> titlesOf(BitSet songIds) {
+    songIds.andNot(removedSongs);
+    List<String> songTitles = new LinkedList<String>();
+    for (int songId = songIds.nextSetBit(0); songId >= 0; songId = songIds.nextSetBit(songId + 1)) {
+      songTitles.add(songs.title(songId));
+    }
+    return songTitles;
+  }
+
+  /**
+   * This method passes every word of the hash table within an edit distance of the passed word to
+   * the consumer. The sorted dictionary is scanned with the rows of the Levenshtein table shared
+   * between words with a common prefix, see FrontCodedTermIndex.forEachWithinDistance(), and the
+   * few words not in the dictionary yet are compared one by one
+   * 
+   * @param word     - the word, as stored in the hash table
+   * @param maxEdits - the largest edit distance of a matching word
+   * @param consumer - receives the matching words
+   */
+  void forEachTermWithinDistance(String word, int maxEdits, Consumer<String> consumer) {
+    String[] pending = refreshSortedTerms();
+    sortedTerms.forEachWithinDistance(word, maxEdits, consumer);
+    for (String term : pending) {
+      if (FrontCodedTermIndex.editDistance(word, term, maxEdits) <= maxEdits) {
+        consumer.accept(term);
+      }
+    }
+  }
+
+  /**
+   * This method is responsible for returning all the songs which contain a word within an edit
+   * distance of the passed word, so that a misspelled word still finds its songs. The distance
+   * counts the characters inserted, deleted or replaced; the search stays fast for distances of 1
+   * and 2, every further edit makes it considerably slower
+   * 
+   * @param titleWord - the possibly misspelled word we are looking for in the songs
+   * @param maxEdits  - the largest edit distance of a matching word
+   * @return list of the titles of the songs containing a matching word, in the order they were
+   *         added, or null if no word is close enough
+   */
+  public List<String> findTitlesFuzzy(String titleWord, int maxEdits) {
+    String term = tokenizer.normalize(titleWord);
+    if (term == null) {
+      return null;
+    }
+    BitSet songIds = new BitSet(songCount);
+    boolean[] found = new boolean[1];
+    forEachTermWithinDistance(term, Math.max(maxEdits, 0), matchingWord -> {
+      PostingList postingList = postingsFor(matchingWord);
+      if (postingList != null) {
+        for (int i = 0; i < postingList.size(); ++i) {
+          songIds.set(postingList.get(i));
+        }
+        found[0] = true;
+      }
+    });
+    return found[0] ? titlesOf(songIds) : null;
+  }
+
+  /**
+   * This method is responsible for completing a partially typed word. Of all the words starting
+   * with the prefix, the ones contained in the most songs are returned; a min-heap of k words is
+   * kept while the words are scanned, so only k words are ever ordered
+   * 
+   * @param prefix - the beginning of the word typed so far
+   * @param k      - the maximum number of words to be returned
+   * @return list of at most k words by descending number of songs containing them, ties in sorted
+   *         order, or an empty list if no word starts with the prefix
+   */
+  public List<String> autocomplete(String prefix, int k) {
+    List<String> suggestions = new LinkedList<String>();
+    String term = tokenizer.normalize(prefix);
+    if (term == null || k <= 0) {
+      return suggestions;
+    }
+
+    // the heap holds the lowest ranked of the suggestions kept so far at its head
+    PriorityQueue<Suggestion> heap = new PriorityQueue<Suggestion>(k + 1);
+    forEachTermWithPrefix(term, titleWord -> {
+      PostingList postingList = postingsFor(titleWord);
+      if (postingList == null) {
+        return;
+      }
+      Suggestion suggestion = new Suggestion(titleWord, postingList.liveSize());
+      if (heap.size() < k) {
+        heap.add(suggestion);
+      } else if (suggestion.compareTo(heap.peek()) > 0) {
+        heap.poll();
+        heap.add(suggestion);
+      }
+    });
+    while (!heap.isEmpty()) {
+      suggestions.add(0, heap.poll().word);
+    }
+    return suggestions;
+  }
+
+  /**
+   * This class holds a word suggested by autocomplete() and the number of songs containing it.
+   * Suggestions compare from the lowest ranked to the highest ranked one
+   */
+  private static class Suggestion implements Comparable<Suggestion> {
+    final String word;
+    final int songs;
+
+    Suggestion(String word, int songs) {
+      this.word = word;
+      this.songs = songs;
+    }
+
+    @Override
+    public int compareTo(Suggestion other) {
+      if (songs != other.songs) {
+        return Integer.compare(songs, other.songs);
+      }
+      return other.word.compareTo(word);
+    }
+  }
+
+  /**
+   * This method is responsible for checking whether a song is in the back end or not
+   * 
+   * @param song - the song whose existence is being checked
+   * @return true if the song is present and false otherwise
+   */
+  @Override
+  public boolean containsSong(SongDataInterface song) {
+    // the song is found through its identity, so neither the number of songs sharing a word with
+    // it nor the words of its title matter
+    return findSongId(song) >= 0;
   }
 
   /**
@@ -121,20 +1269,32 @@ public class SearchBackEnd implements SearchBackEndInterface {
    */
   @Override
   public List<String> findTitles(String titleWord) {
-    // this list will be returned consists of the song titles which have the passed word
-    List<String> songTitles = new LinkedList<String>();
+    return titlesOf(postingsForWord(titleWord));
+  }
 
-    // if the passed word (key) exists in the hash table, we iterate through the song list so as
-    // to add those songs the list which will be returned
-    if (hashTableArray.containsKey(titleWord)) {
-      for (int i = 0; i < hashTableArray.get(titleWord).size(); ++i) {
-        songTitles.add(hashTableArray.get(titleWord).get(i).getTitle());
-      }
-    } 
+  /**
+   * This method returns the titles of the songs of a posting list, see findTitles()
+   * 
+   * @param postingList - the posting list of a word as returned by postingsForWord(), may be null
+   * @return list of the titles of the songs of the list, or null if the list is null
+   */
+  List<String> titlesOf(PostingList postingList) {
     // if the key is not found, we return null
-    else {
+    if (postingList == null) {
       return null;
     }
+
+    // this list will be returned consists of the song titles which have the passed word, the IDs
+    // of the posting list are resolved against the song store. Removed songs are only looked for
+    // in lists which still hold some
+    List<String> songTitles = new LinkedList<String>();
+    boolean skipRemoved = postingList.removedCount() > 0;
+    for (int i = 0; i < postingList.size(); ++i) {
+      int songId = postingList.get(i);
+      if (!skipRemoved || !removedSongs.get(songId)) {
+        songTitles.add(songs.title(songId));
+      }
+    }
     return songTitles;
   }
 
@@ -147,26 +1307,219 @@ public class SearchBackEnd implements SearchBackEndInterface {
    */
   @Override
   public List<String> findArtists(String titleWord) {
-    // this list will be returned consists of the artists whose songs have the passed word
-    List<String> songArtists = new LinkedList<String>();
+    return artistsOf(postingsForWord(titleWord));
+  }
 
-    // if the passed word (key) exists in the hash table, we iterate through the song list so as
-    // to add the artists of those songs the list which will be returned
-    if (hashTableArray.containsKey(titleWord)) {
-      for (int i = 0; i < hashTableArray.get(titleWord).size(); ++i) {
-        if (!(songArtists.contains(hashTableArray.get(titleWord).get(i).getArtist()))) {
-          songArtists.add(hashTableArray.get(titleWord).get(i).getArtist());
-        }
-      }
-    } 
+  /**
+   * This method returns the artists of the songs of a posting list, see findArtists()
+   * 
+   * @param postingList - the posting list of a word as returned by postingsForWord(), may be null
+   * @return list of the artists of the songs of the list, or null if the list is null
+   */
+  List<String> artistsOf(PostingList postingList) {
+    return postingList == null ? null
+        : artistsOf(postingList, 0, postingList.artists().liveSize());
+  }
+
+  /**
+   * This method is responsible for returning one page of the artists who have songs whose names
+   * contain the passed word. The distinct artists of the word are kept by addSong(), so a page
+   * costs its own length no matter how many songs contain the word. An artist whose first song is
+   * removed keeps its position until the posting list is compacted, which moves it to its first
+   * remaining song, the order a back end rebuilt from the remaining songs (or a snapshot) gives
+   * 
+   * @param titleWord - the word we are looking for in the songs
+   * @param offset    - the position of the first artist of the page
+   * @param limit     - the maximum number of artists of the page
+   * @return list of artists whose songs contain the passed word, in the order of their first song
+   */
+  @Override
+  public List<String> findArtists(String titleWord, int offset, int limit) {
+    return artistsOf(postingsForWord(titleWord), offset, limit);
+  }
+
+  /**
+   * This method returns one page of the artists of the songs of a posting list, see
+   * findArtists(String, int, int)
+   * 
+   * @param postingList - the posting list of a word as returned by postingsForWord(), may be null
+   * @param offset      - the position of the first artist of the page
+   * @param limit       - the maximum number of artists of the page
+   * @return list of artists of the songs of the list, or null if the list is null
+   */
+  private List<String> artistsOf(PostingList postingList, int offset, int limit) {
     // if the key is not found, we return null
-    else {
+    if (postingList == null) {
       return null;
     }
 
+    // artists whose songs were all removed keep their position until the list is compacted, they
+    // are skipped without counting towards the offset or the limit
+    ArtistCounts artists = postingList.artists();
+    List<String> songArtists = new LinkedList<String>();
+    int remaining = Math.max(limit, 0);
+    for (int i = artists.positionOf(Math.max(offset, 0)); i < artists.size() && remaining > 0;
+        ++i) {
+      if (artists.countAt(i) > 0) {
+        songArtists.add(songs.artistName(artists.artistAt(i)));
+        remaining -= 1;
+      }
+    }
     return songArtists;
   }
 
+  /**
+   * This method is responsible for returning the artists with the most songs whose names contain
+   * the passed word
+   * 
+   * @param titleWord - the word we are looking for in the songs
+   * @param k         - the maximum number of artists to be returned
+   * @return list of at most k artists by descending number of songs containing the word, or null
+   *         if the word is not found
+   */
+  public List<String> findTopArtists(String titleWord, int k) {
+    PostingList postingList = postingsForWord(titleWord);
+    if (postingList == null) {
+      return null;
+    }
+    List<String> songArtists = new LinkedList<String>();
+    for (int position : postingList.artists().top(k)) {
+      songArtists.add(songs.artistName(postingList.artists().artistAt(position)));
+    }
+    return songArtists;
+  }
+
+  /**
+   * This method is responsible for returning the best songs containing the passed word, ranked by
+   * the impact of the word on every song
+   * 
+   * @param titleWord - the word we are looking for in the songs
+   * @param k         - the maximum number of titles to be returned
+   * @return the first page of the ranked titles, see findTitlesRanked(String, int, double, String)
+   */
+  public RankedPage findTitlesRanked(String titleWord, int k) {
+    return findTitlesRanked(titleWord, k, 0, null);
+  }
+
+  /**
+   * This method is responsible for returning one page of the songs containing the passed word,
+   * ranked by their score: the impact of the word on the song (see impact()), scaled to 1, plus
+   * the recency of the song (0 for the oldest and 1 for the newest song of the back end) times
+   * the recency weight. The posting list is visited by descending impact and a min-heap keeps the
+   * best k songs, so the visit stops as soon as no remaining song can beat the worst of them; for
+   * a common word most of its posting list is never touched. Songs of equal score are ranked in
+   * the order they were added
+   * 
+   * @param titleWord     - the word we are looking for in the songs
+   * @param k             - the maximum number of titles of the page
+   * @param recencyWeight - how much newer songs are preferred, 0 to ignore the year
+   * @param cursor        - the cursor of the previous page returned by this method, or null for
+   *                        the first page
+   * @return the page of titles, empty if the word is not found or no songs are left
+   * @throws IllegalArgumentException if the cursor was not returned by this method
+   */
+  public RankedPage findTitlesRanked(String titleWord, int k, double recencyWeight,
+      String cursor) {
+    // the cursor holds the score and ID of the last song of the previous page, a song belongs to
+    // this page only if it ranks after that one
+    double afterScore = Double.POSITIVE_INFINITY;
+    int afterSongId = -1;
+    if (cursor != null) {
+      int colon = cursor.indexOf(':');
+      try {
+        afterScore = Double.longBitsToDouble(Long.parseUnsignedLong(cursor.substring(0, colon), 16));
+        afterSongId = Integer.parseInt(cursor.substring(colon + 1));
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("invalid cursor: " + cursor);
+      }
+    }
+
+    PostingList postingList = postingsForWord(titleWord);
+    if (postingList == null || k <= 0) {
+      return new RankedPage(new LinkedList<String>(), null);
+    }
+
+    // one more song than asked for is kept, it tells whether there is a next page
+    int kept = k + 1;
+    PriorityQueue<ScoredSong> heap = new PriorityQueue<ScoredSong>(kept + 1);
+    double recencyWeightOrZero = Math.max(recencyWeight, 0);
+    int[] order = postingList.impactOrder();
+    for (int position : order) {
+      double impact = postingList.impact(position) / 255.0;
+      // the best score a remaining song can reach is its impact plus the full recency bonus. With
+      // no recency bonus, a remaining song of equal score has a larger ID and so ranks after
+      // every song of the heap as well
+      if (heap.size() == kept) {
+        double bound = impact + recencyWeightOrZero;
+        double worst = heap.peek().score;
+        if (bound < worst || (bound == worst && recencyWeightOrZero == 0)) {
+          break;
+        }
+      }
+      int songId = postingList.get(position);
+      if (removedSongs.get(songId)) {
+        continue;
+      }
+      ScoredSong song = new ScoredSong(songId,
+          impact + recencyWeightOrZero * recency(songs.year(songId)));
+      if (song.score > afterScore || (song.score == afterScore && songId <= afterSongId)) {
+        continue;
+      }
+      if (heap.size() < kept) {
+        heap.add(song);
+      } else if (song.compareTo(heap.peek()) > 0) {
+        heap.poll();
+        heap.add(song);
+      }
+    }
+
+    // emptying the heap gives the songs from the lowest ranked to the highest ranked one
+    boolean more = heap.size() == kept;
+    if (more) {
+      heap.poll();
+    }
+    LinkedList<String> songTitles = new LinkedList<String>();
+    ScoredSong last = heap.peek();
+    while (!heap.isEmpty()) {
+      songTitles.addFirst(songs.title(heap.poll().songId));
+    }
+    String nextCursor = more
+        ? Long.toHexString(Double.doubleToLongBits(last.score)) + ":" + last.songId : null;
+    return new RankedPage(songTitles, nextCursor);
+  }
+
+  /**
+   * This method returns how recent a year is among the songs of the back end
+   * 
+   * @param year - the publication year
+   * @return 0 for the year of the oldest song, 1 for the year of the newest song
+   */
+  private double recency(int year) {
+    return newestYear > oldestYear ? (year - oldestYear) / (double) (newestYear - oldestYear) : 1;
+  }
+
+  /**
+   * This class holds a song considered by findTitlesRanked() and its score. Scored songs compare
+   * from the lowest ranked to the highest ranked one
+   */
+  private static class ScoredSong implements Comparable<ScoredSong> {
+    final int songId;
+    final double score;
+
+    ScoredSong(int songId, double score) {
+      this.songId = songId;
+      this.score = score;
+    }
+
+    @Override
+    public int compareTo(ScoredSong other) {
+      if (score != other.score) {
+        return Double.compare(score, other.score);
+      }
+      return Integer.compare(other.songId, songId);
+    }
+  }
+
   /**
    * This method is responsible for returning the number of songs which contain the passed word in
    * their title and were released in the passed year
@@ -178,19 +1531,87 @@ public class SearchBackEnd implements SearchBackEndInterface {
    */
   @Override
   public int findNumberOfSongsInYear(String titleWord, int year) {
-    int totalSongs = 0;
+    // the year histogram of the word, which addSong() keeps up to date, is binary searched
+    // instead of scanning the posting list
+    PostingList postingList = postingsForWord(titleWord);
+    return postingList == null ? 0 : postingList.years().count(year);
+  }
+
+  /**
+   * This method is responsible for returning the number of songs which contain the passed word in
+   * their title and were released in a range of years
+   * 
+   * @param titleWord - the word we are looking for in the songs
+   * @param fromYear  - the first year of the range
+   * @param toYear    - the last year of the range, inclusive
+   * @return the number of songs which contain the passed word in their title and were released in
+   *         the range of years
+   */
+  @Override
+  public int findNumberOfSongsInYearRange(String titleWord, int fromYear, int toYear) {
+    return songsInYears(postingsForWord(titleWord), fromYear, toYear);
+  }
+
+  /**
+   * This method returns the number of songs of a posting list released in a range of years, see
+   * findNumberOfSongsInYearRange()
+   * 
+   * @param postingList - the posting list of a word as returned by postingsForWord(), may be null
+   * @param fromYear    - the first year of the range
+   * @param toYear      - the last year of the range, inclusive
+   * @return the number of songs of the list released in the range of years, 0 if the list is null
+   */
+  int songsInYears(PostingList postingList, int fromYear, int toYear) {
+    return postingList == null ? 0 : postingList.years().count(fromYear, toYear);
+  }
 
-    // if the passed word (key) exists in the hash table, we iterate through the song list so as
-    // to count the number of songs present in the list which were released in the passed year
-    if (hashTableArray.containsKey(titleWord)) {
-      for (int i = 0; i < hashTableArray.get(titleWord).size(); ++i) {
-        if (hashTableArray.get(titleWord).get(i).getYearPublished() == year) {
-          totalSongs += 1;
+  /**
+   * This method is responsible for returning the songs matching a query of several title words
+   * combined with AND, OR and NOT. The posting lists of the required words of every alternative
+   * are intersected starting with the shortest one, and every further list is only galloped
+   * through for the remaining candidates, so a common word never has its whole list scanned when
+   * it is combined with a rare one
+   * 
+   * @param query - the query, see BooleanQuery for its syntax
+   * @return list of the titles of the matching songs in the order they were added
+   */
+  @Override
+  public List<String> findTitlesMatching(String query) {
+    int[] matches = new int[0];
+    for (BooleanQuery.Clause clause : new BooleanQuery(query).clauses()) {
+      // looking up the posting lists of the required words, a missing word means no song matches
+      PostingList[] required = new PostingList[clause.required.size()];
+      boolean missing = false;
+      for (int i = 0; i < required.length && !missing; ++i) {
+        required[i] = postingsForWord(clause.required.get(i));
+        missing = required[i] == null;
+      }
+      if (missing) {
+        continue;
+      }
+
+      // starting with the rarest word keeps the candidate list as short as possible
+      Arrays.sort(required, (first, second) -> Integer.compare(first.size(), second.size()));
+      int[] candidates = Arrays.copyOf(required[0].array(), required[0].size());
+      for (int i = 1; i < required.length && candidates.length > 0; ++i) {
+        candidates = required[i].intersect(candidates, candidates.length);
+      }
+      for (String word : clause.excluded) {
+        PostingList excluded = postingsForWord(word);
+        if (excluded != null && candidates.length > 0) {
+          candidates = excluded.subtractFrom(candidates, candidates.length);
         }
       }
-    } 
+      matches = PostingList.union(matches, candidates);
+    }
 
-    return totalSongs;
+    List<String> songTitles = new LinkedList<String>();
+    for (int songId : matches) {
+      if (!removedSongs.get(songId)) {
+        songTitles.add(songs.title(songId));
+      }
+    }
+    return songTitles;
   }
 
 }
@@ -0,0 +1,1009 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class contains stand-alone scenario benchmarks for the hash tables and the search back end:
+ * loading files, latency under concurrent writes, heap footprint and the like, which do not fit a
+ * JMH benchmark. The JMH benchmarks of single operations are in jmh/, see pom.xml. The benchmark
+ * to be run is selected with the first command line argument, for example
+ * "java SearchBenchmark put-latency 5000000"
+ */
+public class SearchBenchmark {
+
+  // results of benchmarked calls are added here, so that the calls can not be optimized away
+  private static long sink;
+
+  /**
+   * Entry point which runs the benchmark named by the first argument
+   *
+   * @param args - the benchmark name followed by the arguments of that benchmark
+   */
+  public static void main(String[] args) {
+    String benchmark = args.length > 0 ? args[0] : "put-latency";
+    if (benchmark.equals("put-latency")) {
+      int keys = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+      putLatency(keys);
+    } else if (benchmark.equals("concurrent-stress")) {
+      int writers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+      int readers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+      int songsPerWriter = args.length > 3 ? Integer.parseInt(args[3]) : 200_000;
+      concurrentStress(writers, readers, songsPerWriter);
+    } else if (benchmark.equals("loader")) {
+      long megabytes = args.length > 1 ? Long.parseLong(args[1]) : 1024;
+      loaderThroughput(megabytes);
+    } else if (benchmark.equals("parallel-load")) {
+      int shards = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+      long megabytesPerShard = args.length > 2 ? Long.parseLong(args[2]) : 16;
+      parallelLoad(shards, megabytesPerShard);
+    } else if (benchmark.equals("snapshot")) {
+      long megabytes = args.length > 1 ? Long.parseLong(args[1]) : 256;
+      snapshotStartup(megabytes);
+    } else if (benchmark.equals("churn")) {
+      int songs = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+      int updatesPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+      churn(songs, updatesPerSecond);
+    } else if (benchmark.equals("song-store")) {
+      int songs = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+      songStore(songs);
+    } else if (benchmark.equals("sharded")) {
+      int songs = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+      int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+      shardedQueries(songs, threads);
+    } else if (benchmark.equals("async")) {
+      int songs = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+      int clients = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+      int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+      asyncQueries(songs, clients, seconds);
+    } else if (benchmark.equals("live-ingest")) {
+      int songsPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+      int readers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+      int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+      liveIngest(songsPerSecond, readers, seconds);
+    } else {
+      System.out.println("unknown benchmark: " + benchmark);
+    }
+  }
+
+  /**
+   * This method reports the p50/p99/p999/max latency of HashtableMap.put() for every doubling of
+   * the table size, once with resizing done inside a single put() call and once with incremental
+   * resizing
+   *
+   * @param keys - number of keys to be inserted
+   */
+  static void putLatency(int keys) {
+    for (int round = 0; round < 2; ++round) {
+      // the first round only warms up the JIT, the second one is reported
+      for (boolean incremental : new boolean[] {false, true}) {
+        HashtableMap<Integer, Integer> map = new HashtableMap<>(16, incremental);
+        long[] latencies = new long[keys];
+        for (int i = 0; i < keys; ++i) {
+          long start = System.nanoTime();
+          map.put(i * 0x9E3779B1, i);
+          latencies[i] = System.nanoTime() - start;
+        }
+        if (round == 0) {
+          continue;
+        }
+
+        System.out.println((incremental ? "incremental" : "stop-the-world") + " resize");
+        System.out.println("      keys      p50 ns      p99 ns     p999 ns      max ns");
+        // each growth window covers the puts between two powers of two of the table size
+        for (int from = 0, to = 1024; from < keys; from = to, to *= 2) {
+          long[] window = Arrays.copyOfRange(latencies, from, Math.min(to, keys));
+          Arrays.sort(window);
+          System.out.printf("%10d %11d %11d %11d %11d%n", Math.min(to, keys),
+              percentile(window, 50.0), percentile(window, 99.0), percentile(window, 99.9),
+              window[window.length - 1]);
+        }
+      }
+    }
+  }
+
+  /**
+   * This method runs writer threads adding songs to a ConcurrentSearchBackEnd while reader threads
+   * query it, then checks that no song was lost and that no reader ever saw a torn song list (a
+   * missing entry, or a list which shrank between two reads)
+   *
+   * @param writers        - number of threads adding songs
+   * @param readers        - number of threads querying
+   * @param songsPerWriter - number of songs added by every writer
+   */
+  static void concurrentStress(int writers, int readers, int songsPerWriter) {
+    ConcurrentSearchBackEnd backEnd = new ConcurrentSearchBackEnd(1024);
+    AtomicBoolean writing = new AtomicBoolean(true);
+    AtomicLong queries = new AtomicLong();
+    AtomicLong failures = new AtomicLong();
+    Thread[] writerThreads = new Thread[writers];
+    Thread[] readerThreads = new Thread[readers];
+
+    for (int w = 0; w < writers; ++w) {
+      int writer = w;
+      writerThreads[w] = new Thread(() -> {
+        for (int i = 0; i < songsPerWriter; ++i) {
+          backEnd.addSong(new SongData("common w" + writer + " s" + i, "artist" + (i % 97),
+              1950 + i % 70));
+        }
+      });
+    }
+    for (int r = 0; r < readers; ++r) {
+      readerThreads[r] = new Thread(() -> {
+        int lastSize = 0;
+        while (writing.get()) {
+          List<String> titles = backEnd.findTitles("common");
+          int size = titles == null ? 0 : titles.size();
+          if (size < lastSize) {
+            failures.incrementAndGet();
+          }
+          if (titles != null) {
+            for (String title : titles) {
+              if (title == null || !title.startsWith("common w")) {
+                failures.incrementAndGet();
+              }
+            }
+          }
+          lastSize = size;
+          backEnd.findNumberOfSongsInYear("w0", 1960);
+          queries.addAndGet(2);
+        }
+      });
+    }
+
+    long start = System.nanoTime();
+    for (Thread thread : readerThreads) {
+      thread.start();
+    }
+    for (Thread thread : writerThreads) {
+      thread.start();
+    }
+    join(writerThreads);
+    long writeNanos = System.nanoTime() - start;
+    writing.set(false);
+    join(readerThreads);
+
+    // every song must be found through both its shared word and its unique words
+    long lost = (long) writers * songsPerWriter - backEnd.findTitles("common").size();
+    for (int w = 0; w < writers; ++w) {
+      if (backEnd.findTitles("w" + w).size() != songsPerWriter) {
+        lost += 1;
+      }
+    }
+    System.out.printf("writers=%d readers=%d songs=%d: %.0f adds/s, %.0f queries/s%n", writers,
+        readers, writers * songsPerWriter, writers * songsPerWriter / (writeNanos / 1e9),
+        queries.get() / (writeNanos / 1e9));
+    System.out.println("lost songs: " + lost + ", torn reads: " + failures.get());
+  }
+
+  /**
+   * This method generates a CSV catalog of the passed size and reports how fast SongLoader streams
+   * it, once only parsing the records and once also indexing them into a SearchBackEnd
+   *
+   * @param megabytes - size of the generated catalog in megabytes
+   */
+  static void loaderThroughput(long megabytes) {
+    File file = new File(System.getProperty("java.io.tmpdir"), "songs-benchmark.csv");
+    generateCatalog(file, megabytes << 20, 42);
+    try {
+      for (int round = 0; round < 3; ++round) {
+        long[] records = new long[1];
+        long start = System.nanoTime();
+        new SongLoader().streamFile(file.getPath(), song -> records[0] += 1);
+        report("parse only", file.length(), records[0], System.nanoTime() - start);
+
+        SearchBackEnd backEnd = new SearchBackEnd(1 << 16, MapEngine.OPEN_ADDRESSING);
+        start = System.nanoTime();
+        long songs = new SongLoader().indexFile(file.getPath(), backEnd);
+        report("parse + index", file.length(), songs, System.nanoTime() - start);
+      }
+    } catch (FileNotFoundException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * This method generates a directory of CSV shards and reports the time SongLoader needs to index
+   * all of them with 1, 2, 4, 8 and 16 threads, and the speedup over a single thread
+   *
+   * @param shards            - number of CSV files
+   * @param megabytesPerShard - size of every CSV file in megabytes
+   */
+  static void parallelLoad(int shards, long megabytesPerShard) {
+    File directory = new File(System.getProperty("java.io.tmpdir"), "songs-shards");
+    directory.mkdirs();
+    for (int i = 0; i < shards; ++i) {
+      generateCatalog(new File(directory, String.format("shard-%03d.csv", i)), megabytesPerShard << 20, i);
+    }
+
+    try {
+      long singleThreadNanos = 0;
+      for (int round = 0; round < 2; ++round) {
+        // the first round only warms up the JIT, the second one is reported
+        for (int threads = 1; threads <= 16; threads *= 2) {
+          long start = System.nanoTime();
+          SearchBackEnd backEnd = new SongLoader().indexAllFilesInDirectory(directory.getPath(),
+              threads, MapEngine.OPEN_ADDRESSING);
+          long nanos = System.nanoTime() - start;
+          if (threads == 1) {
+            singleThreadNanos = nanos;
+          }
+          if (round == 1) {
+            System.out.printf("%2d threads: %7.0f ms, speedup %.2fx (%d songs)%n", threads,
+                nanos / 1e6, (double) singleThreadNanos / nanos, backEnd.size());
+          }
+        }
+      }
+    } catch (FileNotFoundException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  /**
+   * This method compares the startup time of rebuilding the index from a CSV catalog with opening
+   * a memory-mapped snapshot of the same index, and checks that both answer a query the same way
+   *
+   * @param megabytes - size of the generated catalog in megabytes
+   */
+  static void snapshotStartup(long megabytes) {
+    File csv = new File(System.getProperty("java.io.tmpdir"), "songs-benchmark.csv");
+    File snapshot = new File(System.getProperty("java.io.tmpdir"), "songs-benchmark.idx");
+    generateCatalog(csv, megabytes << 20, 42);
+    try {
+      long start = System.nanoTime();
+      SearchBackEnd backEnd = new SearchBackEnd(1 << 16, MapEngine.OPEN_ADDRESSING);
+      new SongLoader().indexFile(csv.getPath(), backEnd);
+      long rebuildNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      MappedSearchIndex.writeSnapshot(backEnd, snapshot);
+      long writeNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      MappedSearchIndex index = MappedSearchIndex.open(snapshot);
+      List<String> titles = index.findTitles("w1");
+      long openNanos = System.nanoTime() - start;
+
+      System.out.printf("rebuild from CSV: %8.1f ms%n", rebuildNanos / 1e6);
+      System.out.printf("write snapshot:   %8.1f ms (%d MB)%n", writeNanos / 1e6,
+          snapshot.length() >> 20);
+      System.out.printf("open + 1 query:   %8.1f ms%n", openNanos / 1e6);
+      System.out.println("same results: " + (titles.equals(backEnd.findTitles("w1"))
+          && index.findArtists("w7").equals(backEnd.findArtists("w7"))
+          && index.findNumberOfSongsInYear("w3", 1990) == backEnd.findNumberOfSongsInYear("w3", 1990)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      csv.delete();
+      snapshot.delete();
+    }
+  }
+
+  /**
+   * This method applies random typos to a word: a character is inserted, deleted or replaced
+   *
+   * @param word   - the word
+   * @param typos  - the number of typos
+   * @param random - the random generator
+   * @return the word with the typos
+   */
+  static String typo(String word, int typos, Random random) {
+    StringBuilder typed = new StringBuilder(word);
+    for (int i = 0; i < typos; ++i) {
+      int position = random.nextInt(typed.length() + 1);
+      char letter = (char) ('a' + random.nextInt(26));
+      int kind = typed.length() > 1 && position < typed.length() ? random.nextInt(3) : 0;
+      if (kind == 0) {
+        typed.insert(position, letter);
+      } else if (kind == 1) {
+        typed.deleteCharAt(position);
+      } else {
+        typed.setCharAt(position, letter);
+      }
+    }
+    return typed.toString();
+  }
+
+  /**
+   * This method builds a back end with many distinct title words: every song has a random word of
+   * 5 to 12 letters, with a skewed letter distribution, and a word drawn by word()
+   *
+   * @param words - number of songs and so of random words
+   * @param seed  - seed of the random generator
+   * @return the back end
+   */
+  static SearchBackEnd randomWordBackEnd(int words, long seed) {
+    Random random = new Random(seed);
+    SearchBackEnd backEnd = new SearchBackEnd(1 << 16, MapEngine.OPEN_ADDRESSING);
+    StringBuilder word = new StringBuilder();
+    for (int i = 0; i < words; ++i) {
+      word.setLength(0);
+      int length = 5 + random.nextInt(8);
+      for (int c = 0; c < length; ++c) {
+        word.append((char) ('a' + Math.min(25, (int) (26 * Math.pow(random.nextDouble(), 1.5)))));
+      }
+      backEnd.addSong(new SongData(word + " " + word(random), "artist" + random.nextInt(50_000),
+          1900 + random.nextInt(125)));
+    }
+    return backEnd;
+  }
+
+  /**
+   * This method copies the words of a back end into an array
+   *
+   * @param backEnd - the back end
+   * @return the words of the back end in the order they were added
+   */
+  static String[] termArray(SearchBackEnd backEnd) {
+    String[] terms = new String[backEnd.termCount()];
+    for (int i = 0; i < terms.length; ++i) {
+      terms[i] = backEnd.term(i);
+    }
+    return terms;
+  }
+
+  /**
+   * This method reports the latency of findTitles() while the catalog is quiet and while a writer
+   * thread replaces songs with corrected copies at the passed rate, with a BackgroundCompactor
+   * dropping the replaced songs from the posting lists meanwhile. Queries hold the read lock of
+   * the back end, the writer and the compactor the write lock
+   *
+   * @param songs            - number of songs of the catalog
+   * @param updatesPerSecond - number of updateSong() calls per second during the churn phase
+   */
+  static void churn(int songs, int updatesPerSecond) {
+    Random random = new Random(42);
+    SongData[] catalog = new SongData[songs];
+    StringBuilder title = new StringBuilder();
+    for (int i = 0; i < songs; ++i) {
+      title.setLength(0);
+      int words = 1 + random.nextInt(5);
+      for (int w = 0; w < words; ++w) {
+        title.append(w == 0 ? "" : " ").append(word(random));
+      }
+      catalog[i] = new SongData(title.toString(), "artist" + random.nextInt(50_000),
+          1900 + random.nextInt(125));
+    }
+    SearchBackEnd backEnd = new SearchBackEnd(1 << 16, MapEngine.OPEN_ADDRESSING);
+    backEnd.addSongs(Arrays.asList(catalog));
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+    int queries = 200_000;
+    String[] words = new String[queries];
+    for (int i = 0; i < queries; ++i) {
+      words[i] = word(random);
+    }
+
+    for (String phase : new String[] {"warm-up", "quiet", "churn"}) {
+      AtomicBoolean stop = new AtomicBoolean();
+      AtomicLong updates = new AtomicLong();
+      BackgroundCompactor compactor = null;
+      Thread writer = null;
+      if (phase.equals("churn")) {
+        compactor = new BackgroundCompactor(backEnd, lock);
+        // the writer works in batches every 10 milliseconds, each batch replaces random songs by a
+        // copy published one year later
+        writer = new Thread(() -> {
+          Random writerRandom = new Random(7);
+          int batch = Math.max(1, updatesPerSecond / 100);
+          while (!stop.get()) {
+            lock.writeLock().lock();
+            try {
+              for (int i = 0; i < batch; ++i) {
+                int index = writerRandom.nextInt(songs);
+                SongData updated = new SongData(catalog[index].getTitle(),
+                    catalog[index].getArtist(), catalog[index].getYearPublished() + 1);
+                backEnd.updateSong(catalog[index], updated);
+                catalog[index] = updated;
+              }
+            } finally {
+              lock.writeLock().unlock();
+            }
+            updates.addAndGet(batch);
+            try {
+              Thread.sleep(10);
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+        });
+        writer.start();
+      }
+
+      LatencyHistogram latencies = new LatencyHistogram();
+      long start = System.nanoTime();
+      for (int i = 0; i < queries; ++i) {
+        long queryStart = System.nanoTime();
+        lock.readLock().lock();
+        try {
+          List<String> titles = backEnd.findTitles(words[i]);
+          sink += titles == null ? 0 : titles.size();
+        } finally {
+          lock.readLock().unlock();
+        }
+        latencies.record(System.nanoTime() - queryStart);
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      stop.set(true);
+      if (writer != null) {
+        join(new Thread[] {writer});
+        compactor.close();
+      }
+      if (!phase.equals("warm-up")) {
+        System.out.printf("%-6s findTitles p50 %7.1f us  p99 %7.1f us  p999 %8.1f us  max %8.1f us"
+            + "  (%d updates/s)%n", phase, latencies.getValueAtPercentile(50) / 1e3,
+            latencies.getValueAtPercentile(99) / 1e3, latencies.getValueAtPercentile(99.9) / 1e3,
+            latencies.getMax() / 1e3, (long) (updates.get() / seconds));
+      }
+      if (compactor != null) {
+        System.out.printf("compactor: %d steps, %d songs live, %d words, %s%n",
+            compactor.getSteps(), backEnd.size(), backEnd.termCount(),
+            backEnd.needsCompaction() ? "removals pending" : "fully compacted");
+      }
+    }
+  }
+
+  /**
+   * This method compares the heap taken up by a catalog kept as SongData objects with the same
+   * catalog in a ColumnarSongStore on and off the heap, and reports how long a full garbage
+   * collection takes while each of them is live. The artists are separate strings per song, as a
+   * CSV reader produces them, and the titles are capitalized like real titles
+   *
+   * @param songs - number of songs of the catalog
+   */
+  static void songStore(int songs) {
+    for (int layout = 0; layout < 3; ++layout) {
+      long before = liveHeap();
+      Random random = new Random(42);
+      List<SongDataInterface> objects = new ArrayList<SongDataInterface>();
+      ColumnarSongStore store = layout == 0 ? null
+          : new ColumnarSongStore(1 << 16, MapEngine.OPEN_ADDRESSING, layout == 2);
+      StringBuilder title = new StringBuilder();
+      for (int i = 0; i < songs; ++i) {
+        title.setLength(0);
+        int words = 1 + random.nextInt(5);
+        for (int w = 0; w < words; ++w) {
+          String titleWord = word(random);
+          title.append(w == 0 ? "" : " ").append(Character.toUpperCase(titleWord.charAt(0)))
+              .append(titleWord, 1, titleWord.length());
+        }
+        SongData song = new SongData(title.toString(), "Artist " + random.nextInt(50_000),
+            1900 + random.nextInt(125));
+        if (store == null) {
+          objects.add(song);
+        } else {
+          store.add(song);
+        }
+      }
+      long bytes = liveHeap() - before;
+      long start = System.nanoTime();
+      System.gc();
+      long gcNanos = System.nanoTime() - start;
+      String label = layout == 0 ? "SongData objects" : layout == 1 ? "columnar store (heap)"
+          : "columnar store (off-heap)";
+      System.out.printf("%-28s %8.1f B/song on the heap   full GC %6.1f ms%n", label,
+          bytes / (double) songs, gcNanos / 1e6);
+      sink += objects.size() + (store == null ? 0 : store.titleBytes());
+    }
+  }
+
+  /**
+   * This method measures a ShardedSearchBackEnd of 1, 2, 4 and 8 shards: the throughput of a bulk
+   * load, of single songs added by concurrent writer threads, and the latency and throughput of
+   * findTitles(), findArtists() and findNumberOfSongsInYear() asked by concurrent reader threads.
+   * The scatter-gather only pays off with as many cores as shards; on fewer cores the numbers show
+   * what the fan-out costs
+   *
+   * @param songs   - number of songs of the catalog
+   * @param threads - number of writer threads and of reader threads
+   */
+  static void shardedQueries(int songs, int threads) {
+    Random random = new Random(42);
+    List<SongDataInterface> catalog = new ArrayList<SongDataInterface>();
+    StringBuilder title = new StringBuilder();
+    for (int i = 0; i < songs; ++i) {
+      title.setLength(0);
+      int words = 1 + random.nextInt(5);
+      for (int w = 0; w < words; ++w) {
+        title.append(w == 0 ? "" : " ").append(word(random));
+      }
+      catalog.add(new SongData(title.toString(), "artist" + random.nextInt(50_000),
+          1900 + random.nextInt(125)));
+    }
+    int queries = 20_000;
+    String[] words = new String[queries];
+    for (int i = 0; i < queries; ++i) {
+      words[i] = word(random);
+    }
+    System.out.printf("%d cores, %d songs, %d threads%n",
+        Runtime.getRuntime().availableProcessors(), songs, threads);
+
+    for (int shardCount : new int[] {1, 2, 4, 8}) {
+      try (ShardedSearchBackEnd bulk = new ShardedSearchBackEnd(shardCount, 1 << 16);
+          ShardedSearchBackEnd backEnd = new ShardedSearchBackEnd(shardCount, 1 << 16)) {
+        long start = System.nanoTime();
+        bulk.addSongs(catalog);
+        double bulkSeconds = (System.nanoTime() - start) / 1e9;
+
+        // every writer adds its own slice of the catalog one song at a time
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; ++t) {
+          List<SongDataInterface> slice =
+              catalog.subList(t * songs / threads, (t + 1) * songs / threads);
+          writers[t] = new Thread(() -> {
+            for (SongDataInterface song : slice) {
+              backEnd.addSong(song);
+            }
+          });
+        }
+        start = System.nanoTime();
+        for (Thread thread : writers) {
+          thread.start();
+        }
+        join(writers);
+        double addSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d shards: addSongs %10.0f songs/s   addSong x%d %10.0f songs/s%n",
+            shardCount, songs / bulkSeconds, threads, songs / addSeconds);
+
+        for (int method = 0; method < 3; ++method) {
+          int queried = method;
+          long[][] latencies = new long[threads][queries];
+          Thread[] readers = new Thread[threads];
+          for (int t = 0; t < threads; ++t) {
+            long[] latency = latencies[t];
+            readers[t] = new Thread(() -> {
+              for (int i = 0; i < queries; ++i) {
+                long queryStart = System.nanoTime();
+                sink += query(backEnd, queried, words[i], null, null);
+                latency[i] = System.nanoTime() - queryStart;
+              }
+            });
+          }
+          start = System.nanoTime();
+          for (Thread thread : readers) {
+            thread.start();
+          }
+          join(readers);
+          double querySeconds = (System.nanoTime() - start) / 1e9;
+          long[] sorted = new long[threads * queries];
+          for (int t = 0; t < threads; ++t) {
+            System.arraycopy(latencies[t], 0, sorted, t * queries, queries);
+          }
+          Arrays.sort(sorted);
+          String name = method == 0 ? "findTitles" : method == 1 ? "findArtists"
+              : "findNumberOfSongsInYear";
+          System.out.printf("  %-24s %10.0f queries/s   p50 %8.1f us   p99 %8.1f us%n", name,
+              sorted.length / querySeconds, percentile(sorted, 50) / 1e3,
+              percentile(sorted, 99) / 1e3);
+        }
+      }
+    }
+  }
+
+  /**
+   * This method replays Zipfian query traffic from closed-loop client threads against a shard of
+   * a catalog, once through the blocking methods of the shard and once through an
+   * AsyncSearchBackEnd for several batch windows, and reports throughput and latency. Every client
+   * asks findTitles(), findArtists() and findNumberOfSongsInYear() in turn for words drawn by
+   * popularity rank with an exponent of 1
+   *
+   * @param songs   - number of songs of the catalog
+   * @param clients - number of client threads
+   * @param seconds - duration of every run
+   */
+  static void asyncQueries(int songs, int clients, int seconds) {
+    LocalSearchShard shard = new LocalSearchShard(randomBackEnd(songs, 42), false);
+    double[] cumulative = new double[100_000];
+    double sum = 0;
+    for (int rank = 0; rank < cumulative.length; ++rank) {
+      sum += 1.0 / (rank + 1);
+      cumulative[rank] = sum;
+    }
+    String[] words = new String[1 << 20];
+    Random random = new Random(42);
+    for (int i = 0; i < words.length; ++i) {
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      words[i] = "w" + (rank < 0 ? -rank - 1 : rank);
+    }
+    System.out.printf("%d cores, %d songs, %d clients%n",
+        Runtime.getRuntime().availableProcessors(), songs, clients);
+
+    long[] windows = {-1, 0, 100_000, 1_000_000};
+    for (boolean warmUp : new boolean[] {true, false}) {
+      for (long window : windows) {
+        ExecutorService executor =
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        AsyncSearchBackEnd async =
+            window < 0 ? null : new AsyncSearchBackEnd(shard, executor, window, 256);
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[][] latencies = new long[clients][];
+        int[] answered = new int[clients];
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; ++c) {
+          int client = c;
+          threads[c] = new Thread(() -> {
+            long[] latency = new long[1 << 16];
+            int i = 0;
+            int next = client * 7919;
+            while (running.get()) {
+              String word = words[next++ & (words.length - 1)];
+              long start = System.nanoTime();
+              if (async == null) {
+                sink += query(shard, i % 3, word, null, null);
+              } else if (i % 3 == 0) {
+                List<String> titles = async.findTitles(word).join();
+                sink += titles == null ? 0 : titles.size();
+              } else if (i % 3 == 1) {
+                List<String> artists = async.findArtists(word).join();
+                sink += artists == null ? 0 : artists.size();
+              } else {
+                sink += async.findNumberOfSongsInYear(word, 1990).join();
+              }
+              if (i == latency.length) {
+                latency = Arrays.copyOf(latency, i * 2);
+              }
+              latency[i++] = System.nanoTime() - start;
+            }
+            latencies[client] = Arrays.copyOf(latency, i);
+            answered[client] = i;
+          });
+        }
+        for (Thread thread : threads) {
+          thread.start();
+        }
+        try {
+          Thread.sleep(seconds * 1000L);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        running.set(false);
+        join(threads);
+        int total = 0;
+        for (int count : answered) {
+          total += count;
+        }
+        long[] sorted = new long[total];
+        int position = 0;
+        for (long[] latency : latencies) {
+          System.arraycopy(latency, 0, sorted, position, latency.length);
+          position += latency.length;
+        }
+        Arrays.sort(sorted);
+        if (!warmUp) {
+          String label = window < 0 ? "blocking"
+              : String.format("async, window %d us", window / 1000);
+          System.out.printf("%-22s %9.0f queries/s   p50 %9.1f us   p99 %9.1f us", label,
+              total / (double) seconds, percentile(sorted, 50) / 1e3,
+              percentile(sorted, 99) / 1e3);
+          if (async != null) {
+            System.out.printf("   %4.1f%% coalesced, %5.1f queries/batch",
+                100.0 * async.getCoalescedCount() / async.getQueryCount(),
+                (async.getQueryCount() - async.getCoalescedCount())
+                    / (double) Math.max(1, async.getBatchCount()));
+          }
+          System.out.println();
+        }
+        if (async != null) {
+          async.close();
+        }
+        executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * This method appends random songs to CSV files in a temporary directory at a fixed rate while
+   * a LiveIngestor adds them to a shard and reader threads query the shard, and reports the
+   * ingest rate, the freshness lag of the batches and the query latency while songs arrive
+   *
+   * @param songsPerSecond - the rate at which songs are written
+   * @param readers        - number of reader threads
+   * @param seconds        - duration of the run
+   */
+  static void liveIngest(int songsPerSecond, int readers, int seconds) {
+    File directory;
+    try {
+      directory = Files.createTempDirectory("live-ingest").toFile();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    LocalSearchShard shard = new LocalSearchShard(1 << 16, MapEngine.OPEN_ADDRESSING);
+    AtomicBoolean running = new AtomicBoolean(true);
+    long[][] latencies = new long[readers][];
+    Thread[] readerThreads = new Thread[readers];
+    for (int r = 0; r < readers; ++r) {
+      int reader = r;
+      readerThreads[r] = new Thread(() -> {
+        Random random = new Random(reader);
+        long[] latency = new long[1 << 16];
+        int i = 0;
+        while (running.get()) {
+          long start = System.nanoTime();
+          sink += query(shard, i % 3, word(random), null, null);
+          if (i == latency.length) {
+            latency = Arrays.copyOf(latency, i * 2);
+          }
+          latency[i++] = System.nanoTime() - start;
+        }
+        latencies[reader] = Arrays.copyOf(latency, i);
+      });
+    }
+
+    try (LiveIngestor ingestor = new LiveIngestor(shard, directory.getPath(), null, 10_000, 100)) {
+      for (Thread thread : readerThreads) {
+        thread.start();
+      }
+      // songs are written in slices of 10 milliseconds, to a new file every second
+      Random random = new Random(42);
+      StringBuilder lines = new StringBuilder();
+      long start = System.nanoTime();
+      long written = 0;
+      for (int tick = 0; tick < seconds * 100; ++tick) {
+        lines.setLength(0);
+        long due = (long) songsPerSecond * (tick + 1) / 100;
+        for (; written < due; ++written) {
+          int words = 1 + random.nextInt(5);
+          for (int w = 0; w < words; ++w) {
+            lines.append(w == 0 ? "" : " ").append(word(random));
+          }
+          lines.append(",artist").append(random.nextInt(50_000)).append(',')
+              .append(1900 + random.nextInt(125)).append('\n');
+        }
+        File file = new File(directory, String.format("songs-%05d.csv", tick / 100));
+        Files.write(file.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        long sleep = start + (tick + 1) * 10_000_000L - System.nanoTime();
+        if (sleep > 0) {
+          Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+        }
+      }
+      double ingestRate = ingestor.getIngestRate();
+      long end = System.nanoTime() + 10_000_000_000L;
+      while (ingestor.getIngestedSongs() < written && System.nanoTime() < end) {
+        Thread.sleep(10);
+      }
+      running.set(false);
+      join(readerThreads);
+
+      LatencyHistogram lag = ingestor.getLagNanos();
+      System.out.printf("written %d songs/s, ingested %.0f songs/s, %d of %d songs in %d "
+          + "batches%n", songsPerSecond, ingestRate, ingestor.getIngestedSongs(), written,
+          ingestor.getEpoch());
+      System.out.printf("freshness lag  p50 %8.1f ms   p99 %8.1f ms   max %8.1f ms%n",
+          lag.getValueAtPercentile(50) / 1e6, lag.getValueAtPercentile(99) / 1e6,
+          lag.getMax() / 1e6);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      running.set(false);
+      File[] files = directory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      directory.delete();
+    }
+
+    int total = 0;
+    for (long[] latency : latencies) {
+      total += latency == null ? 0 : latency.length;
+    }
+    long[] sorted = new long[total];
+    int position = 0;
+    for (long[] latency : latencies) {
+      if (latency != null) {
+        System.arraycopy(latency, 0, sorted, position, latency.length);
+        position += latency.length;
+      }
+    }
+    Arrays.sort(sorted);
+    if (total > 0) {
+      System.out.printf("queries while ingesting %9.0f queries/s   p50 %8.1f us   p99 %8.1f us%n",
+          total / (double) seconds, percentile(sorted, 50) / 1e3, percentile(sorted, 99) / 1e3);
+    }
+  }
+
+  /**
+   * This method returns the number of bytes used on the heap after collecting the garbage
+   *
+   * @return the live heap in bytes
+   */
+  private static long liveHeap() {
+    for (int i = 0; i < 3; ++i) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * This method calls one of the query methods of a back end
+   *
+   * @param backEnd - the back end
+   * @param method  - 0 for findTitles(), 1 for findArtists(), 2 for findNumberOfSongsInYear(),
+   *                  3 for findNumberOfSongsInYearRange(), 4 for findTitlesMatching() and 5 for
+   *                  containsSong()
+   * @param word    - the queried word
+   * @param other   - a second word for the queries of two words
+   * @param song    - the song for containsSong()
+   * @return a number derived from the result
+   */
+  private static long query(SearchBackEndInterface backEnd, int method, String word, String other,
+      SongData song) {
+    switch (method) {
+      case 0:
+        List<String> titles = backEnd.findTitles(word);
+        return titles == null ? 0 : titles.size();
+      case 1:
+        List<String> artists = backEnd.findArtists(word);
+        return artists == null ? 0 : artists.size();
+      case 2:
+        return backEnd.findNumberOfSongsInYear(word, 1990);
+      case 3:
+        return backEnd.findNumberOfSongsInYearRange(word, 1950, 2000);
+      case 4:
+        return backEnd.findTitlesMatching(word + " " + other).size();
+      default:
+        return backEnd.containsSong(song) ? 1 : 0;
+    }
+  }
+
+  /**
+   * This method builds a back end of random songs whose title words follow the skewed
+   * distribution of word()
+   *
+   * @param songs - number of songs
+   * @param seed  - seed of the random generator
+   * @return the back end
+   */
+  static SearchBackEnd randomBackEnd(int songs, long seed) {
+    SearchBackEnd backEnd = new SearchBackEnd(1 << 16, MapEngine.OPEN_ADDRESSING);
+    for (SongData song : randomSongs(songs, new Random(seed))) {
+      backEnd.addSong(song);
+    }
+    return backEnd;
+  }
+
+  /**
+   * This method generates random songs of one to five title words following the skewed
+   * distribution of word(), 50,000 artists and the years 1900 to 2024
+   *
+   * @param songs  - number of songs
+   * @param random - the random generator
+   * @return the songs
+   */
+  static SongData[] randomSongs(int songs, Random random) {
+    SongData[] catalog = new SongData[songs];
+    StringBuilder title = new StringBuilder();
+    for (int i = 0; i < songs; ++i) {
+      title.setLength(0);
+      int words = 1 + random.nextInt(5);
+      for (int w = 0; w < words; ++w) {
+        title.append(w == 0 ? "" : " ").append(word(random));
+      }
+      catalog[i] = new SongData(title.toString(), "artist" + random.nextInt(50_000),
+          1900 + random.nextInt(125));
+    }
+    return catalog;
+  }
+
+
+  /**
+   * This method prints the throughput of a loading run
+   *
+   * @param name    - name of the run
+   * @param bytes   - number of bytes read
+   * @param records - number of records read
+   * @param nanos   - duration of the run
+   */
+  private static void report(String name, long bytes, long records, long nanos) {
+    double seconds = nanos / 1e9;
+    System.out.printf("%-14s %8.1f MB/s %12.0f records/s%n", name, bytes / 1048576.0 / seconds,
+        records / seconds);
+  }
+
+  /**
+   * This method writes a CSV catalog of random songs. Title words are drawn from a fixed
+   * vocabulary with a skewed distribution, and some titles are quoted and contain commas
+   *
+   * @param file  - the file to be written
+   * @param bytes - approximate size of the file in bytes
+   * @param seed  - seed of the random generator
+   */
+  static void generateCatalog(File file, long bytes, long seed) {
+    Random random = new Random(seed);
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+      writer.write("title,artist,year\n");
+      long written = 18;
+      StringBuilder line = new StringBuilder();
+      while (written < bytes) {
+        line.setLength(0);
+        boolean quoted = random.nextInt(10) == 0;
+        if (quoted) {
+          line.append('"');
+        }
+        int words = 1 + random.nextInt(5);
+        for (int i = 0; i < words; ++i) {
+          if (i > 0) {
+            line.append(quoted && i == 1 ? ", " : " ");
+          }
+          line.append(word(random));
+        }
+        if (quoted) {
+          line.append('"');
+        }
+        line.append(",artist").append(random.nextInt(50_000)).append(',')
+            .append(1900 + random.nextInt(125)).append('\n');
+        writer.append(line);
+        written += line.length();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * This method draws a title word with a skewed (roughly Zipfian) distribution over a vocabulary
+   * of 100,000 words
+   *
+   * @param random - the random generator
+   * @return the title word
+   */
+  static String word(Random random) {
+    double u = random.nextDouble();
+    return "w" + (int) (100_000 * u * u * u);
+  }
+
+  /**
+   * This method waits for all the passed threads to finish
+   *
+   * @param threads - the threads to be joined
+   */
+  private static void join(Thread[] threads) {
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * This method returns a percentile of sorted samples
+   *
+   * @param sorted     - the samples in ascending order
+   * @param percentile - the percentile between 0 and 100
+   * @return the sample at the percentile
+   */
+  static long percentile(long[] sorted, double percentile) {
+    int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+}
@@ -0,0 +1,382 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class gathers the metrics of a search deployment: the per method latencies and result
+ * sizes of an InstrumentedSearchBackEnd, the word index and posting list statistics of a
+ * SearchBackEnd, the ingest counters of a SongLoader and the freshness of a LiveIngestor. The
+ * metrics are published as an MXBean and as plain text in the Prometheus exposition format, which
+ * can be served over HTTP for scraping. Every source is optional. The statistics of the back end
+ * are computed when they are read, by scanning the back end; the word index attributes of the
+ * MXBean share one scan for STATS_TTL_NANOS, so a JMX client reading them one by one scans the
+ * back end once. When the back end is changed while it serves queries, as a LocalSearchShard is,
+ * the metrics must be given the lock of the back end and hold its read lock while they scan it;
+ * without a lock they may only be read while no songs are added
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+  private static final long STATS_TTL_NANOS = 1_000_000_000L;   // how long the MXBean attributes
+                                                                // reuse a scan of the word index
+
+  private final InstrumentedSearchBackEnd instrumented;   // source of the latencies, may be null
+  private final SearchBackEnd backEnd;                    // source of the index statistics, may be
+                                                          // null
+  private final ReadWriteLock lock;                       // guards the back end, may be null
+  private final SongLoader loader;                        // source of the ingest counters, may be
+                                                          // null
+  private final LiveIngestor ingestor;                    // source of the live ingest counters,
+                                                          // may be null
+  private MapStats cachedStats;       // last scan of the word index, null before the first one
+  private long cachedStatsNanos;      // System.nanoTime() of the last scan
+
+  /**
+   * Constructor which gathers the metrics of the passed sources, any of which may be null
+   *
+   * @param instrumented - the measured back end
+   * @param backEnd      - the back end whose word index is described
+   * @param loader       - the loader whose ingest is counted
+   */
+  public SearchMetrics(InstrumentedSearchBackEnd instrumented, SearchBackEnd backEnd,
+      SongLoader loader) {
+    this(instrumented, backEnd, loader, null);
+  }
+
+  /**
+   * Constructor which gathers the metrics of the passed sources, any of which may be null
+   *
+   * @param instrumented - the measured back end
+   * @param backEnd      - the back end whose word index is described
+   * @param loader       - the loader whose ingest is counted
+   * @param ingestor     - the ingestor whose live ingest is counted
+   */
+  public SearchMetrics(InstrumentedSearchBackEnd instrumented, SearchBackEnd backEnd,
+      SongLoader loader, LiveIngestor ingestor) {
+    this(instrumented, backEnd, null, loader, ingestor);
+  }
+
+  /**
+   * Constructor which gathers the metrics of the passed sources, any of which may be null. The
+   * metrics of a LocalSearchShard are gathered from its back end and its lock
+   *
+   * @param instrumented - the measured back end
+   * @param backEnd      - the back end whose word index is described
+   * @param lock         - the lock guarding the back end, whose read lock is held while the back
+   *                       end is read; null if the back end is not changed meanwhile
+   * @param loader       - the loader whose ingest is counted
+   * @param ingestor     - the ingestor whose live ingest is counted
+   */
+  public SearchMetrics(InstrumentedSearchBackEnd instrumented, SearchBackEnd backEnd,
+      ReadWriteLock lock, SongLoader loader, LiveIngestor ingestor) {
+    this.instrumented = instrumented;
+    this.backEnd = backEnd;
+    this.lock = lock;
+    this.loader = loader;
+    this.ingestor = ingestor;
+  }
+
+  /**
+   * This method returns the statistics of the word index, reusing the last scan while it is
+   * younger than STATS_TTL_NANOS so that the word index attributes read by one scrape agree and
+   * cost a single scan
+   *
+   * @return the statistics
+   */
+  private synchronized MapStats wordIndexStats() {
+    long now = System.nanoTime();
+    if (cachedStats == null || now - cachedStatsNanos >= STATS_TTL_NANOS) {
+      cachedStats = scanWordIndex();
+      cachedStatsNanos = now;
+    }
+    return cachedStats;
+  }
+
+  /**
+   * This method scans the word index for its statistics, under the read lock of the back end if
+   * there is one
+   *
+   * @return the statistics
+   */
+  private MapStats scanWordIndex() {
+    Lock readLock = lock == null ? null : lock.readLock();
+    if (readLock != null) {
+      readLock.lock();
+    }
+    try {
+      return backEnd.getWordIndexStats();
+    } finally {
+      if (readLock != null) {
+        readLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * This method registers the metrics with the platform MBean server under the object name
+   * "SongSearch:type=SearchMetrics,name=" followed by the passed name
+   *
+   * @param name - the name telling several registered instances apart
+   * @return the object name of the MXBean
+   * @throws IllegalStateException if the name is invalid or already registered
+   */
+  public ObjectName register(String name) {
+    try {
+      ObjectName objectName = new ObjectName("SongSearch:type=SearchMetrics,name=" + name);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      return objectName;
+    } catch (JMException e) {
+      throw new IllegalStateException("could not register the metrics as " + name, e);
+    }
+  }
+
+  /**
+   * This method serves the text of toText() over HTTP at the path /metrics, on a background
+   * thread of the returned server
+   *
+   * @param port - the port to listen on, 0 for any free port
+   * @return the started server, which is stopped with HttpServer.stop()
+   */
+  public HttpServer serve(int port) {
+    try {
+      HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+      server.createContext("/metrics", exchange -> {
+        byte[] body = toText().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+          output.write(body);
+        }
+      });
+      server.start();
+      return server;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public String[] getMethods() {
+    return InstrumentedSearchBackEnd.METHODS.clone();
+  }
+
+  @Override
+  public long getCalls(String method) {
+    return instrumented == null ? 0 : instrumented.getLatencies(method).getCount();
+  }
+
+  @Override
+  public double getLatencyMillis(String method, double percentile) {
+    return instrumented == null ? 0
+        : instrumented.getLatencies(method).getValueAtPercentile(percentile) / 1e6;
+  }
+
+  @Override
+  public double getWordIndexLoadFactor() {
+    return backEnd == null ? 0 : wordIndexStats().getLoadFactor();
+  }
+
+  @Override
+  public double getWordIndexMeanLength() {
+    return backEnd == null ? 0 : wordIndexStats().getMeanLength();
+  }
+
+  @Override
+  public int getWordIndexMaxLength() {
+    return backEnd == null ? 0 : wordIndexStats().getMaxLength();
+  }
+
+  @Override
+  public long getWordIndexResizes() {
+    return backEnd == null ? 0 : wordIndexStats().getResizeCount();
+  }
+
+  @Override
+  public double getWordIndexResizeMillis() {
+    return backEnd == null ? 0 : wordIndexStats().getResizeNanos() / 1e6;
+  }
+
+  @Override
+  public long getLoadedRecords() {
+    return loader == null ? 0 : loader.getLoadedRecords();
+  }
+
+  @Override
+  public long getSkippedRecords() {
+    return loader == null ? 0 : loader.getSkippedRecords();
+  }
+
+  @Override
+  public long getBytesRead() {
+    return loader == null ? 0 : loader.getBytesRead();
+  }
+
+  @Override
+  public long getIngestedSongs() {
+    return ingestor == null ? 0 : ingestor.getIngestedSongs();
+  }
+
+  @Override
+  public double getIngestRate() {
+    return ingestor == null ? 0 : ingestor.getIngestRate();
+  }
+
+  @Override
+  public long getIngestFailedReads() {
+    return ingestor == null ? 0 : ingestor.getFailedReads();
+  }
+
+  @Override
+  public long getIngestEpoch() {
+    return ingestor == null ? 0 : ingestor.getEpoch();
+  }
+
+  @Override
+  public double getFreshnessLagMillis(double percentile) {
+    return ingestor == null ? 0 : ingestor.getLagNanos().getValueAtPercentile(percentile) / 1e6;
+  }
+
+  @Override
+  public String getText() {
+    return toText();
+  }
+
+  /**
+   * This method writes all metrics in the Prometheus text exposition format, one sample per line
+   *
+   * @return the metrics as text
+   */
+  public String toText() {
+    StringBuilder text = new StringBuilder();
+    if (instrumented != null) {
+      text.append("# TYPE songsearch_calls_total counter\n");
+      for (String method : InstrumentedSearchBackEnd.METHODS) {
+        sample(text, "songsearch_calls_total", "method=\"" + method + "\"",
+            instrumented.getLatencies(method).getCount());
+      }
+      text.append("# TYPE songsearch_latency_seconds summary\n");
+      for (String method : InstrumentedSearchBackEnd.METHODS) {
+        quantiles(text, "songsearch_latency_seconds", "method=\"" + method + "\"",
+            instrumented.getLatencies(method), 1e-9);
+      }
+      text.append("# TYPE songsearch_results summary\n");
+      for (String method : InstrumentedSearchBackEnd.METHODS) {
+        if (instrumented.getResultSizes(method).getCount() > 0) {
+          quantiles(text, "songsearch_results", "method=\"" + method + "\"",
+              instrumented.getResultSizes(method), 1);
+        }
+      }
+    }
+
+    if (backEnd != null) {
+      // the back end is read at once under its read lock, so the samples describe one state of it
+      MapStats stats;
+      int songs;
+      LatencyHistogram postingSizes;
+      Lock readLock = lock == null ? null : lock.readLock();
+      if (readLock != null) {
+        readLock.lock();
+      }
+      try {
+        stats = backEnd.getWordIndexStats();
+        songs = backEnd.size();
+        postingSizes = backEnd.getPostingSizes();
+      } finally {
+        if (readLock != null) {
+          readLock.unlock();
+        }
+      }
+      String labels = "length=\"" + stats.getLengthName() + "\"";
+      sample(text, "songsearch_word_index_size", "", stats.getSize());
+      sample(text, "songsearch_word_index_capacity", "", stats.getCapacity());
+      sample(text, "songsearch_word_index_load_factor", "", stats.getLoadFactor());
+      sample(text, "songsearch_word_index_length_mean", labels, stats.getMeanLength());
+      sample(text, "songsearch_word_index_length_max", labels, stats.getMaxLength());
+      for (int length = 0; length <= stats.getMaxLength(); ++length) {
+        if (stats.getLengthCount(length) > 0) {
+          sample(text, "songsearch_word_index_length_count",
+              labels + ",value=\"" + length + "\"", stats.getLengthCount(length));
+        }
+      }
+      sample(text, "songsearch_word_index_resizes_total", "", stats.getResizeCount());
+      sample(text, "songsearch_word_index_resize_seconds_total", "",
+          stats.getResizeNanos() / 1e9);
+      sample(text, "songsearch_songs", "", songs);
+      text.append("# TYPE songsearch_posting_size summary\n");
+      quantiles(text, "songsearch_posting_size", "", postingSizes, 1);
+    }
+
+    if (loader != null) {
+      sample(text, "songsearch_loader_records_total", "", loader.getLoadedRecords());
+      sample(text, "songsearch_loader_skipped_records_total", "", loader.getSkippedRecords());
+      sample(text, "songsearch_loader_bytes_total", "", loader.getBytesRead());
+      sample(text, "songsearch_loader_files_total", "", loader.getFilesRead());
+      sample(text, "songsearch_loader_read_seconds_total", "", loader.getReadNanos() / 1e9);
+    }
+
+    if (ingestor != null) {
+      sample(text, "songsearch_ingest_songs_total", "", ingestor.getIngestedSongs());
+      sample(text, "songsearch_ingest_skipped_records_total", "", ingestor.getSkippedRecords());
+      sample(text, "songsearch_ingest_bytes_total", "", ingestor.getBytesRead());
+      sample(text, "songsearch_ingest_failed_reads_total", "", ingestor.getFailedReads());
+      sample(text, "songsearch_ingest_epoch", "", ingestor.getEpoch());
+      sample(text, "songsearch_ingest_rate", "", ingestor.getIngestRate());
+      sample(text, "songsearch_ingest_lag_seconds_last", "", ingestor.getLastLagNanos() / 1e9);
+      text.append("# TYPE songsearch_ingest_lag_seconds summary\n");
+      quantiles(text, "songsearch_ingest_lag_seconds", "", ingestor.getLagNanos(), 1e-9);
+    }
+    return text.toString();
+  }
+
+  /**
+   * This method writes the quantiles, count and sum of a histogram
+   *
+   * @param text   - the text written to
+   * @param name   - the name of the metric
+   * @param labels - the labels of the samples, may be empty
+   * @param values - the histogram
+   * @param scale  - the factor converting the recorded values to the unit of the metric
+   */
+  private static void quantiles(StringBuilder text, String name, String labels,
+      LatencyHistogram values, double scale) {
+    String separator = labels.isEmpty() ? "" : labels + ",";
+    for (double quantile : QUANTILES) {
+      sample(text, name, separator + "quantile=\"" + quantile + "\"",
+          values.getValueAtPercentile(quantile * 100) * scale);
+    }
+    sample(text, name + "_count", labels, values.getCount());
+    sample(text, name + "_sum", labels, values.getMean() * values.getCount() * scale);
+  }
+
+  /**
+   * This method writes one sample
+   *
+   * @param text   - the text written to
+   * @param name   - the name of the metric
+   * @param labels - the labels of the sample, may be empty
+   * @param value  - the value of the sample
+   */
+  private static void sample(StringBuilder text, String name, String labels, double value) {
+    text.append(name);
+    if (!labels.isEmpty()) {
+      text.append('{').append(labels).append('}');
+    }
+    text.append(' ');
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      text.append((long) value);
+    } else {
+      text.append(String.format(Locale.ROOT, "%.9g", value));
+    }
+    text.append('\n');
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ * This interface lists the metrics of the search back end which are published over JMX by
+ * SearchMetrics. Attributes which are not available, because no back end or loader was passed to
+ * SearchMetrics, are reported as 0
+ */
+public interface SearchMetricsMXBean {
+
+  // the names of the measured back end methods
+  public String[] getMethods();
+
+  // the number of measured calls of a method
+  public long getCalls(String method);
+
+  // the latency of a method at a percentile (0 to 100), in milliseconds
+  public double getLatencyMillis(String method, double percentile);
+
+  // the number of entries per bucket (chained) or slot (open addressing) of the word index
+  public double getWordIndexLoadFactor();
+
+  // the mean chain length (chained) or probe length (open addressing) of the word index
+  public double getWordIndexMeanLength();
+
+  // the longest chain (chained) or probe sequence (open addressing) of the word index
+  public int getWordIndexMaxLength();
+
+  // the number of times the word index was resized and the time spent in the resizes
+  public long getWordIndexResizes();
+
+  public double getWordIndexResizeMillis();
+
+  // the ingest counters of the loader
+  public long getLoadedRecords();
+
+  public long getSkippedRecords();
+
+  public long getBytesRead();
+
+  // the live ingest of the ingestor: songs added, songs per second over the last 10 seconds,
+  // batches added and the freshness lag of the batches at a percentile between 0 and 100
+  public long getIngestedSongs();
+
+  public double getIngestRate();
+
+  // the number of times the ingestor could not read a file or its directory
+  public long getIngestFailedReads();
+
+  public long getIngestEpoch();
+
+  public double getFreshnessLagMillis(double percentile);
+
+  // all metrics in the text format of SearchMetrics.toText()
+  public String getText();
+}
@@ -0,0 +1,17 @@
+/**
+ * This interface is one partition of a ShardedSearchBackEnd. A shard answers the queries of
+ * SearchBackEndInterface for the songs routed to it, and may be called by any number of threads
+ * at once. Every argument and result is a plain value (a song, a word, a number or a list of
+ * strings), so a shard may just as well forward the calls to a process on another node; the
+ * sharded back end only relies on the methods of this interface. LocalSearchShard is the shard
+ * which holds its songs in-process
+ */
+public interface SearchShard extends SearchBackEndInterface, AutoCloseable {
+
+  // returns the number of songs stored in the shard
+  public int size();
+
+  // releases the resources of the shard, such as its threads or its connection
+  @Override
+  public void close();
+}
@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * This class is a Back End whose songs are hash-partitioned over several shards, each with its own
+ * hash tables and its own lock, so neither the size of the index nor the rate of changes is bound
+ * by a single structure. A song is routed to a shard by its artist and year, so songs of the same
+ * identity always meet in the same shard and containsSong(), removeSong() and the rejection of
+ * duplicates only ever ask one shard. A query by word is scattered to every shard in parallel and
+ * the answers are gathered: titles are concatenated, artists are deduplicated and counts are
+ * summed. The shards are only used through SearchShard, so they may run in-process
+ * (LocalSearchShard) or elsewhere
+ */
+public class ShardedSearchBackEnd implements SearchBackEndInterface, AutoCloseable {
+  private final SearchShard[] shards;     // the shards, a song lives in shards[shardOf(song)]
+  private final ExecutorService executor; // runs the queries of every shard but the first, null
+                                          // if there is only one shard
+
+  /**
+   * Constructor which creates a back end of in-process shards with the open addressing engine
+   *
+   * @param shardCount - the number of shards
+   * @param capacity   - the total initial capacity of the hash tables of all shards
+   */
+  public ShardedSearchBackEnd(int shardCount, int capacity) {
+    this(shardCount, capacity, MapEngine.OPEN_ADDRESSING);
+  }
+
+  /**
+   * Constructor which creates a back end of in-process shards
+   *
+   * @param shardCount - the number of shards
+   * @param capacity   - the total initial capacity of the hash tables of all shards
+   * @param engine     - the MapADT implementation used by the shards
+   */
+  public ShardedSearchBackEnd(int shardCount, int capacity, MapEngine engine) {
+    this(localShards(shardCount, capacity, engine));
+  }
+
+  /**
+   * Constructor which creates a back end over the passed shards, which are closed together with
+   * the back end. Songs are routed by the position of the shard in the list, so a back end over
+   * shards which already hold songs must get them in the same order every time
+   *
+   * @param shards - the shards, at least one
+   * @throws IllegalArgumentException if the list is empty
+   */
+  public ShardedSearchBackEnd(List<? extends SearchShard> shards) {
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("a sharded back end needs at least one shard");
+    }
+    this.shards = shards.toArray(new SearchShard[0]);
+    if (this.shards.length == 1) {
+      executor = null;
+    } else {
+      AtomicInteger threads = new AtomicInteger();
+      executor = Executors.newFixedThreadPool(this.shards.length - 1, runnable -> {
+        Thread thread = new Thread(runnable, "search-shard-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * This method creates empty in-process shards
+   *
+   * @param shardCount - the number of shards, at least one
+   * @param capacity   - the total initial capacity of the hash tables of all shards
+   * @param engine     - the MapADT implementation used by the shards
+   * @return the shards
+   */
+  private static List<SearchShard> localShards(int shardCount, int capacity, MapEngine engine) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("invalid number of shards: " + shardCount);
+    }
+    List<SearchShard> shards = new ArrayList<SearchShard>();
+    for (int i = 0; i < shardCount; ++i) {
+      shards.add(new LocalSearchShard(Math.max(16, capacity / shardCount), engine));
+    }
+    return shards;
+  }
+
+  /**
+   * This method returns the number of shards
+   *
+   * @return the number of shards
+   */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * This method returns one of the shards
+   *
+   * @param shard - the position of the shard
+   * @return the shard
+   */
+  public SearchShard getShard(int shard) {
+    return shards[shard];
+  }
+
+  /**
+   * This method returns the shard of a song, which is chosen by the hash code of its artist and
+   * its year
+   *
+   * @param song - the song
+   * @return the position of the shard holding the song
+   */
+  int shardOf(SongDataInterface song) {
+    int hash = OpenAddressingMap.spread(song.getArtist().hashCode() * 31 + song.getYearPublished());
+    return Math.floorMod(hash, shards.length);
+  }
+
+  /**
+   * This method asks every shard the same query: the shards after the first one are asked by the
+   * threads of the executor while the calling thread asks the first one, and the answers are
+   * returned in the order of the shards
+   *
+   * @param query - asks the shard at the passed position
+   * @return the answers of the shards
+   */
+  private <ResultType> List<ResultType> scatter(IntFunction<ResultType> query) {
+    if (shards.length == 1) {
+      return Collections.singletonList(query.apply(0));
+    }
+    List<Future<ResultType>> futures = new ArrayList<Future<ResultType>>();
+    for (int i = 1; i < shards.length; ++i) {
+      int shard = i;
+      futures.add(executor.submit(() -> query.apply(shard)));
+    }
+    List<ResultType> results = new ArrayList<ResultType>();
+    try {
+      results.add(query.apply(0));
+      for (Future<ResultType> future : futures) {
+        results.add(future.get());
+      }
+    } catch (ExecutionException e) {
+      // the exception of a shard is thrown as if the shard had been asked directly
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for the shards", e);
+    } finally {
+      for (Future<ResultType> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  @Override
+  public void addSong(SongDataInterface song) {
+    shards[shardOf(song)].addSong(song);
+  }
+
+  /**
+   * This method splits the songs by shard and adds every part to its shard in parallel, with one
+   * bulk call per shard
+   *
+   * @param songs - the songs to be added
+   * @throws IllegalArgumentException if the year of a song can not be stored, in which case no
+   *                                  song is added
+   */
+  @Override
+  public void addSongs(Collection<? extends SongDataInterface> songs) {
+    List<List<SongDataInterface>> parts = new ArrayList<List<SongDataInterface>>();
+    for (int i = 0; i < shards.length; ++i) {
+      parts.add(new ArrayList<SongDataInterface>(songs.size() / shards.length + 16));
+    }
+    for (SongDataInterface song : songs) {
+      // checked before any shard is changed, so one bad song does not leave some shards loaded
+      ColumnarSongStore.checkYear(song.getYearPublished());
+      parts.get(shardOf(song)).add(song);
+    }
+    scatter(shard -> {
+      if (!parts.get(shard).isEmpty()) {
+        shards[shard].addSongs(parts.get(shard));
+      }
+      return null;
+    });
+  }
+
+  @Override
+  public boolean containsSong(SongDataInterface song) {
+    return shards[shardOf(song)].containsSong(song);
+  }
+
+  @Override
+  public boolean removeSong(SongDataInterface song) {
+    return shards[shardOf(song)].removeSong(song);
+  }
+
+  /**
+   * This method replaces a song by another one. When the new song belongs to another shard, the
+   * old song is removed from its shard before the new one is added to the other, so a query in
+   * between finds neither of them
+   *
+   * @param oldSong - the song to be replaced
+   * @param newSong - the song replacing it
+   * @return false if there is no song equal to oldSong
+   */
+  @Override
+  public boolean updateSong(SongDataInterface oldSong, SongDataInterface newSong) {
+    int shard = shardOf(oldSong);
+    if (shard == shardOf(newSong)) {
+      return shards[shard].updateSong(oldSong, newSong);
+    }
+    if (!shards[shard].removeSong(oldSong)) {
+      return false;
+    }
+    shards[shardOf(newSong)].addSong(newSong);
+    return true;
+  }
+
+  /**
+   * This method returns the titles of all songs containing the passed word, the titles of every
+   * shard in the order they were added to it, shard after shard
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return list of the titles, or null if no shard knows the word
+   */
+  @Override
+  public List<String> findTitles(String titleWord) {
+    return concatenate(scatter(shard -> shards[shard].findTitles(titleWord)));
+  }
+
+  /**
+   * This method returns the artists of all songs containing the passed word. An artist whose
+   * songs are spread over several shards is listed once, at its position in the first of them
+   *
+   * @param titleWord - the word we are looking for in the songs
+   * @return list of the distinct artists, or null if no shard knows the word
+   */
+  @Override
+  public List<String> findArtists(String titleWord) {
+    Set<String> songArtists = null;
+    for (List<String> artists : scatter(shard -> shards[shard].findArtists(titleWord))) {
+      if (artists != null) {
+        if (songArtists == null) {
+          songArtists = new LinkedHashSet<String>();
+        }
+        songArtists.addAll(artists);
+      }
+    }
+    return songArtists == null ? null : new LinkedList<String>(songArtists);
+  }
+
+  @Override
+  public int findNumberOfSongsInYear(String titleWord, int year) {
+    int totalSongs = 0;
+    for (int songs : scatter(shard -> shards[shard].findNumberOfSongsInYear(titleWord, year))) {
+      totalSongs += songs;
+    }
+    return totalSongs;
+  }
+
+  @Override
+  public int findNumberOfSongsInYearRange(String titleWord, int fromYear, int toYear) {
+    int totalSongs = 0;
+    for (int songs : scatter(
+        shard -> shards[shard].findNumberOfSongsInYearRange(titleWord, fromYear, toYear))) {
+      totalSongs += songs;
+    }
+    return totalSongs;
+  }
+
+  /**
+   * This method returns the titles of all songs matching a query of several words. A song only
+   * has to match within its own shard, so every shard evaluates the whole query
+   *
+   * @param query - the query, see BooleanQuery for its syntax
+   * @return list of the titles of the matching songs, shard after shard
+   */
+  @Override
+  public List<String> findTitlesMatching(String query) {
+    List<String> songTitles =
+        concatenate(scatter(shard -> shards[shard].findTitlesMatching(query)));
+    return songTitles == null ? new LinkedList<String>() : songTitles;
+  }
+
+  /**
+   * This method concatenates the lists returned by the shards
+   *
+   * @param lists - the lists of the shards, null for a shard which does not know the word
+   * @return the concatenated list, or null if every list is null
+   */
+  private static List<String> concatenate(List<List<String>> lists) {
+    List<String> concatenated = null;
+    for (List<String> list : lists) {
+      if (list != null) {
+        if (concatenated == null) {
+          concatenated = new LinkedList<String>();
+        }
+        concatenated.addAll(list);
+      }
+    }
+    return concatenated;
+  }
+
+  /**
+   * This method returns the number of songs stored in all shards
+   *
+   * @return the number of songs
+   */
+  public int size() {
+    int songs = 0;
+    for (int shardSongs : scatter(shard -> shards[shard].size())) {
+      songs += shardSongs;
+    }
+    return songs;
+  }
+
+  /**
+   * This method stops the threads asking the shards and closes every shard
+   */
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (SearchShard shard : shards) {
+      shard.close();
+    }
+  }
+}
@@ -9,23 +9,67 @@ interface SongDataInterface {
 // public class (implemented primarilly in final app week)
 
 public class SongData implements SongDataInterface {
+    private final String title;     // title of the song
+    private final String artist;    // performing artist of the song
+    private final int yearPublished;    // year in which the song was published
+
+    /**
+     * Constructor which stores the passed details of a song
+     *
+     * @param title         - the title of the song
+     * @param artist        - the performing artist of the song
+     * @param yearPublished - the year in which the song was published
+     */
+    public SongData(String title, String artist, int yearPublished) {
+        this.title = title;
+        this.artist = artist;
+        this.yearPublished = yearPublished;
+    }
 
     @Override
     public String getTitle() {
-        // TODO Auto-generated method stub
-        return null;
+        return title;
     }
 
     @Override
     public String getArtist() {
-        // TODO Auto-generated method stub
-        return null;
+        return artist;
     }
 
     @Override
     public int getYearPublished() {
-        // TODO Auto-generated method stub
-        return 0;
+        return yearPublished;
+    }
+
+    /**
+     * Two songs are equal when their title, artist and year are equal
+     *
+     * @param other - the object to be compared with
+     * @return true if the other object is a song with the same details
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof SongDataInterface)) {
+            return false;
+        }
+        // songs stored in other forms, like the views of a ColumnarSongStore, are compared by
+        // their details as well
+        SongDataInterface song = (SongDataInterface) other;
+        return yearPublished == song.getYearPublished() && title.equals(song.getTitle())
+            && artist.equals(song.getArtist());
+    }
+
+    @Override
+    public int hashCode() {
+        return (title.hashCode() * 31 + artist.hashCode()) * 31 + yearPublished;
+    }
+
+    @Override
+    public String toString() {
+        return title + " by " + artist + " (" + yearPublished + ")";
     }
 
 }
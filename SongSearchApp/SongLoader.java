@@ -1,5 +1,17 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 // interface (implemented with proposal)
 
@@ -10,18 +22,306 @@ interface SongLoaderInterface {
 
 // public class (implemented primarilly in final app week)
 
+/**
+ * This class loads songs from CSV files. The first line of a file names its columns, the columns
+ * called title, artist and year are used (when the first line names none of them, it is read as a
+ * song with the title, artist and year in its first three columns). Besides the list based methods
+ * of the interface, the stream methods hand every song to a callback as soon as it is parsed, so a
+ * catalog can be indexed without ever holding all of its songs in a list
+ */
 public class SongLoader implements SongLoaderInterface {
+    private static final int BUFFER_SIZE = 1 << 20;   // size in bytes of the read buffer
+
+    // number of records skipped because they were malformed, shared by the parallel file readers
+    private final AtomicLong skippedRecords = new AtomicLong();
+
+    // ingest counters, added to once per file so that the readers do not contend on them
+    private final AtomicLong loadedRecords = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong filesRead = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
 
     @Override
     public List<SongDataInterface> loadFile(String csvFilePath) throws FileNotFoundException {
-        // TODO Auto-generated method stub
-        return null;
+        List<SongDataInterface> songs = new ArrayList<>();
+        streamFile(csvFilePath, songs::add);
+        return songs;
     }
 
+    /**
+     * This method loads the CSV files of the directory in parallel, one file per task, and returns
+     * their songs in the order of the file names
+     */
     @Override
     public List<SongDataInterface> loadAllFilesInDirectory(String directoryPath) throws FileNotFoundException {
-        // TODO Auto-generated method stub
-        return null;
+        File[] files = csvFiles(directoryPath);
+        List<List<SongDataInterface>> fileSongs = runPerFile(files, ForkJoinPool.commonPool(), file -> loadFile(file.getPath()));
+        List<SongDataInterface> songs = new ArrayList<>();
+        for (List<SongDataInterface> list : fileSongs) {
+            songs.addAll(list);
+        }
+        return songs;
+    }
+
+    /**
+     * This method builds a back end from all the CSV files of a directory. The files are parsed in
+     * parallel and every task indexes its file into a partial back end of its own, so the parsing
+     * threads never share a lock. The partial back ends are merged afterwards in the order of the
+     * file names, which gives the songs the same IDs as loading the files one after another
+     *
+     * @param directoryPath - the path of the directory
+     * @param threads       - the number of threads parsing files
+     * @param engine        - the hash table engine of the back ends
+     * @return a back end holding the songs of all the files
+     * @throws FileNotFoundException if the directory does not exist
+     */
+    public SearchBackEnd indexAllFilesInDirectory(String directoryPath, int threads, MapEngine engine) throws FileNotFoundException {
+        File[] files = csvFiles(directoryPath);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<SearchBackEnd> partials = runPerFile(files, pool, file -> {
+                SearchBackEnd partial = new SearchBackEnd(1 << 12, engine);
+                indexFile(file.getPath(), partial);
+                return partial;
+            });
+
+            SearchBackEnd backEnd = partials.isEmpty() ? new SearchBackEnd(16, engine) : partials.get(0);
+            for (int i = 1; i < partials.size(); ++i) {
+                backEnd.merge(partials.get(i));
+            }
+            return backEnd;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * This interface is a task run on one file which may throw FileNotFoundException
+     */
+    private interface FileTask<ResultType> {
+        ResultType run(File file) throws FileNotFoundException;
+    }
+
+    /**
+     * This method runs a task for every file on the passed pool and returns their results in the
+     * order of the files
+     *
+     * @param files - the files to be processed
+     * @param pool  - the pool running the tasks
+     * @param task  - the task run for every file
+     * @return the results of the tasks
+     * @throws FileNotFoundException if a file disappeared before it could be read
+     */
+    private static <ResultType> List<ResultType> runPerFile(File[] files, ForkJoinPool pool, FileTask<ResultType> task) throws FileNotFoundException {
+        List<ForkJoinTask<ResultType>> tasks = new ArrayList<>();
+        for (File file : files) {
+            tasks.add(pool.submit(() -> {
+                try {
+                    return task.run(file);
+                } catch (FileNotFoundException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        List<ResultType> results = new ArrayList<>();
+        for (ForkJoinTask<ResultType> forkJoinTask : tasks) {
+            try {
+                results.add(forkJoinTask.join());
+            } catch (UncheckedIOException e) {
+                // the pool may rethrow a copy of the exception of the task, so the cause chain is
+                // searched for the original FileNotFoundException
+                for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                    if (cause instanceof FileNotFoundException) {
+                        throw (FileNotFoundException) cause;
+                    }
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * This method adds every song of a CSV file to the passed back end while the file is read
+     *
+     * @param csvFilePath - the path of the CSV file
+     * @param backEnd     - the back end the songs are added to
+     * @return the number of songs added
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public long indexFile(String csvFilePath, SearchBackEndInterface backEnd) throws FileNotFoundException {
+        return streamFile(csvFilePath, backEnd::addSong);
+    }
+
+    /**
+     * This method reads a CSV file record by record and passes every song to the consumer as soon
+     * as it is parsed. Records whose year is not a number or does not fit into a short are skipped
+     *
+     * @param csvFilePath - the path of the CSV file
+     * @param consumer    - receives every song of the file
+     * @return the number of songs passed to the consumer
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public long streamFile(String csvFilePath, Consumer<? super SongDataInterface> consumer) throws FileNotFoundException {
+        File file = new File(csvFilePath);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(csvFilePath);
+        }
+
+        long songs = 0;
+        long skipped = 0;
+        long bytes = 0;
+        long start = System.nanoTime();
+        try (CsvReader reader = new CsvReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), BUFFER_SIZE)) {
+            if (!reader.nextRecord()) {
+                return 0;
+            }
+            // the columns are looked up in the first record, if it is not a header it is a song
+            int[] columns = findColumns(reader);
+            boolean header = columns != null;
+            if (!header) {
+                columns = new int[] {0, 1, 2};
+            }
+
+            boolean hasRecord = header ? reader.nextRecord() : true;
+            while (hasRecord) {
+                int year;
+                try {
+                    year = reader.intField(columns[2]);
+                    // a year the song store can not hold is skipped like a year which is no number,
+                    // instead of failing the back end and with it the rest of the file
+                    ColumnarSongStore.checkYear(year);
+                } catch (IllegalArgumentException e) {
+                    skipped += 1;
+                    hasRecord = reader.nextRecord();
+                    continue;
+                }
+                consumer.accept(new SongData(reader.field(columns[0]), reader.field(columns[1]), year));
+                songs += 1;
+                hasRecord = reader.nextRecord();
+            }
+            bytes = reader.offset();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            skippedRecords.addAndGet(skipped);
+            loadedRecords.addAndGet(songs);
+            bytesRead.addAndGet(bytes);
+            filesRead.incrementAndGet();
+            readNanos.addAndGet(System.nanoTime() - start);
+        }
+        return songs;
+    }
+
+    /**
+     * This method passes every song of every CSV file in the directory to the consumer, the files
+     * are read in the order of their names
+     *
+     * @param directoryPath - the path of the directory
+     * @param consumer      - receives every song of the files
+     * @return the number of songs passed to the consumer
+     * @throws FileNotFoundException if the directory does not exist
+     */
+    public long streamAllFilesInDirectory(String directoryPath, Consumer<? super SongDataInterface> consumer) throws FileNotFoundException {
+        long songs = 0;
+        for (File file : csvFiles(directoryPath)) {
+            songs += streamFile(file.getPath(), consumer);
+        }
+        return songs;
+    }
+
+    /**
+     * This method lists the CSV files of a directory sorted by name
+     *
+     * @param directoryPath - the path of the directory
+     * @return the CSV files of the directory
+     * @throws FileNotFoundException if the directory does not exist
+     */
+    static File[] csvFiles(String directoryPath) throws FileNotFoundException {
+        File[] files = new File(directoryPath).listFiles((dir, name) -> name.toLowerCase().endsWith(".csv"));
+        if (files == null) {
+            throw new FileNotFoundException(directoryPath);
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * This method finds the title, artist and year columns in a header record
+     *
+     * @param reader - the reader positioned on the header record
+     * @return the indexes of the title, artist and year columns, or null if the record names none
+     *         of them
+     */
+    static int[] findColumns(CsvReader reader) {
+        int[] columns = {-1, -1, -1};
+        for (int i = 0; i < reader.fieldCount(); ++i) {
+            String name = reader.field(i).trim().toLowerCase();
+            if (columns[0] < 0 && name.equals("title")) {
+                columns[0] = i;
+            } else if (columns[1] < 0 && name.equals("artist")) {
+                columns[1] = i;
+            } else if (columns[2] < 0 && name.equals("year")) {
+                columns[2] = i;
+            }
+        }
+        if (columns[0] < 0 && columns[1] < 0 && columns[2] < 0) {
+            return null;
+        }
+        // a column which is not named falls back to its usual position
+        for (int i = 0; i < columns.length; ++i) {
+            if (columns[i] < 0) {
+                columns[i] = i;
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * This method returns the number of records which were skipped because they were malformed
+     *
+     * @return the number of skipped records
+     */
+    public long getSkippedRecords() {
+        return skippedRecords.get();
+    }
+
+    /**
+     * This method returns the number of songs read from CSV files so far
+     *
+     * @return the number of loaded records
+     */
+    public long getLoadedRecords() {
+        return loadedRecords.get();
+    }
+
+    /**
+     * This method returns the number of bytes of CSV files read so far
+     *
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * This method returns the number of CSV files read so far
+     *
+     * @return the number of files read
+     */
+    public long getFilesRead() {
+        return filesRead.get();
+    }
+
+    /**
+     * This method returns the time spent reading CSV files and passing their songs on, summed over
+     * all reader threads
+     *
+     * @return the reading time in nanoseconds
+     */
+    public long getReadNanos() {
+        return readNanos.get();
     }
 
 }
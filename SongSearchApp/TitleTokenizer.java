@@ -0,0 +1,129 @@
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * This interface splits song titles into the terms which are stored as keys of the word index.
+ * Query words are passed through the same tokenizer, so that they match the stored terms
+ */
+public interface TitleTokenizer {
+
+  // tokenizer which folds case, strips punctuation and accents, see StandardTitleTokenizer
+  public static final TitleTokenizer STANDARD = new StandardTitleTokenizer();
+
+  // tokenizer which splits on single spaces and keeps every word as it is, which is how titles
+  // were split before tokenizers existed
+  public static final TitleTokenizer WHITESPACE = new WhitespaceTitleTokenizer();
+
+  // passes every term of the text to the consumer, in the order of the text
+  public void tokenize(String text, Consumer<String> terms);
+
+  // returns the only term of a query word, or null if the word does not consist of exactly one
+  // term (and so can not be a key of the word index)
+  public default String normalize(String word) {
+    String[] term = new String[1];
+    int[] count = new int[1];
+    tokenize(word, t -> {
+      term[0] = t;
+      count[0] += 1;
+    });
+    return count[0] == 1 ? term[0] : null;
+  }
+
+  // returns the first term of a text, or null if the text has no terms
+  public default String firstTerm(String text) {
+    String[] term = new String[1];
+    tokenize(text, t -> {
+      if (term[0] == null) {
+        term[0] = t;
+      }
+    });
+    return term[0];
+  }
+}
+
+/**
+ * This tokenizer scans a title once. Letters and digits form terms, which are lower cased;
+ * apostrophes, hyphens, slashes and periods inside a word are dropped so that "Don't", "Hip-Hop"
+ * and "AC/DC" stay single terms; every other character separates terms. Titles with non-ASCII
+ * characters are first decomposed (Unicode NFKD) so that accents can be stripped and compatibility
+ * characters such as ligatures or full-width letters fold to their plain forms
+ */
+class StandardTitleTokenizer implements TitleTokenizer {
+
+  @Override
+  public void tokenize(String text, Consumer<String> terms) {
+    // the decomposition is only needed, and only paid for, when the text is not plain ASCII
+    for (int i = 0; i < text.length(); ++i) {
+      if (text.charAt(i) >= 0x80) {
+        text = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        break;
+      }
+    }
+
+    char[] term = new char[text.length()];
+    int length = 0;
+    for (int i = 0; i < text.length();) {
+      int codePoint = text.codePointAt(i);
+      i += Character.charCount(codePoint);
+
+      if (Character.isLetterOrDigit(codePoint)) {
+        int lower = Character.toLowerCase(codePoint);
+        if (Character.isBmpCodePoint(lower)) {
+          term[length++] = (char) lower;
+        } else {
+          // a supplementary character is written as its two surrogates
+          if (length + 2 > term.length) {
+            term = Arrays.copyOf(term, term.length + 2);
+          }
+          length += Character.toChars(lower, term, length);
+        }
+      } else if (Character.getType(codePoint) == Character.NON_SPACING_MARK
+          || (length > 0 && isJoiner(codePoint))) {
+        // accents left over from the decomposition and joiners inside a word are dropped
+        continue;
+      } else if (length > 0) {
+        terms.accept(new String(term, 0, length));
+        length = 0;
+      }
+    }
+    if (length > 0) {
+      terms.accept(new String(term, 0, length));
+    }
+  }
+
+  /**
+   * This method checks whether a character joins the parts of a word instead of separating words
+   *
+   * @param codePoint - the character
+   * @return true for apostrophes, hyphens, slashes and periods
+   */
+  private static boolean isJoiner(int codePoint) {
+    return codePoint == '\'' || codePoint == '\u2019' || codePoint == '-' || codePoint == '/'
+        || codePoint == '.';
+  }
+}
+
+/**
+ * This tokenizer splits a title on single spaces and keeps every word exactly as it is written
+ */
+class WhitespaceTitleTokenizer implements TitleTokenizer {
+
+  @Override
+  public void tokenize(String text, Consumer<String> terms) {
+    int start = 0;
+    for (int i = 0; i <= text.length(); ++i) {
+      if (i == text.length() || text.charAt(i) == ' ') {
+        if (i > start) {
+          terms.accept(text.substring(start, i));
+        }
+        start = i + 1;
+      }
+    }
+  }
+
+  @Override
+  public String normalize(String word) {
+    return word.isEmpty() || word.indexOf(' ') >= 0 ? null : word;
+  }
+}
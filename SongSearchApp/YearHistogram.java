@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/**
+ * This class counts the songs of a title word per publication year. The distinct years are kept
+ * sorted together with their counts, so the number of songs of a year is found by a binary search
+ * and the number of songs in a range of years by two binary searches over running totals
+ */
+class YearHistogram {
+  private int[] years = new int[4];   // the distinct years in ascending order
+  private int[] counts = new int[4];  // number of songs of the year at the same position
+  private int size = 0;               // number of distinct years
+  private volatile int[] cumulative;  // cumulative[i] is the number of songs of the first i years,
+                                      // rebuilt lazily after the counts change (null when stale)
+
+  /**
+   * This method adds songs of a year to the histogram
+   *
+   * @param year  - the publication year
+   * @param songs - the number of songs to be added
+   */
+  void add(int year, int songs) {
+    int position = Arrays.binarySearch(years, 0, size, year);
+    if (position >= 0) {
+      counts[position] += songs;
+    } else {
+      // the year is new, it is inserted at its sorted position
+      position = -position - 1;
+      if (size == years.length) {
+        years = Arrays.copyOf(years, size * 2);
+        counts = Arrays.copyOf(counts, size * 2);
+      }
+      System.arraycopy(years, position, years, position + 1, size - position);
+      System.arraycopy(counts, position, counts, position + 1, size - position);
+      years[position] = year;
+      counts[position] = songs;
+      size += 1;
+    }
+    cumulative = null;
+  }
+
+  /**
+   * This method adds all the counts of another histogram to this one
+   *
+   * @param other - the histogram to be added
+   */
+  void addAll(YearHistogram other) {
+    for (int i = 0; i < other.size; ++i) {
+      add(other.years[i], other.counts[i]);
+    }
+  }
+
+  /**
+   * This method returns the number of songs published in the passed year
+   *
+   * @param year - the publication year
+   * @return the number of songs of that year
+   */
+  int count(int year) {
+    int position = Arrays.binarySearch(years, 0, size, year);
+    return position >= 0 ? counts[position] : 0;
+  }
+
+  /**
+   * This method returns the number of songs published between two years. Several threads may call
+   * it at once while no songs are added: the running totals are filled in a local array which is
+   * only published once it is complete, so a concurrent caller either builds its own or sees a
+   * complete one
+   *
+   * @param fromYear - the first year of the range
+   * @param toYear   - the last year of the range, inclusive
+   * @return the number of songs published in the range
+   */
+  int count(int fromYear, int toYear) {
+    if (fromYear > toYear) {
+      return 0;
+    }
+    int[] totals = cumulative;
+    if (totals == null) {
+      totals = new int[size + 1];
+      for (int i = 0; i < size; ++i) {
+        totals[i + 1] = totals[i] + counts[i];
+      }
+      cumulative = totals;
+    }
+    return totals[lowerBound(toYear + 1L)] - totals[lowerBound(fromYear)];
+  }
+
+  /**
+   * This method returns the position of the first year which is not smaller than the passed one
+   *
+   * @param year - the year searched for, a long so that the year after Integer.MAX_VALUE works
+   * @return the position of the first year at least as large, or size if there is none
+   */
+  private int lowerBound(long year) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (years[middle] < year) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
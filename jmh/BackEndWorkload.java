@@ -0,0 +1,72 @@
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * This class is the workload of benchmarks.BackEndBenchmark: the query methods of a SearchBackEnd
+ * of either hash table engine, on a catalog of random songs whose title words follow the skewed
+ * distribution of SearchBenchmark.word(). The queried words follow the same distribution
+ */
+public class BackEndWorkload implements benchmarks.Workload {
+  private static final int QUERIES = 1 << 16;   // number of distinct queries of every operation
+
+  private SearchBackEnd backEnd;
+  private final String[] words = new String[QUERIES];
+  private final SongDataInterface[] stored = new SongDataInterface[QUERIES];
+  private final SongDataInterface[] absent = new SongDataInterface[QUERIES];
+
+  @Override
+  public void setUp(Map<String, String> params) {
+    MapEngine engine = MapEngine.valueOf(params.get("engine"));
+    int songs = Integer.parseInt(params.get("songs"));
+    Random random = new Random(42);
+    SongData[] catalog = SearchBenchmark.randomSongs(songs, random);
+    backEnd = new SearchBackEnd(1 << 16, engine);
+    for (SongData song : catalog) {
+      backEnd.addSong(song);
+    }
+    for (int i = 0; i < QUERIES; ++i) {
+      words[i] = SearchBenchmark.word(random);
+      stored[i] = catalog[random.nextInt(songs)];
+      // absent songs start with the most common word, so a scan of its songs would be long
+      absent[i] = new SongData("w0 " + SearchBenchmark.word(random),
+          "artist" + random.nextInt(50_000), 1899);
+    }
+  }
+
+  @Override
+  public IntToLongFunction operation(String name) {
+    switch (name) {
+      case "findTitles":
+        return i -> size(backEnd.findTitles(words[i % QUERIES]));
+      case "findArtists":
+        return i -> size(backEnd.findArtists(words[i % QUERIES]));
+      case "findNumberOfSongsInYear":
+        return i -> backEnd.findNumberOfSongsInYear(words[i % QUERIES], 1990);
+      case "findNumberOfSongsInYearRange":
+        return i -> backEnd.findNumberOfSongsInYearRange(words[i % QUERIES], 1950, 2000);
+      case "findTitlesMatching":
+        return i -> backEnd.findTitlesMatching(twoWords(i)).size();
+      case "findTitlesMatchingByTitles":
+        // the same queries answered by calling findTitles() once per word
+        return i -> BooleanQuery.evaluateByTitles(backEnd, twoWords(i)).size();
+      case "findTitlesRanked":
+        return i -> backEnd.findTitlesRanked(words[i % QUERIES], 20).getTitles().size();
+      case "containsSongStored":
+        return i -> backEnd.containsSong(stored[i % QUERIES]) ? 1 : 0;
+      case "containsSongAbsent":
+        return i -> backEnd.containsSong(absent[i % QUERIES]) ? 1 : 0;
+      default:
+        throw new IllegalArgumentException("unknown operation: " + name);
+    }
+  }
+
+  private String twoWords(int i) {
+    return words[i % QUERIES] + " " + words[(i + 1) % QUERIES];
+  }
+
+  private static long size(List<String> list) {
+    return list == null ? 0 : list.size();
+  }
+}
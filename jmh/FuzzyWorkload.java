@@ -0,0 +1,58 @@
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * This class is the workload of benchmarks.FuzzyBenchmark: fuzzy word lookups of a back end with
+ * many distinct title words (see SearchBenchmark.randomWordBackEnd()), answered by walking the
+ * sorted dictionary and by a brute force scan computing the bounded edit distance of every word.
+ * The queries are words of the back end with as many random typos as edits are allowed
+ */
+public class FuzzyWorkload implements benchmarks.Workload {
+  private static final int QUERIES = 1 << 10;   // number of distinct queries
+
+  private SearchBackEnd backEnd;
+  private String[] terms;
+  private int maxEdits;
+  private final String[] queries = new String[QUERIES];
+
+  @Override
+  public void setUp(Map<String, String> params) {
+    int words = Integer.parseInt(params.get("words"));
+    maxEdits = Integer.parseInt(params.get("maxEdits"));
+    backEnd = SearchBenchmark.randomWordBackEnd(words, 42);
+    terms = SearchBenchmark.termArray(backEnd);
+    // the dictionary is built by the first lookup, not by the measured ones
+    backEnd.forEachTermWithinDistance("a", 0, term -> { });
+    Random random = new Random(7);
+    for (int i = 0; i < QUERIES; ++i) {
+      queries[i] = SearchBenchmark.typo(terms[random.nextInt(terms.length)], maxEdits, random);
+    }
+  }
+
+  @Override
+  public IntToLongFunction operation(String name) {
+    switch (name) {
+      case "fuzzy":
+        return i -> {
+          long[] matches = new long[1];
+          backEnd.forEachTermWithinDistance(queries[i % QUERIES], maxEdits,
+              term -> matches[0] += 1);
+          return matches[0];
+        };
+      case "bruteForce":
+        return i -> {
+          String query = queries[i % QUERIES];
+          long matches = 0;
+          for (String term : terms) {
+            if (FrontCodedTermIndex.editDistance(query, term, maxEdits) <= maxEdits) {
+              matches += 1;
+            }
+          }
+          return matches;
+        };
+      default:
+        throw new IllegalArgumentException("unknown operation: " + name);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * This class is the workload of benchmarks.LoadBenchmark: loading a catalog into an empty back end
+ * of either hash table engine, song by song with addSong() or in one call of addSongs(), keeping or
+ * rejecting duplicates. Every tenth song of the catalog repeats an earlier one in upper case. The
+ * back ends start with a small capacity, as a back end built from a list of unknown size does
+ */
+public class LoadWorkload implements benchmarks.Workload {
+  private MapEngine engine;
+  private List<SongDataInterface> catalog;
+
+  @Override
+  public void setUp(Map<String, String> params) {
+    engine = MapEngine.valueOf(params.get("engine"));
+    int songs = Integer.parseInt(params.get("songs"));
+    Random random = new Random(42);
+    catalog = new ArrayList<SongDataInterface>(Arrays.asList(
+        SearchBenchmark.randomSongs(songs, random)));
+    for (int i = 9; i < songs; i += 10) {
+      SongDataInterface earlier = catalog.get(random.nextInt(i));
+      catalog.set(i, new SongData(earlier.getTitle().toUpperCase(), earlier.getArtist(),
+          earlier.getYearPublished()));
+    }
+  }
+
+  @Override
+  public IntToLongFunction operation(String name) {
+    switch (name) {
+      case "addSong":
+        return i -> {
+          SearchBackEnd backEnd = new SearchBackEnd(1 << 10, engine);
+          for (SongDataInterface song : catalog) {
+            backEnd.addSong(song);
+          }
+          return backEnd.size();
+        };
+      case "addSongs":
+        return i -> {
+          SearchBackEnd backEnd = new SearchBackEnd(1 << 10, engine);
+          backEnd.addSongs(catalog);
+          return backEnd.size();
+        };
+      case "addSongsRejectingDuplicates":
+        return i -> {
+          SearchBackEnd backEnd = new SearchBackEnd(1 << 10, engine);
+          backEnd.setRejectDuplicates(true);
+          backEnd.addSongs(catalog);
+          return backEnd.size();
+        };
+      default:
+        throw new IllegalArgumentException("unknown operation: " + name);
+    }
+  }
+}
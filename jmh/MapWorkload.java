@@ -0,0 +1,158 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * This class is the workload of benchmarks.MapBenchmark: put(), get(), containsKey() and remove()
+ * of HashtableMap, OpenAddressingMap and java.util.HashMap, for keys of three distributions:
+ * sequential strings, random strings and integers with a large common stride
+ */
+public class MapWorkload implements benchmarks.Workload {
+
+  /**
+   * This class adapts java.util.HashMap to MapADT, as the baseline of the hash tables
+   */
+  private static class JdkHashMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+    private final HashMap<KeyType, ValueType> map;
+
+    JdkHashMap(int capacity) {
+      map = new HashMap<>(capacity);
+    }
+
+    @Override
+    public boolean put(KeyType key, ValueType value) {
+      return key != null && map.putIfAbsent(key, value) == null;
+    }
+
+    @Override
+    public ValueType get(KeyType key) throws NoSuchElementException {
+      ValueType value = map.get(key);
+      if (value == null) {
+        throw new NoSuchElementException("key not found");
+      }
+      return value;
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    public boolean containsKey(KeyType key) {
+      return map.containsKey(key);
+    }
+
+    @Override
+    public ValueType remove(KeyType key) {
+      return map.remove(key);
+    }
+
+    @Override
+    public void clear() {
+      map.clear();
+    }
+  }
+
+  private String engine;
+  private Object[] present;             // the keys of the map, in random order
+  private Object[] absent;              // keys which are not in the map
+  private MapADT<Object, Integer> map;  // holds every key of present
+  private final Integer value = 1;
+
+  @Override
+  public void setUp(Map<String, String> params) {
+    engine = params.get("engine");
+    int keys = Integer.parseInt(params.get("keys"));
+    String distribution = params.get("distribution");
+    present = keys(distribution, keys, 0);
+    absent = keys(distribution, Math.min(keys, 1_000_000), 1);
+    map = fill();
+  }
+
+  @Override
+  public IntToLongFunction operation(String name) {
+    switch (name) {
+      case "put":
+        // one call fills an empty map with all keys, as the growth of the table is part of it
+        return i -> fill().size();
+      case "get":
+        return i -> map.get(present[i % present.length]);
+      case "containsAbsent":
+        return i -> map.containsKey(absent[i % absent.length]) ? 1 : 0;
+      case "removeAndPut":
+        // the removed key is put back, so the map keeps its size
+        return i -> {
+          Object key = present[i % present.length];
+          long removed = map.remove(key) == null ? 0 : 1;
+          map.put(key, value);
+          return removed;
+        };
+      default:
+        throw new IllegalArgumentException("unknown operation: " + name);
+    }
+  }
+
+  /**
+   * This method creates an empty map of the engine and puts every key into it
+   *
+   * @return the map
+   */
+  private MapADT<Object, Integer> fill() {
+    MapADT<Object, Integer> map;
+    if (engine.equals("HashtableMap")) {
+      map = new HashtableMap<>(16);
+    } else if (engine.equals("OpenAddressingMap")) {
+      map = new OpenAddressingMap<>(16);
+    } else if (engine.equals("HashMap")) {
+      map = new JdkHashMap<>(16);
+    } else {
+      throw new IllegalArgumentException("unknown engine: " + engine);
+    }
+    for (Object key : present) {
+      map.put(key, value);
+    }
+    return map;
+  }
+
+  /**
+   * This method generates distinct keys of a distribution in random order
+   *
+   * @param distribution - "sequential" for "song" + i, "random" for random strings of 8 to 16
+   *                       letters and "strided" for multiples of 1024
+   * @param count        - the number of keys
+   * @param set          - 0 or 1, the keys of different sets are disjoint
+   * @return the keys
+   */
+  private static Object[] keys(String distribution, int count, int set) {
+    Random random = new Random(count * 2L + set);
+    Object[] keys = new Object[count];
+    StringBuilder key = new StringBuilder();
+    for (int i = 0; i < count; ++i) {
+      if (distribution.equals("sequential")) {
+        keys[i] = (set == 0 ? "song" : "miss") + i;
+      } else if (distribution.equals("random")) {
+        // the first letter tells the set apart, collisions of the rest are so unlikely that they
+        // are ignored
+        key.setLength(0);
+        key.append(set == 0 ? 'a' : 'b');
+        int length = 7 + random.nextInt(9);
+        for (int c = 0; c < length; ++c) {
+          key.append((char) ('a' + random.nextInt(26)));
+        }
+        keys[i] = key.toString();
+      } else {
+        keys[i] = (2 * i + set) * 1024;
+      }
+    }
+    for (int i = count - 1; i > 0; --i) {
+      int j = random.nextInt(i + 1);
+      Object swap = keys[i];
+      keys[i] = keys[j];
+      keys[j] = swap;
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,52 @@
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
+/**
+ * This class is the workload of benchmarks.PrefixBenchmark: prefix searches of a back end with
+ * many distinct title words (see SearchBenchmark.randomWordBackEnd()) through its sorted
+ * dictionary, and building that dictionary, whose size is compared with the keys held by the
+ * hash table
+ */
+public class PrefixWorkload implements benchmarks.Workload {
+  private SearchBackEnd backEnd;
+  private String[] terms;
+  private String prefix;
+
+  @Override
+  public void setUp(Map<String, String> params) {
+    int words = Integer.parseInt(params.get("words"));
+    prefix = params.get("prefix");
+    backEnd = SearchBenchmark.randomWordBackEnd(words, 42);
+    terms = SearchBenchmark.termArray(backEnd);
+    // the dictionary is built by the first search, not by the measured ones
+    backEnd.autocomplete("a", 1);
+  }
+
+  @Override
+  public IntToLongFunction operation(String name) {
+    switch (name) {
+      case "autocomplete":
+        return i -> backEnd.autocomplete(prefix, 10).size();
+      case "findTitlesByPrefix":
+        return i -> {
+          List<String> titles = backEnd.findTitlesByPrefix(prefix);
+          return titles == null ? 0 : titles.size();
+        };
+      case "buildDictionary":
+        return i -> new FrontCodedTermIndex(terms, terms.length).memoryBytes();
+      case "keySetBytes":
+        return i -> {
+          long bytes = 0;
+          for (String term : terms) {
+            // a compact String object (24 bytes), its byte array (16 byte header plus the
+            // characters, rounded up to 8 bytes) and the reference in the table slot (4 bytes)
+            bytes += 24 + ((16 + term.length() + 7) & ~7) + 4;
+          }
+          return bytes;
+        };
+      default:
+        throw new IllegalArgumentException("unknown operation: " + name);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * This class is the workload of benchmarks.WrapperBenchmark: findTitles(), findArtists() and
+ * findNumberOfSongsInYear() of a SearchBackEnd called directly, through an
+ * InstrumentedSearchBackEnd whose measuring is switched off or on, and through a
+ * CachingSearchBackEnd. Most calls ask for a few hundred words: the words are drawn from the 5,000
+ * most common ones with a steeper skew than SearchBenchmark.word()
+ */
+public class WrapperWorkload implements benchmarks.Workload {
+  private static final int QUERIES = 1 << 16;   // number of distinct queries of every operation
+
+  private SearchBackEndInterface backEnd;
+  private final String[] words = new String[QUERIES];
+
+  @Override
+  public void setUp(Map<String, String> params) {
+    SearchBackEnd songs = SearchBenchmark.randomBackEnd(Integer.parseInt(params.get("songs")), 42);
+    String wrapper = params.get("wrapper");
+    if (wrapper.equals("direct")) {
+      backEnd = songs;
+    } else if (wrapper.equals("instrumentedDisabled")) {
+      backEnd = new InstrumentedSearchBackEnd(songs, false);
+    } else if (wrapper.equals("instrumentedEnabled")) {
+      backEnd = new InstrumentedSearchBackEnd(songs, true);
+    } else if (wrapper.equals("cached")) {
+      backEnd = new CachingSearchBackEnd(songs, 64L << 20);
+    } else {
+      throw new IllegalArgumentException("unknown wrapper: " + wrapper);
+    }
+    Random random = new Random(3);
+    for (int i = 0; i < QUERIES; ++i) {
+      words[i] = "w" + (int) (5_000 * Math.pow(random.nextDouble(), 4));
+    }
+  }
+
+  @Override
+  public IntToLongFunction operation(String name) {
+    switch (name) {
+      case "findTitles":
+        return i -> size(backEnd.findTitles(words[i % QUERIES]));
+      case "findArtists":
+        return i -> size(backEnd.findArtists(words[i % QUERIES]));
+      case "findNumberOfSongsInYear":
+        return i -> backEnd.findNumberOfSongsInYear(words[i % QUERIES], 2000 + i % 20);
+      default:
+        throw new IllegalArgumentException("unknown operation: " + name);
+    }
+  }
+
+  private static long size(List<String> list) {
+    return list == null ? 0 : list.size();
+  }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the query methods of a SearchBackEnd of either hash table engine on a
+ * catalog of random songs, including multi-word queries answered by intersecting posting lists
+ * compared with the same queries answered by calling findTitles() once per word, the best 20
+ * ranked titles of a word and containsSong() through the identity index
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BackEndBenchmark {
+  @Param({"CHAINED", "OPEN_ADDRESSING"})
+  private String engine;
+
+  @Param({"1000000"})
+  private String songs;
+
+  private IntToLongFunction findTitles;
+  private IntToLongFunction findArtists;
+  private IntToLongFunction findNumberOfSongsInYear;
+  private IntToLongFunction findNumberOfSongsInYearRange;
+  private IntToLongFunction findTitlesMatching;
+  private IntToLongFunction findTitlesMatchingByTitles;
+  private IntToLongFunction findTitlesRanked;
+  private IntToLongFunction containsSongStored;
+  private IntToLongFunction containsSongAbsent;
+  private int next;                        // number of the next query
+
+  @Setup
+  public void setUp() {
+    Workload workload = Workloads.create("BackEndWorkload", "engine", engine, "songs", songs);
+    findTitles = workload.operation("findTitles");
+    findArtists = workload.operation("findArtists");
+    findNumberOfSongsInYear = workload.operation("findNumberOfSongsInYear");
+    findNumberOfSongsInYearRange = workload.operation("findNumberOfSongsInYearRange");
+    findTitlesMatching = workload.operation("findTitlesMatching");
+    findTitlesMatchingByTitles = workload.operation("findTitlesMatchingByTitles");
+    findTitlesRanked = workload.operation("findTitlesRanked");
+    containsSongStored = workload.operation("containsSongStored");
+    containsSongAbsent = workload.operation("containsSongAbsent");
+  }
+
+  private int next() {
+    next = (next + 1) & Integer.MAX_VALUE;
+    return next;
+  }
+
+  @Benchmark
+  public long findTitles() {
+    return findTitles.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long findArtists() {
+    return findArtists.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long findNumberOfSongsInYear() {
+    return findNumberOfSongsInYear.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long findNumberOfSongsInYearRange() {
+    return findNumberOfSongsInYearRange.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long findTitlesMatching() {
+    return findTitlesMatching.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long findTitlesMatchingByTitles() {
+    return findTitlesMatchingByTitles.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long findTitlesRanked() {
+    return findTitlesRanked.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long containsSongStored() {
+    return containsSongStored.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long containsSongAbsent() {
+    return containsSongAbsent.applyAsLong(next());
+  }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures fuzzy word lookups through the sorted dictionary of a back end with many
+ * distinct title words, compared with a brute force scan computing the bounded edit distance of
+ * every word, for queries with one and two typos
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FuzzyBenchmark {
+  @Param({"2000000"})
+  private String words;
+
+  @Param({"1", "2"})
+  private String maxEdits;
+
+  private IntToLongFunction fuzzy;
+  private IntToLongFunction bruteForce;
+  private int next;                        // number of the next query
+
+  @Setup
+  public void setUp() {
+    Workload workload = Workloads.create("FuzzyWorkload", "words", words, "maxEdits", maxEdits);
+    fuzzy = workload.operation("fuzzy");
+    bruteForce = workload.operation("bruteForce");
+  }
+
+  private int next() {
+    next = (next + 1) & Integer.MAX_VALUE;
+    return next;
+  }
+
+  @Benchmark
+  public long fuzzy() {
+    return fuzzy.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long bruteForce() {
+    return bruteForce.applyAsLong(next());
+  }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures loading a catalog into an empty back end of either hash table engine, song
+ * by song with addSong() or in one call of addSongs(), keeping or rejecting duplicates. Every
+ * tenth song of the catalog repeats an earlier one in upper case
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoadBenchmark {
+  @Param({"CHAINED", "OPEN_ADDRESSING"})
+  private String engine;
+
+  @Param({"1000000"})
+  private String songs;
+
+  @Param({"addSong", "addSongs", "addSongsRejectingDuplicates"})
+  private String method;
+
+  private IntToLongFunction load;
+
+  @Setup
+  public void setUp() {
+    load = Workloads.create("LoadWorkload", "engine", engine, "songs", songs)
+        .operation(method);
+  }
+
+  @Benchmark
+  public long load() {
+    return load.applyAsLong(0);
+  }
+}
@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures get(), containsKey() and remove() of HashtableMap, OpenAddressingMap and
+ * java.util.HashMap, and filling an empty map with all keys, for three key distributions:
+ * sequential strings, random strings and integers with a large common stride
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MapBenchmark {
+  @Param({"HashtableMap", "OpenAddressingMap", "HashMap"})
+  private String engine;
+
+  @Param({"1000", "100000", "1000000"})
+  private String keys;
+
+  @Param({"sequential", "random", "strided"})
+  private String distribution;
+
+  private IntToLongFunction get;
+  private IntToLongFunction containsAbsent;
+  private IntToLongFunction removeAndPut;
+  private int next;                        // position of the next key
+
+  @Setup
+  public void setUp() {
+    Workload workload = Workloads.create("MapWorkload", "engine", engine, "keys", keys,
+        "distribution", distribution);
+    get = workload.operation("get");
+    containsAbsent = workload.operation("containsAbsent");
+    removeAndPut = workload.operation("removeAndPut");
+  }
+
+  private int next() {
+    next = (next + 1) & Integer.MAX_VALUE;
+    return next;
+  }
+
+  @Benchmark
+  public long get() {
+    return get.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long containsAbsent() {
+    return containsAbsent.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long removeAndPut() {
+    return removeAndPut.applyAsLong(next());
+  }
+
+  /**
+   * This class measures filling an empty map with all keys, including every growth of the table
+   */
+  @State(Scope.Thread)
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 20)
+  @Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+  public static class Fill {
+    @Param({"HashtableMap", "OpenAddressingMap", "HashMap"})
+    private String engine;
+
+    @Param({"1000000"})
+    private String keys;
+
+    @Param({"sequential", "random", "strided"})
+    private String distribution;
+
+    private IntToLongFunction put;
+
+    @Setup
+    public void setUp() {
+      put = Workloads.create("MapWorkload", "engine", engine, "keys", keys,
+          "distribution", distribution).operation("put");
+    }
+
+    @Benchmark
+    public long put() {
+      return put.applyAsLong(0);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures autocomplete() and findTitlesByPrefix() of a back end with many distinct
+ * title words for prefixes of increasing length, and building its sorted dictionary together
+ * with the memory of the dictionary compared with the keys held by the hash table
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PrefixBenchmark {
+  @Param({"2000000"})
+  private String words;
+
+  @Param({"a", "ab", "abc", "abca", "abcab", "zz", "w1"})
+  private String prefix;
+
+  private IntToLongFunction autocomplete;
+  private IntToLongFunction findTitlesByPrefix;
+
+  @Setup
+  public void setUp() {
+    Workload workload = Workloads.create("PrefixWorkload", "words", words, "prefix", prefix);
+    autocomplete = workload.operation("autocomplete");
+    findTitlesByPrefix = workload.operation("findTitlesByPrefix");
+  }
+
+  @Benchmark
+  public long autocomplete() {
+    return autocomplete.applyAsLong(0);
+  }
+
+  @Benchmark
+  public long findTitlesByPrefix() {
+    return findTitlesByPrefix.applyAsLong(0);
+  }
+
+  /**
+   * This class measures building the front-coded dictionary from the words of the back end and
+   * reports its size next to the estimated size of the keys of the hash table, in bytes
+   */
+  @State(Scope.Thread)
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 10)
+  @Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+  public static class Dictionary {
+    @Param({"2000000"})
+    private String words;
+
+    private IntToLongFunction buildDictionary;
+    private long keySetBytes;             // estimated size of the keys of the hash table
+
+    @Setup
+    public void setUp() {
+      Workload workload = Workloads.create("PrefixWorkload", "words", words, "prefix", "a");
+      buildDictionary = workload.operation("buildDictionary");
+      keySetBytes = workload.operation("keySetBytes").applyAsLong(0);
+    }
+
+    /**
+     * This class holds the sizes reported next to the build time
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+      public long dictionaryBytes;
+      public long keySetBytes;
+    }
+
+    @Benchmark
+    public long build(Footprint footprint) {
+      footprint.dictionaryBytes = buildDictionary.applyAsLong(0);
+      footprint.keySetBytes = keySetBytes;
+      return footprint.dictionaryBytes;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
+/**
+ * This interface connects the JMH benchmarks to the classes of the application. JMH only accepts
+ * benchmarks in a named package, while the application lives in the unnamed package, which a
+ * named package can not refer to. Every benchmark therefore loads a workload class of the unnamed
+ * package by name (see Workloads) and calls the application through the operations it returns;
+ * an operation is a final field of the benchmark state, so the call is monomorphic and inlined
+ */
+public interface Workload {
+
+  /**
+   * This method builds the data structures of the workload
+   *
+   * @param params - the @Param values of the benchmark by name
+   */
+  public void setUp(Map<String, String> params);
+
+  /**
+   * This method returns an operation of the workload. An operation takes the running number of
+   * its call, which selects the key, word or song it works on, and returns a value derived from
+   * its result so that the call can not be optimized away
+   *
+   * @param name - the name of the operation
+   * @return the operation
+   * @throws IllegalArgumentException if the workload has no such operation
+   */
+  public IntToLongFunction operation(String name);
+}
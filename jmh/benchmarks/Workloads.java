@@ -0,0 +1,35 @@
+package benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class creates the workloads of the benchmarks
+ */
+final class Workloads {
+
+  private Workloads() {
+  }
+
+  /**
+   * This method creates a workload of the unnamed package and sets it up
+   *
+   * @param className - the name of the workload class
+   * @param params    - names and values of the @Param fields of the benchmark, alternating
+   * @return the workload
+   */
+  static Workload create(String className, String... params) {
+    Map<String, String> values = new HashMap<String, String>();
+    for (int i = 0; i < params.length; i += 2) {
+      values.put(params[i], params[i + 1]);
+    }
+    try {
+      Workload workload =
+          (Workload) Class.forName(className).getDeclaredConstructor().newInstance();
+      workload.setUp(values);
+      return workload;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("could not create the workload " + className, e);
+    }
+  }
+}
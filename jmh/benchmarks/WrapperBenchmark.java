@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures what the wrappers of a back end add to its query methods: the same queries
+ * are sent to the back end directly, through an InstrumentedSearchBackEnd whose measuring is
+ * switched off or on, and through a CachingSearchBackEnd of 64 MB
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WrapperBenchmark {
+  @Param({"direct", "instrumentedDisabled", "instrumentedEnabled", "cached"})
+  private String wrapper;
+
+  @Param({"1000000"})
+  private String songs;
+
+  private IntToLongFunction findTitles;
+  private IntToLongFunction findArtists;
+  private IntToLongFunction findNumberOfSongsInYear;
+  private int next;                        // number of the next query
+
+  @Setup
+  public void setUp() {
+    Workload workload = Workloads.create("WrapperWorkload", "wrapper", wrapper, "songs", songs);
+    findTitles = workload.operation("findTitles");
+    findArtists = workload.operation("findArtists");
+    findNumberOfSongsInYear = workload.operation("findNumberOfSongsInYear");
+  }
+
+  private int next() {
+    next = (next + 1) & Integer.MAX_VALUE;
+    return next;
+  }
+
+  @Benchmark
+  public long findTitles() {
+    return findTitles.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long findArtists() {
+    return findArtists.applyAsLong(next());
+  }
+
+  @Benchmark
+  public long findNumberOfSongsInYear() {
+    return findNumberOfSongsInYear.applyAsLong(next());
+  }
+}
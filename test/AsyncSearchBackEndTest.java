@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * This class checks that AsyncSearchBackEnd answers like its back end, coalesces equal queries and
+ * lets callbacks write to the shard it reads
+ */
+class AsyncSearchBackEndTest {
+
+  private static LocalSearchShard shard() {
+    LocalSearchShard shard = new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING);
+    for (int i = 0; i < 1_000; ++i) {
+      shard.addSong(new SongData("w" + i % 10 + " x" + i, "artist" + i % 7, 1990 + i % 20));
+    }
+    return shard;
+  }
+
+  @Test
+  @Timeout(60)
+  void answersLikeTheBackEnd() {
+    LocalSearchShard shard = shard();
+    try (AsyncSearchBackEnd async = new AsyncSearchBackEnd(shard)) {
+      List<CompletableFuture<List<String>>> titles = new ArrayList<>();
+      List<CompletableFuture<Integer>> counts = new ArrayList<>();
+      for (int i = 0; i < 200; ++i) {
+        titles.add(async.findTitles("w" + i % 10));
+        counts.add(async.findNumberOfSongsInYearRange("w" + i % 10, 1995, 2000));
+      }
+      for (int i = 0; i < 200; ++i) {
+        assertEquals(shard.findTitles("w" + i % 10), titles.get(i).join());
+        assertEquals(shard.findNumberOfSongsInYearRange("w" + i % 10, 1995, 2000),
+            counts.get(i).join());
+      }
+      assertEquals(shard.findArtists("x5"), async.findArtists("x5").join());
+      assertEquals(shard.findTitlesMatching("w1 -x1"), async.findTitlesMatching("w1 -x1").join());
+      assertEquals(402, async.getQueryCount());
+    }
+  }
+
+  @Test
+  @Timeout(60)
+  void callbacksMayWriteToTheShard() throws Exception {
+    LocalSearchShard shard = shard();
+    try (AsyncSearchBackEnd async = new AsyncSearchBackEnd(shard)) {
+      // the callback runs where the future is completed, which must not hold the read lock
+      CompletableFuture<Integer> written = async.findTitles("w3")
+          .thenApply(titles -> {
+            shard.addSong(new SongData("written by a callback", "artist", 2000));
+            return titles.size();
+          });
+      assertEquals(100, written.get(30, TimeUnit.SECONDS));
+      assertEquals(1, shard.findTitles("callback").size());
+    }
+  }
+
+  @Test
+  @Timeout(60)
+  void nullWordsAreRejectedOnTheCallerThread() {
+    LocalSearchShard shard = shard();
+    try (AsyncSearchBackEnd async = new AsyncSearchBackEnd(shard)) {
+      assertThrows(IllegalArgumentException.class, () -> async.findTitles(null));
+      assertThrows(IllegalArgumentException.class, () -> async.findArtists(null));
+      assertThrows(IllegalArgumentException.class,
+          () -> async.findNumberOfSongsInYear(null, 1990));
+      assertThrows(IllegalArgumentException.class,
+          () -> async.findNumberOfSongsInYearRange(null, 1990, 2000));
+      assertThrows(IllegalArgumentException.class, () -> async.findTitlesMatching(null));
+      // nothing of the rejected queries is left behind
+      assertEquals(shard.findTitles("w1"), async.findTitles("w1").join());
+      assertEquals(1, async.getQueryCount());
+    }
+  }
+
+  /**
+   * This class is a back end which counts how often query words are looked up
+   */
+  private static class CountingBackEnd extends SearchBackEnd {
+    final AtomicInteger lookups = new AtomicInteger();
+
+    CountingBackEnd() {
+      super(16, MapEngine.OPEN_ADDRESSING);
+    }
+
+    @Override
+    PostingList postingsForWord(String titleWord) {
+      lookups.incrementAndGet();
+      return super.postingsForWord(titleWord);
+    }
+  }
+
+  @Test
+  @Timeout(60)
+  void everyWordOfABatchIsLookedUpOnce() {
+    CountingBackEnd backEnd = new CountingBackEnd();
+    LocalSearchShard shard = new LocalSearchShard(backEnd, false);
+    shard.addSong(new SongData("Hello World", "Adele", 2015));
+    shard.addSong(new SongData("Hello Goodbye", "The Beatles", 1967));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    // the window is long, the batch is answered once it holds its 6 queries
+    try (AsyncSearchBackEnd async =
+        new AsyncSearchBackEnd(shard, executor, TimeUnit.SECONDS.toNanos(30), 6)) {
+      CompletableFuture<List<String>> titles = async.findTitles("hello");
+      CompletableFuture<List<String>> artists = async.findArtists("hello");
+      CompletableFuture<Integer> inYear = async.findNumberOfSongsInYear("hello", 1967);
+      CompletableFuture<Integer> inRange = async.findNumberOfSongsInYearRange("hello", 1960, 2020);
+      CompletableFuture<List<String>> missing = async.findTitles("missing");
+      CompletableFuture<Integer> missingCount = async.findNumberOfSongsInYear("missing", 1967);
+      assertEquals(List.of("Hello World", "Hello Goodbye"), titles.join());
+      assertEquals(List.of("Adele", "The Beatles"), artists.join());
+      assertEquals(1, inYear.join());
+      assertEquals(2, inRange.join());
+      assertNull(missing.join());
+      assertEquals(0, missingCount.join());
+      assertEquals(1, async.getBatchCount());
+      assertEquals(2, backEnd.lookups.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * This class checks that BackgroundCompactor compacts as soon as it is woken up, even with a long
+ * idle delay, and keeps running after a compaction step throws
+ */
+class BackgroundCompactorTest {
+
+  /**
+   * This class is a back end whose first compaction steps throw
+   */
+  private static class FailingBackEnd extends SearchBackEnd {
+    private final AtomicInteger failuresLeft;
+
+    FailingBackEnd(int failures) {
+      super(16, MapEngine.OPEN_ADDRESSING);
+      failuresLeft = new AtomicInteger(failures);
+    }
+
+    @Override
+    public boolean compact(int maxTerms) {
+      if (failuresLeft.getAndDecrement() > 0) {
+        throw new IllegalStateException("compaction failed");
+      }
+      return super.compact(maxTerms);
+    }
+  }
+
+  @Test
+  @Timeout(30)
+  void wakeUpCompactsWithoutWaitingForTheIdleCheck() throws InterruptedException {
+    SearchBackEnd backEnd = new SearchBackEnd(16, MapEngine.OPEN_ADDRESSING);
+    backEnd.addSong(new SongData("Hello World", "Adele", 2015));
+    backEnd.addSong(new SongData("Hello Goodbye", "The Beatles", 1967));
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+    try (BackgroundCompactor compactor = new BackgroundCompactor(backEnd, lock, 1, 1, 3_600_000)) {
+      lock.writeLock().lock();
+      try {
+        backEnd.removeSong(new SongData("Hello World", "Adele", 2015));
+      } finally {
+        lock.writeLock().unlock();
+      }
+      compactor.wakeUp();
+      while (backEnd.needsCompaction()) {
+        Thread.sleep(5);
+      }
+      assertTrue(compactor.getSteps() > 0);
+    }
+  }
+
+  @Test
+  @Timeout(30)
+  void failedStepsAreCountedAndRetried() throws InterruptedException {
+    SearchBackEnd backEnd = new FailingBackEnd(3);
+    backEnd.addSong(new SongData("Hello World", "Adele", 2015));
+    backEnd.addSong(new SongData("Hello Goodbye", "The Beatles", 1967));
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    try (BackgroundCompactor compactor = new BackgroundCompactor(backEnd, lock, 1024, 1, 5)) {
+      lock.writeLock().lock();
+      try {
+        backEnd.removeSong(new SongData("Hello World", "Adele", 2015));
+      } finally {
+        lock.writeLock().unlock();
+      }
+      while (backEnd.needsCompaction()) {
+        Thread.sleep(5);
+      }
+      assertEquals(3, compactor.getFailures());
+      assertFalse(lock.isWriteLocked());
+    }
+  }
+
+  @Test
+  @Timeout(30)
+  void shardWakesItsCompactorOnRemoval() throws InterruptedException {
+    try (LocalSearchShard shard = new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING)) {
+      shard.addSong(new SongData("Hello World", "Adele", 2015));
+      assertTrue(shard.removeSong(new SongData("Hello World", "Adele", 2015)));
+      while (shard.getBackEnd().needsCompaction()) {
+        Thread.sleep(5);
+      }
+      assertEquals(0, shard.size());
+    }
+  }
+}
@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * This class is the multithreaded stress test of ConcurrentSearchBackEnd: writer threads add
+ * songs while reader threads query them, no song may be lost and every read must see a growing
+ * prefix of complete songs
+ */
+class ConcurrentSearchBackEndTest {
+
+  @Test
+  @Timeout(120)
+  void writersAndReadersLoseNothingAndSeeNoTornReads() throws InterruptedException {
+    int writers = 4;
+    int readers = 4;
+    int songsPerWriter = 20_000;
+    ConcurrentSearchBackEnd backEnd = new ConcurrentSearchBackEnd(16);
+    AtomicBoolean writing = new AtomicBoolean(true);
+    AtomicLong tornReads = new AtomicLong();
+    List<Thread> threads = new ArrayList<Thread>();
+    List<Thread> writerThreads = new ArrayList<Thread>();
+    for (int w = 0; w < writers; ++w) {
+      String unique = "w" + w;
+      writerThreads.add(new Thread(() -> {
+        for (int i = 0; i < songsPerWriter; ++i) {
+          backEnd.addSong(new SongData("common " + unique + " s" + i, "artist" + i % 100, 1960));
+        }
+      }));
+    }
+    for (int r = 0; r < readers; ++r) {
+      threads.add(new Thread(() -> {
+        int lastSize = 0;
+        while (writing.get()) {
+          List<String> titles = backEnd.findTitles("common");
+          int size = titles == null ? 0 : titles.size();
+          if (size < lastSize) {
+            tornReads.incrementAndGet();
+          }
+          if (titles != null) {
+            for (String title : titles) {
+              if (title == null || !title.startsWith("common w")) {
+                tornReads.incrementAndGet();
+              }
+            }
+          }
+          lastSize = size;
+          if (backEnd.findNumberOfSongsInYear("common", 1960) < size) {
+            tornReads.incrementAndGet();
+          }
+        }
+      }));
+    }
+    threads.addAll(writerThreads);
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : writerThreads) {
+      thread.join();
+    }
+    writing.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(0, tornReads.get());
+    assertEquals(writers * songsPerWriter, backEnd.findTitles("common").size());
+    for (int w = 0; w < writers; ++w) {
+      assertEquals(songsPerWriter, backEnd.findTitles("w" + w).size());
+    }
+    assertEquals(writers, backEnd.findTitles("s" + (songsPerWriter - 1)).size());
+  }
+
+  @Test
+  void aWordRepeatedInATitleListsTheSongOnce() {
+    ConcurrentSearchBackEnd backEnd = new ConcurrentSearchBackEnd(4);
+    backEnd.addSong(new SongData("love love me do", "The Beatles", 1962));
+
+    assertEquals(1, backEnd.findTitles("love").size());
+    assertEquals(1, backEnd.findNumberOfSongsInYear("love", 1962));
+  }
+}
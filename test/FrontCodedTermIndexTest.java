@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class checks the prefix and fuzzy lookups of FrontCodedTermIndex against a scan of all
+ * terms, including terms of multi-byte characters and terms longer than the decoding buffer
+ */
+class FrontCodedTermIndexTest {
+  // characters of one, two, three and four UTF-8 bytes
+  private static final String[] ALPHABET = {"a", "b", "c", "é", "ß", "日", "本", "😀"};
+
+  private static FrontCodedTermIndex index(String... terms) {
+    return new FrontCodedTermIndex(terms, terms.length);
+  }
+
+  private static List<String> withPrefix(FrontCodedTermIndex index, String prefix) {
+    List<String> found = new ArrayList<String>();
+    index.forEachWithPrefix(prefix, found::add);
+    return found;
+  }
+
+  private static List<String> withinDistance(FrontCodedTermIndex index, String word,
+      int maxEdits) {
+    List<String> found = new ArrayList<String>();
+    index.forEachWithinDistance(word, maxEdits, found::add);
+    return found;
+  }
+
+  /**
+   * This method returns the terms within the distance of a word, computed term by term, in the
+   * order of their UTF-8 bytes as the index returns them
+   */
+  private static List<String> bruteForce(Set<String> terms, String word, int maxEdits) {
+    List<String> found = new ArrayList<String>();
+    for (String term : terms) {
+      if (FrontCodedTermIndex.editDistance(word, term, maxEdits) <= maxEdits) {
+        found.add(term);
+      }
+    }
+    return sorted(found);
+  }
+
+  /**
+   * This method sorts terms by their UTF-8 bytes, the order of the index
+   */
+  private static List<String> sorted(List<String> terms) {
+    List<byte[]> found = new ArrayList<byte[]>();
+    for (String term : terms) {
+      found.add(term.getBytes(StandardCharsets.UTF_8));
+    }
+    found.sort(Arrays::compareUnsigned);
+    List<String> sorted = new ArrayList<String>();
+    for (byte[] term : found) {
+      sorted.add(new String(term, StandardCharsets.UTF_8));
+    }
+    return sorted;
+  }
+
+  private static String randomTerm(Random random, int maxLength) {
+    StringBuilder term = new StringBuilder();
+    int length = 1 + random.nextInt(maxLength);
+    for (int i = 0; i < length; ++i) {
+      term.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+    }
+    return term.toString();
+  }
+
+  @Test
+  void findsTermsWithPrefix() {
+    FrontCodedTermIndex index = index("help", "hello", "helpless", "yellow", "he", "h", "world");
+    assertEquals(Arrays.asList("he", "hello", "help", "helpless"), withPrefix(index, "he"));
+    assertEquals(Arrays.asList("help", "helpless"), withPrefix(index, "help"));
+    assertEquals(Arrays.asList("h", "he", "hello", "help", "helpless"), withPrefix(index, "h"));
+    assertEquals(Arrays.asList(), withPrefix(index, "helping"));
+    assertEquals(Arrays.asList(), withPrefix(index, "a"));
+    assertEquals(Arrays.asList(), withPrefix(index, "zz"));
+    assertEquals(7, withPrefix(index, "").size());
+    assertEquals(Arrays.asList(), withPrefix(index(), "a"));
+  }
+
+  @Test
+  void findsTermsWithMultiBytePrefix() {
+    FrontCodedTermIndex index = index("café", "cafe", "cafés", "日本", "日本語", "日光", "😀a", "😀b");
+    assertEquals(Arrays.asList("cafe", "café", "cafés"), withPrefix(index, "caf"));
+    assertEquals(Arrays.asList("café", "cafés"), withPrefix(index, "café"));
+    assertEquals(Arrays.asList("日光", "日本", "日本語"), withPrefix(index, "日"));
+    assertEquals(Arrays.asList("日本", "日本語"), withPrefix(index, "日本"));
+    assertEquals(Arrays.asList("😀a", "😀b"), withPrefix(index, "😀"));
+  }
+
+  @Test
+  void randomizedPrefixesMatchBruteForce() {
+    Random random = new Random(5);
+    Set<String> terms = new LinkedHashSet<String>();
+    while (terms.size() < 5000) {
+      terms.add(randomTerm(random, 7));
+    }
+    FrontCodedTermIndex index = new FrontCodedTermIndex(terms.toArray(new String[0]),
+        terms.size());
+    for (int query = 0; query < 500; ++query) {
+      String prefix = randomTerm(random, 3);
+      List<String> expected = new ArrayList<String>();
+      for (String term : terms) {
+        if (term.startsWith(prefix)) {
+          expected.add(term);
+        }
+      }
+      assertEquals(sorted(expected), withPrefix(index, prefix), prefix);
+    }
+  }
+
+  @Test
+  void editDistanceIsBounded() {
+    assertEquals(3, FrontCodedTermIndex.editDistance("kitten", "sitting", 3));
+    assertEquals(3, FrontCodedTermIndex.editDistance("kitten", "sitting", 2));
+    assertEquals(0, FrontCodedTermIndex.editDistance("日本", "日本", 0));
+    // a character outside the basic plane counts as one edit, not as two surrogates
+    assertEquals(1, FrontCodedTermIndex.editDistance("a😀", "ab", 2));
+    assertEquals(1, FrontCodedTermIndex.editDistance("cafe", "café", 1));
+  }
+
+  @Test
+  void findsTermsWithinDistance() {
+    FrontCodedTermIndex index = index("cat", "cart", "cut", "dog", "cats", "act", "at");
+    assertEquals(Arrays.asList("cat"), withinDistance(index, "cat", 0));
+    assertEquals(Arrays.asList("at", "cart", "cat", "cats", "cut"),
+        withinDistance(index, "cat", 1));
+    assertEquals(Arrays.asList("act", "at", "cart", "cat", "cats", "cut"),
+        withinDistance(index, "cat", 2));
+    assertEquals(Arrays.asList(), withinDistance(index, "zebra", 1));
+  }
+
+  @Test
+  void countsCharactersNotBytes() {
+    FrontCodedTermIndex index = index("café", "cafe", "cafés", "日本", "日本語", "😀b");
+    assertEquals(Arrays.asList("cafe", "café"), withinDistance(index, "cafe", 1));
+    assertEquals(Arrays.asList("cafe", "café", "cafés"), withinDistance(index, "café", 1));
+    assertEquals(Arrays.asList("日本", "日本語"), withinDistance(index, "日本", 1));
+    assertEquals(Arrays.asList("😀b"), withinDistance(index, "ab", 1));
+  }
+
+  @Test
+  void randomizedLookupsMatchBruteForce() {
+    Random random = new Random(11);
+    Set<String> terms = new LinkedHashSet<String>();
+    while (terms.size() < 3000) {
+      terms.add(randomTerm(random, 6));
+    }
+    // a few terms longer than the 64 byte buffer the index starts decoding with
+    while (terms.size() < 3020) {
+      terms.add(randomTerm(random, 40) + randomTerm(random, 40));
+    }
+    FrontCodedTermIndex index = new FrontCodedTermIndex(terms.toArray(new String[0]),
+        terms.size());
+    List<String> termList = new ArrayList<String>(terms);
+    for (int query = 0; query < 300; ++query) {
+      // half of the queries are near a stored term, the others random
+      String word = query % 2 == 0 ? termList.get(random.nextInt(termList.size()))
+          : randomTerm(random, 7);
+      int maxEdits = random.nextInt(4);
+      assertEquals(bruteForce(terms, word, maxEdits), withinDistance(index, word, maxEdits),
+          word + " within " + maxEdits);
+    }
+  }
+}
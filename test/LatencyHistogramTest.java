@@ -0,0 +1,35 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class checks the buckets of LatencyHistogram at both ends of its range
+ */
+class LatencyHistogramTest {
+
+  @Test
+  void smallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10; ++i) {
+      histogram.record(i);
+    }
+    assertEquals(10, histogram.getCount());
+    assertEquals(5, histogram.getValueAtPercentile(50));
+    assertEquals(10, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  void valuesBeyondTheRangeGoToTheLastBucket() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    // 1.5 * 2^44 is the first sub-bucket of the upper half of the last power of two
+    histogram.record(3L << 43);
+    histogram.record(1L << 50);
+    histogram.record(Long.MAX_VALUE);
+
+    assertEquals(3L << 43, histogram.getValueAtPercentile(30));
+    // the lower bound of the last bucket, not a bucket picked by the low bits of the value
+    assertEquals(63L << 39, histogram.getValueAtPercentile(60));
+    assertEquals(63L << 39, histogram.getValueAtPercentile(100));
+    assertEquals(Long.MAX_VALUE, histogram.getMax());
+  }
+}
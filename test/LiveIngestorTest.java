@@ -0,0 +1,204 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class checks that LiveIngestor tails the CSV files of a directory, waits for partly
+ * written records and resumes from its saved offsets. The tests call ingestNow() instead of
+ * waiting for the thread of the ingestor, which scans rarely enough not to interfere
+ */
+class LiveIngestorTest {
+  @TempDir
+  Path directory;
+
+  private static void append(Path file, String text) throws IOException {
+    Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+  private LiveIngestor ingestor(LocalSearchShard shard) throws IOException {
+    return new LiveIngestor(shard, directory.resolve("in").toString(),
+        directory.resolve("offsets").toString(), 100, 60_000);
+  }
+
+  /**
+   * This class is a back end which fails to add songs whose title contains "poison", refusing a
+   * whole bulk call which contains one before adding anything, as SearchBackEnd does
+   */
+  private static class PoisonedBackEnd extends SearchBackEnd {
+    PoisonedBackEnd() {
+      super(16, MapEngine.OPEN_ADDRESSING);
+    }
+
+    @Override
+    public void addSong(SongDataInterface song) {
+      if (song.getTitle().contains("poison")) {
+        throw new IllegalStateException("poisoned song");
+      }
+      super.addSong(song);
+    }
+
+    @Override
+    public void addSongs(Collection<? extends SongDataInterface> songs) {
+      for (SongDataInterface song : songs) {
+        if (song.getTitle().contains("poison")) {
+          throw new IllegalStateException("poisoned batch");
+        }
+      }
+      super.addSongs(songs);
+    }
+  }
+
+  @Test
+  void tailsFilesAndWaitsForCompleteRecords() throws IOException {
+    Files.createDirectory(directory.resolve("in"));
+    Path file = directory.resolve("in").resolve("songs.csv");
+    append(file, "title,artist,year\nHello World,Adele,2015\nHello Goo");
+    LocalSearchShard shard = new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING);
+    try (LiveIngestor ingestor = ingestor(shard)) {
+      ingestor.ingestNow();
+      assertEquals(1, shard.findTitles("hello").size());
+      append(file, "dbye,The Beatles,1967\n");
+      ingestor.ingestNow();
+      assertEquals(2, shard.findTitles("hello").size());
+      assertEquals(1, shard.findTitles("goodbye").size());
+      assertEquals(2, ingestor.getIngestedSongs());
+    }
+  }
+
+  @Test
+  void resumesFromTheSavedOffsets() throws IOException {
+    Files.createDirectory(directory.resolve("in"));
+    Path file = directory.resolve("in").resolve("songs.csv");
+    append(file, "title,artist,year\nHello World,Adele,2015\n");
+    try (LiveIngestor ingestor = ingestor(new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING))) {
+      ingestor.ingestNow();
+    }
+    append(file, "Yesterday,The Beatles,1965\n");
+    LocalSearchShard shard = new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING);
+    try (LiveIngestor ingestor = ingestor(shard)) {
+      ingestor.ingestNow();
+      // only the song written after the first ingestor stopped is read again
+      assertNull(shard.findTitles("hello"));
+      assertEquals(1, shard.findTitles("yesterday").size());
+    }
+  }
+
+  @Test
+  @Timeout(60)
+  void failingRecordsAreSkippedAndTheThreadKeepsRunning() throws Exception {
+    Files.createDirectory(directory.resolve("in"));
+    Path file = directory.resolve("in").resolve("songs.csv");
+    append(file, "title,artist,year\nHello World,Adele,2015\nSome poison,X,2000\n"
+        + "Bad Year,Y,99999\nYesterday,The Beatles,1965\n");
+    LocalSearchShard shard = new LocalSearchShard(new PoisonedBackEnd(), false);
+    try (LiveIngestor ingestor = new LiveIngestor(shard, directory.resolve("in").toString(),
+        directory.resolve("offsets").toString(), 100, 20)) {
+      // the skipped records are counted once the whole file has been read
+      while (ingestor.getIngestedSongs() < 2 || ingestor.getSkippedRecords() < 2) {
+        Thread.sleep(10);
+      }
+      assertEquals(2, ingestor.getSkippedRecords());
+      assertEquals(2, shard.size());
+      // songs written later are still picked up by the thread of the ingestor
+      append(file, "Hello Goodbye,The Beatles,1967\n");
+      while (ingestor.getIngestedSongs() < 3) {
+        Thread.sleep(10);
+      }
+      assertEquals(2, shard.findTitles("hello").size());
+    }
+    // the skipped records count as read, a restarted ingestor does not add anything again
+    LocalSearchShard restarted = new LocalSearchShard(new PoisonedBackEnd(), false);
+    try (LiveIngestor ingestor = ingestor(restarted)) {
+      assertEquals(0, ingestor.ingestNow());
+      assertEquals(0, restarted.size());
+    }
+  }
+
+  @Test
+  void rewrittenFilesAreReadFromTheStart() throws IOException {
+    Files.createDirectory(directory.resolve("in"));
+    Path file = directory.resolve("in").resolve("songs.csv");
+    append(file, "title,artist,year\nHello World,Adele,2015\n");
+    LocalSearchShard shard = new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING);
+    try (LiveIngestor ingestor = ingestor(shard)) {
+      ingestor.ingestNow();
+      assertEquals(1, shard.size());
+
+      // a new file moved over the old one, larger than the offset of the old one
+      Path replacement = directory.resolve("replacement.csv");
+      append(replacement,
+          "title,artist,year\nYesterday,The Beatles,1965\nHey Jude,The Beatles,1968\n");
+      Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING);
+      ingestor.ingestNow();
+      assertEquals(1, shard.findTitles("yesterday").size());
+      assertEquals(1, shard.findTitles("jude").size());
+
+      // the same file rewritten in place with other songs, again larger than before
+      Files.write(file, ("title,artist,year\nLet It Be,The Beatles,1970\nHelp,The Beatles,1965\n"
+          + "Something,The Beatles,1969\n").getBytes(StandardCharsets.UTF_8));
+      ingestor.ingestNow();
+      assertEquals(1, shard.findTitles("something").size());
+      assertEquals(1, shard.findTitles("let").size());
+      assertEquals(6, shard.size());
+    }
+  }
+
+  @Test
+  void anUnreadableFileDoesNotStopTheOthers() throws IOException {
+    Files.createDirectory(directory.resolve("in"));
+    // a directory named like a CSV file is listed first and can never be read
+    Files.createDirectory(directory.resolve("in").resolve("a.csv"));
+    append(directory.resolve("in").resolve("b.csv"), "title,artist,year\nHello World,Adele,2015\n");
+    LocalSearchShard shard = new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING);
+    try (LiveIngestor ingestor = ingestor(shard)) {
+      assertEquals(1, ingestor.ingestNow());
+      assertEquals(1, shard.findTitles("hello").size());
+      assertTrue(ingestor.getFailedReads() >= 1);
+      SearchMetrics metrics = new SearchMetrics(null, null, null, null, ingestor);
+      assertEquals(ingestor.getFailedReads(), metrics.getIngestFailedReads());
+      assertTrue(metrics.toText().contains("songsearch_ingest_failed_reads_total "));
+    }
+  }
+
+  @Test
+  void offsetsOfDeletedFilesAreDropped() throws IOException {
+    Files.createDirectory(directory.resolve("in"));
+    Path kept = directory.resolve("in").resolve("kept.csv");
+    Path deleted = directory.resolve("in").resolve("deleted.csv");
+    append(kept, "title,artist,year\nHello World,Adele,2015\n");
+    append(deleted, "title,artist,year\nYesterday,The Beatles,1965\n");
+    Path offsets = directory.resolve("offsets");
+    try (LiveIngestor ingestor = ingestor(new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING))) {
+      ingestor.ingestNow();
+      assertTrue(Files.readString(offsets).contains("deleted.csv"));
+      Files.delete(deleted);
+      ingestor.ingestNow();
+      String saved = Files.readString(offsets);
+      assertFalse(saved.contains("deleted.csv"));
+      assertTrue(saved.contains("kept.csv"));
+    }
+
+    // a file created again under the name of the deleted one is read from its start
+    append(deleted, "title,artist,year\nHey Jude,The Beatles,1968\n");
+    LocalSearchShard shard = new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING);
+    try (LiveIngestor ingestor = ingestor(shard)) {
+      ingestor.ingestNow();
+      assertEquals(1, shard.findTitles("jude").size());
+      assertNull(shard.findTitles("hello"));
+    }
+  }
+}
@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * This class checks the contract of MapADT for both hash table engines, the chained one with
+ * resizing at once and spread over later operations
+ */
+class MapADTTest {
+
+  static Stream<Supplier<MapADT<Object, Integer>>> engines() {
+    return Stream.of(() -> new HashtableMap<Object, Integer>(4),
+        () -> new HashtableMap<Object, Integer>(4, true),
+        () -> new OpenAddressingMap<Object, Integer>(4));
+  }
+
+  @ParameterizedTest
+  @MethodSource("engines")
+  void putGetAndRejectDuplicateKeys(Supplier<MapADT<Object, Integer>> engine) {
+    MapADT<Object, Integer> map = engine.get();
+    assertTrue(map.put("a", 1));
+    assertFalse(map.put("a", 2));
+    assertFalse(map.put(null, 3));
+    assertEquals(1, map.get("a"));
+    assertEquals(1, map.size());
+    assertTrue(map.containsKey("a"));
+    assertFalse(map.containsKey("b"));
+    assertNull(map.getOrNull("b"));
+    assertThrows(NoSuchElementException.class, () -> map.get("b"));
+  }
+
+  @ParameterizedTest
+  @MethodSource("engines")
+  void growAndRemove(Supplier<MapADT<Object, Integer>> engine) {
+    MapADT<Object, Integer> map = engine.get();
+    // integers with a large common stride collide in a table indexed by the low bits
+    for (int i = 0; i < 20_000; ++i) {
+      assertTrue(map.put(i * 1024, i));
+    }
+    assertEquals(20_000, map.size());
+    for (int i = 0; i < 20_000; i += 2) {
+      assertEquals(i, map.remove(i * 1024));
+    }
+    assertNull(map.remove(0));
+    assertEquals(10_000, map.size());
+    for (int i = 0; i < 20_000; ++i) {
+      assertEquals(i % 2 == 1, map.containsKey(i * 1024));
+    }
+    map.trimToSize();
+    for (int i = 1; i < 20_000; i += 2) {
+      assertEquals(i, map.get(i * 1024));
+    }
+    map.clear();
+    assertEquals(0, map.size());
+    assertFalse(map.containsKey(1024));
+  }
+}
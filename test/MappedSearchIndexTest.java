@@ -0,0 +1,138 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class writes snapshots with MappedSearchIndex and checks that the opened snapshot answers
+ * like the back end it was written from
+ */
+class MappedSearchIndexTest {
+
+  @TempDir
+  File directory;
+
+  /**
+   * This method creates a back end holding the passed songs
+   */
+  private static SearchBackEnd backEnd(TitleTokenizer tokenizer, SongData... songs) {
+    SearchBackEnd backEnd = new SearchBackEnd(16, MapEngine.OPEN_ADDRESSING, tokenizer);
+    for (SongData song : songs) {
+      backEnd.addSong(song);
+    }
+    return backEnd;
+  }
+
+  @Test
+  void roundTripAnswersLikeTheBackEnd() throws IOException {
+    SongData goodbye = new SongData("Hello Goodbye", "The Beatles", 1967);
+    SearchBackEnd backEnd = backEnd(TitleTokenizer.STANDARD,
+        new SongData("Hello World", "Adele", 2015), goodbye,
+        new SongData("Goodbye World", "Adele", 1990), new SongData("Café Olé", "Ümit", 2001));
+    backEnd.removeSong(new SongData("Goodbye World", "Adele", 1990));
+    File snapshot = new File(directory, "songs.idx");
+    MappedSearchIndex.writeSnapshot(backEnd, snapshot);
+
+    MappedSearchIndex index = MappedSearchIndex.open(snapshot);
+    for (String word : List.of("hello", "HELLO", "goodbye", "world", "cafe", "olé", "missing")) {
+      assertEquals(backEnd.findTitles(word), index.findTitles(word), word);
+      assertEquals(backEnd.findArtists(word), index.findArtists(word), word);
+      assertEquals(backEnd.findNumberOfSongsInYear(word, 1967),
+          index.findNumberOfSongsInYear(word, 1967), word);
+    }
+    assertTrue(index.containsSong(goodbye));
+    assertFalse(index.containsSong(new SongData("Goodbye World", "Adele", 1990)));
+    assertFalse(new File(directory, "songs.idx.tmp").exists());
+  }
+
+  @Test
+  void recordsTheTokenizer() throws IOException {
+    SearchBackEnd backEnd = backEnd(TitleTokenizer.WHITESPACE,
+        new SongData("Hello World", "Adele", 2015), new SongData("hello there", "Someone", 2000));
+    File snapshot = new File(directory, "songs.idx");
+    MappedSearchIndex.writeSnapshot(backEnd, snapshot);
+
+    // the whitespace tokenizer keeps case, so "Hello" and "hello" are different words
+    MappedSearchIndex index = MappedSearchIndex.open(snapshot);
+    assertEquals(List.of("Hello World"), index.findTitles("Hello"));
+    assertEquals(List.of("hello there"), index.findTitles("hello"));
+    assertEquals(List.of("Hello World"),
+        MappedSearchIndex.open(snapshot, TitleTokenizer.WHITESPACE).findTitles("Hello"));
+    assertThrows(IOException.class,
+        () -> MappedSearchIndex.open(snapshot, TitleTokenizer.STANDARD));
+  }
+
+  @Test
+  void customTokenizerMustBePassed() throws IOException {
+    TitleTokenizer reversing = (text, terms) -> TitleTokenizer.WHITESPACE.tokenize(
+        new StringBuilder(text).reverse().toString(), terms);
+    SearchBackEnd backEnd = backEnd(reversing, new SongData("ab cd", "Someone", 2000));
+    File snapshot = new File(directory, "songs.idx");
+    MappedSearchIndex.writeSnapshot(backEnd, snapshot);
+
+    assertThrows(IOException.class, () -> MappedSearchIndex.open(snapshot));
+    assertEquals(List.of("ab cd"), MappedSearchIndex.open(snapshot, reversing).findTitles("ab"));
+  }
+
+  @Test
+  void rewriteKeepsOpenReadersWorking() throws IOException {
+    SearchBackEnd backEnd = backEnd(TitleTokenizer.STANDARD,
+        new SongData("Hello World", "Adele", 2015));
+    File snapshot = new File(directory, "songs.idx");
+    MappedSearchIndex.writeSnapshot(backEnd, snapshot);
+    MappedSearchIndex oldIndex = MappedSearchIndex.open(snapshot);
+
+    for (int i = 0; i < 100; ++i) {
+      backEnd.addSong(new SongData("Another World " + i, "Band " + i, 2000));
+    }
+    MappedSearchIndex.writeSnapshot(backEnd, snapshot);
+
+    // the old reader still sees the complete old file, a new reader sees the new one
+    assertEquals(List.of("Hello World"), oldIndex.findTitles("hello"));
+    assertNull(oldIndex.findTitles("another"));
+    MappedSearchIndex newIndex = MappedSearchIndex.open(snapshot);
+    assertEquals(101, newIndex.findTitles("world").size());
+    assertEquals(backEnd.findTitles("another"), newIndex.findTitles("another"));
+  }
+
+  @Test
+  void artistOrderAfterCompactionMatchesSnapshotAndRebuild() throws IOException {
+    Random random = new Random(7);
+    List<SongData> songs = new ArrayList<SongData>();
+    for (int i = 0; i < 400; ++i) {
+      songs.add(new SongData("love w" + random.nextInt(20) + " s" + i,
+          "artist" + random.nextInt(30), 2000));
+    }
+    SearchBackEnd backEnd = backEnd(TitleTokenizer.STANDARD, songs.toArray(new SongData[0]));
+    List<SongData> remaining = new ArrayList<SongData>();
+    for (SongData song : songs) {
+      // the first songs of many artists are removed while later songs of theirs stay
+      if (random.nextInt(3) == 0) {
+        backEnd.removeSong(song);
+      } else {
+        remaining.add(song);
+      }
+    }
+    backEnd.compact();
+    File snapshot = new File(directory, "songs.idx");
+    MappedSearchIndex.writeSnapshot(backEnd, snapshot);
+    MappedSearchIndex index = MappedSearchIndex.open(snapshot);
+    SearchBackEnd rebuilt = backEnd(TitleTokenizer.STANDARD, remaining.toArray(new SongData[0]));
+
+    for (String word : List.of("love", "w0", "w7", "w19")) {
+      assertEquals(rebuilt.findArtists(word), backEnd.findArtists(word), word);
+      assertEquals(rebuilt.findArtists(word), index.findArtists(word), word);
+      assertEquals(rebuilt.findTopArtists(word, 5), backEnd.findTopArtists(word, 5), word);
+    }
+  }
+}
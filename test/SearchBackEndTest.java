@@ -0,0 +1,328 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * This class checks the queries of SearchBackEnd after adding, removing, updating and compacting
+ * songs, for both hash table engines
+ */
+class SearchBackEndTest {
+
+  private static SearchBackEnd backEnd(MapEngine engine, SongData... songs) {
+    SearchBackEnd backEnd = new SearchBackEnd(4, engine);
+    for (SongData song : songs) {
+      backEnd.addSong(song);
+    }
+    return backEnd;
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void findByWord(MapEngine engine) {
+    SearchBackEnd backEnd = backEnd(engine, new SongData("Hello World", "Adele", 2015),
+        new SongData("Hello Goodbye", "The Beatles", 1967),
+        new SongData("Goodbye World", "Adele", 1990));
+    assertEquals(Arrays.asList("Hello World", "Hello Goodbye"), backEnd.findTitles("hello"));
+    assertEquals(Arrays.asList("Adele"), backEnd.findArtists("world"));
+    assertNull(backEnd.findTitles("missing"));
+    assertEquals(1, backEnd.findNumberOfSongsInYear("goodbye", 1967));
+    assertEquals(0, backEnd.findNumberOfSongsInYear("goodbye", 1968));
+    assertEquals(2, backEnd.findNumberOfSongsInYearRange("goodbye", 1960, 1990));
+    assertEquals(Arrays.asList("Goodbye World"), backEnd.findTitlesMatching("goodbye world"));
+    assertEquals(Arrays.asList("Hello World", "Goodbye World"),
+        backEnd.findTitlesMatching("world -beatles"));
+    assertTrue(backEnd.containsSong(new SongData("Hello World", "Adele", 2015)));
+    assertFalse(backEnd.containsSong(new SongData("Hello World", "Adele", 2016)));
+    assertEquals(3, backEnd.size());
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void removeUpdateAndCompact(MapEngine engine) {
+    SearchBackEnd backEnd = backEnd(engine, new SongData("Hello World", "Adele", 2015),
+        new SongData("Hello Goodbye", "The Beatles", 1967));
+    assertTrue(backEnd.removeSong(new SongData("Hello World", "Adele", 2015)));
+    assertFalse(backEnd.removeSong(new SongData("Hello World", "Adele", 2015)));
+    assertNull(backEnd.findTitles("world"));
+    assertTrue(backEnd.updateSong(new SongData("Hello Goodbye", "The Beatles", 1967),
+        new SongData("Hello, Goodbye", "The Beatles", 1967)));
+    assertEquals(Arrays.asList("Hello, Goodbye"), backEnd.findTitles("hello"));
+    backEnd.compact();
+    assertFalse(backEnd.needsCompaction());
+    assertEquals(Arrays.asList("Hello, Goodbye"), backEnd.findTitles("goodbye"));
+    assertEquals(1, backEnd.size());
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void rejectDuplicates(MapEngine engine) {
+    SearchBackEnd backEnd = backEnd(engine);
+    backEnd.setRejectDuplicates(true);
+    backEnd.addSong(new SongData("Hello World", "Adele", 2015));
+    backEnd.addSong(new SongData("HELLO WORLD", "Adele", 2015));
+    backEnd.addSongs(Arrays.asList(new SongData("hello world", "Adele", 2015),
+        new SongData("Hello World", "Adele", 2016)));
+    assertEquals(2, backEnd.size());
+    assertEquals(2, backEnd.getRejectedDuplicates());
+    assertEquals(Arrays.asList("Hello World", "Hello World"), backEnd.findTitles("world"));
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void addSongsAnswersLikeAddSong(MapEngine engine) {
+    Random random = new Random(7);
+    List<SongData> songs = new ArrayList<SongData>();
+    for (int i = 0; i < 5_000; ++i) {
+      songs.add(new SongData("w" + random.nextInt(300) + " w" + random.nextInt(3000),
+          "artist" + random.nextInt(100), 1950 + random.nextInt(70)));
+    }
+    SearchBackEnd single = backEnd(engine, songs.toArray(new SongData[0]));
+    SearchBackEnd bulk = backEnd(engine);
+    bulk.addSongs(songs.subList(0, 2_000));
+    bulk.addSongs(songs.subList(2_000, songs.size()));
+    assertEquals(single.size(), bulk.size());
+    for (int w = 0; w < 3000; ++w) {
+      String word = "w" + w;
+      assertEquals(single.findTitles(word), bulk.findTitles(word), word);
+      assertEquals(single.findArtists(word), bulk.findArtists(word), word);
+      assertEquals(single.findNumberOfSongsInYearRange(word, 1960, 1980),
+          bulk.findNumberOfSongsInYearRange(word, 1960, 1980), word);
+    }
+    for (SongData song : songs) {
+      assertTrue(bulk.containsSong(song));
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void yearOutOfRangeLeavesTheBackEndUnchanged(MapEngine engine) {
+    SearchBackEnd backEnd = backEnd(engine, new SongData("Goodbye World", "Z", 1990));
+    assertThrows(IllegalArgumentException.class, () -> backEnd.addSongs(Arrays.asList(
+        new SongData("Hello World", "X", 2000), new SongData("Bad Year", "Y", 99999))));
+    assertThrows(IllegalArgumentException.class,
+        () -> backEnd.addSong(new SongData("Hello World", "X", -40000)));
+    assertFalse(backEnd.containsSong(new SongData("Hello World", "X", 2000)));
+    assertEquals(1, backEnd.size());
+    assertNull(backEnd.findTitles("hello"));
+    assertEquals(Arrays.asList("Goodbye World"), backEnd.findTitles("world"));
+    // the back end keeps working after the rejected call
+    backEnd.addSongs(Arrays.asList(new SongData("Hello World", "X", 2000)));
+    assertEquals(Arrays.asList("Hello World"), backEnd.findTitles("hello"));
+    assertEquals(2, backEnd.size());
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void findTitlesByPrefix(MapEngine engine) {
+    SearchBackEnd backEnd = backEnd(engine, new SongData("Hello World", "Adele", 2015),
+        new SongData("Help Helpless", "The Beatles", 1965),
+        new SongData("Yellow Submarine", "The Beatles", 1966),
+        new SongData("日本語 Lesson", "Someone", 2001), new SongData("日光 Trip", "Other", 2002));
+    assertEquals(Arrays.asList("Hello World", "Help Helpless"), backEnd.findTitlesByPrefix("hel"));
+    // the prefix is normalized like a query word, and a song with two matching words is
+    // returned once
+    assertEquals(Arrays.asList("Hello World", "Help Helpless"), backEnd.findTitlesByPrefix("HEL"));
+    assertEquals(Arrays.asList("Help Helpless"), backEnd.findTitlesByPrefix("help"));
+    assertEquals(Arrays.asList("日本語 Lesson", "日光 Trip"), backEnd.findTitlesByPrefix("日"));
+    assertEquals(Arrays.asList("日本語 Lesson"), backEnd.findTitlesByPrefix("日本"));
+    assertNull(backEnd.findTitlesByPrefix("xyz"));
+    assertNull(backEnd.findTitlesByPrefix("two words"));
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void autocompleteRanksBySongsAndBreaksTiesInSortedOrder(MapEngine engine) {
+    SearchBackEnd backEnd = backEnd(engine, new SongData("love me", "A", 2000),
+        new SongData("love you", "B", 2000), new SongData("love story", "C", 2000),
+        new SongData("lovely day", "D", 2000), new SongData("lover boy", "E", 2000),
+        new SongData("loves it", "F", 2000), new SongData("lovely night", "G", 2000),
+        new SongData("日本 one", "H", 2000), new SongData("日本語 two", "I", 2000));
+    assertEquals(Arrays.asList("love", "lovely", "lover", "loves"),
+        backEnd.autocomplete("lov", 10));
+    assertEquals(Arrays.asList("love", "lovely", "lover"), backEnd.autocomplete("Lov", 3));
+    assertEquals(Arrays.asList("lover"), backEnd.autocomplete("lover", 5));
+    assertEquals(Arrays.asList("日本", "日本語"), backEnd.autocomplete("日", 5));
+    assertEquals(Arrays.asList(), backEnd.autocomplete("zz", 5));
+    assertEquals(Arrays.asList(), backEnd.autocomplete("lov", 0));
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void prefixSearchesFollowAddsAndRemovals(MapEngine engine) {
+    SearchBackEnd backEnd = backEnd(engine, new SongData("love me", "A", 2000),
+        new SongData("lovely day", "B", 2000), new SongData("lovely night", "C", 2000));
+    assertEquals(Arrays.asList("lovely", "love"), backEnd.autocomplete("lov", 5));
+
+    // enough new words to rebuild the sorted dictionary, and a few which stay pending after it
+    List<SongData> songs = new ArrayList<SongData>();
+    for (int i = 0; i < 5_000; ++i) {
+      songs.add(new SongData("loving" + i + " love", "artist", 2000));
+    }
+    backEnd.addSongs(songs);
+    backEnd.addSong(new SongData("lovebird song", "D", 2000));
+    assertEquals(Arrays.asList("love", "lovely", "lovebird"), backEnd.autocomplete("lov", 3));
+    assertEquals(5_004, backEnd.findTitlesByPrefix("lov").size());
+    assertEquals(Arrays.asList("lovebird song"), backEnd.findTitlesByPrefix("loveb"));
+    assertEquals(Arrays.asList("loving4999 love"), backEnd.findTitlesByPrefix("loving4999"));
+
+    // removed songs no longer count, and a word left without songs is no longer suggested, both
+    // before and after compaction
+    assertTrue(backEnd.removeSong(new SongData("lovebird song", "D", 2000)));
+    assertTrue(backEnd.removeSong(new SongData("lovely day", "B", 2000)));
+    assertNull(backEnd.findTitlesByPrefix("loveb"));
+    assertEquals(Arrays.asList("love", "lovely", "loving0"), backEnd.autocomplete("lov", 3));
+    backEnd.compact();
+    assertNull(backEnd.findTitlesByPrefix("loveb"));
+    assertEquals(Arrays.asList("love", "lovely", "loving0"), backEnd.autocomplete("lov", 3));
+    assertEquals(Arrays.asList("lovely night"), backEnd.findTitlesByPrefix("lovel"));
+    assertEquals(5_002, backEnd.findTitlesByPrefix("lov").size());
+  }
+
+  /**
+   * This method creates songs containing "love" once or twice in titles of different lengths, so
+   * that many songs share an impact and ties are broken by the order the songs were added
+   */
+  private static List<SongData> rankedSongs(Random random, int count) {
+    List<SongData> songs = new ArrayList<SongData>();
+    for (int i = 0; i < count; ++i) {
+      StringBuilder title = new StringBuilder(random.nextInt(4) == 0 ? "love love" : "love");
+      for (int word = random.nextInt(6); word > 0; --word) {
+        title.append(" w").append(random.nextInt(50));
+      }
+      songs.add(new SongData(title.append(" s").append(i).toString(), "artist" + i % 7,
+          1950 + random.nextInt(70)));
+    }
+    return songs;
+  }
+
+  /**
+   * This method ranks the live songs containing "love" by their score, computed like
+   * findTitlesRanked() does from the words of their titles, and returns their titles
+   */
+  private static List<String> rankedByScan(List<SongData> songs, List<SongData> removed,
+      double recencyWeight) {
+    int oldest = Integer.MAX_VALUE;
+    int newest = Integer.MIN_VALUE;
+    for (SongData song : songs) {
+      oldest = Math.min(oldest, song.getYearPublished());
+      newest = Math.max(newest, song.getYearPublished());
+    }
+    List<Integer> ids = new ArrayList<Integer>();
+    double[] scores = new double[songs.size()];
+    for (int id = 0; id < songs.size(); ++id) {
+      SongData song = songs.get(id);
+      if (removed.contains(song)) {
+        continue;
+      }
+      List<String> words = new ArrayList<String>();
+      TitleTokenizer.STANDARD.tokenize(song.getTitle(), words::add);
+      int impact = SearchBackEnd.impact(Collections.frequency(words, "love"), words.size());
+      double recency = (song.getYearPublished() - oldest) / (double) (newest - oldest);
+      scores[id] = impact / 255.0 + recencyWeight * recency;
+      ids.add(id);
+    }
+    ids.sort(Comparator.comparingDouble((Integer id) -> -scores[id]).thenComparing(id -> id));
+    List<String> titles = new ArrayList<String>();
+    for (int id : ids) {
+      titles.add(songs.get(id).getTitle());
+    }
+    return titles;
+  }
+
+  /**
+   * This method collects every page of findTitlesRanked(), checking the cursors on the way
+   */
+  private static List<String> allPages(SearchBackEnd backEnd, int k, double recencyWeight) {
+    List<String> titles = new ArrayList<String>();
+    String cursor = null;
+    do {
+      RankedPage page = backEnd.findTitlesRanked("love", k, recencyWeight, cursor);
+      cursor = page.getNextCursor();
+      if (cursor != null) {
+        assertEquals(k, page.getTitles().size());
+        assertTrue(cursor.matches("[0-9a-f]+:[0-9]+"), cursor);
+      }
+      titles.addAll(page.getTitles());
+    } while (cursor != null);
+    return titles;
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void rankedPagesCoverEveryTitleInScoreOrder(MapEngine engine) {
+    Random random = new Random(3);
+    List<SongData> songs = rankedSongs(random, 500);
+    SearchBackEnd backEnd = backEnd(engine, songs.toArray(new SongData[0]));
+    List<SongData> removed = new ArrayList<SongData>();
+    for (int i = 0; i < 500; i += 9) {
+      backEnd.removeSong(songs.get(i));
+      removed.add(songs.get(i));
+    }
+
+    for (double recencyWeight : new double[] {0, 0.3, 2}) {
+      List<String> expected = rankedByScan(songs, removed, recencyWeight);
+      for (int k : new int[] {1, 7, 50, 1000}) {
+        List<String> paged = allPages(backEnd, k, recencyWeight);
+        // the pages hold exactly the titles of findTitles(), in the order of their scores, so
+        // the visit stopped early by the bound of findTitlesRanked() never missed a better song
+        assertEquals(expected, paged, "k " + k + " weight " + recencyWeight);
+        List<String> sortedPaged = new ArrayList<String>(paged);
+        List<String> sortedTitles = new ArrayList<String>(backEnd.findTitles("love"));
+        Collections.sort(sortedPaged);
+        Collections.sort(sortedTitles);
+        assertEquals(sortedTitles, sortedPaged);
+        // the first page is the top k
+        assertEquals(expected.subList(0, Math.min(k, expected.size())),
+            backEnd.findTitlesRanked("love", k, recencyWeight, null).getTitles());
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void recencyWeightPrefersNewerSongs(MapEngine engine) {
+    SearchBackEnd backEnd = backEnd(engine, new SongData("love", "A", 1960),
+        new SongData("love w1 w2 w3 w4 w5", "B", 2020), new SongData("love w1", "C", 1990));
+    // without a weight the shortest title describes the word best, with a large weight the
+    // newest song comes first
+    assertEquals(Arrays.asList("love", "love w1", "love w1 w2 w3 w4 w5"),
+        backEnd.findTitlesRanked("love", 3).getTitles());
+    assertEquals(Arrays.asList("love w1 w2 w3 w4 w5", "love w1", "love"),
+        backEnd.findTitlesRanked("love", 3, 10, null).getTitles());
+    // a negative weight is treated as 0
+    assertEquals(backEnd.findTitlesRanked("love", 3).getTitles(),
+        backEnd.findTitlesRanked("love", 3, -1, null).getTitles());
+  }
+
+  @ParameterizedTest
+  @EnumSource(MapEngine.class)
+  void rankedSearchRejectsInvalidCursors(MapEngine engine) {
+    SearchBackEnd backEnd = backEnd(engine, new SongData("love", "A", 1960),
+        new SongData("love me", "B", 2020));
+    RankedPage first = backEnd.findTitlesRanked("love", 1);
+    assertEquals(Arrays.asList("love"), first.getTitles());
+    RankedPage second = backEnd.findTitlesRanked("love", 1, 0, first.getNextCursor());
+    assertEquals(Arrays.asList("love me"), second.getTitles());
+    assertNull(second.getNextCursor());
+    for (String cursor : new String[] {"", "garbage", "zz:1", "3fe0000000000000:x",
+        "3fe0000000000000", ":5"}) {
+      assertThrows(IllegalArgumentException.class,
+          () -> backEnd.findTitlesRanked("love", 1, 0, cursor), cursor);
+    }
+    assertTrue(backEnd.findTitlesRanked("missing", 5).getTitles().isEmpty());
+    assertNull(backEnd.findTitlesRanked("missing", 5).getNextCursor());
+    assertTrue(backEnd.findTitlesRanked("love", 0).getTitles().isEmpty());
+  }
+}
@@ -0,0 +1,70 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class checks that CachingSearchBackEnd and InstrumentedSearchBackEnd pass bulk adds on to
+ * the bulk path of their back end, and that the cache drops the results the added songs change
+ */
+class SearchBackEndWrapperTest {
+
+  /**
+   * This class is a back end which counts how songs are added to it
+   */
+  private static class CountingBackEnd extends SearchBackEnd {
+    int addSongCalls = 0;
+    int addSongsCalls = 0;
+
+    CountingBackEnd() {
+      super(16, MapEngine.OPEN_ADDRESSING);
+    }
+
+    @Override
+    public void addSong(SongDataInterface song) {
+      addSongCalls += 1;
+      super.addSong(song);
+    }
+
+    @Override
+    public void addSongs(Collection<? extends SongDataInterface> songs) {
+      addSongsCalls += 1;
+      super.addSongs(songs);
+    }
+  }
+
+  private static final List<SongData> SONGS = Arrays.asList(
+      new SongData("Hello Goodbye", "The Beatles", 1967), new SongData("Hello", "Adele", 2015));
+
+  @Test
+  void cacheForwardsBulkAddsAndInvalidates() {
+    CountingBackEnd backEnd = new CountingBackEnd();
+    backEnd.addSong(new SongData("Hello World", "X", 2000));
+    CachingSearchBackEnd cache = new CachingSearchBackEnd(backEnd, 1 << 20);
+    assertEquals(1, cache.findTitles("hello").size());
+    assertEquals(0, cache.findNumberOfSongsInYear("hello", 2015));
+    cache.addSongs(SONGS);
+    assertEquals(1, backEnd.addSongsCalls);
+    assertEquals(1, backEnd.addSongCalls);
+    assertEquals(3, cache.findTitles("hello").size());
+    assertEquals(1, cache.findNumberOfSongsInYear("hello", 2015));
+    assertEquals(Arrays.asList("X", "The Beatles", "Adele"), cache.findArtists("hello"));
+  }
+
+  @Test
+  void instrumentedForwardsBulkAddsAndMeasuresThem() {
+    CountingBackEnd backEnd = new CountingBackEnd();
+    InstrumentedSearchBackEnd instrumented = new InstrumentedSearchBackEnd(backEnd);
+    instrumented.addSongs(SONGS);
+    instrumented.setEnabled(false);
+    instrumented.addSongs(Arrays.asList(new SongData("Hello World", "X", 2000)));
+    assertEquals(2, backEnd.addSongsCalls);
+    assertEquals(0, backEnd.addSongCalls);
+    assertEquals(3, backEnd.size());
+    assertEquals(1, instrumented.getLatencies("addSongs").getCount());
+    assertEquals(0, instrumented.getLatencies("addSong").getCount());
+  }
+}
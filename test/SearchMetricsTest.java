@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * This class checks that SearchMetrics reads a back end which is being written to under its read
+ * lock, and that the word index attributes of one scrape share a scan
+ */
+class SearchMetricsTest {
+
+  @Test
+  @Timeout(60)
+  void scrapeWaitsForTheWriter() throws Exception {
+    LocalSearchShard shard = new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING);
+    shard.addSong(new SongData("Hello World", "Adele", 2015));
+    SearchMetrics metrics =
+        new SearchMetrics(null, shard.getBackEnd(), shard.getLock(), null, null);
+    shard.getLock().writeLock().lock();
+    CompletableFuture<String> text;
+    try {
+      text = CompletableFuture.supplyAsync(metrics::toText);
+      Thread.sleep(200);
+      assertFalse(text.isDone());
+      shard.getBackEnd().addSong(new SongData("Hello Goodbye", "The Beatles", 1967));
+    } finally {
+      shard.getLock().writeLock().unlock();
+    }
+    assertTrue(text.get(30, TimeUnit.SECONDS).contains("songsearch_songs 2\n"));
+  }
+
+  @Test
+  @Timeout(120)
+  void scrapesDuringIngest() throws Exception {
+    LocalSearchShard shard = new LocalSearchShard(16, MapEngine.OPEN_ADDRESSING);
+    SearchMetrics metrics =
+        new SearchMetrics(null, shard.getBackEnd(), shard.getLock(), null, null);
+    AtomicBoolean writing = new AtomicBoolean(true);
+    Thread writer = new Thread(() -> {
+      for (int batch = 0; batch < 200; ++batch) {
+        List<SongDataInterface> songs = new ArrayList<SongDataInterface>();
+        for (int i = 0; i < 500; ++i) {
+          songs.add(new SongData("w" + batch + "x" + i + " common", "artist", 2000));
+        }
+        shard.addSongs(songs);
+      }
+      writing.set(false);
+    });
+    writer.start();
+    long scrapes = 0;
+    while (writing.get()) {
+      metrics.toText();
+      metrics.getWordIndexLoadFactor();
+      scrapes += 1;
+    }
+    writer.join();
+    assertTrue(scrapes > 0);
+    assertTrue(metrics.toText().contains("songsearch_word_index_size 100001\n"));
+  }
+
+  @Test
+  void wordIndexAttributesShareOneScan() {
+    AtomicInteger scans = new AtomicInteger();
+    SearchBackEnd backEnd = new SearchBackEnd(16) {
+      @Override
+      public MapStats getWordIndexStats() {
+        scans.incrementAndGet();
+        return super.getWordIndexStats();
+      }
+    };
+    backEnd.addSong(new SongData("Hello World", "Adele", 2015));
+    SearchMetrics metrics = new SearchMetrics(null, backEnd, null);
+
+    metrics.getWordIndexLoadFactor();
+    metrics.getWordIndexMeanLength();
+    metrics.getWordIndexMaxLength();
+    metrics.getWordIndexResizes();
+    metrics.getWordIndexResizeMillis();
+    assertEquals(1, scans.get());
+  }
+}
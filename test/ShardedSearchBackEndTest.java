@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * This class checks that a ShardedSearchBackEnd answers like a single SearchBackEnd holding the
+ * same songs
+ */
+class ShardedSearchBackEndTest {
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 3})
+  void answersLikeASingleBackEnd(int shardCount) {
+    Random random = new Random(5);
+    List<SongData> songs = new ArrayList<SongData>();
+    for (int i = 0; i < 3_000; ++i) {
+      songs.add(new SongData("w" + random.nextInt(50) + " w" + random.nextInt(500),
+          "artist" + random.nextInt(40), 1950 + random.nextInt(70)));
+    }
+    SearchBackEnd single = new SearchBackEnd(16, MapEngine.OPEN_ADDRESSING);
+    single.addSongs(songs);
+    try (ShardedSearchBackEnd sharded = new ShardedSearchBackEnd(shardCount, 16)) {
+      sharded.addSongs(songs.subList(0, 1_000));
+      for (SongData song : songs.subList(1_000, songs.size())) {
+        sharded.addSong(song);
+      }
+      assertEquals(single.size(), sharded.size());
+      for (int w = 0; w < 500; ++w) {
+        String word = "w" + w;
+        // the order of the titles depends on the shards, their multiset does not
+        List<String> expected = single.findTitles(word);
+        List<String> titles = sharded.findTitles(word);
+        assertEquals(expected == null ? null : expected.size(),
+            titles == null ? null : titles.size(), word);
+        if (expected != null) {
+          assertTrue(titles.containsAll(expected));
+          assertEquals(new HashSet<String>(single.findArtists(word)),
+              new HashSet<String>(sharded.findArtists(word)));
+        }
+        assertEquals(single.findNumberOfSongsInYear(word, 1990),
+            sharded.findNumberOfSongsInYear(word, 1990));
+        assertEquals(single.findNumberOfSongsInYearRange(word, 1960, 1999),
+            sharded.findNumberOfSongsInYearRange(word, 1960, 1999));
+      }
+      SongData song = songs.get(17);
+      assertTrue(sharded.containsSong(song));
+      assertTrue(sharded.updateSong(song, new SongData("moved", "elsewhere", 2001)));
+      assertEquals(single.size(), sharded.size());
+      assertEquals(1, sharded.findTitles("moved").size());
+    }
+  }
+
+  @Test
+  void yearOutOfRangeAddsNothing() {
+    try (ShardedSearchBackEnd backEnd = new ShardedSearchBackEnd(3, 16)) {
+      List<SongData> songs = new ArrayList<SongData>();
+      for (int i = 0; i < 30; ++i) {
+        songs.add(new SongData("song " + i, "artist" + i, 1990 + i));
+      }
+      songs.add(new SongData("Bad Year", "Y", 99999));
+      assertThrows(IllegalArgumentException.class, () -> backEnd.addSongs(songs));
+      assertEquals(0, backEnd.size());
+    }
+  }
+}
@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class checks that SongLoader finds the columns of a CSV file, reads quoted fields and
+ * skips malformed records
+ */
+class SongLoaderTest {
+  @TempDir
+  Path directory;
+
+  private List<SongDataInterface> load(String csv) throws IOException {
+    Path file = directory.resolve("songs.csv");
+    Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+    List<SongDataInterface> songs = new ArrayList<SongDataInterface>();
+    new SongLoader().streamFile(file.toString(), songs::add);
+    return songs;
+  }
+
+  @Test
+  void headerNamesTheColumns() throws IOException {
+    List<SongDataInterface> songs = load("year,artist,title\n1967,The Beatles,\"Hello, Goodbye\"\n"
+        + "2015,Adele,\"Say \"\"Hi\"\"\"\n");
+    assertEquals(2, songs.size());
+    assertEquals(new SongData("Hello, Goodbye", "The Beatles", 1967), songs.get(0));
+    assertEquals(new SongData("Say \"Hi\"", "Adele", 2015), songs.get(1));
+  }
+
+  @Test
+  void fileWithoutHeaderStartsWithASong() throws IOException {
+    List<SongDataInterface> songs = load("Hello World,Adele,2015\r\nYesterday,The Beatles,1965");
+    assertEquals(2, songs.size());
+    assertEquals(new SongData("Yesterday", "The Beatles", 1965), songs.get(1));
+  }
+
+  @Test
+  void recordsWithoutANumericYearAreSkipped() throws IOException {
+    Path file = directory.resolve("songs.csv");
+    Files.write(file, "title,artist,year\nA,B,soon\nC,D,2000\n".getBytes(StandardCharsets.UTF_8));
+    SongLoader loader = new SongLoader();
+    List<SongDataInterface> songs = new ArrayList<SongDataInterface>();
+    assertEquals(1, loader.streamFile(file.toString(), songs::add));
+    assertEquals(new SongData("C", "D", 2000), songs.get(0));
+    assertEquals(1, loader.getSkippedRecords());
+  }
+
+  @Test
+  void recordsWhoseYearCanNotBeStoredAreSkipped() throws IOException {
+    Path file = directory.resolve("songs.csv");
+    Files.write(file, "title,artist,year\nA,B,99999\nC,D,2000\nE,F,-40000\nG,H,1999\n"
+        .getBytes(StandardCharsets.UTF_8));
+    SongLoader loader = new SongLoader();
+    SearchBackEnd backEnd = new SearchBackEnd(16, MapEngine.OPEN_ADDRESSING);
+    assertEquals(2, loader.indexFile(file.toString(), backEnd));
+    assertEquals(2, loader.getSkippedRecords());
+    assertEquals(2, backEnd.size());
+    assertTrue(backEnd.containsSong(new SongData("G", "H", 1999)));
+  }
+
+  @Test
+  void csvReaderTellsWhetherTheLastRecordWasTerminated() throws IOException {
+    Path file = directory.resolve("partial.csv");
+    Files.write(file, "a,b,1\nc,d,2".getBytes(StandardCharsets.UTF_8));
+    try (CsvReader reader = new CsvReader(java.nio.channels.FileChannel.open(file), 16)) {
+      assertTrue(reader.nextRecord());
+      assertTrue(reader.recordTerminated());
+      assertTrue(reader.nextRecord());
+      assertEquals("d", reader.field(1));
+      assertFalse(reader.recordTerminated());
+      assertFalse(reader.nextRecord());
+    }
+  }
+}
@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * This class checks the counts of YearHistogram, also when several readers rebuild its running
+ * totals at once
+ */
+class YearHistogramTest {
+
+  @Test
+  void countsYearsAndRanges() {
+    YearHistogram histogram = new YearHistogram();
+    histogram.add(1990, 2);
+    histogram.add(1970, 1);
+    histogram.add(2010, 4);
+    histogram.add(1990, 1);
+    assertEquals(3, histogram.count(1990));
+    assertEquals(0, histogram.count(1991));
+    assertEquals(4, histogram.count(1970, 1990));
+    assertEquals(8, histogram.count(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    assertEquals(0, histogram.count(2000, 1990));
+    histogram.add(1980, 5);
+    assertEquals(9, histogram.count(1970, 1990));
+  }
+
+  @Test
+  @Timeout(60)
+  void concurrentReadersSeeCompleteTotals() throws Exception {
+    YearHistogram histogram = new YearHistogram();
+    for (int year = 1000; year < 3000; ++year) {
+      histogram.add(year, 1);
+    }
+    int readers = 4;
+    int rounds = 300;
+    CyclicBarrier barrier = new CyclicBarrier(readers + 1);
+    AtomicLong wrongCounts = new AtomicLong();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int r = 0; r < readers; ++r) {
+      threads.add(new Thread(() -> {
+        try {
+          for (int round = 0; round < rounds; ++round) {
+            // the histogram holds 2000 + round songs while the readers run
+            barrier.await();
+            if (histogram.count(1000, 2999) != 2000 + round
+                || histogram.count(2999, 2999) != 1 + round) {
+              wrongCounts.incrementAndGet();
+            }
+            barrier.await();
+          }
+        } catch (Exception e) {
+          wrongCounts.incrementAndGet();
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (int round = 0; round < rounds; ++round) {
+      barrier.await();
+      barrier.await();
+      // the writer only adds between the rounds, as under the write lock of a shard
+      histogram.add(2999, 1);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, wrongCounts.get());
+  }
+}